@@ -0,0 +1,26 @@
+package org.apache.trie.base;
+
+import java.util.List;
+
+/**
+ * A TrieBuilder which creates internal nodes with all their children at once.
+ * It is used when a Trie is built bottom up from sorted keys, where a node is
+ * complete before it becomes reachable from the Trie, so its children are set
+ * without the locking of a {@link TrieIterator}.
+ * 
+ * @param <E>
+ *          TrieKey used for this TrieBuilder
+ */
+public interface BulkTrieBuilder<E extends TrieKey<E>> extends TrieBuilder<E> {
+
+  /**
+   * Creates a Trie Node with its children.
+   * 
+   * @param ele
+   *          The element stored in this TrieNode.
+   * @param children
+   *          The children of the node in descending order of their first key.
+   * @return The Trie Node created by Builder.
+   */
+  TrieNode<E> createNode(E ele, List<TrieNode<E>> children);
+}
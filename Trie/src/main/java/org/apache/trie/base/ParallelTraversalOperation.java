@@ -0,0 +1,48 @@
+package org.apache.trie.base;
+
+/**
+ * This interface describe the extension interface for read only BackTrack
+ * Traversals which can be split across threads. At a wide node the parallel
+ * TraversalProvider forks an operation for each child, traverses the subtrees
+ * of the children concurrently, and combines the forked operations into this
+ * one in the order of the children. The traversal then continues as if this
+ * operation had visited the children itself.
+ * <p>
+ * A forked operation gets the callbacks of its child, from
+ * {@link #startInternalTrieNode(TrieKey)} or {@link #leafTrieNode(TrieKey)} to
+ * {@link #endInternalTrieNode(TrieKey)}, but not {@link #endTrie()}. The
+ * TRAVERSE_END and TRAVERSE_BACKTRACK codes returned by a forked operation end
+ * the traversal of its child only, the combiner decides whether the traversal
+ * continues. The operation cannot process nodes: TRAVERSE_PROCESS is an error.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public interface ParallelTraversalOperation<E extends TrieKey<E>> extends
+    TraversalOperationWithBacktrack<E> {
+
+  /**
+   * Returns a new operation for the subtree of a child of the current node.
+   * The new operation starts with the state of this operation at the current
+   * node and collects its own results. It is called by the thread of this
+   * operation, the new operation is then called by another thread.
+   *
+   * @return The forked operation.
+   */
+  ParallelTraversalOperation<E> fork();
+
+  /**
+   * Merges the results of an operation returned by {@link #fork()}, after it
+   * has traversed its child. The forked operations of a node are combined in
+   * the order of the children.
+   *
+   * @param forked
+   *          The operation which traversed the next child.
+   * @return TRAVERSE_SIBLING to combine the next child, or TRAVERSE_END to end
+   *         the traversal.
+   * @throws TrieException
+   */
+  OperationCodes combine(ParallelTraversalOperation<E> forked)
+      throws TrieException;
+}
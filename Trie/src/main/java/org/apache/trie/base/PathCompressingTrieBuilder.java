@@ -0,0 +1,27 @@
+package org.apache.trie.base;
+
+/**
+ * A TrieBuilder for path compressed (radix) Tries. The internal nodes created
+ * by such a builder store multi unit labels, the Trie operations split them
+ * only where keys branch and merge them again when a branch is removed.
+ * 
+ * @param <E>
+ *          TrieKey used for this TrieBuilder
+ */
+public interface PathCompressingTrieBuilder<E extends TrieKey<E>> extends
+    TrieBuilder<E> {
+
+  /**
+   * Creates a Trie Node which shares the children of the adopted node. This is
+   * used when a label is split or merged, so the children of the node do not
+   * have to be copied and are still seen by traversals which already entered
+   * the adopted node.
+   * 
+   * @param ele
+   *          The element stored in this TrieNode.
+   * @param adopt
+   *          The node whose children are adopted.
+   * @return The Trie Node created by Builder.
+   */
+  TrieNode<E> createNode(E ele, TrieNode<E> adopt);
+}
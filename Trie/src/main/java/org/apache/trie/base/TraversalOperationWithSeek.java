@@ -0,0 +1,31 @@
+package org.apache.trie.base;
+
+/**
+ * This interface describe the extension interface for Traversals which look
+ * for a single key in a Trie. The TraversalProvider uses the key to position
+ * the {@link TrieIterator} on the matching child with
+ * {@link TrieIterator#seek(TrieKey, int)} instead of visiting the siblings
+ * before it.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public interface TraversalOperationWithSeek<E extends TrieKey<E>> extends
+    TraversalOperation<E> {
+
+  /**
+   * Returns the key searched by this traversal, or null to visit the children
+   * of the current node from the first one.
+   * 
+   * @return The searched TrieKey or null.
+   */
+  E getSeekKey();
+
+  /**
+   * Returns the index of the searched key matched by the children of the
+   * current node.
+   * 
+   * @return The index in the searched TrieKey.
+   */
+  int getSeekIndex();
+}
@@ -1,5 +1,8 @@
 package org.apache.trie.base;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -30,6 +33,30 @@ public interface Trie<E extends TrieKey<E>> {
    */
   List<E> findPrefix(E ele) throws TrieException;
 
+  /**
+   * Iterates lazily over the Elements based on the prefix. The Elements are
+   * found while the iterator is used, so the first ones are returned without
+   * listing all the Elements, and no lock is held between two calls. Elements
+   * added or removed during the iteration may or may not be returned.
+   * 
+   * @param ele
+   *          The prefix element to search.
+   * @return Iterator over the Elements found.
+   */
+  Iterator<E> findPrefixIterator(E ele);
+
+  /**
+   * Iterates lazily over at most limit Elements based on the prefix, like
+   * {@link #findPrefixIterator(TrieKey)}.
+   * 
+   * @param ele
+   *          The prefix element to search.
+   * @param limit
+   *          The maximum number of Elements returned.
+   * @return Iterator over the Elements found.
+   */
+  Iterator<E> findPrefixIterator(E ele, int limit);
+
   /**
    * Returns true if the Trie contains the element.
    * 
@@ -51,4 +78,27 @@ public interface Trie<E extends TrieKey<E>> {
    * @throws TrieException
    */
   boolean removeElement(E ele) throws TrieException;
+
+  /**
+   * Add all the elements to the Trie. The elements are sorted and added in a
+   * single traversal, elements sharing a prefix share the nodes and locks of
+   * the prefix.
+   * 
+   * @param elements
+   *          The elements to add.
+   * @throws TrieException
+   */
+  void addAll(Collection<E> elements) throws TrieException;
+
+  /**
+   * Checks all the elements in a single traversal of the Trie. The bit of an
+   * element in the returned BitSet is the position of the element in the
+   * iteration order of the collection.
+   * 
+   * @param elements
+   *          The elements to check.
+   * @return The positions of the elements found.
+   * @throws TrieException
+   */
+  BitSet containsAll(Collection<E> elements) throws TrieException;
 }
@@ -85,6 +85,31 @@ public interface TrieIterator<E extends TrieKey<E>> extends
    */
   void unlockExclusive() throws TrieException;
 
+  /**
+   * Marks the TrieNodeList of this iterator as removed from the Trie. It is
+   * called while the list is locked in the exclusive mode, after its node was
+   * removed or replaced by a node which does not share the list. A later
+   * {@link #lockExclusive()} on the list throws a {@link TrieRestartException}
+   * instead of modifying a list which is no longer part of the Trie.
+   * 
+   * @throws TrieException
+   */
+  void markRemoved() throws TrieException;
+
+  /**
+   * Positions the iterator at the first node whose first key is not greater
+   * than the key at index of the specified TrieKey. The next call to
+   * {@link #next()} returns that node, or {@link #hasNext()} returns false if
+   * all nodes are greater.
+   * 
+   * @param key
+   *          The TrieKey which is searched.
+   * @param index
+   *          The index of the key matched by the children.
+   * @throws TrieException
+   */
+  void seek(E key, int index) throws TrieException;
+
   /**
    * Reset the iterator to start from first element for the iteration.
    * 
@@ -18,6 +18,13 @@ import java.io.Externalizable;
  * <li>TrieKey consists of many sub TrieKeys which can be obtained using
  * {@link #getKeyAt(int)},{@link #getKeyFrom(int)},
  * {@link #getKeyFrom(int, int)} method .</li>
+ * <li>The position aware methods {@link #compareFirstIndex(TrieKey, int)},
+ * {@link #equalsTrie(TrieKey, int)} and {@link #isEoln(int)} work on the
+ * subkey starting at an index without creating it. Traversals use them to
+ * walk down the Trie without allocating a sub TrieKey per level.</li>
+ * <li>A label is a TrieKey without EOLN character, created using
+ * {@link #getKeyAt(int)} or {@link #getLabel(int, int)}. Internal nodes store
+ * labels. {@link #concat(TrieKey)} of two labels is a label.</li>
  * </ul>
  * 
  * @author <a href="mailto:saurabh@saurabharora.me">Saurabh Arora</a>
@@ -41,6 +48,29 @@ public interface TrieKey<T extends TrieKey<T>> extends Externalizable {
    */
   boolean isEoln();
 
+  /**
+   * Returns true if the subkey starting at index represents a end of line.
+   * This is equivalent to <code>getKeyFrom(index).isEoln()</code>.
+   * 
+   * @param index
+   *          start index of the subkey.
+   * @return true if only the EOLN character is left at index.
+   */
+  boolean isEoln(int index);
+
+  /**
+   * Returns the primitive key at index as an int. The values of two keys
+   * order the same way as {@link #compareFirstIndex(TrieKey)} orders the
+   * keys, and the EOLN character has the smallest value of all keys. The
+   * value is used to index and search the children of a node without
+   * creating a TrieKey.
+   * 
+   * @param index
+   *          The index of the primitive key.
+   * @return The primitive key at location index.
+   */
+  int getKeyUnit(int index);
+
   /**
    * Return the TrieKey at index.
    * 
@@ -71,6 +101,31 @@ public interface TrieKey<T extends TrieKey<T>> extends Externalizable {
    */
   T getKeyFrom(int beginIndex, int endIndex);
 
+  /**
+   * Return the label made of the primitive keys from beginIndex to endIndex,
+   * excluding endIndex. The label has no EOLN character, like the keys
+   * returned by {@link #getKeyAt(int)}.
+   * 
+   * @param beginIndex
+   *          start index for the label.
+   * @param endIndex
+   *          end index, exclusive, for the label.
+   * @return The label from beginIndex to endIndex.
+   */
+  T getLabel(int beginIndex, int endIndex);
+
+  /**
+   * Returns the number of leading primitive keys of this TrieKey which are
+   * equal to the primitive keys of the specified TrieKey starting at index.
+   * 
+   * @param key
+   *          The TrieKey to compare with.
+   * @param index
+   *          The index of the specified TrieKey to compare from.
+   * @return The length of the common prefix.
+   */
+  int matchLength(T key, int index);
+
   /**
    * Concatenates the key and returned a new TrieKey.
    * 
@@ -90,6 +145,19 @@ public interface TrieKey<T extends TrieKey<T>> extends Externalizable {
    */
   int compareFirstIndex(T key);
 
+  /**
+   * The compare method which compares the first key of this TrieKey with the
+   * key at index of the specified TrieKey. This is equivalent to
+   * <code>compareFirstIndex(key.getKeyFrom(index))</code>.
+   * 
+   * @param key
+   *          The Triekey to compare with.
+   * @param index
+   *          The index of the specified TrieKey to compare with.
+   * @return 0 for equality,-1 for greater than, +1 for less then.
+   */
+  int compareFirstIndex(T key, int index);
+
   /**
    * The equality Function for a Trie. This equality function compares all the
    * subkeys of a Triekey.
@@ -99,4 +167,16 @@ public interface TrieKey<T extends TrieKey<T>> extends Externalizable {
    * @return true for equality, else false.
    */
   boolean equalsTrie(T key);
+
+  /**
+   * The equality Function for a subkey. This is equivalent to
+   * <code>equalsTrie(key.getKeyFrom(index))</code>.
+   * 
+   * @param key
+   *          The TrieKey to be checked for quality.
+   * @param index
+   *          The start index of the subkey of the specified TrieKey.
+   * @return true for equality, else false.
+   */
+  boolean equalsTrie(T key, int index);
 }
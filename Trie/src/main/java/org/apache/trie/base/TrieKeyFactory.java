@@ -0,0 +1,29 @@
+package org.apache.trie.base;
+
+/**
+ * Creates TrieKeys from their primitive keys. It is used by Tries which store
+ * the keys in an encoded form instead of TrieKey objects.
+ * 
+ * @param <E>
+ *          TrieKey created by this factory.
+ */
+public interface TrieKeyFactory<E extends TrieKey<E>> {
+
+  /**
+   * Creates the TrieKey made of the specified primitive keys, as returned by
+   * {@link TrieKey#getKeyUnit(int)}. The created key has an EOLN character
+   * only if the last primitive key is the EOLN character, else it is a label.
+   * Storages may keep fewer bits of each primitive key and pass them sign
+   * extended, so implementations narrow the values to the type of their
+   * primitive keys.
+   * 
+   * @param units
+   *          The primitive keys.
+   * @param offset
+   *          The index of the first primitive key in units.
+   * @param length
+   *          The number of primitive keys.
+   * @return The new TrieKey.
+   */
+  E createKey(int[] units, int offset, int length);
+}
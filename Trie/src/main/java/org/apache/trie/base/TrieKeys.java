@@ -0,0 +1,33 @@
+package org.apache.trie.base;
+
+/**
+ * Helpers for TrieKeys.
+ */
+public final class TrieKeys {
+
+  private TrieKeys() {
+  }
+
+  /**
+   * Compares two keys by their primitive keys, a key is smaller than the keys
+   * it is a prefix of. The children of a node are in the reverse of this
+   * order.
+   * 
+   * @param first
+   *          The first key.
+   * @param second
+   *          The second key.
+   * @return A negative number, zero or a positive number if the first key is
+   *         smaller than, equal to or greater than the second key.
+   */
+  public static <E extends TrieKey<E>> int compare(E first, E second) {
+    int match = first.matchLength(second, 0);
+    if (match == first.getKeyLength()) {
+      return (match == second.getKeyLength()) ? 0 : -1;
+    }
+    if (match == second.getKeyLength()) {
+      return 1;
+    }
+    return (first.getKeyUnit(match) < second.getKeyUnit(match)) ? -1 : 1;
+  }
+}
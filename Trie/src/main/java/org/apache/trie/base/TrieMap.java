@@ -0,0 +1,91 @@
+package org.apache.trie.base;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * This interface defines a Trie which maps its keys to values. The value is
+ * stored in the leaf of the key, so the keys are not indexed a second time by
+ * another map. The values are not null: a key added by the operations of the
+ * {@link Trie} has no value until one is put.
+ *
+ * @param <K>
+ *          TrieKey used for this Trie.
+ * @param <V>
+ *          The type of the values.
+ */
+public interface TrieMap<K extends TrieKey<K>, V> extends Trie<K> {
+
+  /**
+   * Returns the value of the key.
+   *
+   * @param key
+   *          The key to find.
+   * @return The value, or null if the key is not found or has no value.
+   * @throws TrieException
+   */
+  V get(K key) throws TrieException;
+
+  /**
+   * Adds the key if it is not found, and sets its value.
+   *
+   * @param key
+   *          The key to add.
+   * @param value
+   *          The value of the key.
+   * @return The previous value, or null if the key had no value.
+   * @throws TrieException
+   */
+  V put(K key, V value) throws TrieException;
+
+  /**
+   * Adds the key if it is not found, and sets its value if it has none.
+   *
+   * @param key
+   *          The key to add.
+   * @param value
+   *          The value of the key.
+   * @return The current value, or null if the value is set.
+   * @throws TrieException
+   */
+  V putIfAbsent(K key, V value) throws TrieException;
+
+  /**
+   * Returns the value of the key, or sets the value computed by the function
+   * if the key has none. The function is not called under a lock, it may be
+   * called by several threads for the same key, and only one of the computed
+   * values is set.
+   *
+   * @param key
+   *          The key to find or add.
+   * @param function
+   *          The function computing the value, a null value is not set.
+   * @return The current or the computed value.
+   * @throws TrieException
+   */
+  V computeIfAbsent(K key, Function<? super K, ? extends V> function)
+      throws TrieException;
+
+  /**
+   * Removes the key and returns its value.
+   *
+   * @param key
+   *          The key to remove.
+   * @return The value, or null if the key is not found or has no value.
+   * @throws TrieException
+   */
+  V remove(K key) throws TrieException;
+
+  /**
+   * List the keys starting with the prefix with their values, in the order of
+   * {@link #findPrefix(TrieKey)}. The keys without value are listed with a
+   * null value.
+   *
+   * @param prefix
+   *          The prefix element to search.
+   * @return List of the entries found.
+   * @throws TrieException
+   */
+  List<Map.Entry<K, V>> findPrefixEntries(K prefix) throws TrieException;
+}
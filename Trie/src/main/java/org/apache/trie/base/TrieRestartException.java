@@ -0,0 +1,16 @@
+package org.apache.trie.base;
+
+/**
+ * This TrieException is thrown when a traversal tries to modify a node which
+ * was removed from the Trie by a concurrent operation, see
+ * {@link TrieIterator#markRemoved()}. The operation has to be restarted from
+ * the root of the Trie.
+ */
+public class TrieRestartException extends TrieException {
+
+  private static final long serialVersionUID = 1L;
+
+  public TrieRestartException(String arg) {
+    super(arg);
+  }
+}
@@ -0,0 +1,34 @@
+package org.apache.trie.base;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A TrieNode which stores a value with its key. The value of a key is kept in
+ * a holder created with the leaf of the key. When a split or a merge replaces
+ * the leaf, the new leaf of the key gets the same holder before it is added to
+ * the Trie, so the value is updated in place whichever of the two leaves an
+ * operation found. The holder of a removed key is closed, so an update which
+ * found its leaf before the removal is retried.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public interface ValueTrieNode<E extends TrieKey<E>> extends TrieNode<E> {
+
+  /**
+   * Returns the holder of the value of this TrieNode.
+   *
+   * @return The holder of the value, or null if this node is not the leaf of
+   *         a key.
+   */
+  AtomicReference<Object> getValueHolder();
+
+  /**
+   * Sets the holder of the value, it is only called before this TrieNode is
+   * added to the Trie.
+   *
+   * @param holder
+   *          The holder of the leaf replaced by this TrieNode.
+   */
+  void setValueHolder(AtomicReference<Object> holder);
+}
@@ -0,0 +1,32 @@
+package org.apache.trie.base;
+
+/**
+ * A TrieNode which stores a weight. The weight of a leaf is the weight of its
+ * key. The weight of an internal node is the maximum weight of the keys below
+ * it, so a search for the heaviest keys skips the nodes which cannot hold one.
+ * The weights are not negative, a key added without a weight has the weight 0.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public interface WeightedTrieNode<E extends TrieKey<E>> extends TrieNode<E> {
+
+  /**
+   * Returns the weight of this TrieNode.
+   *
+   * @return The weight of the key of a leaf, or the maximum weight below an
+   *         internal node.
+   */
+  long getWeight();
+
+  /**
+   * Sets the weight if the current weight is the expected one.
+   *
+   * @param expect
+   *          The expected weight.
+   * @param update
+   *          The new weight.
+   * @return true if the weight is set.
+   */
+  boolean compareAndSetWeight(long expect, long update);
+}
@@ -0,0 +1,128 @@
+package org.apache.trie.base.impl;
+
+import java.util.Stack;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TraversalOperationWithSeek;
+import org.apache.trie.base.TrieKey;
+
+/**
+ * The base of the traversals of a {@link KeyBatch}. The traversal walks down
+ * the Trie once for all the keys: at each node it keeps the range of the keys
+ * below the node, and the children are visited in the descending order of the
+ * keys. A node is left as soon as its range is done.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+abstract class AbstractBatchOperation<E extends TrieKey<E>> implements
+    TraversalOperationWithBacktrack<E>, TraversalOperationWithSeek<E> {
+
+  protected final KeyBatch<E> batch;
+  protected final E[] keys;
+  private final Stack<Level> levels = new Stack<Level>();
+  /**
+   * The range of the keys below the current node.
+   */
+  protected Level current;
+
+  AbstractBatchOperation(KeyBatch<E> abatch) {
+    batch = abatch;
+    keys = abatch.keys;
+    current = new Level(0, keys.length, 0);
+  }
+
+  @Override
+  public E getSeekKey() {
+    return keys[current.pos];
+  }
+
+  @Override
+  public int getSeekIndex() {
+    return current.offset;
+  }
+
+  /**
+   * Returns the primitive key of the key at i at the current offset.
+   */
+  protected int unit(int i) {
+    return keys[i].getKeyUnit(current.offset);
+  }
+
+  /**
+   * Returns the end of the keys from the current position with the primitive
+   * key unit at the current offset.
+   */
+  protected int groupEnd(int unit) {
+    int end = current.pos;
+    while (end < current.hi && unit(end) == unit) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Returns the first key from begin to end which does not start with the
+   * label at the current offset, or end.
+   */
+  protected int labelEnd(E label, int begin, int end) {
+    int length = label.getKeyLength();
+    int i = begin;
+    while (i < end && label.matchLength(keys[i], current.offset) >= length) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Enters the internal node of label with the keys from begin to end. The
+   * traversal continues after the node at the key next.
+   */
+  protected OperationCodes enter(E label, int begin, int end, int next) {
+    current.pos = next;
+    levels.push(current);
+    current = new Level(begin, end, current.offset + label.getKeyLength());
+    return OperationCodes.TRAVERSE_CHILD;
+  }
+
+  /**
+   * Continues with the next child, or leaves the node if its keys are done.
+   */
+  protected OperationCodes next() {
+    if (current.pos < current.hi) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+    return OperationCodes.TRAVERSE_BACKTRACK;
+  }
+
+  @Override
+  public OperationCodes endInternalTrieNode(E key) {
+    if (levels.isEmpty()) {
+      return OperationCodes.TRAVERSE_ERROR;
+    }
+    current = levels.pop();
+    return next();
+  }
+
+  @Override
+  public OperationCodes endTrie() {
+    return OperationCodes.TRAVERSE_END;
+  }
+
+  /**
+   * A range of keys below a node, and the offset of the children of the node
+   * in the keys.
+   */
+  protected static final class Level {
+    protected int pos;
+    protected final int hi;
+    protected final int offset;
+
+    Level(int apos, int ahi, int aoffset) {
+      pos = apos;
+      hi = ahi;
+      offset = aoffset;
+    }
+  }
+}
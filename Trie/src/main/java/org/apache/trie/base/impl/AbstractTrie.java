@@ -1,15 +1,28 @@
 package org.apache.trie.base.impl;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+import org.apache.trie.base.ParallelTraversalOperation;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TraversalProvider;
 import org.apache.trie.base.Trie;
 import org.apache.trie.base.TrieBuilder;
 import org.apache.trie.base.TrieException;
 import org.apache.trie.base.TrieIterator;
 import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.TrieKeys;
 import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieRestartException;
 
 /**
  * Abstract implementation of a Trie. This default implementation uses a Builder
@@ -39,48 +52,333 @@ public abstract class AbstractTrie<E extends TrieKey<E>> implements Trie<E> {
 
   @Override
   public void addElement(E ele) throws TrieException {
-    InsertOperation<E> insertOps = new InsertOperation<E>(ele, builder);
-    builder.getTraversalProvider().traverseTrie(insertOps, root, true);
+    insert(ele, NodeWeights.KEEP);
+  }
+
+  private void insert(E ele, long weight) throws TrieException {
+    while (true) {
+      try {
+        InsertOperation<E> insertOps = new InsertOperation<E>(ele, 0, builder,
+            weight);
+        builder.getTraversalProvider().traverseTrie(insertOps, root, true);
+        return;
+      } catch (TrieRestartException e) {
+        // a node on the path was removed concurrently, try again.
+      }
+    }
+  }
+
+  /**
+   * Adds the element with a weight, or sets the weight of an element which is
+   * already in this Trie. The elements added without a weight have the weight
+   * 0. The weights are used by {@link #topK(TrieKey, int)}.
+   * 
+   * @param ele
+   *          The element to add.
+   * @param weight
+   *          The weight of the element, not negative.
+   * @throws TrieException
+   * @throws UnsupportedOperationException
+   *           If the nodes of this Trie do not store weights.
+   */
+  public void addElement(E ele, long weight) throws TrieException {
+    if (weight < 0) {
+      throw new IllegalArgumentException("Negative weight " + weight);
+    }
+    checkWeighted();
+    // the leaf gets its weight under the lock which adds or finds it, only the
+    // nodes above it are refreshed afterwards.
+    insert(ele, weight);
+    NodeWeights.update(root, ele, 0, NodeWeights.ANY, NodeWeights.KEEP);
   }
 
   @Override
   public boolean contains(E ele) throws TrieException {
+    return findNode(ele) != null;
+  }
+
+  /**
+   * Returns the leaf of the element, or null if it is not found.
+   */
+  TrieNode<E> findNode(E ele) throws TrieException {
     ContainsOperation<E> containOps = new ContainsOperation<E>(ele);
     builder.getTraversalProvider().traverseTrie(containOps, root, false);
 
-    return (containOps.getNode() != null);
+    return containOps.getNode();
   }
 
   @Override
   public boolean removeElement(E ele) throws TrieException {
-    RemoveOperation<E> removeop = new RemoveOperation<E>(ele);
-    builder.getTraversalProvider().traverseTrieWithBackTrack(removeop, root,
-        true);
+    return removeKey(ele).isRemoved();
+  }
+
+  /**
+   * Removes the element and returns the operation which removed it.
+   */
+  RemoveOperation<E> removeKey(E ele) throws TrieException {
+    while (true) {
+      RemoveOperation<E> removeop = new RemoveOperation<E>(ele, builder);
+      try {
+        builder.getTraversalProvider().traverseTrieWithBackTrack(removeop,
+            root, true);
+      } catch (TrieRestartException e) {
+        if (!removeop.isRemoved()) {
+          continue;
+        }
+        // only merging the nodes above the removed key failed.
+      }
+      if (removeop.getRemovedWeight() > 0) {
+        // the key may have been the heaviest below the nodes of its path.
+        NodeWeights.update(root, ele, 0, NodeWeights.ANY, NodeWeights.KEEP);
+      }
+      return removeop;
+    }
+  }
+
+  @Override
+  public void addAll(Collection<E> elements) throws TrieException {
+    for (E ele : BatchInsertOperation.insert(elements, builder, root)) {
+      addElement(ele);
+    }
+  }
 
-    return removeop.isRemoved();
+  @Override
+  public BitSet containsAll(Collection<E> elements) throws TrieException {
+    return BatchContainsOperation.find(elements,
+        builder.getTraversalProvider(), root);
   }
 
   @Override
   public List<E> findPrefix(E ele) throws TrieException {
+    return findPrefix(ele, null, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele) {
+    return findPrefixIterator(ele, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Negative limit " + limit);
+    }
+    return new PrefixIterator<E>(this, ele, limit);
+  }
+
+  /**
+   * Returns the list of elements starting with the prefix, like
+   * {@link #findPrefix(TrieKey)}, with the subtrees of the prefix traversed in
+   * parallel by the threads of the pool. The elements are in the same order.
+   * 
+   * @param ele
+   *          The prefix element to search.
+   * @param pool
+   *          The pool which traverses the subtrees.
+   * @return List of Elements found.
+   * @throws TrieException
+   */
+  public List<E> findPrefix(E ele, ForkJoinPool pool) throws TrieException {
+    return findPrefix(ele, null, Integer.MAX_VALUE,
+        new ParallelTraversalProvider<E>(pool, builder.getTraversalProvider()));
+  }
+
+  /**
+   * Lists at most limit keys starting with the prefix, in the descending order
+   * of the children. If after is not null, only the keys smaller than after are
+   * listed, so a listing can be continued from its last key.
+   * 
+   * @param ele
+   *          The prefix element to search.
+   * @param after
+   *          The last key of the previous listing, or null.
+   * @param limit
+   *          The maximum number of keys.
+   * @return List of Elements found.
+   * @throws TrieException
+   */
+  protected List<E> findPrefix(E ele, E after, int limit) throws TrieException {
+    return findPrefix(ele, after, limit, builder.getTraversalProvider());
+  }
+
+  /**
+   * Lists the keys like {@link #findPrefix(TrieKey, TrieKey, int)}, the
+   * subtree of the prefix is traversed by the provider.
+   */
+  protected List<E> findPrefix(E ele, E after, int limit,
+      TraversalProvider<E> provider) throws TrieException {
     List<E> result;
-    FindPrefixOperation<E> prefixOps = new FindPrefixOperation<E>(ele);
-    builder.getTraversalProvider().traverseTrie(prefixOps, root, false);
+    FindPrefixOperation<E> prefixOps = findPrefixNode(ele);
     TrieNode<E> prefixNode = prefixOps.getNode();
+    E prefix = ele.getLabel(0, prefixOps.getPrefixIndex());
 
     if (prefixNode == null) {
       result = Collections.emptyList();
+    } else if (prefixNode.getType() == TrieNode.Type.LEAF_NODE) {
+      E key = prefixNode.getKey();
+      result = new ArrayList<E>(1);
+      if (key.isEoln(key.getKeyLength() - 1) && limit > 0) {
+        key = prefix.concat(key);
+        if (after == null || TrieKeys.compare(key, after) < 0) {
+          result.add(key);
+        }
+      }
+    } else if (limit == 0) {
+      result = Collections.emptyList();
     } else {
-      int count = ele.getKeyLength();
-      E prefix = ele.getKeyFrom(0, Math.max(count - 2, 0));
-      TraverseAllOperation<E> op1 = new TraverseAllOperation<E>(prefix);
-      builder.getTraversalProvider().traverseTrieWithBackTrack(op1, prefixNode,
-          false);
+      TraverseAllOperation<E> op1 = new TraverseAllOperation<E>(prefix, after,
+          limit);
+      provider.traverseTrieWithBackTrack(op1, prefixNode, false);
       result = op1.getElements();
     }
     return result;
 
   }
 
+  /**
+   * Finds the node below which the keys start with the prefix, the empty
+   * prefix is found at the root.
+   */
+  FindPrefixOperation<E> findPrefixNode(E ele) throws TrieException {
+    FindPrefixOperation<E> prefixOps = new FindPrefixOperation<E>(ele);
+    if (ele.isEoln()) {
+      // every key starts with the empty prefix.
+      prefixOps.responseNode = root;
+    } else {
+      builder.getTraversalProvider().traverseTrie(prefixOps, root, false);
+    }
+    return prefixOps;
+  }
+
+  private void checkWeighted() {
+    if (!NodeWeights.isWeighted(root)) {
+      throw new UnsupportedOperationException(getClass().getSimpleName()
+          + " does not store weights");
+    }
+  }
+
+  /**
+   * Returns the k heaviest elements starting with the prefix, in descending
+   * order of their weights. The nodes are visited best first, by the maximum
+   * weight of the elements below them, so the nodes which cannot hold one of
+   * the k elements are not visited. Elements with the same weight are in no
+   * particular order.
+   * 
+   * @param ele
+   *          The prefix element to search.
+   * @param k
+   *          The maximum number of elements.
+   * @return List of Elements found.
+   * @throws TrieException
+   * @throws UnsupportedOperationException
+   *           If the nodes of this Trie do not store weights.
+   */
+  public List<E> topK(E ele, int k) throws TrieException {
+    if (k < 0) {
+      throw new IllegalArgumentException("Negative k " + k);
+    }
+    checkWeighted();
+    FindPrefixOperation<E> prefixOps = findPrefixNode(ele);
+    TrieNode<E> prefixNode = prefixOps.getNode();
+    if (prefixNode == null) {
+      return new ArrayList<E>(0);
+    }
+    return NodeWeights.topK(prefixNode, ele.getLabel(0, prefixOps
+        .getPrefixIndex()), k);
+  }
+
+  /**
+   * Adds the keys, which are in ascending order of their primitive keys, to
+   * this empty Trie. The nodes are built bottom up in a single pass, without
+   * the traversal of {@link #addElement(TrieKey)} for each key, so this is the
+   * fast way to load a sorted dictionary. Duplicate keys are skipped. The Trie
+   * must not be modified while it is loaded.
+   * 
+   * @param sortedKeys
+   *          The keys in ascending order.
+   * @return The number of distinct keys added.
+   * @throws TrieException
+   * @throws IllegalStateException
+   *           If the Trie is not empty.
+   * @throws IllegalArgumentException
+   *           If the keys are not in ascending order.
+   */
+  public long bulkLoad(Iterator<E> sortedKeys) throws TrieException {
+    return new BulkLoader<E>(builder).load(root, sortedKeys);
+  }
+
+  /**
+   * Writes the nodes of this Trie to the stream, in the compact format
+   * restored by {@link #restore(InputStream, TrieKeyFactory)}. The stream is
+   * written sequentially and is not closed. The weights and the values of the
+   * nodes are not written. The Trie should not be modified while it is
+   * written, a consistent checkpoint of a Trie being modified is written from
+   * a snapshot.
+   * 
+   * @param out
+   *          The stream of the checkpoint.
+   * @return The number of keys written.
+   * @throws TrieException
+   */
+  public long checkpoint(OutputStream out) throws TrieException {
+    return new TrieCheckpoint<E>().checkpoint(root, out);
+  }
+
+  /**
+   * Restores the keys of a checkpoint in this empty Trie. The nodes are
+   * created with their children as the stream is read, without the traversal
+   * of {@link #addElement(TrieKey)} for each key, and are only added to the
+   * Trie once the whole checkpoint is read and verified. The checkpoint may be
+   * written by a Trie with another builder. The Trie must not be modified
+   * while it is restored.
+   * 
+   * @param in
+   *          The stream of the checkpoint, it is read ahead and not closed.
+   * @param factory
+   *          The factory of the keys.
+   * @return The number of keys restored.
+   * @throws TrieException
+   *           If the checkpoint cannot be read or is corrupt.
+   * @throws IllegalStateException
+   *           If the Trie is not empty.
+   */
+  public long restore(InputStream in, TrieKeyFactory<E> factory)
+      throws TrieException {
+    return new TrieCheckpoint<E>().restore(root, in, factory, builder);
+  }
+
+  /**
+   * Traverses all the nodes of this Trie with the operation, which does not
+   * modify them. It lets other components, like the writer of a snapshot, walk
+   * the nodes without access to the builder.
+   * 
+   * @param operation
+   *          The read only operation.
+   * @throws TrieException
+   */
+  public void traverse(TraversalOperationWithBacktrack<E> operation)
+      throws TrieException {
+    builder.getTraversalProvider().traverseTrieWithBackTrack(operation, root,
+        false);
+  }
+
+  /**
+   * Traverses all the nodes of this Trie with the read only operation, which
+   * is forked at the wide nodes so the threads of the pool traverse their
+   * subtrees in parallel.
+   * 
+   * @param operation
+   *          The read only operation.
+   * @param pool
+   *          The pool which traverses the subtrees.
+   * @throws TrieException
+   */
+  public void traverse(ParallelTraversalOperation<E> operation,
+      ForkJoinPool pool) throws TrieException {
+    new ParallelTraversalProvider<E>(pool, builder.getTraversalProvider())
+        .traverseTrieWithBackTrack(operation, root, false);
+  }
+
   public void printNodes(PrintStream out) throws TrieException {
     out.println("root");
     printNode(root, "", out);
@@ -0,0 +1,154 @@
+package org.apache.trie.base.impl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieMap;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.ValueTrieNode;
+
+/**
+ * Abstract implementation of a TrieMap. The builder must create
+ * {@link ValueTrieNode}s for the leaves of the keys. A value is set with a
+ * compare and set on the holder of the leaf, which is found without a lock,
+ * so a get costs the lookup of the key and the updates of the values of
+ * different keys do not contend.
+ *
+ * @param <K>
+ *          TrieKey used for this Trie.
+ * @param <V>
+ *          The type of the values.
+ */
+public abstract class AbstractTrieMap<K extends TrieKey<K>, V> extends
+    AbstractTrie<K> implements TrieMap<K, V> {
+
+  protected AbstractTrieMap(TrieBuilder<K> abuild) {
+    super(abuild);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V get(K key) throws TrieException {
+    TrieNode<K> node = findNode(key);
+    if (node == null) {
+      return null;
+    }
+    return (V) NodeValues.getValue(node);
+  }
+
+  @Override
+  public V put(K key, V value) throws TrieException {
+    return update(key, value, false);
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) throws TrieException {
+    return update(key, value, true);
+  }
+
+  /**
+   * Sets the value in the holder of the key, the key is added first if it is
+   * not found. A holder closed by a concurrent removal is found again.
+   */
+  @SuppressWarnings("unchecked")
+  private V update(K key, V value, boolean onlyIfAbsent) throws TrieException {
+    if (value == null) {
+      throw new NullPointerException("null value for " + key);
+    }
+    while (true) {
+      TrieNode<K> node = findNode(key);
+      if (node == null) {
+        addElement(key);
+        continue;
+      }
+      AtomicReference<Object> holder = NodeValues.getHolder(node);
+      if (holder == null) {
+        throw new TrieException("The node of " + key + " stores no value");
+      }
+      Object current = holder.get();
+      while (current != NodeValues.REMOVED) {
+        if (onlyIfAbsent && current != null) {
+          return (V) current;
+        }
+        if (holder.compareAndSet(current, value)) {
+          return (V) current;
+        }
+        current = holder.get();
+      }
+    }
+  }
+
+  @Override
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> function)
+      throws TrieException {
+    V value = get(key);
+    if (value == null) {
+      V computed = function.apply(key);
+      if (computed == null) {
+        return null;
+      }
+      value = putIfAbsent(key, computed);
+      if (value == null) {
+        value = computed;
+      }
+    }
+    return value;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V remove(K key) throws TrieException {
+    return (V) removeKey(key).getRemovedValue();
+  }
+
+  @Override
+  public List<Map.Entry<K, V>> findPrefixEntries(K prefix)
+      throws TrieException {
+    List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>();
+    FindPrefixOperation<K> prefixOps = findPrefixNode(prefix);
+    TrieNode<K> prefixNode = prefixOps.getNode();
+    if (prefixNode != null) {
+      addEntries(prefixNode, prefix.getLabel(0, prefixOps.getPrefixIndex()),
+          result);
+    }
+    return result;
+  }
+
+  /**
+   * Adds the entries of the keys below the node, whose label follows prefix.
+   */
+  @SuppressWarnings("unchecked")
+  private void addEntries(TrieNode<K> node, K prefix,
+      List<Map.Entry<K, V>> result) throws TrieException {
+    K label = prefix;
+    if (node.getType() != TrieNode.Type.ROOT_NODE) {
+      K key = node.getKey();
+      label = prefix.concat(key);
+      if (key.isEoln(key.getKeyLength() - 1)) {
+        AtomicReference<Object> holder = NodeValues.getHolder(node);
+        Object value = holder == null ? null : holder.get();
+        if (value != NodeValues.REMOVED) {
+          result.add(new AbstractMap.SimpleImmutableEntry<K, V>(label,
+              (V) value));
+        }
+        return;
+      }
+    }
+    TrieIterator<K> iter = node.children().trieReadOnlyIterator();
+    try {
+      while (iter.hasNext()) {
+        addEntries(iter.next(), label, result);
+      }
+    } finally {
+      iter.finishIteration();
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package org.apache.trie.base.impl;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * This Traversal Operation checks a batch of keys in a single traversal. It is
+ * used in the {@link Trie#containsAll(Collection)} operation.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class BatchContainsOperation<E extends TrieKey<E>> extends
+    AbstractBatchOperation<E> {
+
+  private final BitSet found = new BitSet();
+
+  BatchContainsOperation(KeyBatch<E> abatch) {
+    super(abatch);
+  }
+
+  /**
+   * Returns the positions of the keys found in the collection of the batch.
+   */
+  public BitSet getFound() {
+    return found;
+  }
+
+  /**
+   * Checks the elements below the root with a single traversal, and returns
+   * the positions of the elements found.
+   */
+  static <E extends TrieKey<E>> BitSet find(Collection<E> elements,
+      TraversalProvider<E> provider, TrieNode<E> root) throws TrieException {
+    KeyBatch<E> batch = new KeyBatch<E>(elements, false);
+    if (batch.size() == 0) {
+      return new BitSet();
+    }
+    BatchContainsOperation<E> batchOps = new BatchContainsOperation<E>(batch);
+    provider.traverseTrieWithBackTrack(batchOps, root, false);
+    return batchOps.getFound();
+  }
+
+  /**
+   * Skips the keys which are greater than the node starting with unit, they
+   * are not in the Trie.
+   */
+  private void skipGreater(int unit) {
+    while (current.pos < current.hi && unit(current.pos) > unit) {
+      current.pos++;
+    }
+  }
+
+  @Override
+  public OperationCodes startInternalTrieNode(E key) {
+    int unit = key.getKeyUnit(0);
+    skipGreater(unit);
+    if (current.pos == current.hi) {
+      return OperationCodes.TRAVERSE_BACKTRACK;
+    }
+    if (unit(current.pos) < unit) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+    int end = groupEnd(unit);
+    // with a path compressed label, only the keys starting with the whole
+    // label can be below the node.
+    int begin = current.pos;
+    while (begin < end
+        && key.matchLength(keys[begin], current.offset) < key.getKeyLength()) {
+      begin++;
+    }
+    int last = labelEnd(key, begin, end);
+    if (begin == last) {
+      current.pos = end;
+      return next();
+    }
+    return enter(key, begin, last, end);
+  }
+
+  @Override
+  public OperationCodes leafTrieNode(E key) {
+    int unit = key.getKeyUnit(0);
+    skipGreater(unit);
+    if (current.pos == current.hi) {
+      return OperationCodes.TRAVERSE_BACKTRACK;
+    }
+    if (unit(current.pos) < unit) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+    int end = groupEnd(unit);
+    if (key.isEoln(key.getKeyLength() - 1)) {
+      // not an internal node whose children were removed.
+      for (int i = current.pos; i < end; i++) {
+        if (key.equalsTrie(keys[i], current.offset)) {
+          found.set(batch.index[i]);
+        }
+      }
+    }
+    current.pos = end;
+    return next();
+  }
+
+  @Override
+  public OperationCodes noNextNode() {
+    // the remaining keys are smaller than all the children.
+    return OperationCodes.TRAVERSE_BACKTRACK;
+  }
+
+  @Override
+  public OperationCodes processNode(TrieIterator<E> iter) {
+    return OperationCodes.TRAVERSE_ERROR;
+  }
+
+  @Override
+  public void lockIteration() throws TrieException {
+    // lock ignored
+  }
+
+  @Override
+  public void unlockIteration() throws TrieException {
+    // unlock ignored
+  }
+
+}
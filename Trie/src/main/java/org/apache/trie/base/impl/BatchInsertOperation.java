@@ -0,0 +1,201 @@
+package org.apache.trie.base.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.PathCompressingTrieBuilder;
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeys;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieRestartException;
+
+/**
+ * This Traversal Operation inserts a batch of keys in a single traversal. It
+ * is used in the {@link Trie#addAll(Collection)} operation.
+ * <p>
+ * The keys below a node share the locks of the path to the node. The keys
+ * with a primitive key at the offset of the node which is not the first key of
+ * a child, or which share it with a leaf, form a new branch: it is built by
+ * the {@link BulkLoader} and inserted, or replaces the leaf, with a single
+ * modification of the locked children. With a {@link PathCompressingTrieBuilder}
+ * the keys which branch within the label of an internal node are left to
+ * {@link Trie#addElement(TrieKey)}, see {@link #getDeferred()}.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class BatchInsertOperation<E extends TrieKey<E>> extends
+    AbstractBatchOperation<E> {
+
+  private enum Action {
+    INSERT, INSERT_AT_END, REPLACE
+  }
+
+  private final BulkLoader<E> loader;
+  private final List<E> deferred = new ArrayList<E>();
+  private boolean locked = false;
+  private Action action;
+  private int actionEnd;
+  private E leaf;
+
+  BatchInsertOperation(KeyBatch<E> abatch, TrieBuilder<E> builder) {
+    super(abatch);
+    loader = new BulkLoader<E>(builder);
+  }
+
+  /**
+   * Returns the keys which are not inserted by the traversal.
+   */
+  public List<E> getDeferred() {
+    return deferred;
+  }
+
+  /**
+   * Inserts the elements below the root with a single traversal, and returns
+   * the keys which are left to {@link Trie#addElement(TrieKey)}: the deferred
+   * keys, or all the keys if a node on the path was removed concurrently, the
+   * keys which are already added are then skipped by addElement.
+   */
+  static <E extends TrieKey<E>> List<E> insert(Collection<E> elements,
+      TrieBuilder<E> builder, TrieNode<E> root) throws TrieException {
+    KeyBatch<E> batch = new KeyBatch<E>(elements, true);
+    if (batch.size() == 0) {
+      return Collections.emptyList();
+    }
+    BatchInsertOperation<E> batchOps = new BatchInsertOperation<E>(batch,
+        builder);
+    try {
+      builder.getTraversalProvider().traverseTrieWithBackTrack(batchOps, root,
+          true);
+    } catch (TrieRestartException e) {
+      return Arrays.asList(batch.keys);
+    }
+    return batchOps.getDeferred();
+  }
+
+  /**
+   * Modifies the children for the keys from the current position to end.
+   */
+  private OperationCodes modify(Action aaction, int end) {
+    if (!locked) {
+      return OperationCodes.TRAVERSE_LOCK_EXCLUSIVE;
+    }
+    action = aaction;
+    actionEnd = end;
+    return OperationCodes.TRAVERSE_PROCESS;
+  }
+
+  @Override
+  public OperationCodes startInternalTrieNode(E key) {
+    int unit = key.getKeyUnit(0);
+    int first = unit(current.pos);
+    if (first > unit) {
+      return modify(Action.INSERT, groupEnd(first));
+    } else if (first < unit) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+    int end = groupEnd(unit);
+    int begin = current.pos;
+    while (begin < end
+        && key.matchLength(keys[begin], current.offset) < key.getKeyLength()) {
+      deferred.add(keys[begin++]);
+    }
+    int last = labelEnd(key, begin, end);
+    for (int i = last; i < end; i++) {
+      deferred.add(keys[i]);
+    }
+    if (begin == last) {
+      current.pos = end;
+      return next();
+    }
+    return enter(key, begin, last, end);
+  }
+
+  @Override
+  public OperationCodes leafTrieNode(E key) {
+    if (!key.isEoln(key.getKeyLength() - 1)) {
+      // an internal node whose children were removed.
+      return startInternalTrieNode(key);
+    }
+    int unit = key.getKeyUnit(0);
+    int first = unit(current.pos);
+    if (first > unit) {
+      return modify(Action.INSERT, groupEnd(first));
+    } else if (first < unit) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+    int end = groupEnd(unit);
+    if (end - current.pos == 1 && key.equalsTrie(keys[current.pos],
+        current.offset)) {
+      current.pos = end;
+      return next();
+    }
+    leaf = key;
+    return modify(Action.REPLACE, end);
+  }
+
+  @Override
+  public OperationCodes noNextNode() {
+    return modify(Action.INSERT_AT_END, groupEnd(unit(current.pos)));
+  }
+
+  @Override
+  public OperationCodes processNode(TrieIterator<E> iter) throws TrieException {
+    int offset = current.offset;
+    TrieNode<E> node;
+    if (action == Action.REPLACE) {
+      // the leaf becomes one of the keys of the new branch.
+      List<E> branch = new ArrayList<E>(actionEnd - current.pos + 1);
+      for (int i = actionEnd - 1; i >= current.pos; i--) {
+        branch.add(keys[i]);
+      }
+      E prefix = keys[current.pos];
+      E key = (offset == 0) ? leaf : prefix.getLabel(0, offset).concat(leaf);
+      branch.add(key);
+      Collections.sort(branch, new Comparator<E>() {
+        @Override
+        public int compare(E o1, E o2) {
+          return TrieKeys.compare(o1, o2);
+        }
+      });
+      node = loader.build(branch.iterator(), offset).get(0);
+      // the leaf keeps its weight and value in the new branch.
+      TrieNode<E> old = iter.previous();
+      NodeValues.replace(old, node, key, offset);
+      long weight = NodeWeights.replace(old, node, key, offset, 0);
+      iter.replaceNode(node);
+      NodeWeights.replace(old, node, key, offset, weight);
+    } else {
+      node = loader.build(batch.ascending(current.pos, actionEnd), offset)
+          .get(0);
+      if (action == Action.INSERT) {
+        iter.insert(node);
+      } else {
+        iter.insertAtEnd(node);
+      }
+    }
+    current.pos = actionEnd;
+    return next();
+  }
+
+  @Override
+  public void lockIteration() throws TrieException {
+    locked = true;
+  }
+
+  @Override
+  public void unlockIteration() throws TrieException {
+    locked = false;
+  }
+
+}
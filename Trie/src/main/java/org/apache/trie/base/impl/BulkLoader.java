@@ -0,0 +1,205 @@
+package org.apache.trie.base.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.trie.base.BulkTrieBuilder;
+import org.apache.trie.base.PathCompressingTrieBuilder;
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * Builds the nodes of a Trie bottom up from keys in ascending order. It is
+ * used in the {@link AbstractTrie#bulkLoad(Iterator)} operation, and for the
+ * new branches of {@link AbstractTrie#addAll(java.util.Collection)}.
+ * <p>
+ * The loader keeps the internal nodes of the path of the last key open. The
+ * common prefix of two consecutive keys tells which of them are complete: their
+ * node is created with all its children and added to its parent, so each node
+ * is created and filled once and no key is searched from the root. A node is
+ * only reachable from the root once it is complete, so a
+ * {@link BulkTrieBuilder} creates it with its children without locking. With a
+ * {@link PathCompressingTrieBuilder} an internal node is only created where the
+ * keys branch, else a node is created for each key unit of the shared
+ * prefixes.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class BulkLoader<E extends TrieKey<E>> {
+
+  private final TrieBuilder<E> builder;
+  private final BulkTrieBuilder<E> bulkBuilder;
+  private final boolean compressed;
+  private final List<Frame<E>> stack = new ArrayList<Frame<E>>();
+  private long count;
+
+  BulkLoader(TrieBuilder<E> abuilder) {
+    builder = abuilder;
+    if (abuilder instanceof BulkTrieBuilder<?>) {
+      bulkBuilder = (BulkTrieBuilder<E>) abuilder;
+    } else {
+      bulkBuilder = null;
+    }
+    compressed = abuilder instanceof PathCompressingTrieBuilder<?>;
+  }
+
+  /**
+   * Adds the keys under the root, which must have no children.
+   *
+   * @return the number of keys added, duplicates are skipped.
+   * @throws IllegalStateException
+   *           If the root has children.
+   */
+  long load(TrieNode<E> root, Iterator<E> keys) throws TrieException {
+    if (!root.children().isEmpty()) {
+      throw new IllegalStateException("bulkLoad requires an empty Trie");
+    }
+    List<TrieNode<E>> children = build(keys, 0);
+    Collections.reverse(children);
+    insertChildren(root, children);
+    return count;
+  }
+
+  boolean isCompressed() {
+    return compressed;
+  }
+
+  /**
+   * Builds the nodes for keys which share their first depth primitive keys.
+   * The returned nodes start at depth and are in ascending order, there is a
+   * single one if the keys also share the primitive key at depth.
+   */
+  List<TrieNode<E>> build(Iterator<E> keys, int depth) throws TrieException {
+    stack.clear();
+    stack.add(new Frame<E>(depth, null));
+    count = 0;
+    E prev = null;
+    while (keys.hasNext()) {
+      E key = keys.next();
+      if (prev != null) {
+        int match = prev.matchLength(key, 0);
+        if (match == prev.getKeyLength()) {
+          // duplicate key.
+          continue;
+        }
+        if (match == key.getKeyLength()
+            || prev.getKeyUnit(match) > key.getKeyUnit(match)) {
+          throw new IllegalArgumentException("Keys are not sorted: " + prev
+              + " before " + key);
+        }
+        add(prev, match);
+        count++;
+      }
+      prev = key;
+    }
+    if (prev != null) {
+      add(prev, depth);
+      count++;
+    }
+    return stack.remove(0).children;
+  }
+
+  private Frame<E> top() {
+    return stack.get(stack.size() - 1);
+  }
+
+  /**
+   * Adds the leaf of key and completes the nodes deeper than the prefix key
+   * shares with the next key.
+   */
+  private void add(E key, int match) throws TrieException {
+    if (match > top().depth) {
+      stack.add(new Frame<E>(match, key));
+    }
+    Frame<E> parent = top();
+    parent.children.add(builder.createNode((parent.depth == 0) ? key : key
+        .getKeyFrom(parent.depth)));
+    while (top().depth > match) {
+      Frame<E> frame = stack.remove(stack.size() - 1);
+      if (top().depth < match) {
+        // the next key branches within the label of the frame.
+        stack.add(new Frame<E>(match, key));
+      }
+      top().children.add(close(frame, top().depth));
+    }
+  }
+
+  /**
+   * Creates the internal node of a complete frame below a parent at depth.
+   */
+  private TrieNode<E> close(Frame<E> frame, int depth) throws TrieException {
+    if (compressed) {
+      return createInternalNode(frame.key.getLabel(depth, frame.depth),
+          frame.children);
+    }
+    TrieNode<E> node = createInternalNode(frame.key.getLabel(frame.depth - 1,
+        frame.depth), frame.children);
+    for (int i = frame.depth - 2; i >= depth; i--) {
+      List<TrieNode<E>> child = new ArrayList<TrieNode<E>>(1);
+      child.add(node);
+      node = createInternalNode(frame.key.getLabel(i, i + 1), child);
+    }
+    return node;
+  }
+
+  private TrieNode<E> createInternalNode(E label, List<TrieNode<E>> children)
+      throws TrieException {
+    Collections.reverse(children);
+    return createNode(label, children);
+  }
+
+  /**
+   * Creates the node with the children, which are in descending order, or a
+   * leaf if there are none.
+   */
+  TrieNode<E> createNode(E label, List<TrieNode<E>> children)
+      throws TrieException {
+    if (children.isEmpty()) {
+      return builder.createNode(label);
+    }
+    if (bulkBuilder != null) {
+      return bulkBuilder.createNode(label, children);
+    }
+    TrieNode<E> node = builder.createNode(label);
+    insertChildren(node, children);
+    return node;
+  }
+
+  /**
+   * Inserts the children, which are in descending order, at the end of the
+   * children of node.
+   */
+  void insertChildren(TrieNode<E> node, List<TrieNode<E>> children)
+      throws TrieException {
+    TrieIterator<E> iter = node.children().trieWritableIterator();
+    try {
+      iter.lockExclusive();
+      for (TrieNode<E> child : children) {
+        iter.insertAtEnd(child);
+      }
+    } finally {
+      iter.finishIteration();
+    }
+  }
+
+  /**
+   * An internal node which is not complete. Its label ends at depth in key.
+   */
+  private static final class Frame<E extends TrieKey<E>> {
+    private final int depth;
+    private final E key;
+    private final List<TrieNode<E>> children = new ArrayList<TrieNode<E>>();
+
+    Frame(int adepth, E akey) {
+      depth = adepth;
+      key = akey;
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package org.apache.trie.base.impl;
 
 import org.apache.trie.base.OperationCodes;
-import org.apache.trie.base.TraversalOperation;
+import org.apache.trie.base.TraversalOperationWithSeek;
 import org.apache.trie.base.TrieException;
 import org.apache.trie.base.TrieIterator;
 import org.apache.trie.base.TrieKey;
@@ -15,7 +15,8 @@ import org.apache.trie.base.TrieNode;
  * @param <E>
  *          TrieKey used for this Trie.
  */
-class ContainsOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
+class ContainsOperation<E extends TrieKey<E>> implements
+    TraversalOperationWithSeek<E> {
   /**
    * The response Node which is found in the Trie.
    */
@@ -23,7 +24,11 @@ class ContainsOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
   /**
    * The key to find in the Trie.
    */
-  protected E ele;
+  protected final E ele;
+  /**
+   * The index of the key unit of ele which is matched at the current level.
+   */
+  protected int offset = 0;
 
   ContainsOperation(E arg) {
     super();
@@ -34,9 +39,19 @@ class ContainsOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
     return responseNode;
   }
 
+  @Override
+  public E getSeekKey() {
+    return ele;
+  }
+
+  @Override
+  public int getSeekIndex() {
+    return offset;
+  }
+
   @Override
   public OperationCodes leafTrieNode(E key) {
-    boolean comp = key.equalsTrie(ele);
+    boolean comp = key.equalsTrie(ele, offset);
     if (comp) {
       return OperationCodes.TRAVERSE_PROCESS;
     }
@@ -45,9 +60,14 @@ class ContainsOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
 
   @Override
   public OperationCodes startInternalTrieNode(E key) {
-    int comp = key.compareFirstIndex(ele);
+    int comp = key.compareFirstIndex(ele, offset);
     if (comp == 0) {
-      ele = ele.getKeyFrom(1);
+      int length = key.getKeyLength();
+      if (length > 1 && key.matchLength(ele, offset) < length) {
+        // the path compressed label differs after the first key.
+        return OperationCodes.TRAVERSE_END;
+      }
+      offset += length;
       return OperationCodes.TRAVERSE_CHILD;
     } else if (comp == 1) {
       return OperationCodes.TRAVERSE_SIBLING;
@@ -17,19 +17,55 @@ import org.apache.trie.base.TrieKey;
  */
 class FindPrefixOperation<E extends TrieKey<E>> extends ContainsOperation<E> {
 
+  private int prefixIndex = 0;
+
   FindPrefixOperation(E arg) {
     super(arg);
 
   }
 
+  /**
+   * Returns the index of the prefix where the key of the found node starts.
+   * The keys below the node start with <code>getLabel(0, prefixIndex)</code>
+   * of the prefix.
+   */
+  int getPrefixIndex() {
+    return prefixIndex;
+  }
+
+  /**
+   * Returns true if the rest of the prefix is a prefix of key.
+   */
+  private boolean startsWithPrefix(E key) {
+    return key.matchLength(ele, offset) >= ele.getKeyLength() - 1 - offset;
+  }
+
+  @Override
+  public OperationCodes leafTrieNode(E key) {
+    int comp = key.compareFirstIndex(ele, offset);
+    if (comp == 0 && startsWithPrefix(key)) {
+      prefixIndex = offset;
+      return OperationCodes.TRAVERSE_PROCESS;
+    } else if (comp == 1) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+    return OperationCodes.TRAVERSE_END;
+  }
+
   @Override
   public OperationCodes startInternalTrieNode(E key) {
-    int comp = key.compareFirstIndex(ele);
+    int comp = key.compareFirstIndex(ele, offset);
     if (comp == 0) {
-      ele = ele.getKeyFrom(1);
-      if (ele.isEoln()) {
+      if (startsWithPrefix(key)) {
+        // the prefix ends within or at the end of the label.
+        prefixIndex = offset;
         return OperationCodes.TRAVERSE_PROCESS;
       }
+      int length = key.getKeyLength();
+      if (key.matchLength(ele, offset) < length) {
+        return OperationCodes.TRAVERSE_END;
+      }
+      offset += length;
       return OperationCodes.TRAVERSE_CHILD;
     } else if (comp == 1) {
       return OperationCodes.TRAVERSE_SIBLING;
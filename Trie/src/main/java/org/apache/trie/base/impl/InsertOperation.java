@@ -4,7 +4,8 @@
 package org.apache.trie.base.impl;
 
 import org.apache.trie.base.OperationCodes;
-import org.apache.trie.base.TraversalOperation;
+import org.apache.trie.base.PathCompressingTrieBuilder;
+import org.apache.trie.base.TraversalOperationWithSeek;
 import org.apache.trie.base.Trie;
 import org.apache.trie.base.TrieBuilder;
 import org.apache.trie.base.TrieException;
@@ -15,31 +16,135 @@ import org.apache.trie.base.TrieNode;
 /**
  * This Traversal Operation is used to insert a node in the Trie. It is used in
  * the {@link Trie#addElement(TrieKey) }operation.
+ * <p>
+ * With a {@link PathCompressingTrieBuilder} a leaf or an internal node is split
+ * only once, at the end of the label shared with the inserted key.
+ * </p>
  * 
  * @author <a href="mailto:saurabh@saurabharora.me">Saurabh Arora</a>
  * @param <E>
  *          TrieKey used for this Trie.
  */
-class InsertOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
+class InsertOperation<E extends TrieKey<E>> implements
+    TraversalOperationWithSeek<E> {
 
   private boolean inserted = false;
   private boolean insertAtEnd = false;
   private boolean locked = false;
   private final TrieBuilder<E> builder;
-  private E ele;
+  private final E ele;
+  private int offset;
   private TrieNode<E> replaceNode = null;
+  /**
+   * The weight of the leaf of ele, or {@link NodeWeights#KEEP}.
+   */
+  private final long weight;
+  /**
+   * The leaf of ele is already in the Trie, only its weight is set.
+   */
+  private boolean found = false;
+  /**
+   * The length of the shared label when an internal node is split.
+   */
+  private int splitIndex = 0;
 
   InsertOperation(E arg, TrieBuilder<E> abuilder) {
+    this(arg, 0, abuilder);
+  }
+
+  /**
+   * Creates an insert operation for the subkey of arg starting at index.
+   */
+  InsertOperation(E arg, int index, TrieBuilder<E> abuilder) {
+    this(arg, index, abuilder, NodeWeights.KEEP);
+  }
+
+  /**
+   * Creates an insert operation which also sets the weight of the leaf of
+   * arg. The weight of a new leaf is set before the leaf is added, and the
+   * weight of an existing leaf under the exclusive lock of its parent, the
+   * lock which removes it.
+   */
+  InsertOperation(E arg, int index, TrieBuilder<E> abuilder, long aweight) {
     super();
     ele = arg;
+    offset = index;
     builder = abuilder;
+    weight = aweight;
+  }
+
+  /**
+   * Creates a leaf of ele, with the weight of this operation.
+   */
+  private TrieNode<E> createLeaf(E label) throws TrieException {
+    TrieNode<E> leaf = builder.createNode(label);
+    if (weight != NodeWeights.KEEP) {
+      NodeWeights.setWeight(leaf, weight);
+    }
+    return leaf;
+  }
+
+  /**
+   * Returns the part of ele which is stored in the new leaf node. The subkey
+   * is only created here, when a node is actually added.
+   */
+  private E remainingKey() {
+    if (offset == 0) {
+      return ele;
+    }
+    return ele.getKeyFrom(offset);
+  }
+
+  @Override
+  public E getSeekKey() {
+    return ele;
+  }
+
+  @Override
+  public int getSeekIndex() {
+    return offset;
+  }
+
+  /**
+   * Creates the internal node for label with the two children in descending
+   * order.
+   */
+  private TrieNode<E> createBranch(E label, TrieNode<E> first,
+      TrieNode<E> second) throws TrieException {
+    TrieNode<E> branch = builder.createNode(label);
+    TrieIterator<E> iter = branch.children().trieWritableIterator();
+    try {
+      iter.lockExclusive();
+      if (first.getKey().getKeyUnit(0) > second.getKey().getKeyUnit(0)) {
+        iter.insertAtEnd(first);
+        iter.insertAtEnd(second);
+      } else {
+        iter.insertAtEnd(second);
+        iter.insertAtEnd(first);
+      }
+    } finally {
+      iter.finishIteration();
+    }
+    return branch;
   }
 
   @Override
   public OperationCodes startInternalTrieNode(E key) {
-    int comp = key.compareFirstIndex(ele);
+    int comp = key.compareFirstIndex(ele, offset);
     if (comp == 0) {
-      ele = ele.getKeyFrom(1);
+      int length = key.getKeyLength();
+      if (length > 1) {
+        int match = key.matchLength(ele, offset);
+        if (match < length) {
+          // split the label, the node is only known in processNode.
+          if (!locked) {
+            return OperationCodes.TRAVERSE_LOCK_EXCLUSIVE;
+          }
+          splitIndex = match;
+          return OperationCodes.TRAVERSE_PROCESS;
+        }
+      }
+      offset += length;
       return OperationCodes.TRAVERSE_CHILD;
     } else if (comp == 1) {
       return OperationCodes.TRAVERSE_SIBLING;
@@ -51,13 +156,32 @@ class InsertOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
 
   @Override
   public OperationCodes processNode(TrieIterator<E> iter) throws TrieException {
-    if (insertAtEnd) {
-      iter.insertAtEnd(builder.createNode(ele));
+    if (found) {
+      NodeWeights.setWeight(iter.previous(), weight);
+    } else if (splitIndex > 0) {
+      TrieNode<E> node = iter.previous();
+      E label = node.getKey();
+      TrieNode<E> lower = ((PathCompressingTrieBuilder<E>) builder).createNode(
+          label.getLabel(splitIndex, label.getKeyLength()), node);
+      TrieNode<E> leaf = createLeaf(ele.getKeyFrom(offset + splitIndex));
+      TrieNode<E> branch = createBranch(label.getLabel(0, splitIndex), lower,
+          leaf);
+      long copied = NodeWeights.replace(node, branch, label, 0, 0);
+      iter.replaceNode(branch);
+      NodeWeights.replace(node, branch, label, 0, copied);
+    } else if (insertAtEnd) {
+      iter.insertAtEnd(createLeaf(remainingKey()));
     } else {
       if (replaceNode == null) {
-        iter.insert(builder.createNode(ele));
+        iter.insert(createLeaf(remainingKey()));
       } else {
+        // the split leaf keeps its weight and value.
+        TrieNode<E> leaf = iter.previous();
+        E key = leaf.getKey();
+        NodeValues.replace(leaf, replaceNode, key, 0);
+        long copied = NodeWeights.replace(leaf, replaceNode, key, 0, 0);
         iter.replaceNode(replaceNode);
+        NodeWeights.replace(leaf, replaceNode, key, 0, copied);
         replaceNode = null;
       }
     }
@@ -67,12 +191,23 @@ class InsertOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
 
   @Override
   public OperationCodes leafTrieNode(E key) throws TrieException {
-    int compvalue = key.compareFirstIndex(ele);
+    if (!key.isEoln(key.getKeyLength() - 1)) {
+      // an internal node whose children were removed.
+      return startInternalTrieNode(key);
+    }
+    int compvalue = key.compareFirstIndex(ele, offset);
     if (compvalue == 0) {
 
-      if (key.equalsTrie(ele)) {
-        inserted = true;
-        return OperationCodes.TRAVERSE_END;
+      if (key.equalsTrie(ele, offset)) {
+        if (weight == NodeWeights.KEEP) {
+          inserted = true;
+          return OperationCodes.TRAVERSE_END;
+        }
+        if (!locked) {
+          return OperationCodes.TRAVERSE_LOCK_EXCLUSIVE;
+        }
+        found = true;
+        return OperationCodes.TRAVERSE_PROCESS;
       }
 
       if (key.getKeyLength() > 1) {
@@ -81,16 +216,24 @@ class InsertOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
           return OperationCodes.TRAVERSE_LOCK_EXCLUSIVE;
         }
 
+        if (builder instanceof PathCompressingTrieBuilder<?>) {
+          int match = key.matchLength(ele, offset);
+          replaceNode = createBranch(key.getLabel(0, match),
+              builder.createNode(key.getKeyFrom(match)),
+              createLeaf(ele.getKeyFrom(offset + match)));
+          return OperationCodes.TRAVERSE_PROCESS;
+        }
+
         InsertOperation<E> insertOps = new InsertOperation<E>(key, builder);
         E newkey1 = key.getKeyAt(0);
         TrieNode<E> newnode = builder.createNode(newkey1);
         builder.getTraversalProvider().traverseTrie(insertOps, newnode, true);
-        insertOps = new InsertOperation<E>(ele, builder);
+        insertOps = new InsertOperation<E>(ele, offset, builder, weight);
         builder.getTraversalProvider().traverseTrie(insertOps, newnode, true);
         replaceNode = newnode;
         return OperationCodes.TRAVERSE_PROCESS;
       } else {
-        ele = ele.getKeyFrom(1);
+        offset++;
         return OperationCodes.TRAVERSE_CHILD;
       }
     } else if (compvalue == -1) {
@@ -118,6 +261,9 @@ class InsertOperation<E extends TrieKey<E>> implements TraversalOperation<E> {
   @Override
   public void lockIteration() throws TrieException {
     locked = true;
+    // the children are scanned again under the lock, a node may have been
+    // added after the last child.
+    insertAtEnd = false;
   }
 
   @Override
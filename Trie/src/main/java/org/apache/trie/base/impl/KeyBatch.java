@@ -0,0 +1,85 @@
+package org.apache.trie.base.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeys;
+
+/**
+ * The keys of a batch operation in descending order of their primitive keys,
+ * the order of the children in the Trie. Keys sharing a prefix are adjacent,
+ * so a batch traversal handles them together below the node of the prefix.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+final class KeyBatch<E extends TrieKey<E>> {
+
+  /**
+   * The keys in descending order.
+   */
+  final E[] keys;
+  /**
+   * The position of each key in the collection of the batch.
+   */
+  final int[] index;
+
+  @SuppressWarnings("unchecked")
+  KeyBatch(Collection<E> elements, boolean distinct) {
+    final E[] all = (E[]) elements.toArray(new TrieKey[elements.size()]);
+    Integer[] order = new Integer[all.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return TrieKeys.compare(all[o2], all[o1]);
+      }
+    });
+    int size = 0;
+    E[] sorted = (E[]) new TrieKey[all.length];
+    int[] positions = new int[all.length];
+    for (Integer i : order) {
+      if (distinct && size > 0 && TrieKeys.compare(sorted[size - 1], all[i]) == 0) {
+        continue;
+      }
+      sorted[size] = all[i];
+      positions[size] = i;
+      size++;
+    }
+    keys = Arrays.copyOf(sorted, size);
+    index = Arrays.copyOf(positions, size);
+  }
+
+  int size() {
+    return keys.length;
+  }
+
+  /**
+   * Returns the keys from begin to end, exclusive, in ascending order.
+   */
+  Iterator<E> ascending(final int begin, final int end) {
+    return new Iterator<E>() {
+      private int next = end - 1;
+
+      @Override
+      public boolean hasNext() {
+        return next >= begin;
+      }
+
+      @Override
+      public E next() {
+        return keys[next--];
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("remove");
+      }
+    };
+  }
+}
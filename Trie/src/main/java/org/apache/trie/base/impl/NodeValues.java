@@ -0,0 +1,88 @@
+package org.apache.trie.base.impl;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.ValueTrieNode;
+
+/**
+ * Keeps the values of the keys in the holders of their {@link ValueTrieNode}s.
+ * The holder of a leaf is shared with the leaf which replaces it, and is
+ * closed with {@link #REMOVED} when the key is removed, so a value is never
+ * set on a key which is no longer in the Trie.
+ */
+final class NodeValues {
+
+  /**
+   * The content of the holder of a removed key.
+   */
+  static final Object REMOVED = new Object();
+
+  private NodeValues() {
+  }
+
+  /**
+   * Returns the holder of the node, or null if the node stores no value.
+   */
+  static <E extends TrieKey<E>> AtomicReference<Object> getHolder(
+      TrieNode<E> node) {
+    if (node instanceof ValueTrieNode<?>) {
+      return ((ValueTrieNode<E>) node).getValueHolder();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of the node, or null if it has none.
+   */
+  static <E extends TrieKey<E>> Object getValue(TrieNode<E> node) {
+    AtomicReference<Object> holder = getHolder(node);
+    if (holder == null) {
+      return null;
+    }
+    Object value = holder.get();
+    return value == REMOVED ? null : value;
+  }
+
+  /**
+   * Closes the holder of the removed node and returns its value.
+   */
+  static <E extends TrieKey<E>> Object remove(TrieNode<E> node) {
+    AtomicReference<Object> holder = getHolder(node);
+    if (holder == null) {
+      return null;
+    }
+    Object value = holder.getAndSet(REMOVED);
+    return value == REMOVED ? null : value;
+  }
+
+  /**
+   * Gives the holder of old to the leaf of the key of old in replacement,
+   * which replaces old or the node above old. It is called before the
+   * replacement is added to the Trie.
+   *
+   * @param key
+   *          The key or label of old, the label of replacement is at offset.
+   */
+  static <E extends TrieKey<E>> void replace(TrieNode<E> old,
+      TrieNode<E> replacement, E key, int offset) throws TrieException {
+    AtomicReference<Object> holder = getHolder(old);
+    if (holder == null || !NodeWeights.isKey(old)) {
+      return;
+    }
+    TrieNode<E> node = replacement;
+    int index = offset + node.getKey().getKeyLength();
+    while (node.getType() != TrieNode.Type.LEAF_NODE) {
+      node = NodeWeights.child(node, key, index);
+      if (node == null) {
+        return;
+      }
+      index += node.getKey().getKeyLength();
+    }
+    if (index == key.getKeyLength() && node instanceof ValueTrieNode<?>) {
+      ((ValueTrieNode<E>) node).setValueHolder(holder);
+    }
+  }
+}
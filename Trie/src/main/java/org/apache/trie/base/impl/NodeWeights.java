@@ -0,0 +1,283 @@
+package org.apache.trie.base.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.WeightedTrieNode;
+
+/**
+ * Keeps the weights of the internal {@link WeightedTrieNode}s up to date. The
+ * weight of an internal node is computed from the weights of its children, so
+ * after the weight of a key changes, its path is refreshed from the bottom up.
+ * <p>
+ * The refresh runs concurrently with the other operations. A node reads its
+ * children again after its weight is set, so a child raised in between is not
+ * missed. Each node of a path is checked to be still the child of its parent
+ * before the parent is refreshed, else the path is walked again: a node which
+ * was replaced by a split or a merge is not refreshed in vain. The nodes which
+ * replace a node get their weights by {@link #replace}.
+ * </p>
+ * <p>
+ * The weights are read by the best first search of {@link #topK}.
+ * </p>
+ */
+final class NodeWeights {
+
+  /**
+   * The weight of the leaf is not changed, only its path is refreshed.
+   */
+  static final long KEEP = -1;
+  /**
+   * The weight of the leaf is set whatever its current weight. It differs
+   * from {@link #KEEP}, the two are passed together.
+   */
+  static final long ANY = -2;
+
+  private NodeWeights() {
+  }
+
+  static boolean isWeighted(TrieNode<?> node) {
+    return node instanceof WeightedTrieNode<?>;
+  }
+
+  /**
+   * Sets the weight of a leaf whatever its current weight, a node which does
+   * not store weights is ignored.
+   */
+  static <E extends TrieKey<E>> void setWeight(TrieNode<E> node, long weight) {
+    if (node instanceof WeightedTrieNode<?>) {
+      WeightedTrieNode<E> weighted = (WeightedTrieNode<E>) node;
+      long old = weighted.getWeight();
+      while (!weighted.compareAndSetWeight(old, weight)) {
+        old = weighted.getWeight();
+      }
+    }
+  }
+
+  static <E extends TrieKey<E>> long getWeight(TrieNode<E> node) {
+    if (node instanceof WeightedTrieNode<?>) {
+      return ((WeightedTrieNode<E>) node).getWeight();
+    }
+    return 0;
+  }
+
+  /**
+   * Returns true if the node is the leaf of a key, not an internal node whose
+   * children were removed.
+   */
+  static <E extends TrieKey<E>> boolean isKey(TrieNode<E> node) {
+    if (node.getType() != TrieNode.Type.LEAF_NODE) {
+      return false;
+    }
+    E key = node.getKey();
+    return key.isEoln(key.getKeyLength() - 1);
+  }
+
+  private static <E extends TrieKey<E>> long maxOfChildren(TrieNode<E> node)
+      throws TrieException {
+    long max = 0;
+    TrieIterator<E> iter = node.children().trieReadOnlyIterator();
+    try {
+      while (iter.hasNext()) {
+        max = Math.max(max, getWeight(iter.next()));
+      }
+    } finally {
+      iter.finishIteration();
+    }
+    return max;
+  }
+
+  /**
+   * Sets the weight of an internal node to the maximum weight of its children.
+   */
+  static <E extends TrieKey<E>> void refresh(TrieNode<E> node)
+      throws TrieException {
+    WeightedTrieNode<E> weighted = (WeightedTrieNode<E>) node;
+    long max = maxOfChildren(node);
+    while (true) {
+      long old = weighted.getWeight();
+      if (old == max || weighted.compareAndSetWeight(old, max)) {
+        long again = maxOfChildren(node);
+        if (again == max) {
+          return;
+        }
+        max = again;
+      }
+    }
+  }
+
+  /**
+   * Returns the child of node whose label is at offset in key, or null.
+   */
+  static <E extends TrieKey<E>> TrieNode<E> child(TrieNode<E> node,
+      E key, int offset) throws TrieException {
+    if (offset >= key.getKeyLength()) {
+      return null;
+    }
+    TrieIterator<E> iter = node.children().trieReadOnlyIterator();
+    try {
+      iter.seek(key, offset);
+      if (iter.hasNext()) {
+        TrieNode<E> child = iter.next();
+        E label = child.getKey();
+        if (label.matchLength(key, offset) == label.getKeyLength()) {
+          return child;
+        }
+      }
+    } finally {
+      iter.finishIteration();
+    }
+    return null;
+  }
+
+  /**
+   * Sets the weight of the leaf of key below start and refreshes the nodes on
+   * its path. The label of start, or its children if start is the root, is at
+   * offset in key.
+   *
+   * @param expect
+   *          The expected weight of the leaf, or {@link #ANY}.
+   * @param weight
+   *          The weight of the leaf, or {@link #KEEP}.
+   */
+  static <E extends TrieKey<E>> void update(TrieNode<E> start, E key,
+      int offset, long expect, long weight) throws TrieException {
+    int first = offset;
+    if (start.getType() != TrieNode.Type.ROOT_NODE) {
+      first += start.getKey().getKeyLength();
+    }
+    retry: while (true) {
+      List<TrieNode<E>> nodes = new ArrayList<TrieNode<E>>();
+      List<Integer> offsets = new ArrayList<Integer>();
+      TrieNode<E> node = start;
+      int index = first;
+      while (true) {
+        nodes.add(node);
+        offsets.add(index);
+        if (node.getType() == TrieNode.Type.LEAF_NODE) {
+          break;
+        }
+        node = child(node, key, index);
+        if (node == null) {
+          break;
+        }
+        index += node.getKey().getKeyLength();
+      }
+      TrieNode<E> last = nodes.get(nodes.size() - 1);
+      if (weight != KEEP && isKey(last)
+          && index == key.getKeyLength()) {
+        if (expect == ANY) {
+          setWeight(last, weight);
+        } else {
+          ((WeightedTrieNode<E>) last).compareAndSetWeight(expect, weight);
+        }
+      }
+      for (int i = nodes.size() - 1; i > 0; i--) {
+        node = nodes.get(i);
+        if (!isKey(node)) {
+          refresh(node);
+        }
+        if (child(nodes.get(i - 1), key, offsets.get(i - 1)) != node) {
+          // replaced concurrently, refresh the new path.
+          continue retry;
+        }
+      }
+      if (!isKey(start)) {
+        refresh(start);
+      }
+      return;
+    }
+  }
+
+  /**
+   * Sets the weights of the nodes of replacement, which replaces the node old
+   * or the node above old. The leaf of the key of old gets the weight of old,
+   * and the internal nodes on the path of key are refreshed. It is called with
+   * the expected weight 0 before the replacement is added to the Trie, and
+   * again after it is added with the weight returned by the first call, so a
+   * weight set on old in between is copied too. Nothing is copied from a node
+   * of weight 0, so a Trie without weights does not pay for them.
+   *
+   * @param key
+   *          The key or label of old, the label of replacement is at offset.
+   * @return The weight copied to the leaf.
+   */
+  static <E extends TrieKey<E>> long replace(TrieNode<E> old,
+      TrieNode<E> replacement, E key, int offset, long expect)
+      throws TrieException {
+    long max = getWeight(old);
+    if (max == 0 || !isWeighted(replacement)) {
+      return 0;
+    }
+    long weight = isKey(old) ? max : KEEP;
+    update(replacement, key, offset, expect, weight);
+    return weight;
+  }
+
+  /**
+   * Returns the k heaviest keys below the node, as
+   * {@link AbstractTrie#topK(TrieKey, int)}. The nodes are queued by their
+   * weights, the keys are the prefix followed by the labels of their path.
+   */
+  static <E extends TrieKey<E>> List<E> topK(TrieNode<E> node, E prefix,
+      int k) throws TrieException {
+    List<E> result = new ArrayList<E>(Math.min(k, 16));
+    PriorityQueue<WeightedEntry<E>> queue =
+        new PriorityQueue<WeightedEntry<E>>();
+    queue.add(new WeightedEntry<E>(node, prefix, 0));
+    long sequence = 1;
+    while (!queue.isEmpty() && result.size() < k) {
+      WeightedEntry<E> entry = queue.poll();
+      E label = entry.prefix;
+      if (entry.node.getType() != TrieNode.Type.ROOT_NODE) {
+        E key = entry.node.getKey();
+        label = label.concat(key);
+        if (key.isEoln(key.getKeyLength() - 1)) {
+          result.add(label);
+          continue;
+        }
+      }
+      TrieIterator<E> iter = entry.node.children().trieReadOnlyIterator();
+      try {
+        while (iter.hasNext()) {
+          queue.add(new WeightedEntry<E>(iter.next(), label, sequence++));
+        }
+      } finally {
+        iter.finishIteration();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A node waiting in the queue of {@link #topK(TrieNode, TrieKey, int)}.
+   * The heaviest node comes first, then the node queued first.
+   */
+  private static final class WeightedEntry<E extends TrieKey<E>> implements
+      Comparable<WeightedEntry<E>> {
+    private final TrieNode<E> node;
+    private final E prefix;
+    private final long weight;
+    private final long sequence;
+
+    WeightedEntry(TrieNode<E> anode, E aprefix, long asequence) {
+      node = anode;
+      prefix = aprefix;
+      weight = NodeWeights.getWeight(anode);
+      sequence = asequence;
+    }
+
+    @Override
+    public int compareTo(WeightedEntry<E> other) {
+      if (weight != other.weight) {
+        return (weight > other.weight) ? -1 : 1;
+      }
+      return (sequence < other.sequence) ? -1 : 1;
+    }
+  }
+}
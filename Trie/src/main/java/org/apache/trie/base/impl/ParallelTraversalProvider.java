@@ -0,0 +1,330 @@
+package org.apache.trie.base.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.ParallelTraversalOperation;
+import org.apache.trie.base.TraversalOperation;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TraversalOperationWithSeek;
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TraversalProvider which splits the read only traversals of a
+ * {@link ParallelTraversalOperation} across the threads of a ForkJoinPool. The
+ * children of a wide node are traversed by ForkJoinTasks, each with an
+ * operation forked from the operation at the node, and the forked operations
+ * are combined in the order of the children. The other traversals are
+ * delegated to the sequential TraversalProvider of the Trie.
+ * <p>
+ * A node is split only while the current worker has few queued tasks, so the
+ * traversal forks about as many tasks as the idle workers can steal and walks
+ * the other subtrees sequentially. The children of a split node are listed
+ * before the tasks start, and the children positioned with a seek are never
+ * split.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class ParallelTraversalProvider<E extends TrieKey<E>> implements
+    TraversalProvider<E> {
+
+  /**
+   * The minimum number of children of a split node.
+   */
+  static final int MIN_WIDTH = 4;
+  /**
+   * The number of tasks a worker may have queued when it splits a node.
+   */
+  private static final int MAX_SURPLUS = 2;
+
+  private final ForkJoinPool pool;
+  private final TraversalProvider<E> sequential;
+
+  ParallelTraversalProvider(ForkJoinPool apool,
+      TraversalProvider<E> asequential) {
+    pool = apool;
+    sequential = asequential;
+  }
+
+  @Override
+  public OperationCodes traverseTrie(TraversalOperation<E> operation,
+      TrieNode<E> node, boolean modifiable) throws TrieException {
+    return sequential.traverseTrie(operation, node, modifiable);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public OperationCodes traverseTrieWithBackTrack(
+      TraversalOperationWithBacktrack<E> operation, TrieNode<E> node,
+      boolean modifiable) throws TrieException {
+    if (modifiable || !(operation instanceof ParallelTraversalOperation<?>)) {
+      return sequential.traverseTrieWithBackTrack(operation, node, modifiable);
+    }
+    SubtreeTask task = new SubtreeTask(
+        (ParallelTraversalOperation<E>) operation, node, true);
+    pool.execute(task);
+    return result(task);
+  }
+
+  /**
+   * Waits for the task and returns its result, or throws its exception. The
+   * exception may be a copy of the one thrown by the worker, with the
+   * original as its cause.
+   */
+  private OperationCodes result(SubtreeTask task) throws TrieException {
+    task.quietlyJoin();
+    Throwable e = task.getException();
+    if (e == null) {
+      return task.getRawResult();
+    } else if (e instanceof TrieException) {
+      throw (TrieException) e;
+    } else if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    } else if (e instanceof Error) {
+      throw (Error) e;
+    }
+    throw new TrieException("Parallel traversal failed", e);
+  }
+
+  /**
+   * Traverses the node the traversal starts at, which has no siblings.
+   */
+  private OperationCodes visitStart(ParallelTraversalOperation<E> operation,
+      TrieNode<E> node) throws TrieException {
+    OperationCodes nextOp = getNextOp(operation, node);
+    if (nextOp == OperationCodes.TRAVERSE_CHILD) {
+      nextOp = visitChildren(operation, node);
+    }
+    while (nextOp != OperationCodes.TRAVERSE_END) {
+      switch (check(nextOp)) {
+      case TRAVERSE_SIBLING:
+        nextOp = operation.noNextNode();
+        break;
+      default:
+        nextOp = operation.endTrie();
+        break;
+      }
+    }
+    return nextOp;
+  }
+
+  /**
+   * Traverses a child node and returns the OperationCodes for its siblings:
+   * TRAVERSE_SIBLING, TRAVERSE_BACKTRACK or TRAVERSE_END.
+   */
+  private OperationCodes visit(ParallelTraversalOperation<E> operation,
+      TrieNode<E> node) throws TrieException {
+    OperationCodes nextOp = getNextOp(operation, node);
+    if (nextOp == OperationCodes.TRAVERSE_CHILD) {
+      nextOp = visitChildren(operation, node);
+      if (nextOp == OperationCodes.TRAVERSE_BACKTRACK) {
+        nextOp = operation.endInternalTrieNode(node.getKey());
+      }
+    }
+    return check(nextOp);
+  }
+
+  /**
+   * Traverses the children of the node and returns TRAVERSE_BACKTRACK or
+   * TRAVERSE_END.
+   */
+  private OperationCodes visitChildren(ParallelTraversalOperation<E> operation,
+      TrieNode<E> node) throws TrieException {
+    OperationCodes nextOp = OperationCodes.TRAVERSE_SIBLING;
+    List<TrieNode<E>> children = null;
+    TrieIterator<E> iter = node.children().trieReadOnlyIterator();
+    try {
+      if (seek(operation, iter) || !canSplit()) {
+        while (nextOp == OperationCodes.TRAVERSE_SIBLING && iter.hasNext()) {
+          nextOp = visit(operation, iter.next());
+        }
+      } else {
+        children = new ArrayList<TrieNode<E>>();
+        while (iter.hasNext()) {
+          children.add(iter.next());
+        }
+      }
+    } finally {
+      iter.finishIteration();
+    }
+    if (children != null) {
+      if (children.size() >= MIN_WIDTH) {
+        nextOp = split(operation, children);
+      } else {
+        for (int i = 0; nextOp == OperationCodes.TRAVERSE_SIBLING
+            && i < children.size(); i++) {
+          nextOp = visit(operation, children.get(i));
+        }
+      }
+    }
+    if (nextOp == OperationCodes.TRAVERSE_SIBLING) {
+      nextOp = check(operation.noNextNode());
+    }
+    if (nextOp == OperationCodes.TRAVERSE_END) {
+      return nextOp;
+    }
+    return OperationCodes.TRAVERSE_BACKTRACK;
+  }
+
+  /**
+   * Traverses the children with forked operations and combines them. When
+   * the traversal ends early or fails, the tasks which are not combined are
+   * abandoned if they have not started, and awaited if they have, so no task
+   * reads the nodes once the traversal returns. ForkJoinTask.cancel is not
+   * used: it completes a running task without stopping it.
+   */
+  private OperationCodes split(ParallelTraversalOperation<E> operation,
+      List<TrieNode<E>> children) throws TrieException {
+    List<SubtreeTask> tasks = new ArrayList<SubtreeTask>(children.size());
+    for (TrieNode<E> child : children) {
+      tasks.add(new SubtreeTask(operation.fork(), child, false));
+    }
+    // forked in reverse, so this worker continues with the first child.
+    for (int i = tasks.size() - 1; i >= 0; i--) {
+      tasks.get(i).fork();
+    }
+    OperationCodes nextOp = OperationCodes.TRAVERSE_SIBLING;
+    int combined = 0;
+    try {
+      while (nextOp == OperationCodes.TRAVERSE_SIBLING
+          && combined < tasks.size()) {
+        SubtreeTask task = tasks.get(combined);
+        result(task);
+        combined++;
+        nextOp = operation.combine(task.operation);
+        if (nextOp != OperationCodes.TRAVERSE_SIBLING
+            && nextOp != OperationCodes.TRAVERSE_END) {
+          throw new TrieException("Traversal Error for combine=" + nextOp);
+        }
+      }
+    } finally {
+      for (int i = combined; i < tasks.size(); i++) {
+        tasks.get(i).abandon();
+      }
+      for (int i = combined; i < tasks.size(); i++) {
+        tasks.get(i).quietlyJoin();
+      }
+    }
+    return nextOp;
+  }
+
+  private static boolean canSplit() {
+    return ForkJoinTask.inForkJoinPool()
+        && ForkJoinTask.getSurplusQueuedTaskCount() <= MAX_SURPLUS;
+  }
+
+  /**
+   * Positions the iterator on the searched child, returns true if the
+   * operation searches a key.
+   */
+  @SuppressWarnings("unchecked")
+  private boolean seek(TraversalOperation<E> operation, TrieIterator<E> iter)
+      throws TrieException {
+    if (operation instanceof TraversalOperationWithSeek<?>) {
+      TraversalOperationWithSeek<E> seekOperation;
+      seekOperation = (TraversalOperationWithSeek<E>) operation;
+      E key = seekOperation.getSeekKey();
+      if (key != null) {
+        iter.seek(key, seekOperation.getSeekIndex());
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static OperationCodes check(OperationCodes nextOp)
+      throws TrieException {
+    switch (nextOp) {
+    case TRAVERSE_SIBLING:
+    case TRAVERSE_BACKTRACK:
+    case TRAVERSE_END:
+      return nextOp;
+    case TRAVERSE_ERROR:
+      throw new TrieException("Traversal Error");
+    default:
+      throw new TrieException("Traversal Error for type=" + nextOp
+          + " in a parallel traversal");
+    }
+  }
+
+  private OperationCodes getNextOp(TraversalOperation<E> operation,
+      TrieNode<E> node) throws TrieException {
+    switch (node.getType()) {
+    case ROOT_NODE:
+      return OperationCodes.TRAVERSE_CHILD;
+    case LEAF_NODE:
+      return operation.leafTrieNode(node.getKey());
+    case INTERNAL_NODE:
+      return operation.startInternalTrieNode(node.getKey());
+    default:
+      return OperationCodes.TRAVERSE_ERROR;
+    }
+  }
+
+  /**
+   * Traverses a subtree with its own operation. The TrieException of the
+   * traversal completes the task exceptionally, see
+   * {@link ParallelTraversalProvider#result(SubtreeTask)}.
+   */
+  private final class SubtreeTask extends ForkJoinTask<OperationCodes> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ParallelTraversalOperation<E> operation;
+    private final TrieNode<E> node;
+    private final boolean start;
+    private OperationCodes result;
+    /**
+     * Set when the task starts, or when it is abandoned before.
+     */
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    SubtreeTask(ParallelTraversalOperation<E> aoperation, TrieNode<E> anode,
+        boolean astart) {
+      operation = aoperation;
+      node = anode;
+      start = astart;
+    }
+
+    @Override
+    public OperationCodes getRawResult() {
+      return result;
+    }
+
+    @Override
+    protected void setRawResult(OperationCodes value) {
+      result = value;
+    }
+
+    /**
+     * Prevents the task from traversing its subtree if it has not started, it
+     * then completes without a result when it is run.
+     */
+    void abandon() {
+      claimed.compareAndSet(false, true);
+    }
+
+    @Override
+    protected boolean exec() {
+      if (!claimed.compareAndSet(false, true)) {
+        return true;
+      }
+      try {
+        result = start ? visitStart(operation, node) : visit(operation, node);
+      } catch (TrieException e) {
+        completeExceptionally(e);
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.apache.trie.base.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+
+/**
+ * Lists the keys starting with a prefix lazily. The keys are found in chunks:
+ * each chunk is a traversal which ends as soon as it has found the keys of the
+ * chunk, and the next one resumes after the last key found. No lock is held
+ * between two chunks, so an iterator which is not used to the end needs no
+ * cleanup. The chunks grow from a few keys, so the first keys are returned
+ * without a walk of the whole subtree.
+ * <p>
+ * The iterator is weakly consistent: each key is returned once, in descending
+ * order, and a key added or removed during the iteration may or may not be
+ * returned.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class PrefixIterator<E extends TrieKey<E>> implements Iterator<E> {
+
+  private static final int FIRST_CHUNK = 16;
+  private static final int MAX_CHUNK = 1024;
+
+  private final AbstractTrie<E> trie;
+  private final E prefix;
+  private int remaining;
+  private int chunkSize = FIRST_CHUNK;
+  private List<E> chunk = Collections.emptyList();
+  private int position = 0;
+  private boolean exhausted = false;
+
+  PrefixIterator(AbstractTrie<E> atrie, E aprefix, int limit) {
+    trie = atrie;
+    prefix = aprefix;
+    remaining = limit;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException
+   *           If the traversal of the next chunk fails with a TrieException.
+   */
+  @Override
+  public boolean hasNext() {
+    if (position < chunk.size()) {
+      return true;
+    }
+    if (exhausted || remaining == 0) {
+      return false;
+    }
+    E last = chunk.isEmpty() ? null : chunk.get(chunk.size() - 1);
+    int size = Math.min(remaining, chunkSize);
+    try {
+      chunk = trie.findPrefix(prefix, last, size);
+    } catch (TrieException e) {
+      throw new IllegalStateException("Cannot list the keys after " + last, e);
+    }
+    position = 0;
+    exhausted = chunk.size() < size;
+    chunkSize = Math.min(2 * chunkSize, MAX_CHUNK);
+    return !chunk.isEmpty();
+  }
+
+  @Override
+  public E next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    remaining--;
+    return chunk.get(position++);
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+}
@@ -1,41 +1,88 @@
 package org.apache.trie.base.impl;
 
 import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.PathCompressingTrieBuilder;
 import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TraversalOperationWithSeek;
 import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieBuilder;
 import org.apache.trie.base.TrieException;
 import org.apache.trie.base.TrieIterator;
 import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
 
 /**
  * This Traversal Operation is used to remove a node from the Trie. It is used
  * in the {@link Trie#removeElement(TrieKey) }operation.
+ * <p>
+ * With a {@link PathCompressingTrieBuilder} an internal node left with a single
+ * child after the removal is merged with that child, and the children of a
+ * removed internal node are marked as removed.
+ * </p>
  * 
  * @author <a href="mailto:saurabh@saurabharora.me">Saurabh Arora</a>
  * @param <E>
  *          TrieKey used for this Trie.
  */
 class RemoveOperation<E extends TrieKey<E>> implements
-    TraversalOperationWithBacktrack<E> {
+    TraversalOperationWithBacktrack<E>, TraversalOperationWithSeek<E> {
 
   private boolean removed = false;
   private boolean backTrackRemoved = false;
-  private E ele;
+  private long removedWeight = 0;
+  private Object removedValue = null;
+  private final E ele;
+  private int offset = 0;
+  private final PathCompressingTrieBuilder<E> builder;
 
-  RemoveOperation(E arg) {
+  /**
+   * Creates a remove operation which merges the nodes if the builder is a
+   * PathCompressingTrieBuilder.
+   */
+  RemoveOperation(E arg, TrieBuilder<E> abuilder) {
     super();
     ele = arg;
+    if (abuilder instanceof PathCompressingTrieBuilder<?>) {
+      builder = (PathCompressingTrieBuilder<E>) abuilder;
+    } else {
+      builder = null;
+    }
   }
 
   public boolean isRemoved() {
     return removed;
   }
 
+  /**
+   * Returns the weight of the removed key.
+   */
+  long getRemovedWeight() {
+    return removedWeight;
+  }
+
+  /**
+   * Returns the value of the removed key, or null.
+   */
+  Object getRemovedValue() {
+    return removedValue;
+  }
+
+  @Override
+  public E getSeekKey() {
+    return ele;
+  }
+
+  @Override
+  public int getSeekIndex() {
+    return offset;
+  }
+
   @Override
   public OperationCodes leafTrieNode(E key) {
-    if (removed && !key.isEoln() && (key.getKeyLength() == 1)) {
+    if (removed && !key.isEoln(key.getKeyLength() - 1)) {
+      // an internal node whose children were removed.
       return OperationCodes.TRAVERSE_PROCESS;
-    } else if (key.equalsTrie(ele)) {
+    } else if (key.equalsTrie(ele, offset)) {
       return OperationCodes.TRAVERSE_PROCESS;
     }
     return OperationCodes.TRAVERSE_SIBLING;
@@ -43,12 +90,22 @@ class RemoveOperation<E extends TrieKey<E>> implements
 
   @Override
   public OperationCodes startInternalTrieNode(E key) {
-    int comp = key.compareFirstIndex(ele);
+    int comp = key.compareFirstIndex(ele, offset);
     if (comp == 0) {
-      // if (locked) {
-      // return OperationCodes.TRAVERSE_UNLOCK_EXCLUSIVE;
-      // }
-      ele = ele.getKeyFrom(1);
+      if (backTrackRemoved) {
+        // the node still has children after the removal.
+        if (builder != null) {
+          // merge the node if a single child is left.
+          return OperationCodes.TRAVERSE_PROCESS;
+        }
+        backTrackRemoved = false;
+        return OperationCodes.TRAVERSE_BACKTRACK;
+      }
+      int length = key.getKeyLength();
+      if (length > 1 && key.matchLength(ele, offset) < length) {
+        return OperationCodes.TRAVERSE_END;
+      }
+      offset += length;
       return OperationCodes.TRAVERSE_CHILD;
     } else if (comp == 1) {
       return OperationCodes.TRAVERSE_SIBLING;
@@ -58,9 +115,59 @@ class RemoveOperation<E extends TrieKey<E>> implements
     }
   }
 
+  /**
+   * Removes the internal node when it has no children and merges it with its
+   * child when it has a single child. The children of the node are locked and
+   * marked as removed, so a concurrent insertion into the node either
+   * completes before or is restarted after the node is replaced.
+   */
+  private void compressNode(TrieIterator<E> iter) throws TrieException {
+    TrieNode<E> node = iter.previous();
+    TrieIterator<E> children = node.children().trieWritableIterator();
+    backTrackRemoved = false;
+    try {
+      children.lockExclusive();
+      if (!children.hasNext()) {
+        iter.removeNode();
+        backTrackRemoved = true;
+      } else {
+        TrieNode<E> child = children.next();
+        if (children.hasNext()) {
+          return;
+        }
+        E key = child.getKey();
+        E label = node.getKey().concat(key);
+        TrieNode<E> merged;
+        if (key.isEoln(key.getKeyLength() - 1)) {
+          merged = builder.createNode(label);
+        } else {
+          merged = builder.createNode(label, child);
+        }
+        NodeValues.replace(child, merged, label, 0);
+        long weight = NodeWeights.replace(child, merged, label, 0, 0);
+        iter.replaceNode(merged);
+        NodeWeights.replace(child, merged, label, 0, weight);
+      }
+      children.markRemoved();
+    } finally {
+      children.finishIteration();
+    }
+  }
+
   @Override
   public OperationCodes processNode(TrieIterator<E> iter) throws TrieException {
+    E key = iter.previous().getKey();
+    if (builder != null && !key.isEoln(key.getKeyLength() - 1)) {
+      compressNode(iter);
+      return OperationCodes.TRAVERSE_BACKTRACK;
+    }
+    TrieNode<E> node = iter.previous();
+    removedWeight = NodeWeights.getWeight(node);
     iter.removeNode();
+    if (!removed) {
+      // the internal nodes emptied by the removal hold no value.
+      removedValue = NodeValues.remove(node);
+    }
     removed = true;
     backTrackRemoved = true;
     return OperationCodes.TRAVERSE_BACKTRACK;
@@ -68,6 +175,8 @@ class RemoveOperation<E extends TrieKey<E>> implements
 
   @Override
   public OperationCodes endInternalTrieNode(E key) {
+    // back to the level of the parent node.
+    offset -= key.getKeyLength();
     if (backTrackRemoved) {
       // reprocess this iteration
       return OperationCodes.TRAVERSE_PROCESS;
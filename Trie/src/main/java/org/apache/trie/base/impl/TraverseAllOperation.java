@@ -8,7 +8,8 @@ import java.util.List;
 import java.util.Stack;
 
 import org.apache.trie.base.OperationCodes;
-import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.ParallelTraversalOperation;
+import org.apache.trie.base.TraversalOperationWithSeek;
 import org.apache.trie.base.TrieException;
 import org.apache.trie.base.TrieIterator;
 import org.apache.trie.base.TrieKey;
@@ -16,35 +17,101 @@ import org.apache.trie.base.TrieKey;
 /**
  * This traversal returns the list of all the TrieKeys stored in the current
  * Trie starting at the specified node.
+ * <p>
+ * The keys are found in descending order. The traversal can be limited to a
+ * number of keys, it ends as soon as they are found, and a later traversal can
+ * resume after the last key found: the children on the path of that key are
+ * positioned with a seek, and the greater keys are skipped.
+ * </p>
+ * <p>
+ * The traversal can be split across threads: each forked traversal lists the
+ * keys of a subtree, and the lists are concatenated in the order of the
+ * subtrees.
+ * </p>
  * 
  * @author <a href="mailto:saurabh@saurabharora.me">Saurabh Arora</a>
  * @param <E>
  */
 class TraverseAllOperation<E extends TrieKey<E>> implements
-    TraversalOperationWithBacktrack<E> {
+    ParallelTraversalOperation<E>, TraversalOperationWithSeek<E> {
 
   private final List<E> elements = new ArrayList<E>();
   private final Stack<E> prefixs = new Stack<E>();
+  private final int limit;
 
   private E treePrefix;
+  /**
+   * The key after which the traversal resumes, while its path is visited.
+   */
+  private E after;
 
   TraverseAllOperation(E prefix) {
+    this(prefix, null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates a traversal for at most limit keys smaller than after, or all the
+   * keys if after is null.
+   */
+  TraverseAllOperation(E prefix, E aafter, int alimit) {
     super();
     treePrefix = prefix;
+    after = aafter;
+    limit = alimit;
   }
 
   public List<E> getElements() {
     return elements;
   }
 
+  /**
+   * Compares the label at the current prefix with the key after which the
+   * traversal resumes. Returns 0 if the label is on the path of the key, 1 if
+   * the keys below the label are greater and -1 if they are smaller.
+   */
+  private int compareAfter(E key) {
+    int offset = treePrefix.getKeyLength();
+    int match = key.matchLength(after, offset);
+    if (match == key.getKeyLength()) {
+      return 0;
+    }
+    if (offset + match == after.getKeyLength()
+        || key.getKeyUnit(match) > after.getKeyUnit(offset + match)) {
+      return 1;
+    }
+    return -1;
+  }
+
   @Override
   public OperationCodes leafTrieNode(E key) {
+    if (!key.isEoln(key.getKeyLength() - 1)) {
+      // an internal node whose children were removed.
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+    if (after != null) {
+      if (compareAfter(key) >= 0) {
+        // found by the previous traversal.
+        return OperationCodes.TRAVERSE_SIBLING;
+      }
+      after = null;
+    }
     elements.add(treePrefix.concat(key));
+    if (elements.size() >= limit) {
+      return OperationCodes.TRAVERSE_END;
+    }
     return OperationCodes.TRAVERSE_SIBLING;
   }
 
   @Override
   public OperationCodes startInternalTrieNode(E key) {
+    if (after != null) {
+      int comp = compareAfter(key);
+      if (comp > 0) {
+        return OperationCodes.TRAVERSE_SIBLING;
+      } else if (comp < 0) {
+        after = null;
+      }
+    }
     prefixs.push(treePrefix);
     treePrefix = treePrefix.concat(key);
     return OperationCodes.TRAVERSE_CHILD;
@@ -65,6 +132,33 @@ class TraverseAllOperation<E extends TrieKey<E>> implements
     return OperationCodes.TRAVERSE_END;
   }
 
+  @Override
+  public ParallelTraversalOperation<E> fork() {
+    return new TraverseAllOperation<E>(treePrefix, null, limit
+        - elements.size());
+  }
+
+  @Override
+  public OperationCodes combine(ParallelTraversalOperation<E> forked) {
+    List<E> found = ((TraverseAllOperation<E>) forked).elements;
+    int count = Math.min(found.size(), limit - elements.size());
+    elements.addAll(count == found.size() ? found : found.subList(0, count));
+    if (elements.size() >= limit) {
+      return OperationCodes.TRAVERSE_END;
+    }
+    return OperationCodes.TRAVERSE_SIBLING;
+  }
+
+  @Override
+  public E getSeekKey() {
+    return after;
+  }
+
+  @Override
+  public int getSeekIndex() {
+    return treePrefix.getKeyLength();
+  }
+
   @Override
   public OperationCodes processNode(TrieIterator<E> iter) {
     return OperationCodes.TRAVERSE_ERROR;
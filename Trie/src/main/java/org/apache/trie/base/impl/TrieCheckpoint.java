@@ -0,0 +1,332 @@
+package org.apache.trie.base.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * Writes the nodes of a Trie to a stream, and restores them. It is used in
+ * the {@link AbstractTrie#checkpoint(OutputStream)} and
+ * {@link AbstractTrie#restore(InputStream, TrieKeyFactory)} operations.
+ * <p>
+ * The checkpoint is a header, the nodes in pre-order and a trailer:
+ * </p>
+ * <ul>
+ * <li>Header: the int {@link #MAGIC}, the byte {@link #VERSION}.</li>
+ * <li>Node: the varint length of the label, each key unit as a zigzag varint,
+ * the varint number of children, which follow in descending order. The root
+ * has an empty label.</li>
+ * <li>Trailer: the varint number of keys, the int CRC32 of all the bytes
+ * before it.</li>
+ * </ul>
+ * <p>
+ * The restore reads the stream once and creates each node with its children,
+ * bottom up, as the {@link BulkLoader} does, so no key is searched. The nodes
+ * are only added under the root once the checksum is verified. The labels are
+ * adapted to the builder: an internal node with a single child is merged with
+ * it under a {@link org.apache.trie.base.PathCompressingTrieBuilder}, else a
+ * node is created for each key unit of a longer label.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class TrieCheckpoint<E extends TrieKey<E>> {
+
+  /**
+   * "TCKP".
+   */
+  static final int MAGIC = 0x54434b50;
+  static final int VERSION = 1;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final CRC32 crc = new CRC32();
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  /**
+   * The end of the bytes read in the buffer.
+   */
+  private int limit;
+  private int[] units = new int[64];
+  private long count;
+
+  /**
+   * Writes the checkpoint of the nodes below root, as {@link #write}.
+   *
+   * @return the number of keys written.
+   * @throws TrieException
+   *           If the stream cannot be written.
+   */
+  long checkpoint(TrieNode<E> root, OutputStream out) throws TrieException {
+    try {
+      return write(root, out);
+    } catch (IOException e) {
+      throw new TrieException("Cannot write checkpoint", e);
+    }
+  }
+
+  /**
+   * Restores a checkpoint under the root, as {@link #read}.
+   *
+   * @return the number of keys restored.
+   * @throws TrieException
+   *           If the checkpoint cannot be read or is corrupt.
+   * @throws IllegalStateException
+   *           If the root has children.
+   */
+  long restore(TrieNode<E> root, InputStream in, TrieKeyFactory<E> factory,
+      TrieBuilder<E> builder) throws TrieException {
+    if (!root.children().isEmpty()) {
+      throw new IllegalStateException("restore requires an empty Trie");
+    }
+    try {
+      return read(root, in, factory, builder);
+    } catch (IOException e) {
+      throw new TrieException("Cannot read checkpoint", e);
+    }
+  }
+
+  /**
+   * Writes the nodes below root to out, which is flushed but not closed.
+   *
+   * @return the number of keys written.
+   */
+  long write(TrieNode<E> root, OutputStream out) throws IOException,
+      TrieException {
+    count = 0;
+    position = 0;
+    crc.reset();
+    writeInt(MAGIC, out);
+    writeByte(VERSION, out);
+    writeNode(root, out);
+    writeVarint(count, out);
+    crc.update(buffer, 0, position);
+    writeInt((int) crc.getValue(), out);
+    out.write(buffer, 0, position);
+    out.flush();
+    return count;
+  }
+
+  /**
+   * Writes the node and the nodes below it. The children are listed before
+   * they are written, so no lock is held while the subtrees are written.
+   */
+  private void writeNode(TrieNode<E> node, OutputStream out)
+      throws IOException, TrieException {
+    List<TrieNode<E>> children = new ArrayList<TrieNode<E>>();
+    TrieIterator<E> iter = node.children().trieReadOnlyIterator();
+    try {
+      while (iter.hasNext()) {
+        children.add(iter.next());
+      }
+    } finally {
+      iter.finishIteration();
+    }
+    if (node.getType() == TrieNode.Type.ROOT_NODE) {
+      writeVarint(0, out);
+    } else {
+      E key = node.getKey();
+      int length = key.getKeyLength();
+      writeVarint(length, out);
+      for (int i = 0; i < length; i++) {
+        int unit = key.getKeyUnit(i);
+        writeVarint(((unit << 1) ^ (unit >> 31)) & 0xffffffffL, out);
+      }
+      if (children.isEmpty() && key.isEoln(length - 1)) {
+        count++;
+      }
+    }
+    writeVarint(children.size(), out);
+    for (TrieNode<E> child : children) {
+      writeNode(child, out);
+    }
+  }
+
+  private void writeVarint(long value, OutputStream out) throws IOException {
+    long rest = value;
+    while ((rest & ~0x7fL) != 0) {
+      writeByte((int) ((rest & 0x7f) | 0x80), out);
+      rest >>>= 7;
+    }
+    writeByte((int) rest, out);
+  }
+
+  private void writeInt(int value, OutputStream out) throws IOException {
+    writeByte(value >>> 24, out);
+    writeByte(value >>> 16, out);
+    writeByte(value >>> 8, out);
+    writeByte(value, out);
+  }
+
+  private void writeByte(int value, OutputStream out) throws IOException {
+    if (position == buffer.length) {
+      crc.update(buffer, 0, position);
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+    buffer[position++] = (byte) value;
+  }
+
+  /**
+   * Restores the nodes of the checkpoint read from in under the root, which
+   * must have no children. The stream is read ahead, up to its end.
+   *
+   * @return the number of keys restored.
+   */
+  long read(TrieNode<E> root, InputStream in, TrieKeyFactory<E> factory,
+      TrieBuilder<E> builder) throws IOException, TrieException {
+    BulkLoader<E> loader = new BulkLoader<E>(builder);
+    count = 0;
+    position = 0;
+    limit = 0;
+    crc.reset();
+    if (readInt(in) != MAGIC) {
+      throw new TrieException("The stream is not a Trie checkpoint");
+    }
+    int version = readByte(in);
+    if (version != VERSION) {
+      throw new TrieException("Unsupported checkpoint version " + version);
+    }
+    if (readVarint(in) != 0) {
+      throw new TrieException("The checkpoint does not start with the root");
+    }
+    List<TrieNode<E>> children = readChildren(in, factory, loader);
+    long keys = readVarint(in);
+    crc.update(buffer, 0, position);
+    int checksum = (int) crc.getValue();
+    if (readInt(in) != checksum) {
+      throw new TrieException("Checksum mismatch in checkpoint");
+    }
+    if (keys != count) {
+      throw new TrieException("The checkpoint has " + count + " keys, not "
+          + keys);
+    }
+    loader.insertChildren(root, children);
+    return count;
+  }
+
+  /**
+   * Reads the children of a node, the empty nodes are dropped.
+   */
+  private List<TrieNode<E>> readChildren(InputStream in,
+      TrieKeyFactory<E> factory, BulkLoader<E> loader) throws IOException,
+      TrieException {
+    long size = readVarint(in);
+    List<TrieNode<E>> children = new ArrayList<TrieNode<E>>(
+        (int) Math.min(size, 256));
+    for (long i = 0; i < size; i++) {
+      TrieNode<E> child = readNode(in, factory, loader);
+      if (child != null) {
+        children.add(child);
+      }
+    }
+    return children;
+  }
+
+  /**
+   * Reads a node and the nodes below it, or returns null for an internal node
+   * which has no keys left below it.
+   */
+  private TrieNode<E> readNode(InputStream in, TrieKeyFactory<E> factory,
+      BulkLoader<E> loader) throws IOException, TrieException {
+    long length = readVarint(in);
+    if (length == 0 || length > Integer.MAX_VALUE) {
+      throw new TrieException("Invalid label length " + length);
+    }
+    // the array grows as the units are read, a corrupt length ends the stream.
+    for (int i = 0; i < length; i++) {
+      if (i == units.length) {
+        int[] grown = new int[units.length * 2];
+        System.arraycopy(units, 0, grown, 0, i);
+        units = grown;
+      }
+      int zigzag = (int) readVarint(in);
+      units[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+    E label = factory.createKey(units, 0, (int) length);
+    List<TrieNode<E>> children = readChildren(in, factory, loader);
+    if (children.isEmpty()) {
+      if (!label.isEoln(label.getKeyLength() - 1)) {
+        return null;
+      }
+      count++;
+      return loader.createNode(label, children);
+    }
+    if (loader.isCompressed()) {
+      if (children.size() == 1) {
+        return merge(label, children.get(0), loader);
+      }
+      return loader.createNode(label, children);
+    }
+    TrieNode<E> node = loader.createNode(label.getLabel(
+        label.getKeyLength() - 1, label.getKeyLength()), children);
+    for (int i = label.getKeyLength() - 2; i >= 0; i--) {
+      List<TrieNode<E>> child = new ArrayList<TrieNode<E>>(1);
+      child.add(node);
+      node = loader.createNode(label.getLabel(i, i + 1), child);
+    }
+    return node;
+  }
+
+  /**
+   * Creates the node which replaces the internal node of label and its single
+   * child.
+   */
+  private TrieNode<E> merge(E label, TrieNode<E> child, BulkLoader<E> loader)
+      throws TrieException {
+    List<TrieNode<E>> children = new ArrayList<TrieNode<E>>();
+    TrieIterator<E> iter = child.children().trieReadOnlyIterator();
+    try {
+      while (iter.hasNext()) {
+        children.add(iter.next());
+      }
+    } finally {
+      iter.finishIteration();
+    }
+    return loader.createNode(label.concat(child.getKey()), children);
+  }
+
+  private long readVarint(InputStream in) throws IOException, TrieException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = readByte(in);
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new TrieException("Invalid varint in checkpoint");
+  }
+
+  private int readInt(InputStream in) throws IOException {
+    return (readByte(in) << 24) | (readByte(in) << 16) | (readByte(in) << 8)
+        | readByte(in);
+  }
+
+  private int readByte(InputStream in) throws IOException {
+    if (position == limit) {
+      crc.update(buffer, 0, limit);
+      position = 0;
+      limit = 0;
+      while (limit == 0) {
+        limit = in.read(buffer);
+        if (limit < 0) {
+          throw new EOFException("Truncated checkpoint");
+        }
+      }
+    }
+    return buffer[position++] & 0xff;
+  }
+}
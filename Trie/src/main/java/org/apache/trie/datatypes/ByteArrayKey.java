@@ -0,0 +1,231 @@
+package org.apache.trie.datatypes;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.trie.base.TrieKey;
+
+/**
+ * This class presents a TrieKey over a slice of a byte array, for raw or
+ * UTF-8 encoded keys. The primitive keys are the unsigned bytes, and the EOLN
+ * is not stored in the array: it is the primitive key -1 after the last byte,
+ * so any byte can be part of a key. The labels and suffixes of a key are
+ * slices of the same array, they are created without copying the bytes.
+ * <p>
+ * The array is shared, not copied: it must not be modified while a key of the
+ * Trie uses it, and a key keeps the whole array reachable. A key made from a
+ * reused network buffer can be looked up directly, but must be copied with
+ * {@link #toByteArray()} before it is added.
+ * </p>
+ */
+public class ByteArrayKey implements TrieKey<ByteArrayKey> {
+
+  /**
+   * The primitive key after the last byte of a key.
+   */
+  static final int EOLN = -1;
+  private static final byte[] EMPTY = new byte[0];
+
+  private byte[] bytes;
+  private int offset;
+  private int length;
+  private boolean eoln;
+
+  /**
+   * Default Constructor for a ByteArrayKey, with no content. It represents an
+   * EOLN Key.
+   */
+  public ByteArrayKey() {
+    this(EMPTY, 0, 0, true);
+  }
+
+  /**
+   * Constructor for a ByteArrayKey with the UTF-8 encoding of a String.
+   *
+   * @param arg
+   *          The String used as key.
+   */
+  public ByteArrayKey(String arg) {
+    this(arg.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Constructor for a ByteArrayKey with all the bytes of an array.
+   *
+   * @param abytes
+   *          The bytes used as key, they are not copied.
+   */
+  public ByteArrayKey(byte[] abytes) {
+    this(abytes, 0, abytes.length, true);
+  }
+
+  /**
+   * Constructor for a ByteArrayKey with a slice of an array.
+   *
+   * @param abytes
+   *          The array holding the key, it is not copied.
+   * @param aoffset
+   *          The index of the first byte of the key.
+   * @param alength
+   *          The number of bytes of the key.
+   */
+  public ByteArrayKey(byte[] abytes, int aoffset, int alength) {
+    this(abytes, aoffset, alength, true);
+    if (aoffset < 0 || alength < 0 || aoffset > abytes.length - alength) {
+      throw new IndexOutOfBoundsException("offset=" + aoffset + " length="
+          + alength + " array length=" + abytes.length);
+    }
+  }
+
+  ByteArrayKey(byte[] abytes, int aoffset, int alength, boolean aeoln) {
+    bytes = abytes;
+    offset = aoffset;
+    length = alength;
+    eoln = aeoln;
+  }
+
+  /**
+   * Returns a copy of the bytes of this key, without the EOLN.
+   *
+   * @return The bytes of the key.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOfRange(bytes, offset, offset + length);
+  }
+
+  /**
+   * Returns the slice of this key between the indexes, which ends with the
+   * EOLN if it ends after the bytes of this key.
+   */
+  private ByteArrayKey slice(int beginIndex, int endIndex, boolean withEoln) {
+    int begin = Math.min(beginIndex, length);
+    int end = Math.min(endIndex, length);
+    return new ByteArrayKey(bytes, offset + begin, end - begin, withEoln);
+  }
+
+  @Override
+  public int compareFirstIndex(ByteArrayKey arg) {
+    return compareFirstIndex(arg, 0);
+  }
+
+  @Override
+  public int compareFirstIndex(ByteArrayKey arg, int index) {
+    return Integer.signum(getKeyUnit(0) - arg.getKeyUnit(index));
+  }
+
+  @Override
+  public ByteArrayKey concat(ByteArrayKey arg) {
+    // the result ends with EOLN only if arg does, two labels form a label.
+    if (length == 0) {
+      return arg;
+    }
+    if (arg.length == 0 || (bytes == arg.bytes
+        && offset + length == arg.offset)) {
+      // adjacent slices of the same array are not copied.
+      return new ByteArrayKey(bytes, offset, length + arg.length, arg.eoln);
+    }
+    byte[] tmp = new byte[length + arg.length];
+    System.arraycopy(bytes, offset, tmp, 0, length);
+    System.arraycopy(arg.bytes, arg.offset, tmp, length, arg.length);
+    return new ByteArrayKey(tmp, 0, tmp.length, arg.eoln);
+  }
+
+  @Override
+  public boolean equalsTrie(ByteArrayKey arg) {
+    return equalsTrie(arg, 0);
+  }
+
+  @Override
+  public boolean equalsTrie(ByteArrayKey arg, int index) {
+    int keyLength = getKeyLength();
+    return (arg.getKeyLength() - index == keyLength)
+        && matchLength(arg, index) == keyLength;
+  }
+
+  @Override
+  public int matchLength(ByteArrayKey arg, int index) {
+    int max = Math.min(getKeyLength(), arg.getKeyLength() - index);
+    int byteMax = Math.min(max, Math.min(length, arg.length - index));
+    int count = 0;
+    while (count < byteMax
+        && bytes[offset + count] == arg.bytes[arg.offset + index + count]) {
+      count++;
+    }
+    // one of the keys is at its EOLN.
+    if (count == byteMax && count < max
+        && getKeyUnit(count) == arg.getKeyUnit(index + count)) {
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public ByteArrayKey getLabel(int beginIndex, int endIndex) {
+    return slice(beginIndex, endIndex, eoln && endIndex > length);
+  }
+
+  @Override
+  public int getKeyUnit(int index) {
+    if (index == length) {
+      return EOLN;
+    }
+    return bytes[offset + index] & 0xFF;
+  }
+
+  @Override
+  public ByteArrayKey getKeyAt(int arg) {
+    return getLabel(arg, arg + 1);
+  }
+
+  @Override
+  public ByteArrayKey getKeyFrom(int arg) {
+    return slice(arg, length, eoln);
+  }
+
+  @Override
+  public int getKeyLength() {
+    return eoln ? length + 1 : length;
+  }
+
+  @Override
+  public boolean isEoln() {
+    return eoln && length == 0;
+  }
+
+  @Override
+  public boolean isEoln(int index) {
+    return eoln && index == length;
+  }
+
+  @Override
+  public String toString() {
+    String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+    return eoln ? value + "\0" : value;
+  }
+
+  @Override
+  public ByteArrayKey getKeyFrom(int beginIndex, int endIndex) {
+    return slice(beginIndex, endIndex, true);
+  }
+
+  @Override
+  public void readExternal(ObjectInput instream) throws IOException,
+      ClassNotFoundException {
+    length = instream.readInt();
+    eoln = instream.readBoolean();
+    bytes = new byte[length];
+    offset = 0;
+    instream.readFully(bytes);
+  }
+
+  @Override
+  public void writeExternal(ObjectOutput out) throws IOException {
+    out.writeInt(length);
+    out.writeBoolean(eoln);
+    out.write(bytes, offset, length);
+  }
+
+}
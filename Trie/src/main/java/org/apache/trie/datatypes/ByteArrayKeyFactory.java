@@ -0,0 +1,21 @@
+package org.apache.trie.datatypes;
+
+import org.apache.trie.base.TrieKeyFactory;
+
+/**
+ * The TrieKeyFactory for {@link ByteArrayKey}.
+ */
+public class ByteArrayKeyFactory implements TrieKeyFactory<ByteArrayKey> {
+
+  @Override
+  public ByteArrayKey createKey(int[] units, int offset, int length) {
+    boolean eoln = length > 0
+        && units[offset + length - 1] == ByteArrayKey.EOLN;
+    byte[] bytes = new byte[eoln ? length - 1 : length];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) units[offset + i];
+    }
+    return new ByteArrayKey(bytes, 0, bytes.length, eoln);
+  }
+
+}
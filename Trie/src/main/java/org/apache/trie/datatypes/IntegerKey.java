@@ -15,12 +15,16 @@ public class IntegerKey implements TrieKey<IntegerKey> {
 
   private byte[] intdigits;
   private static final byte EOLN = -1;
+  /**
+   * The unit before the digits of a negative number.
+   */
+  private static final byte MINUS = 10;
 
   /**
    * Default Constructor.It represents an EOLN Key.
    */
   public IntegerKey() {
-    intdigits = new byte[0];
+    intdigits = new byte[1];
     intdigits[0] = EOLN;
   }
 
@@ -32,28 +36,35 @@ public class IntegerKey implements TrieKey<IntegerKey> {
   }
 
   private void fillbytes(int arg) {
-    int size = 0;
-    int tmp = arg;
-    while (tmp > 0) {
-      tmp = tmp / 10;
+    // the absolute value of Integer.MIN_VALUE is not an int.
+    long value = Math.abs((long) arg);
+    int sign = (arg < 0) ? 1 : 0;
+    int size = 1;
+    for (long tmp = value / 10; tmp > 0; tmp = tmp / 10) {
       size++;
     }
 
-    intdigits = new byte[size + 1];
-    tmp = arg;
-    int count = size - 1;
-    while (tmp > 0) {
-      intdigits[count--] = (byte) (tmp % 10);
+    intdigits = new byte[sign + size + 1];
+    if (sign == 1) {
+      intdigits[0] = MINUS;
+    }
+    long tmp = value;
+    for (int count = sign + size - 1; count >= sign; count--) {
+      intdigits[count] = (byte) (tmp % 10);
       tmp = tmp / 10;
     }
-    intdigits[size] = EOLN;
+    intdigits[sign + size] = EOLN;
   }
 
   @Override
   public String toString() {
     StringBuffer buf = new StringBuffer();
     for (byte i : intdigits) {
-      buf.append(Integer.toString((int) i));
+      if (i == MINUS) {
+        buf.append('-');
+      } else {
+        buf.append(Integer.toString((int) i));
+      }
     }
     return buf.toString();
   }
@@ -80,10 +91,21 @@ public class IntegerKey implements TrieKey<IntegerKey> {
     return count;
   }
 
+  @Override
+  public int compareFirstIndex(IntegerKey arg, int index) {
+    int count = (intdigits[0] - arg.intdigits[index]);
+    if (count > 0) {
+      count = 1;
+    } else if (count < 0) {
+      count = -1;
+    }
+    return count;
+  }
+
   @Override
   public IntegerKey concat(IntegerKey arg) {
     int len;
-    if (intdigits[intdigits.length - 1] == EOLN) {
+    if (intdigits.length > 0 && intdigits[intdigits.length - 1] == EOLN) {
       len = Math.max(intdigits.length - 1, 0);
     } else {
       len = intdigits.length;
@@ -109,6 +131,42 @@ public class IntegerKey implements TrieKey<IntegerKey> {
     return equal;
   }
 
+  @Override
+  public boolean equalsTrie(IntegerKey arg, int index) {
+    boolean equal = false;
+    if (intdigits.length == arg.intdigits.length - index) {
+      equal = true;
+      for (int i = 0; i < intdigits.length && equal; i++) {
+        if (intdigits[i] != arg.intdigits[index + i]) {
+          equal = false;
+        }
+      }
+    }
+    return equal;
+  }
+
+  @Override
+  public int matchLength(IntegerKey arg, int index) {
+    int length = Math.min(intdigits.length, arg.intdigits.length - index);
+    int count = 0;
+    while (count < length && intdigits[count] == arg.intdigits[index + count]) {
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public IntegerKey getLabel(int beginIndex, int endIndex) {
+    byte[] tmp = new byte[endIndex - beginIndex];
+    System.arraycopy(intdigits, beginIndex, tmp, 0, tmp.length);
+    return new IntegerKey(tmp);
+  }
+
+  @Override
+  public int getKeyUnit(int index) {
+    return intdigits[index];
+  }
+
   @Override
   public IntegerKey getKeyAt(int arg) {
     return new IntegerKey(intdigits[arg]);
@@ -131,6 +189,11 @@ public class IntegerKey implements TrieKey<IntegerKey> {
     return (intdigits.length == 1 && intdigits[0] == EOLN);
   }
 
+  @Override
+  public boolean isEoln(int index) {
+    return (index == intdigits.length - 1 && intdigits[index] == EOLN);
+  }
+
   @Override
   public IntegerKey getKeyFrom(int beginIndex, int endIndex) {
     byte[] tmp = new byte[endIndex - beginIndex + 1];
@@ -141,12 +204,8 @@ public class IntegerKey implements TrieKey<IntegerKey> {
   @Override
   public void readExternal(ObjectInput instream) throws IOException,
       ClassNotFoundException {
-    int len = instream.read();
-    intdigits = new byte[len];
-    if (instream.read(intdigits) != len) {
-      throw new IOException("Cannot read IntegerKey completely");
-    }
-
+    intdigits = new byte[instream.readUnsignedByte()];
+    instream.readFully(intdigits);
   }
 
   @Override
@@ -0,0 +1,19 @@
+package org.apache.trie.datatypes;
+
+import org.apache.trie.base.TrieKeyFactory;
+
+/**
+ * The TrieKeyFactory for {@link IntegerKey}.
+ */
+public class IntegerKeyFactory implements TrieKeyFactory<IntegerKey> {
+
+  @Override
+  public IntegerKey createKey(int[] units, int offset, int length) {
+    byte[] digits = new byte[length];
+    for (int i = 0; i < length; i++) {
+      digits[i] = (byte) units[offset + i];
+    }
+    return new IntegerKey(digits);
+  }
+
+}
@@ -51,6 +51,15 @@ public class StringKey implements TrieKey<StringKey> {
     value = new String(data);
   }
 
+  /**
+   * Creates a StringKey storing the value as it is, used for labels.
+   */
+  static StringKey valueOf(String arg) {
+    StringKey result = new StringKey();
+    result.value = arg;
+    return result;
+  }
+
   @Override
   public int compareFirstIndex(StringKey arg) {
     int count = (value.charAt(0) - arg.value.charAt(0));
@@ -62,16 +71,25 @@ public class StringKey implements TrieKey<StringKey> {
     return count;
   }
 
+  @Override
+  public int compareFirstIndex(StringKey arg, int index) {
+    int count = (value.charAt(0) - arg.value.charAt(index));
+    if (count > 0) {
+      count = 1;
+    } else if (count < 0) {
+      count = -1;
+    }
+    return count;
+  }
+
   @Override
   public StringKey concat(StringKey arg) {
-    StringKey result;
+    String newvalue = value;
     if (value.endsWith(EOLN)) {
-      String newvalue = value.substring(0, value.length() - 1);
-      result = new StringKey(newvalue.concat(arg.value));
-    } else {
-      result = new StringKey(value.concat(arg.value));
+      newvalue = value.substring(0, value.length() - 1);
     }
-    return result;
+    // the result ends with EOLN only if arg does, two labels form a label.
+    return valueOf(newvalue.concat(arg.value));
   }
 
   @Override
@@ -79,6 +97,34 @@ public class StringKey implements TrieKey<StringKey> {
     return value.equals(arg.value);
   }
 
+  @Override
+  public boolean equalsTrie(StringKey arg, int index) {
+    int length = value.length();
+    return (arg.value.length() - index == length)
+        && arg.value.regionMatches(index, value, 0, length);
+  }
+
+  @Override
+  public int matchLength(StringKey arg, int index) {
+    int length = Math.min(value.length(), arg.value.length() - index);
+    int count = 0;
+    while (count < length
+        && value.charAt(count) == arg.value.charAt(index + count)) {
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public StringKey getLabel(int beginIndex, int endIndex) {
+    return valueOf(value.substring(beginIndex, endIndex));
+  }
+
+  @Override
+  public int getKeyUnit(int index) {
+    return value.charAt(index);
+  }
+
   @Override
   public StringKey getKeyAt(int arg) {
     StringKey result = null;
@@ -107,6 +153,12 @@ public class StringKey implements TrieKey<StringKey> {
     return value.equals(EOLN);
   }
 
+  @Override
+  public boolean isEoln(int index) {
+    return (index == value.length() - 1)
+        && (value.charAt(index) == EOLN.charAt(0));
+  }
+
   @Override
   public String toString() {
     return value;
@@ -125,14 +177,17 @@ public class StringKey implements TrieKey<StringKey> {
   @Override
   public void readExternal(ObjectInput instream) throws IOException,
       ClassNotFoundException {
-    value = instream.readLine();
-
+    char[] chars = new char[instream.readInt()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = instream.readChar();
+    }
+    value = new String(chars);
   }
 
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
+    out.writeInt(value.length());
     out.writeChars(value);
-
   }
 
 }
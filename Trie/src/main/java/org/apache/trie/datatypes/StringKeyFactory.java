@@ -0,0 +1,19 @@
+package org.apache.trie.datatypes;
+
+import org.apache.trie.base.TrieKeyFactory;
+
+/**
+ * The TrieKeyFactory for {@link StringKey}.
+ */
+public class StringKeyFactory implements TrieKeyFactory<StringKey> {
+
+  @Override
+  public StringKey createKey(int[] units, int offset, int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) units[offset + i];
+    }
+    return StringKey.valueOf(new String(chars));
+  }
+
+}
@@ -36,6 +36,11 @@ public class AbstractIterator<E extends TrieKey<E>> implements TrieIterator<E> {
     throw new UnsupportedOperationException("lockExclusive");
   }
 
+  @Override
+  public void markRemoved() throws TrieException {
+    throw new UnsupportedOperationException("markRemoved");
+  }
+
   @Override
   public TrieNode<E> previous() {
     throw new UnsupportedOperationException("previous");
@@ -56,6 +61,11 @@ public class AbstractIterator<E extends TrieKey<E>> implements TrieIterator<E> {
     throw new UnsupportedOperationException("reset");
   }
 
+  @Override
+  public void seek(E key, int index) throws TrieException {
+    throw new UnsupportedOperationException("seek");
+  }
+
   @Override
   public void unlockExclusive() throws TrieException {
     throw new UnsupportedOperationException("unlockExclusive");
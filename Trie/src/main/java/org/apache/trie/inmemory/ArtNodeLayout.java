@@ -0,0 +1,354 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The children layouts of an {@link ArtTrieNode}, after the node types of the
+ * Adaptive Radix Tree. A node starts with the shared empty layout and moves
+ * between the layouts as its fan-out changes:
+ * <ul>
+ * <li>Node4 and Node16 keep the labels in small sorted arrays.</li>
+ * <li>Node48 maps each label to one of 48 slots through a 256 entry byte
+ * index.</li>
+ * <li>Node256 stores the children directly at their label.</li>
+ * </ul>
+ * The indexed layouts only hold labels from 0 to 255. A child with a larger
+ * label (a non Latin-1 char) or a negative one (the IntegerKey EOLN) keeps the
+ * node in a sorted layout which then grows without bound.
+ * <p>
+ * All labels are the first key unit of the child,
+ * {@link TrieKey#getKeyUnit(int)}. Layouts are not thread safe, the owning node
+ * guards them with its lock.
+ * </p>
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+abstract class ArtNodeLayout<E extends TrieKey<E>> {
+
+  /**
+   * Returned by the search methods when there is no such label.
+   */
+  static final int NONE = Integer.MIN_VALUE;
+
+  private static final int NODE4 = 4;
+  private static final int NODE16 = 16;
+  private static final int NODE48 = 48;
+  private static final int BYTE_RANGE = 256;
+
+  @SuppressWarnings("unchecked")
+  private static final ArtNodeLayout EMPTY = new SortedLayout(0);
+
+  /**
+   * Returns the shared layout of nodes without children.
+   */
+  @SuppressWarnings("unchecked")
+  static <E extends TrieKey<E>> ArtNodeLayout<E> empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns the number of children.
+   */
+  abstract int size();
+
+  /**
+   * Returns the child with the label, or null.
+   */
+  abstract TrieNode<E> get(int unit);
+
+  /**
+   * Returns the largest label which is less than unit, or {@link #NONE}.
+   */
+  abstract int lower(int unit);
+
+  /**
+   * Replaces the child with the label. The label must exist.
+   */
+  abstract void replace(int unit, TrieNode<E> node);
+
+  /**
+   * Adds a child and returns the layout that holds it, which is a new layout
+   * when this one is full or cannot hold the label.
+   */
+  abstract ArtNodeLayout<E> put(int unit, TrieNode<E> node);
+
+  /**
+   * Removes the child with the label and returns the layout that holds the
+   * remaining children, which is a smaller layout when this one gets sparse.
+   */
+  abstract ArtNodeLayout<E> remove(int unit);
+
+  /**
+   * Returns true if the layout can index the label directly.
+   */
+  static boolean isByte(int unit) {
+    return unit >= 0 && unit < BYTE_RANGE;
+  }
+
+  /**
+   * Copies the children into the target layout, largest label first.
+   */
+  ArtNodeLayout<E> copyTo(ArtNodeLayout<E> target) {
+    ArtNodeLayout<E> result = target;
+    int unit = lower(Integer.MAX_VALUE);
+    while (unit != NONE) {
+      result = result.put(unit, get(unit));
+      unit = lower(unit);
+    }
+    return result;
+  }
+
+  /**
+   * Node4, Node16 and the unbounded layout for labels outside the byte range.
+   * The labels are kept in descending order, the order of the traversal.
+   */
+  static final class SortedLayout<E extends TrieKey<E>> extends
+      ArtNodeLayout<E> {
+    private final int[] units;
+    private final TrieNode<E>[] nodes;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    SortedLayout(int capacity) {
+      units = new int[capacity];
+      nodes = new TrieNode[capacity];
+    }
+
+    /**
+     * Returns the position of the first label which is not greater than unit.
+     */
+    private int floor(int unit) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (units[mid] > unit) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    TrieNode<E> get(int unit) {
+      int index = floor(unit);
+      if (index < size && units[index] == unit) {
+        return nodes[index];
+      }
+      return null;
+    }
+
+    @Override
+    int lower(int unit) {
+      if (unit == NONE) {
+        return NONE;
+      }
+      int index = floor(unit - 1);
+      return (index < size) ? units[index] : NONE;
+    }
+
+    @Override
+    void replace(int unit, TrieNode<E> node) {
+      nodes[floor(unit)] = node;
+    }
+
+    @Override
+    ArtNodeLayout<E> put(int unit, TrieNode<E> node) {
+      if (size == units.length) {
+        return grow(unit).put(unit, node);
+      }
+      int index = floor(unit);
+      System.arraycopy(units, index, units, index + 1, size - index);
+      System.arraycopy(nodes, index, nodes, index + 1, size - index);
+      units[index] = unit;
+      nodes[index] = node;
+      size++;
+      return this;
+    }
+
+    private ArtNodeLayout<E> grow(int unit) {
+      if (units.length < NODE4) {
+        return copyTo(new SortedLayout<E>(NODE4));
+      }
+      if (units.length < NODE16) {
+        return copyTo(new SortedLayout<E>(NODE16));
+      }
+      boolean bytes = isByte(unit);
+      for (int i = 0; i < size && bytes; i++) {
+        bytes = isByte(units[i]);
+      }
+      if (bytes && units.length == NODE16) {
+        return copyTo(new IndexedLayout<E>());
+      }
+      return copyTo(new SortedLayout<E>(units.length * 2));
+    }
+
+    @Override
+    ArtNodeLayout<E> remove(int unit) {
+      int index = floor(unit);
+      System.arraycopy(units, index + 1, units, index, size - 1 - index);
+      System.arraycopy(nodes, index + 1, nodes, index, size - 1 - index);
+      size--;
+      nodes[size] = null;
+      if (size == 0) {
+        return empty();
+      }
+      if (units.length > NODE16 && size <= NODE16 * 3 / 4) {
+        return copyTo(new SortedLayout<E>(NODE16));
+      }
+      if (units.length == NODE16 && size < NODE4) {
+        return copyTo(new SortedLayout<E>(NODE4));
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Node48, a 256 entry index into 48 child slots.
+   */
+  static final class IndexedLayout<E extends TrieKey<E>> extends
+      ArtNodeLayout<E> {
+    /**
+     * Slot number plus one for each label, zero for a missing label.
+     */
+    private final byte[] index = new byte[BYTE_RANGE];
+    private final TrieNode<E>[] slots;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    IndexedLayout() {
+      slots = new TrieNode[NODE48];
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    TrieNode<E> get(int unit) {
+      if (!isByte(unit) || index[unit] == 0) {
+        return null;
+      }
+      return slots[index[unit] - 1];
+    }
+
+    @Override
+    int lower(int unit) {
+      if (unit <= 0) {
+        return NONE;
+      }
+      for (int i = Math.min(unit - 1, BYTE_RANGE - 1); i >= 0; i--) {
+        if (index[i] != 0) {
+          return i;
+        }
+      }
+      return NONE;
+    }
+
+    @Override
+    void replace(int unit, TrieNode<E> node) {
+      slots[index[unit] - 1] = node;
+    }
+
+    @Override
+    ArtNodeLayout<E> put(int unit, TrieNode<E> node) {
+      if (!isByte(unit)) {
+        return copyTo(new SortedLayout<E>(NODE48 * 2)).put(unit, node);
+      }
+      if (size == NODE48) {
+        return copyTo(new DirectLayout<E>()).put(unit, node);
+      }
+      int slot = 0;
+      while (slots[slot] != null) {
+        slot++;
+      }
+      slots[slot] = node;
+      index[unit] = (byte) (slot + 1);
+      size++;
+      return this;
+    }
+
+    @Override
+    ArtNodeLayout<E> remove(int unit) {
+      slots[index[unit] - 1] = null;
+      index[unit] = 0;
+      size--;
+      if (size < NODE16 * 3 / 4) {
+        return copyTo(new SortedLayout<E>(NODE16));
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Node256, the children stored at their label.
+   */
+  static final class DirectLayout<E extends TrieKey<E>> extends
+      ArtNodeLayout<E> {
+    private final TrieNode<E>[] nodes;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    DirectLayout() {
+      nodes = new TrieNode[BYTE_RANGE];
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    TrieNode<E> get(int unit) {
+      return isByte(unit) ? nodes[unit] : null;
+    }
+
+    @Override
+    int lower(int unit) {
+      if (unit <= 0) {
+        return NONE;
+      }
+      for (int i = Math.min(unit - 1, BYTE_RANGE - 1); i >= 0; i--) {
+        if (nodes[i] != null) {
+          return i;
+        }
+      }
+      return NONE;
+    }
+
+    @Override
+    void replace(int unit, TrieNode<E> node) {
+      nodes[unit] = node;
+    }
+
+    @Override
+    ArtNodeLayout<E> put(int unit, TrieNode<E> node) {
+      if (!isByte(unit)) {
+        return copyTo(new SortedLayout<E>(BYTE_RANGE * 2)).put(unit, node);
+      }
+      nodes[unit] = node;
+      size++;
+      return this;
+    }
+
+    @Override
+    ArtNodeLayout<E> remove(int unit) {
+      nodes[unit] = null;
+      size--;
+      if (size < NODE48 * 3 / 4) {
+        return copyTo(new IndexedLayout<E>());
+      }
+      return this;
+    }
+  }
+}
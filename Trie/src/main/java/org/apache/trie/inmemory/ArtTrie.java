@@ -0,0 +1,33 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * Provides a implementation of Trie which is completely in Memory and stores
+ * the children of each node in Adaptive Radix Tree layouts. Wide nodes find
+ * their children through a direct index instead of a search, and narrow nodes
+ * and leaves use less memory than the {@link InMemoryTrie} nodes.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class ArtTrie<E extends TrieKey<E>> extends AbstractTrie<E> {
+
+  public ArtTrie() {
+    this(false);
+  }
+
+  /**
+   * Creates a Trie whose nodes store the weights used by
+   * {@link #topK(TrieKey, int)} if it is weighted, at the cost of 8 bytes per
+   * node.
+   * 
+   * @param weighted
+   *          Whether the nodes store weights.
+   */
+  public ArtTrie(boolean weighted) {
+    super(new ArtTrieBuilder<E>(weighted));
+  }
+
+}
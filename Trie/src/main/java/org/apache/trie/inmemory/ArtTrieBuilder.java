@@ -0,0 +1,47 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TrieBuilder for the ArtTrie. It creates {@link ArtTrieNode} nodes which
+ * are traversed by the {@link InMemoryTraversalProvider}.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class ArtTrieBuilder<E extends TrieKey<E>> implements TrieBuilder<E> {
+
+  /**
+   * Whether the created nodes store the weights used by topK.
+   */
+  private final boolean weighted;
+
+  ArtTrieBuilder(boolean aweighted) {
+    weighted = aweighted;
+  }
+
+  @Override
+  public TrieNode<E> createNode(E ele) {
+    if (weighted) {
+      return new WeightedArtTrieNode<E>(TrieNode.Type.LEAF_NODE, ele);
+    }
+    return new ArtTrieNode<E>(TrieNode.Type.LEAF_NODE, ele);
+  }
+
+  @Override
+  public TrieNode<E> createRootNode() {
+    if (weighted) {
+      return new WeightedArtTrieNode<E>(TrieNode.Type.ROOT_NODE, null);
+    }
+    return new ArtTrieNode<E>(TrieNode.Type.ROOT_NODE, null);
+  }
+
+  @Override
+  public TraversalProvider<E> getTraversalProvider() {
+    return new InMemoryTraversalProvider<E>();
+  }
+
+}
@@ -0,0 +1,249 @@
+package org.apache.trie.inmemory;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+
+/**
+ * The TrieNode for the ArtTrie. The node is its own {@link TrieNodeList} and
+ * keeps its children in an {@link ArtNodeLayout} chosen by the fan-out. Nodes
+ * without children share the empty layout, and the lock of a node is only
+ * created when its children are iterated for the first time, so a leaf costs
+ * a single object besides its key.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class ArtTrieNode<E extends TrieKey<E>> implements TrieNode<E>,
+    TrieNodeList<E> {
+
+  @SuppressWarnings("unchecked")
+  private static final AtomicReferenceFieldUpdater<ArtTrieNode, ReentrantReadWriteLock> LOCK_UPDATER = AtomicReferenceFieldUpdater
+      .newUpdater(ArtTrieNode.class, ReentrantReadWriteLock.class, "lock");
+
+  private final Type type;
+  private final E key;
+  private volatile ArtNodeLayout<E> layout = ArtNodeLayout.empty();
+  private volatile ReentrantReadWriteLock lock;
+
+  ArtTrieNode(Type atype, E ele) {
+    type = atype;
+    key = ele;
+  }
+
+  @Override
+  public TrieNodeList<E> children() {
+    return this;
+  }
+
+  @Override
+  public E getKey() {
+    return key;
+  }
+
+  @Override
+  public Type getType() {
+    if (type != Type.ROOT_NODE) {
+      return ((isEmpty()) ? Type.LEAF_NODE : Type.INTERNAL_NODE);
+    }
+    return type;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return layout.size() == 0;
+  }
+
+  @Override
+  public TrieIterator<E> trieReadOnlyIterator() throws TrieException {
+    return new ReadOnlyIterator();
+  }
+
+  @Override
+  public TrieIterator<E> trieWritableIterator() throws TrieException {
+    return new WritableIterator();
+  }
+
+  @Override
+  public String toString() {
+    if (key == null) {
+      return "[ArtTrieNode]key=null";
+    } else {
+      return "[ArtTrieNode]" + key.toString();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private ReentrantReadWriteLock lock() {
+    ReentrantReadWriteLock result = lock;
+    if (result == null) {
+      LOCK_UPDATER.compareAndSet(this, null, new ReentrantReadWriteLock());
+      result = lock;
+    }
+    return result;
+  }
+
+  private static void locker(Lock alock) throws TrieException {
+    try {
+      alock.lockInterruptibly();
+    } catch (InterruptedException e) {
+      throw new TrieException(
+          "InterruptedException in readWriteLock operation", e);
+    }
+  }
+
+  /**
+   * TrieIterator which supports read only semantics. The position is the
+   * label of the node returned last by {@link #next()}, so the iteration
+   * continues correctly when the layout changes.
+   */
+  class ReadOnlyIterator extends AbstractIterator<E> {
+    /**
+     * Label of the previous node, {@link Integer#MAX_VALUE} before the first.
+     */
+    protected int position = Integer.MAX_VALUE;
+    protected final ReentrantReadWriteLock readWriteLock;
+    private boolean locked = true;
+
+    ReadOnlyIterator() throws TrieException {
+      super();
+      readWriteLock = lock();
+      locker(readWriteLock.readLock());
+    }
+
+    @Override
+    public boolean hasNext() {
+      checkLock();
+      return layout.lower(position) != ArtNodeLayout.NONE;
+    }
+
+    @Override
+    public TrieNode<E> next() {
+      checkLock();
+      position = layout.lower(position);
+      return layout.get(position);
+    }
+
+    @Override
+    public TrieNode<E> previous() {
+      checkLock();
+      if (position == Integer.MAX_VALUE) {
+        return null;
+      }
+      return layout.get(position);
+    }
+
+    @Override
+    public void seek(E akey, int index) throws TrieException {
+      checkLock();
+      position = akey.getKeyUnit(index) + 1;
+    }
+
+    @Override
+    public void reset() throws TrieException {
+      position = Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      checkLock();
+      readWriteLock.readLock().unlock();
+      locked = false;
+    }
+
+    private void checkLock() {
+      if (!locked) {
+        throw new IllegalStateException("read Lock missing");
+      }
+    }
+  }
+
+  /**
+   * TrieIterator which supports read and write semantics. A node is inserted
+   * at the position given by its label, which is the position the insert
+   * methods of {@link TrieIterator} describe for a sorted list.
+   */
+  class WritableIterator extends ReadOnlyIterator {
+    private boolean writable = false;
+
+    WritableIterator() throws TrieException {
+      super();
+    }
+
+    private void checkWritable() {
+      if (!writable) {
+        throw new IllegalStateException("Write Lock missing");
+      }
+    }
+
+    @Override
+    public void insert(TrieNode<E> node) throws TrieException {
+      checkWritable();
+      int unit = node.getKey().getKeyUnit(0);
+      layout = layout.put(unit, node);
+      // the new node is now the previous node.
+      position = unit;
+    }
+
+    @Override
+    public void insertAtEnd(TrieNode<E> node) throws TrieException {
+      checkWritable();
+      layout = layout.put(node.getKey().getKeyUnit(0), node);
+    }
+
+    @Override
+    public void removeNode() throws TrieException {
+      checkWritable();
+      if (position == Integer.MAX_VALUE || layout.get(position) == null) {
+        throw new IllegalArgumentException(
+            "Cannot remove from empty list or before first element");
+      }
+      layout = layout.remove(position);
+    }
+
+    @Override
+    public TrieNode<E> replaceNode(TrieNode<E> newnode) throws TrieException {
+      checkWritable();
+      int unit = position;
+      if (unit == Integer.MAX_VALUE) {
+        unit = layout.lower(unit);
+      }
+      TrieNode<E> old = layout.get(unit);
+      if (!old.children().isEmpty()) {
+        throw new IllegalStateException("Insertion Node state changed");
+      }
+      layout.replace(unit, newnode);
+      return old;
+    }
+
+    @Override
+    public void lockExclusive() throws TrieException {
+      readWriteLock.readLock().unlock();
+      locker(readWriteLock.writeLock());
+      writable = true;
+    }
+
+    @Override
+    public void unlockExclusive() throws TrieException {
+      if (writable) {
+        locker(readWriteLock.readLock());
+        readWriteLock.writeLock().unlock();
+        writable = false;
+      }
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      if (writable) {
+        unlockExclusive();
+      }
+      super.finishIteration();
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package org.apache.trie.inmemory;
+
+import java.io.Closeable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieKey;
+
+/**
+ * Runs the operations of a Trie on an executor and returns their results as
+ * CompletableFutures, so a thread which must not block, like the thread of an
+ * event loop, does not wait for the locks of the nodes.
+ * <p>
+ * The identical contains and findPrefix requests are coalesced: a request for
+ * the key of a request which is waiting in the executor gets the result of
+ * that request, so they cost a single traversal. A request is not coalesced
+ * with a traversal which already started, which might have read the Trie
+ * before the request was made.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class AsyncTrie<E extends TrieKey<E>> implements Closeable {
+
+  private final Trie<E> trie;
+  private final Executor executor;
+  /**
+   * The executor created by this object, which is shut down on close.
+   */
+  private final ExecutorService ownExecutor;
+  private final ConcurrentMap<Request<E>, CompletableFuture<Object>> pending =
+      new ConcurrentHashMap<Request<E>, CompletableFuture<Object>>();
+
+  /**
+   * Runs the operations on virtual threads where the runtime has them, else
+   * on a pool of daemon threads.
+   *
+   * @param atrie
+   *          The Trie.
+   */
+  public AsyncTrie(Trie<E> atrie) {
+    trie = atrie;
+    ownExecutor = createExecutor();
+    executor = ownExecutor;
+  }
+
+  /**
+   * @param atrie
+   *          The Trie.
+   * @param aexecutor
+   *          The executor of the operations, it is not shut down on close.
+   */
+  public AsyncTrie(Trie<E> atrie, Executor aexecutor) {
+    trie = atrie;
+    executor = aexecutor;
+    ownExecutor = null;
+  }
+
+  /**
+   * Creates an executor of virtual threads if the runtime has them.
+   */
+  private static ExecutorService createExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod(
+          "newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "AsyncTrie");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  public CompletableFuture<Void> addElement(final E ele) {
+    return submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        trie.addElement(ele);
+        return null;
+      }
+    });
+  }
+
+  public CompletableFuture<Boolean> removeElement(final E ele) {
+    return submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return trie.removeElement(ele);
+      }
+    });
+  }
+
+  public CompletableFuture<Boolean> contains(final E ele) {
+    return coalesce(new Request<E>(false, ele), new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return trie.contains(ele);
+      }
+    });
+  }
+
+  /**
+   * Finds the keys starting with the prefix. The list may be shared by
+   * coalesced requests, so it is unmodifiable.
+   *
+   * @param prefix
+   *          The prefix element to search.
+   * @return The future of the keys found.
+   */
+  public CompletableFuture<List<E>> findPrefix(final E prefix) {
+    return coalesce(new Request<E>(true, prefix), new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return Collections.unmodifiableList(trie.findPrefix(prefix));
+      }
+    });
+  }
+
+  public CompletableFuture<Void> addAll(final Collection<E> elements) {
+    return submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        trie.addAll(elements);
+        return null;
+      }
+    });
+  }
+
+  public CompletableFuture<BitSet> containsAll(final Collection<E> elements) {
+    return submit(new Callable<BitSet>() {
+      @Override
+      public BitSet call() throws Exception {
+        return trie.containsAll(elements);
+      }
+    });
+  }
+
+  private <T> CompletableFuture<T> submit(Callable<T> call) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    execute(future, call, null);
+    return future;
+  }
+
+  /**
+   * Returns a future of the result of the request waiting in the executor, or
+   * of a new request. Each caller gets its own dependent future, so the
+   * cancellation of one does not cancel the others.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> CompletableFuture<T> coalesce(Request<E> request,
+      Callable<Object> call) {
+    CompletableFuture<Object> future = new CompletableFuture<Object>();
+    CompletableFuture<Object> waiting = pending.putIfAbsent(request, future);
+    if (waiting == null) {
+      execute(future, call, request);
+      waiting = future;
+    }
+    return (CompletableFuture<T>) waiting.thenApply(Function.identity());
+  }
+
+  /**
+   * Runs the call on the executor and completes the future with its result.
+   * The request is no longer pending once the call starts.
+   */
+  private <T> void execute(final CompletableFuture<T> future,
+      final Callable<T> call, final Request<E> request) {
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        if (request != null) {
+          pending.remove(request, future);
+        }
+        try {
+          future.complete(call.call());
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      }
+    };
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      if (request != null) {
+        pending.remove(request, future);
+      }
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Shuts down the executor created by this object, the submitted operations
+   * are completed.
+   */
+  @Override
+  public void close() {
+    if (ownExecutor != null) {
+      ownExecutor.shutdown();
+    }
+  }
+
+  /**
+   * A contains or findPrefix request, two requests are equal if their keys
+   * have the same primitive keys.
+   */
+  private static final class Request<E extends TrieKey<E>> {
+    private final boolean prefix;
+    private final E key;
+    private final int hash;
+
+    Request(boolean aprefix, E akey) {
+      prefix = aprefix;
+      key = akey;
+      int value = aprefix ? 1 : 0;
+      for (int i = 0; i < akey.getKeyLength(); i++) {
+        value = 31 * value + akey.getKeyUnit(i);
+      }
+      hash = value;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Request<?>)) {
+        return false;
+      }
+      Request<?> request = (Request<?>) other;
+      if (hash != request.hash || prefix != request.prefix
+          || key.getKeyLength() != request.key.getKeyLength()) {
+        return false;
+      }
+      for (int i = 0; i < key.getKeyLength(); i++) {
+        if (key.getKeyUnit(i) != request.key.getKeyUnit(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
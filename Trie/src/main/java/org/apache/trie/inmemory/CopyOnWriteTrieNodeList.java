@@ -0,0 +1,242 @@
+package org.apache.trie.inmemory;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+import org.apache.trie.base.TrieRestartException;
+
+/**
+ * The TrieNodeList for the {@link LockingMode#COPY_ON_WRITE} mode of the
+ * InMemoryTrie. The children and their labels are immutable arrays which are
+ * replaced as a whole on every modification.
+ * <p>
+ * A read only iterator works on the arrays that were published when it was
+ * created and takes no lock. A writable iterator locks the list only in
+ * {@link TrieIterator#lockExclusive()}, where it also takes the latest
+ * arrays; its modifications copy them and publish the copy.
+ * </p>
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class CopyOnWriteTrieNodeList<E extends TrieKey<E>> implements
+    TrieNodeList<E> {
+
+  @SuppressWarnings("unchecked")
+  private static final Children EMPTY = new Children(new TrieNode[0],
+      new int[0]);
+
+  @SuppressWarnings("unchecked")
+  private volatile Children<E> children = EMPTY;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  /**
+   * Set when the node of this list was removed from the Trie.
+   */
+  private boolean removed = false;
+  private final InMemoryTrieNode<E> parent;
+
+  CopyOnWriteTrieNodeList(InMemoryTrieNode<E> aparentNode) {
+    parent = aparentNode;
+  }
+
+  /**
+   * Sets the children of a new list, in descending order, before the list is
+   * reachable from the Trie. It does not lock.
+   */
+  @SuppressWarnings("unchecked")
+  void load(List<TrieNode<E>> list) {
+    TrieNode<E>[] nodes = list.toArray(new TrieNode[list.size()]);
+    int[] labels = new int[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      labels[i] = nodes[i].getKey().getKeyUnit(0);
+    }
+    children = new Children<E>(nodes, labels);
+  }
+
+  @Override
+  public TrieIterator<E> trieReadOnlyIterator() throws TrieException {
+    return new ReadOnlyIterator();
+  }
+
+  @Override
+  public TrieIterator<E> trieWritableIterator() throws TrieException {
+    return new WritableIterator();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return children.nodes.length == 0;
+  }
+
+  @Override
+  public String toString() {
+    return "CopyOnWriteTrieNodeList [node=" + parent + "]";
+  }
+
+  /**
+   * An immutable snapshot of the children in descending order with the first
+   * key unit of each child.
+   */
+  private static final class Children<E extends TrieKey<E>> {
+    private final TrieNode<E>[] nodes;
+    private final int[] labels;
+
+    Children(TrieNode<E>[] anodes, int[] alabels) {
+      nodes = anodes;
+      labels = alabels;
+    }
+  }
+
+  /**
+   * TrieIterator over a snapshot of the children, it never locks.
+   */
+  class ReadOnlyIterator extends AbstractIterator<E> {
+    /**
+     * The children this iterator works on.
+     */
+    protected Children<E> snapshot = children;
+    /**
+     * The index for the iteration operations.
+     */
+    protected int count = 0;
+
+    @Override
+    public boolean hasNext() {
+      return snapshot.nodes.length > count;
+    }
+
+    @Override
+    public TrieNode<E> next() {
+      return snapshot.nodes[count++];
+    }
+
+    @Override
+    public TrieNode<E> previous() {
+      if (count > 0) {
+        return snapshot.nodes[count - 1];
+      }
+      return null;
+    }
+
+    @Override
+    public void seek(E key, int index) throws TrieException {
+      count = InMemoryTrieNodeList.search(snapshot.labels,
+          snapshot.labels.length, key.getKeyUnit(index));
+    }
+
+    @Override
+    public void reset() throws TrieException {
+      count = 0;
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      // nothing is locked.
+    }
+  }
+
+  /**
+   * TrieIterator which supports read and write semantics. The modifications
+   * are only allowed between lockExclusive() and unlockExclusive().
+   */
+  class WritableIterator extends ReadOnlyIterator {
+    private boolean writable = false;
+
+    private void checkLock() {
+      if (!writable) {
+        throw new IllegalStateException("Write Lock missing");
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void publish(int index, TrieNode<E> node, int removed) {
+      int size = snapshot.nodes.length;
+      int newsize = size + ((node == null) ? 0 : 1) - removed;
+      TrieNode<E>[] nodes = new TrieNode[newsize];
+      int[] labels = new int[newsize];
+      System.arraycopy(snapshot.nodes, 0, nodes, 0, index);
+      System.arraycopy(snapshot.labels, 0, labels, 0, index);
+      int tail = index;
+      if (node != null) {
+        nodes[index] = node;
+        labels[index] = node.getKey().getKeyUnit(0);
+        tail++;
+      }
+      System.arraycopy(snapshot.nodes, index + removed, nodes, tail, size
+          - index - removed);
+      System.arraycopy(snapshot.labels, index + removed, labels, tail, size
+          - index - removed);
+      snapshot = new Children<E>(nodes, labels);
+      children = snapshot;
+    }
+
+    @Override
+    public void insert(TrieNode<E> node) throws TrieException {
+      checkLock();
+      publish(count - 1, node, 0);
+    }
+
+    @Override
+    public void insertAtEnd(TrieNode<E> node) throws TrieException {
+      checkLock();
+      publish(snapshot.nodes.length, node, 0);
+    }
+
+    @Override
+    public void removeNode() throws TrieException {
+      checkLock();
+      if (snapshot.nodes.length == 0 || count == 0) {
+        throw new IllegalArgumentException(
+            "Cannot remove from empty list or before first element");
+      }
+      publish(count - 1, null, 1);
+    }
+
+    @Override
+    public TrieNode<E> replaceNode(TrieNode<E> newnode) throws TrieException {
+      checkLock();
+      int index = Math.max(count - 1, 0);
+      TrieNode<E> tmp = snapshot.nodes[index];
+      publish(index, newnode, 1);
+      return tmp;
+    }
+
+    @Override
+    public void lockExclusive() throws TrieException {
+      try {
+        writeLock.lockInterruptibly();
+      } catch (InterruptedException e) {
+        throw new TrieException("InterruptedException in lock operation", e);
+      }
+      snapshot = children;
+      writable = true;
+      if (removed) {
+        throw new TrieRestartException("Node removed by a concurrent operation");
+      }
+    }
+
+    @Override
+    public void markRemoved() throws TrieException {
+      checkLock();
+      removed = true;
+    }
+
+    @Override
+    public void unlockExclusive() throws TrieException {
+      if (writable) {
+        writeLock.unlock();
+        writable = false;
+      }
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      unlockExclusive();
+    }
+  }
+}
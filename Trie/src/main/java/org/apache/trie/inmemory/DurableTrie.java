@@ -0,0 +1,277 @@
+package org.apache.trie.inmemory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * Provides a durable Trie: the updates of an in memory Trie are appended to a
+ * write-ahead log on the local disk, which is replayed into the Trie when it
+ * is opened again. When an update returns, its record is durable as defined
+ * by the {@link SyncPolicy}, and the concurrent updates share the forces of
+ * the log.
+ * <p>
+ * The record of an update is appended and the update applied to the Trie
+ * under a lock of its key, one of a fixed set of stripes, so the records of a
+ * key are logged in the order of its updates; the updates of different keys
+ * commute. The record is appended first: an update which fails because the
+ * log failed is not applied. The readers may see an update before it is
+ * durable. A removal of a missing key is not logged.
+ * </p>
+ * <p>
+ * The log keeps every update until it is compacted: the time to open the
+ * Trie and the size of the log grow with the number of updates, not of keys.
+ * {@link #compact()} writes a checkpoint of the Trie next to the log, in the
+ * file named after the log with the suffix {@value #CHECKPOINT_SUFFIX}, and
+ * empties the log. When the Trie is opened, the checkpoint is restored before
+ * the log is replayed.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class DurableTrie<E extends TrieKey<E>> implements Trie<E>, Closeable {
+
+  /**
+   * The interval of the background force of {@link SyncPolicy#INTERVAL}.
+   */
+  public static final long DEFAULT_SYNC_INTERVAL = 100;
+  public static final String CHECKPOINT_SUFFIX = ".ckpt";
+  private static final int STRIPES = 64;
+
+  private final Trie<E> trie;
+  private final WriteAheadLog<E> log;
+  private final File checkpoint;
+  private final Object[] stripes = new Object[STRIPES];
+  /**
+   * Shared by the updates, and held exclusively by a compaction.
+   */
+  private final ReentrantReadWriteLock compaction =
+      new ReentrantReadWriteLock();
+
+  /**
+   * Opens the log, with the default {@link SyncPolicy#ALWAYS}.
+   *
+   * @see #DurableTrie(Trie, File, TrieKeyFactory, SyncPolicy, long)
+   */
+  public DurableTrie(Trie<E> atrie, File file, TrieKeyFactory<E> factory)
+      throws TrieException {
+    this(atrie, file, factory, SyncPolicy.ALWAYS, DEFAULT_SYNC_INTERVAL);
+  }
+
+  /**
+   * Opens the log, creating it if needed, and replays its records into the
+   * Trie, after the checkpoint written by {@link #compact()} if there is one.
+   * A record cut by a crash is dropped.
+   *
+   * @param atrie
+   *          The Trie holding the keys, it is only updated by this object.
+   * @param file
+   *          The log file.
+   * @param factory
+   *          The factory of the keys stored in the log.
+   * @param policy
+   *          Defines when the records are durable.
+   * @param syncIntervalMillis
+   *          The interval of the forces of {@link SyncPolicy#INTERVAL}.
+   * @throws TrieException
+   *           If the log or the checkpoint cannot be read or is not valid.
+   */
+  public DurableTrie(Trie<E> atrie, File file, TrieKeyFactory<E> factory,
+      SyncPolicy policy, long syncIntervalMillis) throws TrieException {
+    trie = atrie;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Object();
+    }
+    checkpoint = new File(file.getPath() + CHECKPOINT_SUFFIX);
+    if (checkpoint.exists()) {
+      restore(factory);
+    }
+    log = new WriteAheadLog<E>(file, factory, policy, syncIntervalMillis,
+        atrie);
+  }
+
+  private Object stripe(byte[] record) {
+    int hash = 0;
+    // the operation and the CRC are not part of the key.
+    for (int i = 5; i < record.length - 4; i++) {
+      hash = 31 * hash + record[i];
+    }
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  private AbstractTrie<E> checkpointed() {
+    if (!(trie instanceof AbstractTrie<?>)) {
+      throw new UnsupportedOperationException(
+          "A checkpoint requires an AbstractTrie");
+    }
+    return (AbstractTrie<E>) trie;
+  }
+
+  private void restore(TrieKeyFactory<E> factory) throws TrieException {
+    try {
+      InputStream in = new BufferedInputStream(new FileInputStream(
+          checkpoint));
+      try {
+        checkpointed().restore(in, factory);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new TrieException("Cannot read checkpoint " + checkpoint, e);
+    }
+  }
+
+  /**
+   * Logs the element and adds it, returns the position to wait for.
+   */
+  private long add(E ele) throws TrieException {
+    byte[] record = WriteAheadLog.encode(WriteAheadLog.ADD, ele);
+    Lock shared = compaction.readLock();
+    shared.lock();
+    try {
+      synchronized (stripe(record)) {
+        long position = log.append(record);
+        trie.addElement(ele);
+        return position;
+      }
+    } finally {
+      shared.unlock();
+    }
+  }
+
+  @Override
+  public void addElement(E ele) throws TrieException {
+    log.await(add(ele));
+  }
+
+  @Override
+  public boolean removeElement(E ele) throws TrieException {
+    byte[] record = WriteAheadLog.encode(WriteAheadLog.REMOVE, ele);
+    long position;
+    Lock shared = compaction.readLock();
+    shared.lock();
+    try {
+      synchronized (stripe(record)) {
+        // the key is only updated under its stripe, it is not added or
+        // removed concurrently.
+        if (!trie.contains(ele)) {
+          return false;
+        }
+        position = log.append(record);
+        trie.removeElement(ele);
+      }
+    } finally {
+      shared.unlock();
+    }
+    log.await(position);
+    return true;
+  }
+
+  /**
+   * Adds the elements one by one, and waits once for all their records.
+   */
+  @Override
+  public void addAll(Collection<E> elements) throws TrieException {
+    long position = 0;
+    for (E ele : elements) {
+      position = add(ele);
+    }
+    if (position > 0) {
+      log.await(position);
+    }
+  }
+
+  @Override
+  public boolean contains(E ele) throws TrieException {
+    return trie.contains(ele);
+  }
+
+  @Override
+  public BitSet containsAll(Collection<E> elements) throws TrieException {
+    return trie.containsAll(elements);
+  }
+
+  @Override
+  public List<E> findPrefix(E ele) throws TrieException {
+    return trie.findPrefix(ele);
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele) {
+    return trie.findPrefixIterator(ele);
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele, int limit) {
+    return trie.findPrefixIterator(ele, limit);
+  }
+
+  /**
+   * Writes a checkpoint of the Trie and empties the log. The updates wait for
+   * the end of the compaction, the readers do not. The checkpoint is written
+   * to a temporary file and forced before it replaces the previous one, and
+   * the log is only emptied afterwards: after a crash in between, the log is
+   * replayed on the new checkpoint, which it leaves unchanged.
+   *
+   * @throws TrieException
+   *           If the checkpoint or the log cannot be written.
+   * @throws UnsupportedOperationException
+   *           If the Trie is not an {@link AbstractTrie}.
+   */
+  public void compact() throws TrieException {
+    AbstractTrie<E> checkpointed = checkpointed();
+    Lock exclusive = compaction.writeLock();
+    exclusive.lock();
+    try {
+      File temporary = new File(checkpoint.getPath() + ".tmp");
+      FileOutputStream out = new FileOutputStream(temporary);
+      try {
+        checkpointed.checkpoint(out);
+        out.getFD().sync();
+      } finally {
+        out.close();
+      }
+      Files.move(temporary.toPath(), checkpoint.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      log.truncate();
+    } catch (IOException e) {
+      throw new TrieException("Cannot write checkpoint " + checkpoint, e);
+    } finally {
+      exclusive.unlock();
+    }
+  }
+
+  /**
+   * Forces the buffered records to the disk and closes the log. The Trie is
+   * not updated afterwards.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      log.close();
+    } catch (TrieException e) {
+      throw new IOException("Cannot close the log", e);
+    }
+  }
+
+}
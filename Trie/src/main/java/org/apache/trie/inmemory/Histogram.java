@@ -0,0 +1,88 @@
+package org.apache.trie.inmemory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of positive values, like latencies in nanoseconds.
+ * The values below 16 have their own bucket, the larger ones are counted in
+ * 16 buckets per power of two, so a percentile is known within 1/16 of its
+ * value. Recording a value adds to two {@link LongAdder}s, which the threads
+ * update without contention.
+ */
+public final class Histogram {
+
+  private static final int SUB_BITS = 4;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  /**
+   * The buckets of the values up to {@link Long#MAX_VALUE}.
+   */
+  static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder sum = new LongAdder();
+
+  public Histogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Returns the bucket of the value.
+   */
+  static int index(long value) {
+    if (value < SUB_COUNT) {
+      return (value < 0) ? 0 : (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    return (exponent - SUB_BITS + 1) * SUB_COUNT
+        + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+  }
+
+  /**
+   * Returns the largest value counted in the bucket.
+   */
+  static long highestValue(int index) {
+    if (index < SUB_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_COUNT - 1;
+    long lowest = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * Counts the value, a negative value is counted as 0.
+   *
+   * @param value
+   *          The value to count.
+   */
+  public void record(long value) {
+    buckets[index(value)].increment();
+    sum.add(Math.max(value, 0));
+  }
+
+  /**
+   * Returns the counts of the buckets. The values recorded while the counts
+   * are read may be missing from some of them.
+   *
+   * @return The snapshot of the counts.
+   */
+  public HistogramSnapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return new HistogramSnapshot(counts, sum.sum());
+  }
+
+  /**
+   * Clears the counts, the values recorded meanwhile may be kept.
+   */
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    sum.reset();
+  }
+}
@@ -0,0 +1,97 @@
+package org.apache.trie.inmemory;
+
+/**
+ * The counts of a {@link Histogram} at one point. A percentile is the largest
+ * value of the bucket where it falls. The getters make it an open type of
+ * {@link TrieMetricsMXBean}.
+ */
+public final class HistogramSnapshot {
+
+  private final long[] counts;
+  private final long count;
+  private final long sum;
+
+  HistogramSnapshot(long[] acounts, long asum) {
+    counts = acounts;
+    sum = asum;
+    long total = 0;
+    for (long bucket : acounts) {
+      total += bucket;
+    }
+    count = total;
+  }
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return The number of values.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the mean of the recorded values.
+   *
+   * @return The mean, or 0 if there are no values.
+   */
+  public double getMean() {
+    return (count == 0) ? 0 : (double) sum / count;
+  }
+
+  /**
+   * Returns the value which the fraction of the recorded values do not
+   * exceed.
+   *
+   * @param fraction
+   *          The fraction, from 0 to 1.
+   * @return The percentile, or 0 if there are no values.
+   */
+  public long getPercentile(double fraction) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Histogram.highestValue(i);
+      }
+    }
+    return getMax();
+  }
+
+  public long getP50() {
+    return getPercentile(0.5);
+  }
+
+  public long getP99() {
+    return getPercentile(0.99);
+  }
+
+  public long getP999() {
+    return getPercentile(0.999);
+  }
+
+  /**
+   * Returns the largest value of the highest bucket which has a value.
+   *
+   * @return The maximum, or 0 if there are no values.
+   */
+  public long getMax() {
+    for (int i = counts.length - 1; i >= 0; i--) {
+      if (counts[i] != 0) {
+        return Histogram.highestValue(i);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + count + " mean=" + Math.round(getMean()) + " p50="
+        + getP50() + " p99=" + getP99() + " p999=" + getP999() + " max="
+        + getMax();
+  }
+}
@@ -5,6 +5,7 @@ import java.util.Stack;
 import org.apache.trie.base.OperationCodes;
 import org.apache.trie.base.TraversalOperation;
 import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TraversalOperationWithSeek;
 import org.apache.trie.base.TraversalProvider;
 import org.apache.trie.base.TrieException;
 import org.apache.trie.base.TrieIterator;
@@ -34,15 +35,17 @@ class InMemoryTraversalProvider<E extends TrieKey<E>> implements
       } else {
         iter = current.children().trieReadOnlyIterator();
       }
+      seek(operation);
 
     case TRAVERSE_SIBLING:
-      if (iter != null) {
-        if (iter.hasNext()) {
-          current = iter.next();
-          nextOp = getNextOp(operation, current);
-        } else {
-          nextOp = operation.noNextNode();
-        }
+      if (iter == null) {
+        // the node the traversal starts at has no siblings.
+        nextOp = operation.noNextNode();
+      } else if (iter.hasNext()) {
+        current = iter.next();
+        nextOp = getNextOp(operation, current);
+      } else {
+        nextOp = operation.noNextNode();
       }
       break;
     case TRAVERSE_LOCK_EXCLUSIVE:
@@ -53,6 +56,7 @@ class InMemoryTraversalProvider<E extends TrieKey<E>> implements
       if (iter != null) {
         iter.lockExclusive();
         iter.reset();
+        seek(operation);
       }
       operation.lockIteration();
       locked = true;
@@ -87,6 +91,22 @@ class InMemoryTraversalProvider<E extends TrieKey<E>> implements
     return nextOp;
   }
 
+  /**
+   * Positions the iterator on the searched child for operations looking for a
+   * single key.
+   */
+  @SuppressWarnings("unchecked")
+  private void seek(TraversalOperation<E> operation) throws TrieException {
+    if (operation instanceof TraversalOperationWithSeek<?>) {
+      TraversalOperationWithSeek<E> seekOperation;
+      seekOperation = (TraversalOperationWithSeek<E>) operation;
+      E key = seekOperation.getSeekKey();
+      if (key != null) {
+        iter.seek(key, seekOperation.getSeekIndex());
+      }
+    }
+  }
+
   @Override
   public OperationCodes traverseTrie(TraversalOperation<E> operation,
       TrieNode<E> node, boolean modifiable) throws TrieException {
@@ -16,4 +16,28 @@ public class InMemoryTrie<E extends TrieKey<E>> extends AbstractTrie<E> {
     super(new InMemoryTrieBuilder<E>());
   }
 
+  /**
+   * Creates a Trie which guards its nodes as defined by the LockingMode.
+   * 
+   * @param mode
+   *          The LockingMode of the nodes.
+   */
+  public InMemoryTrie(LockingMode mode) {
+    super(new InMemoryTrieBuilder<E>(mode));
+  }
+
+  /**
+   * Creates a Trie which guards its nodes as defined by the LockingMode. The
+   * nodes of a weighted Trie store the weights used by
+   * {@link #topK(TrieKey, int)}, at the cost of 8 bytes per node.
+   * 
+   * @param mode
+   *          The LockingMode of the nodes.
+   * @param weighted
+   *          Whether the nodes store weights.
+   */
+  public InMemoryTrie(LockingMode mode, boolean weighted) {
+    super(new InMemoryTrieBuilder<E>(mode, weighted));
+  }
+
 }
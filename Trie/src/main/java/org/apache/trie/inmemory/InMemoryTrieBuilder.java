@@ -1,7 +1,9 @@
 package org.apache.trie.inmemory;
 
+import java.util.List;
+
+import org.apache.trie.base.BulkTrieBuilder;
 import org.apache.trie.base.TraversalProvider;
-import org.apache.trie.base.TrieBuilder;
 import org.apache.trie.base.TrieKey;
 import org.apache.trie.base.TrieNode;
 
@@ -13,20 +15,60 @@ import org.apache.trie.base.TrieNode;
  * @param <E>
  *          TrieKey used for this Trie.
  */
-class InMemoryTrieBuilder<E extends TrieKey<E>> implements TrieBuilder<E> {
+class InMemoryTrieBuilder<E extends TrieKey<E>> implements BulkTrieBuilder<E> {
+
+  /**
+   * The LockingMode of the created nodes.
+   */
+  protected final LockingMode mode;
+  /**
+   * Whether the created nodes store the weights used by topK.
+   */
+  protected final boolean weighted;
+
+  InMemoryTrieBuilder() {
+    this(LockingMode.READ_WRITE_LOCK);
+  }
+
+  InMemoryTrieBuilder(LockingMode amode) {
+    this(amode, false);
+  }
+
+  InMemoryTrieBuilder(LockingMode amode, boolean aweighted) {
+    mode = amode;
+    weighted = aweighted;
+  }
 
   @Override
   public TrieNode<E> createNode(E ele) {
 
+    if (weighted) {
+      return new WeightedInMemoryTrieNode<E>(TrieNode.Type.LEAF_NODE, ele,
+          mode);
+    }
     InMemoryTrieNode<E> node = new InMemoryTrieNode<E>(TrieNode.Type.LEAF_NODE,
-        ele);
+        ele, mode);
     return node;
   }
 
+  @Override
+  public TrieNode<E> createNode(E ele, List<TrieNode<E>> children) {
+    if (weighted) {
+      return new WeightedInMemoryTrieNode<E>(TrieNode.Type.LEAF_NODE, ele,
+          mode, children);
+    }
+    return new InMemoryTrieNode<E>(TrieNode.Type.LEAF_NODE, ele, mode,
+        children);
+  }
+
   @Override
   public TrieNode<E> createRootNode() {
 
-    return new InMemoryTrieNode<E>(TrieNode.Type.ROOT_NODE, null);
+    if (weighted) {
+      return new WeightedInMemoryTrieNode<E>(TrieNode.Type.ROOT_NODE, null,
+          mode);
+    }
+    return new InMemoryTrieNode<E>(TrieNode.Type.ROOT_NODE, null, mode);
   }
 
   @Override
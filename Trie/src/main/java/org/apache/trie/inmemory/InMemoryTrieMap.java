@@ -0,0 +1,33 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.impl.AbstractTrieMap;
+
+/**
+ * Provides a TrieMap which is completely in Memory and path compressed like
+ * the {@link RadixTrie}. The value of a key is stored in the leaf of the key,
+ * which replaces a set of keys and a map of the same keys to their values.
+ *
+ * @param <K>
+ *          TrieKey used for this Trie.
+ * @param <V>
+ *          The type of the values.
+ */
+public class InMemoryTrieMap<K extends TrieKey<K>, V> extends
+    AbstractTrieMap<K, V> {
+
+  public InMemoryTrieMap() {
+    this(LockingMode.READ_WRITE_LOCK);
+  }
+
+  /**
+   * Creates a TrieMap which guards its nodes as defined by the LockingMode.
+   *
+   * @param mode
+   *          The LockingMode of the nodes.
+   */
+  public InMemoryTrieMap(LockingMode mode) {
+    super(new InMemoryTrieMapBuilder<K>(mode));
+  }
+
+}
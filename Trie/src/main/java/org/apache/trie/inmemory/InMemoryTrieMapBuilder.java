@@ -0,0 +1,38 @@
+package org.apache.trie.inmemory;
+
+import java.util.List;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TrieBuilder for the InMemoryTrieMap. It creates the nodes of the
+ * RadixTrie with a holder for the value of their key.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class InMemoryTrieMapBuilder<E extends TrieKey<E>> extends RadixTrieBuilder<E> {
+
+  InMemoryTrieMapBuilder(LockingMode amode) {
+    super(amode);
+  }
+
+  @Override
+  public TrieNode<E> createNode(E ele) {
+    return new InMemoryValueTrieNode<E>(TrieNode.Type.LEAF_NODE, ele, mode);
+  }
+
+  @Override
+  public TrieNode<E> createNode(E ele, List<TrieNode<E>> children) {
+    return new InMemoryValueTrieNode<E>(TrieNode.Type.LEAF_NODE, ele, mode,
+        children);
+  }
+
+  @Override
+  public TrieNode<E> createNode(E ele, TrieNode<E> adopt) {
+    return new InMemoryValueTrieNode<E>(TrieNode.Type.LEAF_NODE, ele,
+        adopt.children());
+  }
+
+}
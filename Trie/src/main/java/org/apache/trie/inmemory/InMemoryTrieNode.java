@@ -1,5 +1,7 @@
 package org.apache.trie.inmemory;
 
+import java.util.List;
+
 import org.apache.trie.base.TrieKey;
 import org.apache.trie.base.TrieNode;
 import org.apache.trie.base.TrieNodeList;
@@ -16,12 +18,57 @@ class InMemoryTrieNode<E extends TrieKey<E>> implements TrieNode<E> {
 
   private final Type type;
   private final E key;
-  private final InMemoryTrieNodeList<E> nodes = new InMemoryTrieNodeList<E>(
-      this);
+  private final TrieNodeList<E> nodes;
 
   public InMemoryTrieNode(Type atype, E ele) {
+    this(atype, ele, LockingMode.READ_WRITE_LOCK);
+  }
+
+  InMemoryTrieNode(Type atype, E ele, LockingMode mode) {
+    type = atype;
+    key = ele;
+    if (mode == LockingMode.COPY_ON_WRITE) {
+      nodes = new CopyOnWriteTrieNodeList<E>(this);
+    } else if (mode == LockingMode.OPTIMISTIC) {
+      nodes = new OptimisticTrieNodeList<E>(this);
+    } else {
+      nodes = new InMemoryTrieNodeList<E>(this);
+    }
+  }
+
+  /**
+   * Creates a node with the specified children, in descending order.
+   */
+  InMemoryTrieNode(Type atype, E ele, LockingMode mode,
+      List<TrieNode<E>> children) {
+    type = atype;
+    key = ele;
+    if (mode == LockingMode.COPY_ON_WRITE) {
+      CopyOnWriteTrieNodeList<E> list = new CopyOnWriteTrieNodeList<E>(this);
+      list.load(children);
+      nodes = list;
+    } else if (mode == LockingMode.OPTIMISTIC) {
+      OptimisticTrieNodeList<E> list = new OptimisticTrieNodeList<E>(this);
+      list.load(children);
+      nodes = list;
+    } else {
+      InMemoryTrieNodeList<E> list = new InMemoryTrieNodeList<E>(this);
+      list.load(children);
+      nodes = list;
+    }
+  }
+
+  /**
+   * Creates a node which shares the specified children with another node.
+   */
+  InMemoryTrieNode(Type atype, E ele, TrieNodeList<E> children) {
     type = atype;
     key = ele;
+    nodes = children;
+    if (children instanceof InMemoryTrieNodeList<?>) {
+      // the waits for the lock are reported under the label of this node.
+      ((InMemoryTrieNodeList<E>) children).setParent(this);
+    }
   }
 
   @Override
@@ -1,8 +1,10 @@
 package org.apache.trie.inmemory;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.trie.base.TrieException;
@@ -10,10 +12,19 @@ import org.apache.trie.base.TrieIterator;
 import org.apache.trie.base.TrieKey;
 import org.apache.trie.base.TrieNode;
 import org.apache.trie.base.TrieNodeList;
+import org.apache.trie.base.TrieRestartException;
 
 /**
  * The class represents the TrieNodeList for the InMemoryTrie. It stores the
  * children nodes and provide api for its manipulation.
+ * <p>
+ * The children are kept in descending order. The first key unit of each child
+ * is stored in a parallel int array, so a child is found by a binary search on
+ * the labels without touching the child nodes or their keys.
+ * </p>
+ * <p>
+ * The waits for the lock are reported to the {@link LockProfiler}.
+ * </p>
  * 
  * @author <a href="mailto:saurabh@saurabharora.me">Saurabh Arora</a>
  * @param <E>
@@ -24,10 +35,23 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
   private static final Logger logger = Logger // NOPMD
       .getLogger("org.apache.trie.inmemory");
 
+  private static final int INITIAL_CAPACITY = 2;
+
   @SuppressWarnings("unchecked")
   private TrieNode nodes[] = new TrieNode[0];
-  private final InMemoryTrieNode<E> parent;
+  /**
+   * The first key unit of each node, {@link TrieKey#getKeyUnit(int)}.
+   */
+  private int labels[] = new int[0];
+  /**
+   * The node which owns this list, a node which adopts the list replaces it.
+   */
+  private volatile InMemoryTrieNode<E> parent;
   private int size = 0;
+  /**
+   * Set when the node of this list was removed from the Trie.
+   */
+  private boolean removed = false;
   private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock(
       true);
   private final Lock writeOnlyLock;
@@ -38,6 +62,20 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
     parent = aparentNode;
   }
 
+  /**
+   * Sets the children of a new list, in descending order, before the list is
+   * reachable from the Trie. It does not lock.
+   */
+  @SuppressWarnings("unchecked")
+  void load(List<TrieNode<E>> children) {
+    size = children.size();
+    nodes = children.toArray(new TrieNode[size]);
+    labels = new int[size];
+    for (int i = 0; i < size; i++) {
+      labels[i] = nodes[i].getKey().getKeyUnit(0);
+    }
+  }
+
   @Override
   public TrieIterator<E> trieReadOnlyIterator() throws TrieException {
     return new ReadOnlyIterator(readWriteLock.readLock());
@@ -57,14 +95,66 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
     return "InMemoryTrieNodeList [node=" + parent + "]";
   }
 
+  /**
+   * Returns the position of the first of the size labels which is not greater
+   * than unit. The labels are in descending order.
+   */
+  static int search(int[] labels, int size, int unit) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (labels[mid] > unit) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Sets the node which owns this list, when it adopts the list of another
+   * node.
+   */
+  void setParent(InMemoryTrieNode<E> aparentNode) {
+    parent = aparentNode;
+  }
+
+  /**
+   * Returns the label of the node which owns this list, for the events of the
+   * waits.
+   */
+  String getLabel() {
+    E key = parent.getKey();
+    return (key == null) ? "root" : key.toString();
+  }
+
+  /**
+   * Acquires the lock, the waits are reported to the {@link LockProfiler}. A
+   * timed tryLock does not barge into the fair lock, unlike tryLock().
+   */
   private void locker(Lock lock, String mesg) throws TrieException {
-    logger.fine("locking " + mesg + " on node" + parent);
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine("locking " + mesg + " on node" + parent);
+    }
+    boolean write = lock == writeOnlyLock;
     try {
+      if (lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+        LockProfiler.acquired(write);
+        return;
+      }
+      Object event = LockProfiler.beginWait();
+      long start = System.nanoTime();
       while (!lock.tryLock(5, TimeUnit.SECONDS)) {
-        logger.fine("Trying to acquire readWriteLock:" + mesg + "in " + parent);
-        logger.fine("readCount=" + readWriteLock.getReadLockCount()
-            + "writeLocked=" + readWriteLock.isWriteLocked());
+        if (logger.isLoggable(Level.FINE)) {
+          logger.fine("Trying to acquire readWriteLock:" + mesg + "in "
+              + parent);
+          logger.fine("readCount=" + readWriteLock.getReadLockCount()
+              + "writeLocked=" + readWriteLock.isWriteLocked());
+        }
       }
+      LockProfiler.acquired(this, write, System.nanoTime() - start, event);
     } catch (InterruptedException e) {
       throw new TrieException(
           "InterruptedException in readWriteLock operation", e);
@@ -72,7 +162,9 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
   }
 
   private void unlocker(Lock lock, String mesg) throws TrieException {
-    logger.fine("unlocking " + mesg + " on node" + parent);
+    if (logger.isLoggable(Level.FINE)) {
+      logger.fine("unlocking " + mesg + " on node" + parent);
+    }
     lock.unlock();
   }
 
@@ -139,6 +231,20 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
       count = 0;
     }
 
+    @Override
+    public void seek(E key, int index) throws TrieException {
+      checkLock();
+      count = search(labels, size, key.getKeyUnit(index));
+    }
+
+    /**
+     * Returns the iterated list, whose waits are kept by the
+     * {@link LockProfiler}.
+     */
+    InMemoryTrieNodeList<E> getList() {
+      return InMemoryTrieNodeList.this;
+    }
+
   }
 
   /**
@@ -174,9 +280,8 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
 
       int index = count - 1;
 
-      for (int j = index; j < (size - 1); j++) {
-        nodes[j] = nodes[j + 1];
-      }
+      System.arraycopy(nodes, index + 1, nodes, index, size - 1 - index);
+      System.arraycopy(labels, index + 1, labels, index, size - 1 - index);
       nodes[size - 1] = null;
       size--;
 
@@ -190,31 +295,23 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
 
     @SuppressWarnings("unchecked")
     private void insertNode(TrieNode<E> node, int index) throws TrieException {
-      TrieNode[] tmp = null;
-      if (nodes.length == 0) {
-        // insert first node.
-        tmp = new InMemoryTrieNode[1];
-        tmp[0] = node;
+      if (size == nodes.length) {
+        // grow geometrically, the nodes and labels share the capacity.
+        int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+        TrieNode[] tmpnodes = new TrieNode[capacity];
+        int[] tmplabels = new int[capacity];
+        System.arraycopy(nodes, 0, tmpnodes, 0, index);
+        System.arraycopy(labels, 0, tmplabels, 0, index);
+        System.arraycopy(nodes, index, tmpnodes, index + 1, size - index);
+        System.arraycopy(labels, index, tmplabels, index + 1, size - index);
+        nodes = tmpnodes;
+        labels = tmplabels;
       } else {
-
-        if (size == nodes.length) {
-          tmp = new TrieNode[size + 2];
-
-          for (int j = index - 1; j >= 0; j--) {
-            tmp[j] = nodes[j];
-          }
-
-        } else {
-          tmp = nodes;
-        }
-
-        for (int j = size; j > index; j--) {
-          tmp[j] = nodes[j - 1];
-        }
-        tmp[index] = node;
-
+        System.arraycopy(nodes, index, nodes, index + 1, size - index);
+        System.arraycopy(labels, index, labels, index + 1, size - index);
       }
-      nodes = tmp;
+      nodes[index] = node;
+      labels[index] = node.getKey().getKeyUnit(0);
       size++;
     }
 
@@ -223,16 +320,12 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
     public TrieNode<E> replaceNode(TrieNode<E> newnode) throws TrieException {
       checkLock();
       TrieNode<E> tmp;
+      // an internal node is replaced when a path compressed label is split or
+      // merged, the new nodes take over its children.
       if (count == 0) {
-        if (!nodes[0].children().isEmpty()) {
-          throw new IllegalStateException("Insertion Node state changed");
-        }
         tmp = nodes[0];
         nodes[0] = newnode;
       } else {
-        if (!nodes[count - 1].children().isEmpty()) {
-          throw new IllegalStateException("Insertion Node state changed");
-        }
         tmp = nodes[count - 1];
         nodes[count - 1] = newnode;
       }
@@ -245,6 +338,15 @@ class InMemoryTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
       unlocker(readOnlyLock, READLOCK);
       locker(writeOnlyLock, "writeOnlyLock");
       writable = true;
+      if (removed) {
+        throw new TrieRestartException("Node removed by a concurrent operation");
+      }
+    }
+
+    @Override
+    public void markRemoved() throws TrieException {
+      checkLock();
+      removed = true;
     }
 
     @Override
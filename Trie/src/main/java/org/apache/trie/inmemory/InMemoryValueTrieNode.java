@@ -0,0 +1,57 @@
+package org.apache.trie.inmemory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+import org.apache.trie.base.ValueTrieNode;
+
+/**
+ * The TrieNode for the InMemoryTrieMap. The leaf of a key is created with an
+ * empty holder for its value, the other nodes have no holder.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class InMemoryValueTrieNode<E extends TrieKey<E>> extends InMemoryTrieNode<E>
+    implements ValueTrieNode<E> {
+
+  private volatile AtomicReference<Object> holder;
+
+  InMemoryValueTrieNode(Type atype, E ele, LockingMode mode) {
+    super(atype, ele, mode);
+    holder = createHolder(ele);
+  }
+
+  InMemoryValueTrieNode(Type atype, E ele, LockingMode mode,
+      List<TrieNode<E>> children) {
+    super(atype, ele, mode, children);
+    holder = createHolder(ele);
+  }
+
+  InMemoryValueTrieNode(Type atype, E ele, TrieNodeList<E> children) {
+    super(atype, ele, children);
+    holder = createHolder(ele);
+  }
+
+  private static <E extends TrieKey<E>> AtomicReference<Object> createHolder(
+      E ele) {
+    if (ele == null || !ele.isEoln(ele.getKeyLength() - 1)) {
+      return null;
+    }
+    return new AtomicReference<Object>();
+  }
+
+  @Override
+  public AtomicReference<Object> getValueHolder() {
+    return holder;
+  }
+
+  @Override
+  public void setValueHolder(AtomicReference<Object> aholder) {
+    holder = aholder;
+  }
+
+}
@@ -0,0 +1,524 @@
+package org.apache.trie.inmemory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.datatypes.StringKeyFactory;
+import org.apache.trie.inmemory.TrieMetrics.Operation;
+
+/**
+ * Drives a mix of operations on a Trie from several threads for a duration,
+ * and reports their throughput, latency percentiles and errors, as text and
+ * as CSV. It is a soak test of the whole Trie under a production-like load,
+ * which can run for hours, where the JMH benchmarks measure single operations.
+ * <p>
+ * The keys are the lines of a corpus file. A fraction of them is added before
+ * the run, then each thread picks an operation by the weights of the mix and a
+ * key at random. findPrefix searches the first characters of a key. The
+ * operations of the warm-up are not reported. A line is reported for each
+ * operation at every report interval, and the totals at the end:
+ * </p>
+ *
+ * <pre>
+ * java -cp trie.jar org.apache.trie.inmemory.LoadDriver --keys words.txt
+ *     --mix contains=80,findPrefix=5,add=10,remove=5 --threads 16
+ *     --warmup 5m --duration 4h --interval 1m --csv soak.csv
+ * </pre>
+ */
+public final class LoadDriver {
+
+  private static final String USAGE = "Usage: LoadDriver --keys <file>"
+      + " [--mix contains=80,findPrefix=5,add=10,remove=5] [--threads n]"
+      + " [--warmup 30s] [--duration 5m] [--interval 10s] [--csv <file>]"
+      + " [--trie radix|in_memory|art|off_heap|sharded]"
+      + " [--locking read_write_lock|copy_on_write|optimistic]"
+      + " [--preload 0.5] [--prefix-length 3]";
+  private static final String CSV_HEADER = "phase,elapsed_s,operation,count,"
+      + "errors,ops_per_s,mean_us,p50_us,p99_us,p999_us,max_us";
+  private static final Operation[] OPERATIONS = Operation.values();
+
+  /**
+   * The Tries which can be driven, on {@link StringKey}s.
+   */
+  public enum TrieType {
+    RADIX, IN_MEMORY, ART, OFF_HEAP, SHARDED;
+
+    Trie<StringKey> create(final LockingMode mode) {
+      switch (this) {
+      case IN_MEMORY:
+        return new InMemoryTrie<StringKey>(mode);
+      case ART:
+        return new ArtTrie<StringKey>();
+      case OFF_HEAP:
+        return new OffHeapTrie<StringKey>(new StringKeyFactory());
+      case SHARDED:
+        return new ShardedTrie<StringKey>(new Supplier<Trie<StringKey>>() {
+          @Override
+          public Trie<StringKey> get() {
+            return new RadixTrie<StringKey>(mode);
+          }
+        });
+      default:
+        return new RadixTrie<StringKey>(mode);
+      }
+    }
+  }
+
+  /**
+   * The settings of a run, parsed from the command line.
+   */
+  public static final class Options {
+    private File keys;
+    private final Map<Operation, Integer> mix =
+        new EnumMap<Operation, Integer>(Operation.class);
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long warmupMillis = 30000;
+    private long durationMillis = 300000;
+    private long intervalMillis = 10000;
+    private File csv;
+    private TrieType trieType = TrieType.RADIX;
+    private LockingMode lockingMode = LockingMode.READ_WRITE_LOCK;
+    private double preload = 0.5;
+    private int prefixLength = 3;
+
+    public Options() {
+      mix.put(Operation.CONTAINS, 80);
+      mix.put(Operation.FIND_PREFIX, 5);
+      mix.put(Operation.ADD_ELEMENT, 10);
+      mix.put(Operation.REMOVE_ELEMENT, 5);
+    }
+
+    /**
+     * Parses the command line options, see {@link LoadDriver#main(String[])}.
+     *
+     * @param args
+     *          The options and their values.
+     * @return The options.
+     * @throws IllegalArgumentException
+     *           If an option is unknown, misses its value or has an invalid
+     *           value.
+     */
+    public static Options parse(String... args) {
+      Options options = new Options();
+      for (int i = 0; i < args.length; i += 2) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing value of " + args[i]);
+        }
+        String value = args[i + 1];
+        if ("--keys".equals(args[i])) {
+          options.keys = new File(value);
+        } else if ("--mix".equals(args[i])) {
+          options.setMix(value);
+        } else if ("--threads".equals(args[i])) {
+          options.threads = Integer.parseInt(value);
+        } else if ("--warmup".equals(args[i])) {
+          options.warmupMillis = parseMillis(value);
+        } else if ("--duration".equals(args[i])) {
+          options.durationMillis = parseMillis(value);
+        } else if ("--interval".equals(args[i])) {
+          options.intervalMillis = parseMillis(value);
+        } else if ("--csv".equals(args[i])) {
+          options.csv = new File(value);
+        } else if ("--trie".equals(args[i])) {
+          options.trieType = TrieType.valueOf(value.toUpperCase(Locale.ROOT));
+        } else if ("--locking".equals(args[i])) {
+          options.lockingMode = LockingMode.valueOf(value
+              .toUpperCase(Locale.ROOT));
+        } else if ("--preload".equals(args[i])) {
+          options.preload = Double.parseDouble(value);
+        } else if ("--prefix-length".equals(args[i])) {
+          options.prefixLength = Integer.parseInt(value);
+        } else {
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+      if (options.keys == null) {
+        throw new IllegalArgumentException("Missing --keys");
+      }
+      if (options.threads < 1 || options.durationMillis <= 0
+          || options.warmupMillis < 0 || options.intervalMillis <= 0
+          || options.preload < 0 || options.preload > 1
+          || options.prefixLength < 0) {
+        throw new IllegalArgumentException("Invalid value in "
+            + String.join(" ", args));
+      }
+      return options;
+    }
+
+    /**
+     * Parses the weights of the operations, like
+     * <code>contains=80,findPrefix=5,add=10,remove=5</code>. The operations
+     * which are not given have no weight.
+     */
+    private void setMix(String value) {
+      mix.clear();
+      int total = 0;
+      for (String entry : value.split(",")) {
+        int equals = entry.indexOf('=');
+        if (equals < 0) {
+          throw new IllegalArgumentException("Invalid mix entry " + entry);
+        }
+        int weight = Integer.parseInt(entry.substring(equals + 1).trim());
+        if (weight < 0) {
+          throw new IllegalArgumentException("Invalid mix entry " + entry);
+        }
+        mix.put(parseOperation(entry.substring(0, equals).trim()), weight);
+        total += weight;
+      }
+      if (total <= 0) {
+        throw new IllegalArgumentException("Empty mix " + value);
+      }
+    }
+
+    private static Operation parseOperation(String name) {
+      String operation = name.toUpperCase(Locale.ROOT).replace("_", "");
+      if ("ADD".equals(operation) || "ADDELEMENT".equals(operation)) {
+        return Operation.ADD_ELEMENT;
+      } else if ("REMOVE".equals(operation)
+          || "REMOVEELEMENT".equals(operation)) {
+        return Operation.REMOVE_ELEMENT;
+      } else if ("CONTAINS".equals(operation)) {
+        return Operation.CONTAINS;
+      } else if ("FINDPREFIX".equals(operation)
+          || "PREFIX".equals(operation)) {
+        return Operation.FIND_PREFIX;
+      }
+      throw new IllegalArgumentException("Unknown operation " + name);
+    }
+
+    /**
+     * Parses a duration with the unit ms, s, m or h, the seconds by default.
+     */
+    static long parseMillis(String value) {
+      String duration = value.trim().toLowerCase(Locale.ROOT);
+      long unit = 1000;
+      if (duration.endsWith("ms")) {
+        unit = 1;
+        duration = duration.substring(0, duration.length() - 2);
+      } else if (duration.endsWith("s")) {
+        duration = duration.substring(0, duration.length() - 1);
+      } else if (duration.endsWith("m")) {
+        unit = 60000;
+        duration = duration.substring(0, duration.length() - 1);
+      } else if (duration.endsWith("h")) {
+        unit = 3600000;
+        duration = duration.substring(0, duration.length() - 1);
+      }
+      return Long.parseLong(duration) * unit;
+    }
+  }
+
+  private final Options options;
+  private final Trie<StringKey> trie;
+  private final StringKey[] keys;
+  private final StringKey[] prefixes;
+  /**
+   * The operation of each weight unit of the mix.
+   */
+  private final Operation[] mix;
+  private final AtomicReferenceArray<Exception> firstErrors =
+      new AtomicReferenceArray<Exception>(OPERATIONS.length);
+  /**
+   * The metrics of the whole measurement, and of the current interval, the
+   * warm-up records its operations in metrics which are not reported.
+   */
+  private volatile TrieMetrics total = new TrieMetrics(1);
+  private volatile TrieMetrics interval = total;
+  private volatile boolean running;
+
+  /**
+   * Reads the keys of the corpus and creates the Trie.
+   *
+   * @param aoptions
+   *          The settings of the run.
+   * @throws IOException
+   *           If the corpus cannot be read.
+   */
+  public LoadDriver(Options aoptions) throws IOException {
+    options = aoptions;
+    trie = options.trieType.create(options.lockingMode);
+    List<String> lines = readLines(options.keys);
+    if (lines.isEmpty()) {
+      throw new IllegalArgumentException("No keys in " + options.keys);
+    }
+    keys = new StringKey[lines.size()];
+    prefixes = new StringKey[lines.size()];
+    for (int i = 0; i < keys.length; i++) {
+      String line = lines.get(i);
+      keys[i] = new StringKey(line);
+      prefixes[i] = new StringKey(line.substring(0,
+          Math.min(options.prefixLength, line.length())));
+    }
+    List<Operation> operations = new ArrayList<Operation>();
+    for (Map.Entry<Operation, Integer> entry : options.mix.entrySet()) {
+      for (int i = 0; i < entry.getValue(); i++) {
+        operations.add(entry.getKey());
+      }
+    }
+    mix = operations.toArray(new Operation[operations.size()]);
+  }
+
+  private static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(file), StandardCharsets.UTF_8));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) {
+          lines.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+
+  public Trie<StringKey> getTrie() {
+    return trie;
+  }
+
+  /**
+   * Adds the preloaded keys, runs the warm-up and the measurement, and
+   * reports each interval and the totals.
+   *
+   * @param out
+   *          The stream of the text report.
+   * @param csv
+   *          The writer of the CSV report, or null. It is flushed at each
+   *          interval, so a run which is stopped keeps its intervals.
+   * @return The metrics of the measurement.
+   * @throws TrieException
+   *           If the preloaded keys cannot be added.
+   * @throws IOException
+   *           If the CSV cannot be written.
+   * @throws InterruptedException
+   *           If the thread is interrupted, the workers are stopped.
+   */
+  public TrieMetrics run(PrintStream out, Writer csv) throws TrieException,
+      IOException, InterruptedException {
+    preload();
+    out.println("Driving " + options.trieType + " (" + options.lockingMode
+        + ") with " + keys.length + " keys, " + options.threads
+        + " threads, mix " + options.mix);
+    if (csv != null) {
+      csv.write(CSV_HEADER + "\n");
+    }
+    TrieMetrics warmup = new TrieMetrics(1);
+    total = warmup;
+    interval = warmup;
+    running = true;
+    List<Thread> workers = new ArrayList<Thread>(options.threads);
+    for (int i = 0; i < options.threads; i++) {
+      Thread worker = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          drive();
+        }
+      }, "LoadDriver-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    try {
+      if (options.warmupMillis > 0) {
+        Thread.sleep(options.warmupMillis);
+        out.println("Warm-up: " + count(warmup) + " operations");
+      }
+      TrieMetrics measured = new TrieMetrics(1);
+      TrieMetrics current = new TrieMetrics(1);
+      total = measured;
+      interval = current;
+      long start = System.nanoTime();
+      long end = start + options.durationMillis * 1000000L;
+      long now = start;
+      long next = start;
+      while (now < end) {
+        next = Math.min(end, next + options.intervalMillis * 1000000L);
+        while (now < next) {
+          Thread.sleep((next - now + 999999) / 1000000L);
+          now = System.nanoTime();
+        }
+        TrieMetrics done = current;
+        current = new TrieMetrics(1);
+        interval = current;
+        report("interval", (now - start) / 1e9, done, out, csv);
+      }
+      running = false;
+      for (Thread worker : workers) {
+        worker.join();
+      }
+      report("total", (System.nanoTime() - start) / 1e9, measured, out, csv);
+      for (Operation operation : OPERATIONS) {
+        Exception error = firstErrors.get(operation.ordinal());
+        if (error != null) {
+          out.println("First " + operation + " error: " + error);
+        }
+      }
+      return measured;
+    } finally {
+      running = false;
+    }
+  }
+
+  /**
+   * Adds a random fraction of the keys, in a single addAll.
+   */
+  private void preload() throws TrieException {
+    List<StringKey> shuffled = new ArrayList<StringKey>(keys.length);
+    Collections.addAll(shuffled, keys);
+    Collections.shuffle(shuffled, new Random(keys.length));
+    trie.addAll(shuffled.subList(0,
+        (int) Math.round(options.preload * keys.length)));
+  }
+
+  /**
+   * The loop of a worker thread, until the run ends.
+   */
+  private void drive() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (running) {
+      Operation operation = mix[random.nextInt(mix.length)];
+      int index = random.nextInt(keys.length);
+      long start = System.nanoTime();
+      try {
+        switch (operation) {
+        case ADD_ELEMENT:
+          trie.addElement(keys[index]);
+          break;
+        case REMOVE_ELEMENT:
+          trie.removeElement(keys[index]);
+          break;
+        case FIND_PREFIX:
+          trie.findPrefix(prefixes[index]);
+          break;
+        default:
+          trie.contains(keys[index]);
+          break;
+        }
+        long nanos = System.nanoTime() - start;
+        TrieMetrics metrics = total;
+        TrieMetrics current = interval;
+        metrics.record(operation, nanos);
+        if (current != metrics) {
+          current.record(operation, nanos);
+        }
+      } catch (Exception e) {
+        firstErrors.compareAndSet(operation.ordinal(), null, e);
+        TrieMetrics metrics = total;
+        TrieMetrics current = interval;
+        metrics.recordError(operation);
+        if (current != metrics) {
+          current.recordError(operation);
+        }
+      }
+    }
+  }
+
+  private static long count(TrieMetrics metrics) {
+    long count = 0;
+    for (Operation operation : OPERATIONS) {
+      count += metrics.getStats(operation).getCount();
+    }
+    return count;
+  }
+
+  /**
+   * Writes a line of each operation of the mix.
+   */
+  private void report(String phase, double elapsed, TrieMetrics metrics,
+      PrintStream out, Writer csv) throws IOException {
+    out.println(String.format(Locale.ROOT, "%s %.1fs", phase, elapsed));
+    for (Operation operation : OPERATIONS) {
+      if (!options.mix.containsKey(operation)) {
+        continue;
+      }
+      OperationStats stats = metrics.getStats(operation);
+      HistogramSnapshot latency = stats.getLatency();
+      out.println(String.format(Locale.ROOT, "  %-14s %10d ops %12.0f ops/s"
+          + " %6d errors  p50 %9.1fus  p99 %9.1fus  p999 %9.1fus",
+          operation, stats.getCount(), stats.getThroughput(),
+          stats.getErrors(), latency.getP50() / 1e3, latency.getP99() / 1e3,
+          latency.getP999() / 1e3));
+      if (csv != null) {
+        csv.write(String.format(Locale.ROOT,
+            "%s,%.3f,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f\n", phase,
+            elapsed, operation, stats.getCount(), stats.getErrors(),
+            stats.getThroughput(), latency.getMean() / 1e3,
+            latency.getP50() / 1e3, latency.getP99() / 1e3,
+            latency.getP999() / 1e3, latency.getMax() / 1e3));
+      }
+    }
+    out.flush();
+    if (csv != null) {
+      csv.flush();
+    }
+  }
+
+  /**
+   * Runs the load driver, the options are:
+   * <ul>
+   * <li>--keys: the corpus file, one key per line in UTF-8, required.</li>
+   * <li>--mix: the weights of contains, findPrefix, add and remove.</li>
+   * <li>--threads: the number of threads, the processors by default.</li>
+   * <li>--warmup, --duration and --interval: durations like 500ms, 30s, 10m
+   * or 4h, the seconds without a unit.</li>
+   * <li>--csv: the file of the CSV report.</li>
+   * <li>--trie and --locking: the Trie and its {@link LockingMode}.</li>
+   * <li>--preload: the fraction of the keys added before the run.</li>
+   * <li>--prefix-length: the length of the prefixes of findPrefix.</li>
+   * </ul>
+   * The exit status is 1 if an operation failed, 2 if the options are
+   * invalid.
+   */
+  public static void main(String[] args) throws Exception {
+    Options options;
+    try {
+      options = Options.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    Writer csv = null;
+    if (options.csv != null) {
+      csv = new OutputStreamWriter(new FileOutputStream(options.csv),
+          StandardCharsets.UTF_8);
+    }
+    long errors = 0;
+    try {
+      TrieMetrics metrics = new LoadDriver(options).run(System.out, csv);
+      for (Operation operation : OPERATIONS) {
+        errors += metrics.getStats(operation).getErrors();
+      }
+    } finally {
+      if (csv != null) {
+        csv.close();
+      }
+    }
+    System.exit((errors == 0) ? 0 : 1);
+  }
+}
@@ -0,0 +1,327 @@
+package org.apache.trie.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * Profiles the locks of the nodes of the Tries in
+ * {@link LockingMode#READ_WRITE_LOCK}. While a profiler is started, the lock
+ * acquisitions are counted, the waits for a lock held by another thread are
+ * recorded in histograms, and the profiler keeps the waits for the lock of
+ * each node list which was waited for, so {@link #hottest(AbstractTrie, int)}
+ * finds the most contended nodes. The locks only read a volatile field when no
+ * profiler is started.
+ * <p>
+ * Independently of the profiler, a wait for a lock is a {@link LockWaitEvent}
+ * of the Flight Recorder, which records the waits longer than its threshold
+ * when it is enabled.
+ * </p>
+ */
+public final class LockProfiler {
+
+  /**
+   * The started profiler, which the node lists update.
+   */
+  private static volatile LockProfiler active;
+  private static final boolean JFR = isJfrAvailable();
+
+  private final LongAdder readAcquisitions = new LongAdder();
+  private final LongAdder writeAcquisitions = new LongAdder();
+  private final Histogram readWaits = new Histogram();
+  private final Histogram writeWaits = new Histogram();
+  /**
+   * The waits for the lock of each node list, the lists removed from the Trie
+   * are dropped by the garbage collector.
+   */
+  private final Map<InMemoryTrieNodeList<?>, Contention> contentions =
+      new WeakHashMap<InMemoryTrieNodeList<?>, Contention>();
+
+  private LockProfiler() {
+  }
+
+  private static boolean isJfrAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Starts a new profiler for the locks of all the Tries, it replaces the
+   * started one.
+   *
+   * @return The started profiler.
+   */
+  public static LockProfiler start() {
+    LockProfiler profiler = new LockProfiler();
+    active = profiler;
+    return profiler;
+  }
+
+  /**
+   * Stops the started profiler, its statistics can still be read.
+   */
+  public static void stop() {
+    active = null;
+  }
+
+  /**
+   * Returns the started profiler.
+   *
+   * @return The profiler, or null if none is started.
+   */
+  public static LockProfiler getActive() {
+    return active;
+  }
+
+  /**
+   * Records a lock acquired without waiting.
+   */
+  static void acquired(boolean write) {
+    LockProfiler profiler = active;
+    if (profiler != null) {
+      (write ? profiler.writeAcquisitions : profiler.readAcquisitions)
+          .increment();
+    }
+  }
+
+  /**
+   * Starts the event of a wait, it is only called when the lock is held by
+   * another thread.
+   *
+   * @return The event, or null if the Flight Recorder is not available.
+   */
+  static Object beginWait() {
+    return JFR ? LockWaitEvent.startWait() : null;
+  }
+
+  /**
+   * Records a lock acquired after a wait.
+   */
+  static void acquired(InMemoryTrieNodeList<?> list, boolean write,
+      long nanos, Object event) {
+    if (event != null) {
+      LockWaitEvent.commitWait(event, list, write);
+    }
+    LockProfiler profiler = active;
+    if (profiler != null) {
+      if (write) {
+        profiler.writeAcquisitions.increment();
+        profiler.writeWaits.record(nanos);
+      } else {
+        profiler.readAcquisitions.increment();
+        profiler.readWaits.record(nanos);
+      }
+      profiler.getContention(list).record(write, nanos);
+    }
+  }
+
+  /**
+   * Returns the waits for the lock of the list, which are created at its first
+   * wait.
+   */
+  private Contention getContention(InMemoryTrieNodeList<?> list) {
+    synchronized (contentions) {
+      Contention contention = contentions.get(list);
+      if (contention == null) {
+        contention = new Contention();
+        contentions.put(list, contention);
+      }
+      return contention;
+    }
+  }
+
+  /**
+   * Returns the waits for the lock of the list, or null if there were none.
+   */
+  private Contention findContention(InMemoryTrieNodeList<?> list) {
+    synchronized (contentions) {
+      return contentions.get(list);
+    }
+  }
+
+  public long getReadAcquisitions() {
+    return readAcquisitions.sum();
+  }
+
+  public long getWriteAcquisitions() {
+    return writeAcquisitions.sum();
+  }
+
+  /**
+   * Returns the waits for the read locks, in nanoseconds.
+   *
+   * @return The waits of the read locks which were held by another thread.
+   */
+  public HistogramSnapshot getReadWaits() {
+    return readWaits.snapshot();
+  }
+
+  /**
+   * Returns the waits for the write locks, in nanoseconds.
+   *
+   * @return The waits of the write locks which were held by another thread.
+   */
+  public HistogramSnapshot getWriteWaits() {
+    return writeWaits.snapshot();
+  }
+
+  /**
+   * Returns the nodes of the Trie whose locks were waited for the longest
+   * while this profiler was started. All the nodes of the Trie are read with
+   * its read only traversal, the nodes which were removed from the Trie are not
+   * found.
+   *
+   * @param trie
+   *          The Trie.
+   * @param count
+   *          The number of nodes to return.
+   * @return The most contended nodes, in descending order of their wait time.
+   * @throws TrieException
+   */
+  public <E extends TrieKey<E>> List<NodeContention<E>> hottest(
+      AbstractTrie<E> trie, int count) throws TrieException {
+    ContentionCollector<E> collector = new ContentionCollector<E>(this);
+    trie.traverse(collector);
+    List<NodeContention<E>> result = collector.result;
+    Collections.sort(result, new Comparator<NodeContention<E>>() {
+      @Override
+      public int compare(NodeContention<E> first, NodeContention<E> second) {
+        long diff = second.getWaitNanos() - first.getWaitNanos();
+        return (diff == 0) ? 0 : ((diff > 0) ? 1 : -1);
+      }
+    });
+    return result.subList(0, Math.min(count, result.size()));
+  }
+
+  @Override
+  public String toString() {
+    return "read: acquisitions=" + getReadAcquisitions() + " waits ns: "
+        + getReadWaits() + "\nwrite: acquisitions="
+        + getWriteAcquisitions() + " waits ns: " + getWriteWaits();
+  }
+
+  /**
+   * The waits for the lock of a node list while a profiler is started.
+   */
+  private static final class Contention {
+    private final LongAdder readWaits = new LongAdder();
+    private final LongAdder writeWaits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    void record(boolean write, long nanos) {
+      (write ? writeWaits : readWaits).increment();
+      waitNanos.add(nanos);
+    }
+  }
+
+  /**
+   * This traversal adds the contention of each node list. The list of a node
+   * is read from the iterator of its first child, which the traversal passes
+   * to {@link #processNode(TrieIterator)}, so the lists without children are
+   * not read.
+   */
+  private static final class ContentionCollector<E extends TrieKey<E>>
+      implements TraversalOperationWithBacktrack<E> {
+    private final LockProfiler profiler;
+    private final List<NodeContention<E>> result =
+        new ArrayList<NodeContention<E>>();
+    /**
+     * The keys of the internal nodes on the path, null for the root.
+     */
+    private final Stack<E> prefixes = new Stack<E>();
+    /**
+     * True until the list of the current node is read.
+     */
+    private boolean first = true;
+    /**
+     * The key of the visited internal node, null for a leaf.
+     */
+    private E internal;
+
+    ContentionCollector(LockProfiler aprofiler) {
+      profiler = aprofiler;
+      prefixes.push(null);
+    }
+
+    @Override
+    public OperationCodes leafTrieNode(E key) {
+      internal = null;
+      return first ? OperationCodes.TRAVERSE_PROCESS
+          : OperationCodes.TRAVERSE_SIBLING;
+    }
+
+    @Override
+    public OperationCodes startInternalTrieNode(E key) {
+      internal = key;
+      return first ? OperationCodes.TRAVERSE_PROCESS : descend();
+    }
+
+    private OperationCodes descend() {
+      E prefix = prefixes.peek();
+      prefixes.push((prefix == null) ? internal : prefix.concat(internal));
+      first = true;
+      return OperationCodes.TRAVERSE_CHILD;
+    }
+
+    @Override
+    public OperationCodes processNode(TrieIterator<E> iter) {
+      first = false;
+      if (iter instanceof InMemoryTrieNodeList<?>.ReadOnlyIterator) {
+        Contention contention = profiler
+            .findContention(((InMemoryTrieNodeList<?>.ReadOnlyIterator) iter)
+                .getList());
+        if (contention != null) {
+          result.add(new NodeContention<E>(prefixes.peek(),
+              prefixes.size() - 1, contention.readWaits.sum(),
+              contention.writeWaits.sum(), contention.waitNanos.sum()));
+        }
+      }
+      return (internal == null) ? OperationCodes.TRAVERSE_SIBLING : descend();
+    }
+
+    @Override
+    public OperationCodes endInternalTrieNode(E key) {
+      prefixes.pop();
+      first = false;
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+
+    @Override
+    public OperationCodes endTrie() {
+      return OperationCodes.TRAVERSE_END;
+    }
+
+    @Override
+    public OperationCodes noNextNode() {
+      return OperationCodes.TRAVERSE_BACKTRACK;
+    }
+
+    @Override
+    public void lockIteration() throws TrieException {
+      // read only traversal
+    }
+
+    @Override
+    public void unlockIteration() throws TrieException {
+      // read only traversal
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package org.apache.trie.inmemory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Flight Recorder event of a wait for the lock of a node list. Its
+ * duration is the wait, and only the waits longer than the threshold of the
+ * recording are recorded. The class is only loaded by the
+ * {@link LockProfiler} when the Flight Recorder is available.
+ */
+@Name("org.apache.trie.LockWait")
+@Label("Trie Lock Wait")
+@Category("Trie")
+@Description("A wait for the lock of the children of a Trie node")
+@Threshold("1 ms")
+@StackTrace(true)
+final class LockWaitEvent extends Event {
+
+  @Label("Node")
+  @Description("The label of the node whose children are locked")
+  String node;
+
+  @Label("Write")
+  @Description("Whether the write lock was waited for")
+  boolean write;
+
+  static Object startWait() {
+    LockWaitEvent event = new LockWaitEvent();
+    event.begin();
+    return event;
+  }
+
+  static void commitWait(Object waiting, InMemoryTrieNodeList<?> list,
+      boolean write) {
+    LockWaitEvent event = (LockWaitEvent) waiting;
+    event.end();
+    if (event.shouldCommit()) {
+      event.node = list.getLabel();
+      event.write = write;
+      event.commit();
+    }
+  }
+}
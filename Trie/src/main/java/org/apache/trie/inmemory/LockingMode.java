@@ -0,0 +1,25 @@
+package org.apache.trie.inmemory;
+
+/**
+ * Defines how the children of an {@link InMemoryTrie} node are guarded against
+ * concurrent modification.
+ */
+public enum LockingMode {
+  /**
+   * Readers and writers take the read and the write lock of a fair
+   * ReentrantReadWriteLock on every node they visit. This is the default.
+   */
+  READ_WRITE_LOCK,
+  /**
+   * The children are an immutable array published through a volatile
+   * reference. Readers take no locks at all, writers copy the array under a
+   * per node lock. Suited for read mostly workloads.
+   */
+  COPY_ON_WRITE,
+  /**
+   * Readers take no locks but validate their reads against a version stamp
+   * of each node and retry the read when a writer changed the node. Writers
+   * lock only the nodes they modify. Suited for mixed workloads.
+   */
+  OPTIMISTIC;
+}
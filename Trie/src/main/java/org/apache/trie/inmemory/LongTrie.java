@@ -0,0 +1,396 @@
+package org.apache.trie.inmemory;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Provides a Trie of primitive long keys, for the large sets of ids which a
+ * {@link org.apache.trie.base.Trie} of TrieKeys stores with an object per key
+ * and per node. The nodes branch on the 4 bit chunks of the two's complement
+ * value, from the highest chunk, and are stored in arrays of primitives, so a
+ * lookup allocates nothing. The int keys are stored widened to long.
+ * <p>
+ * An internal node holds the chunks above its branching chunk, which are
+ * common to the keys below it, and 16 child slots: the chains of nodes with a
+ * single child are compressed into the node below them. The last chunk of the
+ * keys is a leaf of 16 bits, so the keys 0 to 15 of a block share one leaf.
+ * An internal node takes 72 bytes and a leaf 10 bytes; a dense range of ids
+ * takes about a byte per key, and random longs about 33 bytes per key.
+ * The sign bit of the keys is flipped in the nodes, so the keys are visited
+ * in ascending order. Readers share the Trie, writers are serialized by a
+ * single lock.
+ * </p>
+ */
+public class LongTrie {
+
+  private static final int CHUNK_SHIFT = 16;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final int INITIAL_CHUNK_SIZE = 64;
+  private static final int FANOUT = 16;
+  private static final int ROOT = 0;
+  private static final int TOP_SHIFT = 60;
+
+  /**
+   * The header of an internal node: its prefix, whose low bits are 0, and its
+   * shift divided by 4 in the 4 lowest bits.
+   */
+  private long[][] headers = new long[1][];
+  private int[][] slots = new int[1][];
+  private int innerTop = 0;
+  /**
+   * The first freed internal node, linked by their headers, or 0.
+   */
+  private int innerFree = 0;
+  private long[][] leafPrefixes = new long[1][];
+  private char[][] leafMasks = new char[1][];
+  private int leafTop = 0;
+  /**
+   * The first freed leaf, linked by their prefixes, or -1.
+   */
+  private int leafFree = -1;
+  private long size = 0;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Creates an empty Trie.
+   */
+  public LongTrie() {
+    newInner(0, TOP_SHIFT);
+  }
+
+  private static int nibble(long bits, int shift) {
+    return (int) (bits >>> shift) & (FANOUT - 1);
+  }
+
+  /**
+   * Returns the mask of the bits above the chunk at shift.
+   */
+  private static long highMask(int shift) {
+    return shift == TOP_SHIFT ? 0 : -1L << (shift + 4);
+  }
+
+  private int slot(int node, int nibble) {
+    return slots[node >>> CHUNK_SHIFT][((node & CHUNK_MASK) << 4) | nibble];
+  }
+
+  private void setSlot(int node, int nibble, int ref) {
+    slots[node >>> CHUNK_SHIFT][((node & CHUNK_MASK) << 4) | nibble] = ref;
+  }
+
+  private int shift(int node) {
+    return (int) (headers[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & 15) << 2;
+  }
+
+  private long prefix(int node) {
+    return headers[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & ~15L;
+  }
+
+  private long leafPrefix(int leaf) {
+    return leafPrefixes[leaf >>> CHUNK_SHIFT][leaf & CHUNK_MASK];
+  }
+
+  private char leafMask(int leaf) {
+    return leafMasks[leaf >>> CHUNK_SHIFT][leaf & CHUNK_MASK];
+  }
+
+  private void setLeafMask(int leaf, int mask) {
+    leafMasks[leaf >>> CHUNK_SHIFT][leaf & CHUNK_MASK] = (char) mask;
+  }
+
+  /**
+   * Returns the length of the chunk which holds index, grown to hold it.
+   */
+  private static int capacity(int length, int index) {
+    int offset = index & CHUNK_MASK;
+    if (offset < length) {
+      return length;
+    }
+    int capacity = Math.max(length, INITIAL_CHUNK_SIZE);
+    while (capacity <= offset) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private int newInner(long prefix, int shift) {
+    int node = innerFree;
+    if (node != 0) {
+      innerFree = (int) headers[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+      Arrays.fill(slots[node >>> CHUNK_SHIFT], (node & CHUNK_MASK) << 4,
+          ((node & CHUNK_MASK) + 1) << 4, 0);
+    } else if (innerTop == Integer.MAX_VALUE) {
+      throw new IllegalStateException("LongTrie is full");
+    } else {
+      node = innerTop++;
+      int chunk = node >>> CHUNK_SHIFT;
+      if (chunk == headers.length) {
+        headers = Arrays.copyOf(headers, chunk * 2);
+        slots = Arrays.copyOf(slots, chunk * 2);
+      }
+      int length = headers[chunk] == null ? 0 : headers[chunk].length;
+      int capacity = capacity(length, node);
+      if (capacity != length) {
+        headers[chunk] = length == 0 ? new long[capacity] : Arrays.copyOf(
+            headers[chunk], capacity);
+        slots[chunk] = length == 0 ? new int[capacity << 4] : Arrays.copyOf(
+            slots[chunk], capacity << 4);
+      }
+    }
+    headers[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = prefix | (shift >>> 2);
+    return node;
+  }
+
+  private void freeInner(int node) {
+    headers[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = innerFree;
+    innerFree = node;
+  }
+
+  /**
+   * Creates the leaf of the key and returns its reference in a slot.
+   */
+  private int newLeaf(long bits) {
+    int leaf = leafFree;
+    if (leaf != -1) {
+      leafFree = (int) leafPrefix(leaf);
+    } else if (leafTop == Integer.MAX_VALUE) {
+      throw new IllegalStateException("LongTrie is full");
+    } else {
+      leaf = leafTop++;
+      int chunk = leaf >>> CHUNK_SHIFT;
+      if (chunk == leafPrefixes.length) {
+        leafPrefixes = Arrays.copyOf(leafPrefixes, chunk * 2);
+        leafMasks = Arrays.copyOf(leafMasks, chunk * 2);
+      }
+      long[] prefixes = leafPrefixes[chunk];
+      int length = prefixes == null ? 0 : prefixes.length;
+      int capacity = capacity(length, leaf);
+      if (capacity != length) {
+        leafPrefixes[chunk] = length == 0 ? new long[capacity] : Arrays.copyOf(
+            prefixes, capacity);
+        leafMasks[chunk] = length == 0 ? new char[capacity] : Arrays.copyOf(
+            leafMasks[chunk], capacity);
+      }
+    }
+    leafPrefixes[leaf >>> CHUNK_SHIFT][leaf & CHUNK_MASK] = bits & ~15L;
+    setLeafMask(leaf, 1 << (bits & 15));
+    return ~leaf;
+  }
+
+  private void freeLeaf(int leaf) {
+    leafPrefixes[leaf >>> CHUNK_SHIFT][leaf & CHUNK_MASK] = leafFree;
+    leafFree = leaf;
+  }
+
+  /**
+   * Adds the key to this Trie.
+   *
+   * @param key
+   *          The key to add.
+   * @return true if the key was not in this Trie.
+   */
+  public boolean add(long key) {
+    long bits = key ^ Long.MIN_VALUE;
+    Lock held = lock.writeLock();
+    held.lock();
+    try {
+      int parent = ROOT;
+      while (true) {
+        int nibble = nibble(bits, shift(parent));
+        int ref = slot(parent, nibble);
+        if (ref == 0) {
+          setSlot(parent, nibble, newLeaf(bits));
+          size++;
+          return true;
+        }
+        long prefix;
+        long diff;
+        if (ref < 0) {
+          prefix = leafPrefix(~ref);
+          diff = (bits & ~15L) ^ prefix;
+          if (diff == 0) {
+            int mask = leafMask(~ref);
+            int bit = 1 << (bits & 15);
+            if ((mask & bit) != 0) {
+              return false;
+            }
+            setLeafMask(~ref, mask | bit);
+            size++;
+            return true;
+          }
+        } else {
+          prefix = prefix(ref);
+          diff = (bits & highMask(shift(ref))) ^ prefix;
+          if (diff == 0) {
+            parent = ref;
+            continue;
+          }
+        }
+        // the key leaves the path of ref, they branch at the first chunk
+        // which differs.
+        int shift = (63 - Long.numberOfLeadingZeros(diff)) & ~3;
+        int branch = newInner(bits & highMask(shift), shift);
+        setSlot(branch, nibble(prefix, shift), ref);
+        setSlot(branch, nibble(bits, shift), newLeaf(bits));
+        setSlot(parent, nibble, branch);
+        size++;
+        return true;
+      }
+    } finally {
+      held.unlock();
+    }
+  }
+
+  /**
+   * Returns true if this Trie contains the key.
+   *
+   * @param key
+   *          The key to check.
+   * @return true if the key is found.
+   */
+  public boolean contains(long key) {
+    long bits = key ^ Long.MIN_VALUE;
+    Lock held = lock.readLock();
+    held.lock();
+    try {
+      int node = ROOT;
+      while (true) {
+        int ref = slot(node, nibble(bits, shift(node)));
+        if (ref == 0) {
+          return false;
+        }
+        if (ref < 0) {
+          // the prefixes of the nodes above are checked by the leaf.
+          return leafPrefix(~ref) == (bits & ~15L)
+              && (leafMask(~ref) & (1 << (bits & 15))) != 0;
+        }
+        node = ref;
+      }
+    } finally {
+      held.unlock();
+    }
+  }
+
+  /**
+   * Removes the key from this Trie.
+   *
+   * @param key
+   *          The key to remove.
+   * @return true if the key was in this Trie.
+   */
+  public boolean remove(long key) {
+    long bits = key ^ Long.MIN_VALUE;
+    Lock held = lock.writeLock();
+    held.lock();
+    try {
+      int grandParent = ROOT;
+      int parentNibble = 0;
+      int parent = ROOT;
+      while (true) {
+        int nibble = nibble(bits, shift(parent));
+        int ref = slot(parent, nibble);
+        if (ref == 0) {
+          return false;
+        }
+        if (ref > 0) {
+          grandParent = parent;
+          parentNibble = nibble;
+          parent = ref;
+          continue;
+        }
+        int leaf = ~ref;
+        int bit = 1 << (bits & 15);
+        int mask = leafMask(leaf);
+        if (leafPrefix(leaf) != (bits & ~15L) || (mask & bit) == 0) {
+          return false;
+        }
+        size--;
+        if (mask != bit) {
+          setLeafMask(leaf, mask & ~bit);
+          return true;
+        }
+        freeLeaf(leaf);
+        setSlot(parent, nibble, 0);
+        if (parent != ROOT) {
+          // an internal node keeps two children at least.
+          int child = singleChild(parent);
+          if (child != 0) {
+            setSlot(grandParent, parentNibble, child);
+            freeInner(parent);
+          }
+        }
+        return true;
+      }
+    } finally {
+      held.unlock();
+    }
+  }
+
+  /**
+   * Returns the only child of the node, or 0 if it has several children.
+   */
+  private int singleChild(int node) {
+    int child = 0;
+    for (int i = 0; i < FANOUT; i++) {
+      int ref = slot(node, i);
+      if (ref != 0) {
+        if (child != 0) {
+          return 0;
+        }
+        child = ref;
+      }
+    }
+    return child;
+  }
+
+  /**
+   * Returns the number of keys in this Trie.
+   *
+   * @return The number of keys.
+   */
+  public long size() {
+    Lock held = lock.readLock();
+    held.lock();
+    try {
+      return size;
+    } finally {
+      held.unlock();
+    }
+  }
+
+  /**
+   * Calls the action with each key, in ascending order. The Trie is locked for
+   * reading during the iteration, so the action must not modify it.
+   *
+   * @param action
+   *          The action called with the keys.
+   */
+  public void forEach(LongConsumer action) {
+    Lock held = lock.readLock();
+    held.lock();
+    try {
+      forEach(ROOT, action);
+    } finally {
+      held.unlock();
+    }
+  }
+
+  private void forEach(int node, LongConsumer action) {
+    for (int i = 0; i < FANOUT; i++) {
+      int ref = slot(node, i);
+      if (ref > 0) {
+        forEach(ref, action);
+      } else if (ref < 0) {
+        long prefix = leafPrefix(~ref) ^ Long.MIN_VALUE;
+        int mask = leafMask(~ref);
+        while (mask != 0) {
+          int low = Integer.numberOfTrailingZeros(mask);
+          action.accept(prefix | low);
+          mask &= mask - 1;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,365 @@
+package org.apache.trie.inmemory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * Provides a read only implementation of Trie over a snapshot file which is
+ * mapped in memory. The contains and findPrefix operations read the nodes
+ * directly from the mapped bytes, so opening a snapshot costs only the
+ * verification of its checksum, and processes mapping the same file share its
+ * pages in the page cache.
+ * <p>
+ * A snapshot is written from any Trie by {@link #write(AbstractTrie, File)}.
+ * It starts with a header of 32 bytes: the magic number, the format version,
+ * the number of keys, the position of the root record, the length of the data
+ * section and its CRC32 checksum. The data section holds the path compressed
+ * node records described in {@link MappedTrieNode}. The keys are stored as 16
+ * bit units and recreated by a {@link TrieKeyFactory}, and a snapshot is
+ * limited to 2 GB.
+ * </p>
+ * <p>
+ * The contains and findPrefix operations compare the keys with the units of
+ * the records in place, the nodes and the keys of the records are only
+ * created by the other traversals. findPrefix creates a key for each key it
+ * returns.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class MappedTrie<E extends TrieKey<E>> extends AbstractTrie<E> {
+
+  /**
+   * The magic number of a snapshot, "TRIE".
+   */
+  static final int MAGIC = 0x54524945;
+  /**
+   * The version of the snapshot format.
+   */
+  static final int VERSION = 1;
+  static final int HEADER_LENGTH = 32;
+
+  private final ByteBuffer data;
+  private final TrieKeyFactory<E> factory;
+  private final int rootPosition;
+  private final int keyCount;
+
+  private MappedTrie(ByteBuffer adata, TrieKeyFactory<E> afactory,
+      int aroot, int akeyCount) {
+    super(new MappedTrieBuilder<E>(adata, afactory, aroot));
+    data = adata;
+    factory = afactory;
+    rootPosition = aroot;
+    keyCount = akeyCount;
+  }
+
+  /**
+   * Writes a snapshot of the keys of the Trie to the file. The Trie must not be
+   * modified during the write.
+   *
+   * @param trie
+   *          The Trie to write.
+   * @param file
+   *          The snapshot file, it is replaced.
+   * @throws TrieException
+   *           If the file cannot be written.
+   */
+  public static <E extends TrieKey<E>> void write(AbstractTrie<E> trie,
+      File file) throws TrieException {
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(0);
+        raf.seek(HEADER_LENGTH);
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new CheckedOutputStream(Channels.newOutputStream(raf.getChannel()),
+                crc), 1 << 16));
+        MappedTrieWriter<E> writer = new MappedTrieWriter<E>(out);
+        trie.traverse(writer);
+        int root = writer.getRootPosition();
+        if (root < 0) {
+          throw new TrieException("Snapshot traversal failed");
+        }
+        out.flush();
+        raf.seek(0);
+        raf.writeInt(MAGIC);
+        raf.writeInt(VERSION);
+        raf.writeInt(writer.getKeyCount());
+        raf.writeInt(root);
+        raf.writeLong(writer.getDataLength());
+        raf.writeLong(crc.getValue());
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      throw new TrieException("Cannot write snapshot " + file, e);
+    }
+  }
+
+  /**
+   * Maps a snapshot file as a read only Trie. The file is rejected if its
+   * header or checksum do not match.
+   *
+   * @param file
+   *          The snapshot file written by {@link #write(AbstractTrie, File)}.
+   * @param factory
+   *          The factory of the keys stored in the snapshot.
+   * @return The mapped Trie.
+   * @throws TrieException
+   *           If the file cannot be read or is not a valid snapshot.
+   */
+  public static <E extends TrieKey<E>> MappedTrie<E> open(File file,
+      TrieKeyFactory<E> factory) throws TrieException {
+    MappedByteBuffer mapped;
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        long size = raf.length();
+        if (size < HEADER_LENGTH) {
+          throw new TrieException(file + " is not a MappedTrie snapshot");
+        }
+        if (size > Integer.MAX_VALUE) {
+          throw new TrieException(file + " exceeds 2 GB");
+        }
+        // the mapping stays valid after the channel is closed.
+        mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      throw new TrieException("Cannot read snapshot " + file, e);
+    }
+    if (mapped.getInt(0) != MAGIC) {
+      throw new TrieException(file + " is not a MappedTrie snapshot");
+    }
+    int version = mapped.getInt(4);
+    if (version != VERSION) {
+      throw new TrieException("Unsupported snapshot version " + version
+          + " in " + file);
+    }
+    int keyCount = mapped.getInt(8);
+    int root = mapped.getInt(12);
+    long length = mapped.getLong(16);
+    if (length != mapped.capacity() - HEADER_LENGTH || root < 0
+        || root >= length) {
+      throw new TrieException("Truncated snapshot " + file);
+    }
+    mapped.position(HEADER_LENGTH);
+    ByteBuffer data = mapped.slice();
+    CRC32 crc = new CRC32();
+    crc.update(data.duplicate());
+    if (crc.getValue() != mapped.getLong(24)) {
+      throw new TrieException("Checksum mismatch in snapshot " + file);
+    }
+    return new MappedTrie<E>(data, factory, root, keyCount);
+  }
+
+  /**
+   * Returns the number of keys in the snapshot.
+   *
+   * @return The number of keys.
+   */
+  public int size() {
+    return keyCount;
+  }
+
+  @Override
+  public boolean contains(E ele) throws TrieException {
+    int record = rootPosition;
+    int offset = 0;
+    while (offset < ele.getKeyLength()) {
+      record = MappedTrieNode.findChild(data, record, ele.getKeyUnit(offset));
+      if (record < 0) {
+        return false;
+      }
+      int length = MappedTrieNode.keyLength(data, record);
+      if (MappedTrieNode.matchLength(data, record, ele, offset) < length) {
+        return false;
+      }
+      offset += length;
+      if (MappedTrieNode.childCount(data, record) == 0) {
+        return offset == ele.getKeyLength();
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the record below which the keys start with the prefix and lists its
+   * keys in the order of the records, which is the descending order of the
+   * children.
+   */
+  @Override
+  protected List<E> findPrefix(E ele, E after, int limit) throws TrieException {
+    // the prefix without its EOLN character.
+    int prefixLength = ele.getKeyLength() - 1;
+    int record = rootPosition;
+    int label = 0;
+    // the index of the prefix where the key of the record starts.
+    int start = 0;
+    int offset = 0;
+    while (offset < prefixLength) {
+      start = offset;
+      label = ele.getKeyUnit(offset);
+      record = MappedTrieNode.findChild(data, record, label);
+      if (record < 0) {
+        return new ArrayList<E>(0);
+      }
+      int length = MappedTrieNode.keyLength(data, record);
+      int match = MappedTrieNode.matchLength(data, record, ele, offset);
+      if (offset + match >= prefixLength) {
+        // the prefix ends within or at the end of the label.
+        break;
+      } else if (match < length) {
+        return new ArrayList<E>(0);
+      }
+      offset += length;
+    }
+    Listing listing = new Listing(ele, start, after, limit);
+    if (limit > 0) {
+      listing.visit(record, label);
+    }
+    return listing.keys;
+  }
+
+  @Override
+  public void addElement(E ele) throws TrieException {
+    throw new UnsupportedOperationException("MappedTrie is read only");
+  }
+
+  @Override
+  public boolean removeElement(E ele) throws TrieException {
+    throw new UnsupportedOperationException("MappedTrie is read only");
+  }
+
+  @Override
+  public void addAll(Collection<E> elements) throws TrieException {
+    throw new UnsupportedOperationException("MappedTrie is read only");
+  }
+
+  @Override
+  public long bulkLoad(Iterator<E> sortedKeys) throws TrieException {
+    throw new UnsupportedOperationException("MappedTrie is read only");
+  }
+
+  @Override
+  public long restore(InputStream in, TrieKeyFactory<E> factory)
+      throws TrieException {
+    throw new UnsupportedOperationException("MappedTrie is read only");
+  }
+
+  /**
+   * Lists the keys below a record. The units of the path to the visited
+   * record are kept in an array, so a key is created only when it is listed.
+   */
+  private final class Listing {
+    private final List<E> keys = new ArrayList<E>();
+    private final int limit;
+    /**
+     * The key after which the listing resumes, while its path is visited.
+     */
+    private E after;
+    private int[] units = new int[64];
+    private int length;
+
+    Listing(E prefix, int offset, E aafter, int alimit) {
+      after = aafter;
+      limit = alimit;
+      for (int i = 0; i < offset; i++) {
+        append(prefix.getKeyUnit(i));
+      }
+    }
+
+    private void append(int unit) {
+      if (length == units.length) {
+        units = Arrays.copyOf(units, 2 * length);
+      }
+      units[length++] = unit;
+    }
+
+    /**
+     * Lists the keys below the record whose first unit is label, and returns
+     * false once limit keys are listed.
+     */
+    boolean visit(int record, int label) {
+      int start = length;
+      int count = MappedTrieNode.keyLength(data, record);
+      for (int i = 0; i < count; i++) {
+        append(MappedTrieNode.keyUnit(data, record, i));
+      }
+      try {
+        if (after != null) {
+          int comp = compareAfter(start, label);
+          if (comp > 0) {
+            return true;
+          } else if (comp < 0) {
+            after = null;
+          }
+        }
+        int children = MappedTrieNode.childCount(data, record);
+        if (children == 0) {
+          if (after != null) {
+            // found by the previous listing.
+            return true;
+          }
+          keys.add(factory.createKey(units, 0, length));
+          return keys.size() < limit;
+        }
+        for (int i = 0; i < children; i++) {
+          if (!visit(MappedTrieNode.childPosition(data, record, i),
+              MappedTrieNode.childLabel(data, record, i))) {
+            return false;
+          }
+        }
+        return true;
+      } finally {
+        length = start;
+      }
+    }
+
+    /**
+     * Compares the units of the path from start with the key after which the
+     * listing resumes, as the traversal of the other Tries. Returns 0 if they are
+     * on the path of the key, 1 if the keys below are greater and -1 if they
+     * are smaller. The unit at start is the label, which is compared as it
+     * was stored, the others are widened by the factory where they differ.
+     */
+    private int compareAfter(int start, int label) {
+      for (int i = start; i < length; i++) {
+        if (i == after.getKeyLength()) {
+          return 1;
+        }
+        int unit = after.getKeyUnit(i);
+        if ((short) unit != (short) units[i]) {
+          int stored = (i == start) ? label : factory.createKey(units, i, 1)
+              .getKeyUnit(0);
+          return (stored > unit) ? 1 : -1;
+        }
+      }
+      return 0;
+    }
+  }
+
+}
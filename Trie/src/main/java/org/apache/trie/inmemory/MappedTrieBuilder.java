@@ -0,0 +1,47 @@
+package org.apache.trie.inmemory;
+
+import java.nio.ByteBuffer;
+
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TrieBuilder for the MappedTrie. It only provides the root of the mapped
+ * snapshot, the nodes of a snapshot cannot be created.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class MappedTrieBuilder<E extends TrieKey<E>> implements TrieBuilder<E> {
+
+  private final ByteBuffer data;
+  private final TrieKeyFactory<E> factory;
+  private final int rootPosition;
+
+  MappedTrieBuilder(ByteBuffer adata, TrieKeyFactory<E> afactory,
+      int aroot) {
+    data = adata;
+    factory = afactory;
+    rootPosition = aroot;
+  }
+
+  @Override
+  public TrieNode<E> createNode(E ele) {
+    throw new UnsupportedOperationException("MappedTrie is read only");
+  }
+
+  @Override
+  public TrieNode<E> createRootNode() {
+    return new MappedTrieNode<E>(data, factory, rootPosition,
+        TrieNode.Type.ROOT_NODE);
+  }
+
+  @Override
+  public TraversalProvider<E> getTraversalProvider() {
+    return new InMemoryTraversalProvider<E>();
+  }
+
+}
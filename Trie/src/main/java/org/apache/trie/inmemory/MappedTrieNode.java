@@ -0,0 +1,250 @@
+package org.apache.trie.inmemory;
+
+import java.nio.ByteBuffer;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+
+/**
+ * The TrieNode for the MappedTrie. The node is a flyweight over a record of
+ * the mapped snapshot and is its own {@link TrieNodeList}.
+ * <p>
+ * A record holds the length of the key, the number of children, the key units
+ * as 16 bit values padded to 4 bytes, the first key unit of each child in
+ * descending order and the positions of the children records. The positions
+ * are relative to the start of the data section. The records are never
+ * modified, so the iterators do not lock.
+ * </p>
+ * <p>
+ * The static methods read the records without creating nodes, they are used
+ * by the searches of {@link MappedTrie}.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class MappedTrieNode<E extends TrieKey<E>> implements TrieNode<E>,
+    TrieNodeList<E> {
+
+  static final int LENGTH = 0;
+  static final int COUNT = 4;
+  static final int UNITS = 8;
+
+  private final ByteBuffer data;
+  private final TrieKeyFactory<E> factory;
+  private final int position;
+  private final Type type;
+  private final int labels;
+  private E key;
+
+  MappedTrieNode(ByteBuffer adata, TrieKeyFactory<E> afactory, int aposition,
+      Type atype) {
+    data = adata;
+    factory = afactory;
+    position = aposition;
+    type = atype;
+    labels = position + labelsOffset(data.getInt(position + LENGTH));
+  }
+
+  /**
+   * Returns the offset of the labels in a record with a key of length units.
+   */
+  static int labelsOffset(int length) {
+    return (UNITS + 2 * length + 3) & ~3;
+  }
+
+  /**
+   * Returns the number of key units of the record at position.
+   */
+  static int keyLength(ByteBuffer data, int position) {
+    return data.getInt(position + LENGTH);
+  }
+
+  /**
+   * Returns the number of children of the record at position.
+   */
+  static int childCount(ByteBuffer data, int position) {
+    return data.getInt(position + COUNT);
+  }
+
+  /**
+   * Returns the key unit at index of the record at position, sign extended
+   * from its 16 bits.
+   */
+  static int keyUnit(ByteBuffer data, int position, int index) {
+    return data.getShort(position + UNITS + 2 * index);
+  }
+
+  /**
+   * Returns the first key unit of the child at index of the record at
+   * position, as it was stored in the Trie.
+   */
+  static int childLabel(ByteBuffer data, int position, int index) {
+    int labels = position + labelsOffset(keyLength(data, position));
+    return data.getInt(labels + 4 * index);
+  }
+
+  /**
+   * Returns the position of the child at index of the record at position.
+   */
+  static int childPosition(ByteBuffer data, int position, int index) {
+    int labels = position + labelsOffset(keyLength(data, position));
+    return data.getInt(labels + 4 * childCount(data, position) + 4 * index);
+  }
+
+  /**
+   * Returns the number of key units of the record at position which match the
+   * units of key from index, the units are compared on 16 bits as they are
+   * stored.
+   */
+  static <E extends TrieKey<E>> int matchLength(ByteBuffer data,
+      int position, E key, int index) {
+    int length = Math.min(keyLength(data, position), key.getKeyLength()
+        - index);
+    int count = 0;
+    while (count < length
+        && (short) key.getKeyUnit(index + count) == keyUnit(data, position,
+            count)) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the position of the child of the record at position whose label
+   * is unit, or -1 if there is none.
+   */
+  static int findChild(ByteBuffer data, int position, int unit) {
+    int labels = position + labelsOffset(keyLength(data, position));
+    int count = childCount(data, position);
+    int index = search(data, labels, count, unit);
+    if (index < count && data.getInt(labels + 4 * index) == unit) {
+      return data.getInt(labels + 4 * count + 4 * index);
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the first of the count labels which is not greater
+   * than unit, as {@link InMemoryTrieNodeList#search(int[], int, int)}.
+   */
+  private static int search(ByteBuffer data, int labels, int count, int unit) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (data.getInt(labels + 4 * mid) > unit) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public TrieNodeList<E> children() {
+    return this;
+  }
+
+  @Override
+  public E getKey() {
+    if (key == null && type != Type.ROOT_NODE) {
+      int length = keyLength(data, position);
+      int[] units = new int[length];
+      for (int i = 0; i < length; i++) {
+        units[i] = keyUnit(data, position, i);
+      }
+      key = factory.createKey(units, 0, length);
+    }
+    return key;
+  }
+
+  @Override
+  public Type getType() {
+    if (type != Type.ROOT_NODE) {
+      return ((isEmpty()) ? Type.LEAF_NODE : Type.INTERNAL_NODE);
+    }
+    return type;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public TrieIterator<E> trieReadOnlyIterator() throws TrieException {
+    return new ReadOnlyIterator();
+  }
+
+  @Override
+  public TrieIterator<E> trieWritableIterator() throws TrieException {
+    throw new UnsupportedOperationException("MappedTrie is read only");
+  }
+
+  @Override
+  public String toString() {
+    if (type == Type.ROOT_NODE) {
+      return "[MappedTrieNode]key=null";
+    } else {
+      return "[MappedTrieNode]" + getKey().toString();
+    }
+  }
+
+  private int size() {
+    return childCount(data, position);
+  }
+
+  private TrieNode<E> child(int index) {
+    int child = data.getInt(labels + 4 * size() + 4 * index);
+    return new MappedTrieNode<E>(data, factory, child, Type.LEAF_NODE);
+  }
+
+  /**
+   * TrieIterator which supports read only semantics.
+   */
+  class ReadOnlyIterator extends AbstractIterator<E> {
+    /**
+     * The index for the iteration operations.
+     */
+    protected int count = 0;
+
+    @Override
+    public boolean hasNext() {
+      return size() > count;
+    }
+
+    @Override
+    public TrieNode<E> next() {
+      return child(count++);
+    }
+
+    @Override
+    public TrieNode<E> previous() {
+      if (count > 0) {
+        return child(count - 1);
+      }
+      return null;
+    }
+
+    @Override
+    public void seek(E akey, int index) throws TrieException {
+      count = search(data, labels, size(), akey.getKeyUnit(index));
+    }
+
+    @Override
+    public void reset() throws TrieException {
+      count = 0;
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      // nothing is locked.
+    }
+  }
+}
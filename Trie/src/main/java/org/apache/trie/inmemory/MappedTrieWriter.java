@@ -0,0 +1,216 @@
+package org.apache.trie.inmemory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+
+/**
+ * This traversal writes the data section of a MappedTrie snapshot. The
+ * records are written after their children, so the position of each child is
+ * known when its parent is written. An internal node with a single child is
+ * merged with it, so the snapshot is path compressed whatever the layout of
+ * the traversed Trie.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class MappedTrieWriter<E extends TrieKey<E>> implements
+    TraversalOperationWithBacktrack<E> {
+
+  private final DataOutputStream out;
+  private final Stack<Level> levels = new Stack<Level>();
+  private Level current = new Level(new int[0]);
+  private long written = 0;
+  private int rootPosition = -1;
+  private int keyCount = 0;
+  private IOException error;
+
+  MappedTrieWriter(DataOutputStream aout) {
+    out = aout;
+  }
+
+  /**
+   * Returns the position of the root record, or -1 if the traversal failed.
+   */
+  int getRootPosition() throws IOException {
+    if (error != null) {
+      throw error;
+    }
+    return rootPosition;
+  }
+
+  int getKeyCount() {
+    return keyCount;
+  }
+
+  long getDataLength() {
+    return written;
+  }
+
+  private static <E extends TrieKey<E>> int[] units(E key) {
+    int[] units = new int[key.getKeyLength()];
+    for (int i = 0; i < units.length; i++) {
+      units[i] = key.getKeyUnit(i);
+    }
+    return units;
+  }
+
+  @Override
+  public OperationCodes leafTrieNode(E key) {
+    if (key.isEoln(key.getKeyLength() - 1)) {
+      // not an internal node whose children were removed.
+      current.children.add(new Record(units(key), null));
+      keyCount++;
+    }
+    return OperationCodes.TRAVERSE_SIBLING;
+  }
+
+  @Override
+  public OperationCodes startInternalTrieNode(E key) {
+    levels.push(current);
+    current = new Level(units(key));
+    return OperationCodes.TRAVERSE_CHILD;
+  }
+
+  @Override
+  public OperationCodes endInternalTrieNode(E key) {
+    if (levels.isEmpty()) {
+      return OperationCodes.TRAVERSE_ERROR;
+    }
+    Level level = current;
+    current = levels.pop();
+    try {
+      Record record = close(level);
+      if (record != null) {
+        current.children.add(record);
+      }
+    } catch (IOException e) {
+      error = e;
+      return OperationCodes.TRAVERSE_END;
+    }
+    return OperationCodes.TRAVERSE_SIBLING;
+  }
+
+  @Override
+  public OperationCodes endTrie() {
+    try {
+      rootPosition = write(new Record(new int[0], writeChildren(current)));
+    } catch (IOException e) {
+      error = e;
+    }
+    return OperationCodes.TRAVERSE_END;
+  }
+
+  /**
+   * Returns the record of the internal node of level, merged with its child if
+   * it has a single one.
+   */
+  private Record close(Level level) throws IOException {
+    if (level.children.isEmpty()) {
+      return null;
+    }
+    if (level.children.size() == 1) {
+      Record child = level.children.get(0);
+      int[] units = new int[level.units.length + child.units.length];
+      System.arraycopy(level.units, 0, units, 0, level.units.length);
+      System.arraycopy(child.units, 0, units, level.units.length,
+          child.units.length);
+      return new Record(units, child.children);
+    }
+    return new Record(level.units, writeChildren(level));
+  }
+
+  private Record[] writeChildren(Level level) throws IOException {
+    Record[] children = level.children.toArray(new Record[level.children
+        .size()]);
+    for (Record child : children) {
+      child.position = write(child);
+    }
+    return children;
+  }
+
+  /**
+   * Writes the record and returns its position.
+   */
+  private int write(Record record) throws IOException {
+    if (written > Integer.MAX_VALUE) {
+      throw new IOException("MappedTrie snapshot exceeds 2 GB");
+    }
+    int position = (int) written;
+    int count = (record.children == null) ? 0 : record.children.length;
+    out.writeInt(record.units.length);
+    out.writeInt(count);
+    for (int unit : record.units) {
+      if (unit < Short.MIN_VALUE || unit > 0xFFFF) {
+        throw new IOException("Key unit " + unit + " does not fit in 16 bits");
+      }
+      out.writeShort(unit);
+    }
+    int labels = MappedTrieNode.labelsOffset(record.units.length);
+    for (int i = MappedTrieNode.UNITS + 2 * record.units.length; i < labels; i++) {
+      out.writeByte(0);
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeInt(record.children[i].units[0]);
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeInt(record.children[i].position);
+    }
+    written += labels + 8 * count;
+    return position;
+  }
+
+  @Override
+  public OperationCodes processNode(TrieIterator<E> iter) {
+    return OperationCodes.TRAVERSE_ERROR;
+  }
+
+  @Override
+  public OperationCodes noNextNode() {
+    return OperationCodes.TRAVERSE_BACKTRACK;
+  }
+
+  @Override
+  public void lockIteration() throws TrieException {
+    // read only traversal
+  }
+
+  @Override
+  public void unlockIteration() throws TrieException {
+    // read only traversal
+  }
+
+  /**
+   * The children collected for an internal node.
+   */
+  private static final class Level {
+    private final int[] units;
+    private final List<Record> children = new ArrayList<Record>();
+
+    Level(int[] aunits) {
+      units = aunits;
+    }
+  }
+
+  /**
+   * A node whose children are written, a leaf has no children.
+   */
+  private static final class Record {
+    private final int[] units;
+    private final Record[] children;
+    private int position;
+
+    Record(int[] aunits, Record[] achildren) {
+      units = aunits;
+      children = achildren;
+    }
+  }
+}
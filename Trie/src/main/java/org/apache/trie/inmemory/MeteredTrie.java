@@ -0,0 +1,142 @@
+package org.apache.trie.inmemory;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.inmemory.TrieMetrics.Operation;
+
+/**
+ * Records the operations of a Trie in {@link TrieMetrics}. An operation adds
+ * to a counter, and a sampled one reads the clock twice and adds to a bucket
+ * of a histogram. The Trie itself is not changed, so the metrics cost nothing
+ * when the Trie is not wrapped. The addElement, contains, findPrefix and
+ * removeElement operations are metered, the other ones are passed to the
+ * Trie.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class MeteredTrie<E extends TrieKey<E>> implements Trie<E> {
+
+  private final Trie<E> trie;
+  private final TrieMetrics metrics;
+
+  public MeteredTrie(Trie<E> atrie) {
+    this(atrie, new TrieMetrics());
+  }
+
+  /**
+   * @param atrie
+   *          The metered Trie.
+   * @param ametrics
+   *          The metrics, they may be shared by several Tries.
+   */
+  public MeteredTrie(Trie<E> atrie, TrieMetrics ametrics) {
+    trie = atrie;
+    metrics = ametrics;
+  }
+
+  public TrieMetrics getMetrics() {
+    return metrics;
+  }
+
+  private long clock(boolean sampled) {
+    return sampled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records an operation which is done, with its latency if it is sampled,
+   * else its error.
+   */
+  private void complete(Operation operation, boolean sampled, long start,
+      boolean done) {
+    if (!done) {
+      metrics.recordError(operation);
+    } else if (sampled) {
+      metrics.record(operation, System.nanoTime() - start);
+    } else {
+      metrics.record(operation);
+    }
+  }
+
+  @Override
+  public void addElement(E ele) throws TrieException {
+    boolean sampled = metrics.sample();
+    long start = clock(sampled);
+    boolean done = false;
+    try {
+      trie.addElement(ele);
+      done = true;
+    } finally {
+      complete(Operation.ADD_ELEMENT, sampled, start, done);
+    }
+  }
+
+  @Override
+  public boolean contains(E ele) throws TrieException {
+    boolean sampled = metrics.sample();
+    long start = clock(sampled);
+    boolean done = false;
+    try {
+      boolean found = trie.contains(ele);
+      done = true;
+      return found;
+    } finally {
+      complete(Operation.CONTAINS, sampled, start, done);
+    }
+  }
+
+  @Override
+  public List<E> findPrefix(E ele) throws TrieException {
+    boolean sampled = metrics.sample();
+    long start = clock(sampled);
+    boolean done = false;
+    try {
+      List<E> result = trie.findPrefix(ele);
+      done = true;
+      metrics.recordPrefixSize(result.size());
+      return result;
+    } finally {
+      complete(Operation.FIND_PREFIX, sampled, start, done);
+    }
+  }
+
+  @Override
+  public boolean removeElement(E ele) throws TrieException {
+    boolean sampled = metrics.sample();
+    long start = clock(sampled);
+    boolean done = false;
+    try {
+      boolean removed = trie.removeElement(ele);
+      done = true;
+      return removed;
+    } finally {
+      complete(Operation.REMOVE_ELEMENT, sampled, start, done);
+    }
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele) {
+    return trie.findPrefixIterator(ele);
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele, int limit) {
+    return trie.findPrefixIterator(ele, limit);
+  }
+
+  @Override
+  public void addAll(Collection<E> elements) throws TrieException {
+    trie.addAll(elements);
+  }
+
+  @Override
+  public BitSet containsAll(Collection<E> elements) throws TrieException {
+    return trie.containsAll(elements);
+  }
+}
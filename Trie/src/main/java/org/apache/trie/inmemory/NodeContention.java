@@ -0,0 +1,70 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TrieKey;
+
+/**
+ * The waits for the lock of a node, found by
+ * {@link LockProfiler#hottest(org.apache.trie.base.impl.AbstractTrie, int)}.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public final class NodeContention<E extends TrieKey<E>> {
+
+  private final E prefix;
+  private final int depth;
+  private final long readWaits;
+  private final long writeWaits;
+  private final long waitNanos;
+
+  NodeContention(E aprefix, int adepth, long areadWaits, long awriteWaits,
+      long awaitNanos) {
+    prefix = aprefix;
+    depth = adepth;
+    readWaits = areadWaits;
+    writeWaits = awriteWaits;
+    waitNanos = awaitNanos;
+  }
+
+  /**
+   * Returns the label of the node and its ancestors.
+   *
+   * @return The prefix of the keys below the node, or null for the root.
+   */
+  public E getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * Returns the number of ancestors of the node.
+   *
+   * @return The depth, 0 for the root.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  public long getReadWaits() {
+    return readWaits;
+  }
+
+  public long getWriteWaits() {
+    return writeWaits;
+  }
+
+  /**
+   * Returns the time the threads waited for the lock of the node.
+   *
+   * @return The sum of the waits, in nanoseconds.
+   */
+  public long getWaitNanos() {
+    return waitNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "depth=" + depth + " prefix=" + ((prefix == null) ? "root" : prefix)
+        + " readWaits=" + readWaits + " writeWaits=" + writeWaits
+        + " waitNanos=" + waitNanos;
+  }
+}
@@ -0,0 +1,249 @@
+package org.apache.trie.inmemory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The allocator of the OffHeapTrie. The memory is reserved in direct
+ * ByteBuffer chunks of up to 1 MB, the blocks are addressed by an int handle
+ * whose high bits are the chunk and low bits the 8 byte word in the chunk. The
+ * handle 0 is never allocated and used as null. The first chunk has 64 KB and
+ * each new chunk twice the size of the previous one up to 1 MB, so a small
+ * Trie does not reserve a whole chunk. A full chunk is never copied, a new one
+ * is added: the allocations under the write lock of the Trie do not pause on
+ * a copy. The end of a chunk which is too small for a block is left unused.
+ * <p>
+ * Freed blocks are kept in free lists per size class and reused by the next
+ * allocation of the same class: one class per word count up to 4 KB, and one
+ * class per power of two above. The link to the next free block is stored in
+ * the first word of the freed block. The chunks are released by
+ * {@link #release()}, or else when they are garbage collected. This class is
+ * not Thread safe.
+ * </p>
+ */
+class OffHeapArena {
+
+  private static final int WORD_SHIFT = 3;
+  private static final int CHUNK_WORD_SHIFT = 17;
+  private static final int CHUNK_WORDS = 1 << CHUNK_WORD_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_WORDS - 1;
+  private static final int MAX_CHUNKS = 1 << (31 - CHUNK_WORD_SHIFT);
+  private static final int SMALL_WORDS = 512;
+  private static final int INITIAL_CHUNK_WORDS = 1 << 13;
+
+  /**
+   * The chunks, or null once they are released.
+   */
+  private ByteBuffer[] chunks = new ByteBuffer[16];
+  private int chunkCount = 0;
+  /**
+   * The next free word and the words of the last chunk.
+   */
+  private int top = 0;
+  private int capacity = 0;
+  private final int[] smallFree = new int[SMALL_WORDS + 1];
+  private final int[] largeFree = new int[32];
+  private long allocatedBytes = 0;
+
+  /**
+   * Returns the number of words of the size class for a block of bytes.
+   */
+  private static int blockWords(int bytes) {
+    int words = (bytes + (1 << WORD_SHIFT) - 1) >>> WORD_SHIFT;
+    if (words <= SMALL_WORDS) {
+      return Math.max(words, 1);
+    }
+    return Integer.highestOneBit(words - 1) << 1;
+  }
+
+  /**
+   * Allocates a block of at least bytes.
+   *
+   * @return the handle of the block.
+   */
+  int allocate(int bytes) {
+    int words = blockWords(bytes);
+    if (words >= CHUNK_WORDS) {
+      throw new IllegalArgumentException("Block too large: " + bytes);
+    }
+    int handle = popFree(words);
+    if (handle == 0) {
+      if (top + words > capacity) {
+        addChunk(words);
+      }
+      handle = ((chunkCount - 1) << CHUNK_WORD_SHIFT) | top;
+      top += words;
+    }
+    allocatedBytes += words << WORD_SHIFT;
+    return handle;
+  }
+
+  /**
+   * Releases the block, bytes is the size it was allocated with.
+   */
+  void free(int handle, int bytes) {
+    int words = blockWords(bytes);
+    allocatedBytes -= words << WORD_SHIFT;
+    if (words <= SMALL_WORDS) {
+      putInt(handle, 0, smallFree[words]);
+      smallFree[words] = handle;
+    } else {
+      int index = Integer.numberOfTrailingZeros(words);
+      putInt(handle, 0, largeFree[index]);
+      largeFree[index] = handle;
+    }
+  }
+
+  private int popFree(int words) {
+    int handle;
+    if (words <= SMALL_WORDS) {
+      handle = smallFree[words];
+      if (handle != 0) {
+        smallFree[words] = getInt(handle, 0);
+      }
+    } else {
+      int index = Integer.numberOfTrailingZeros(words);
+      handle = largeFree[index];
+      if (handle != 0) {
+        largeFree[index] = getInt(handle, 0);
+      }
+    }
+    return handle;
+  }
+
+  /**
+   * Adds a chunk which holds at least a block of words.
+   */
+  private void addChunk(int words) {
+    ByteBuffer[] current = chunks();
+    if (chunkCount == MAX_CHUNKS) {
+      throw new IllegalStateException("OffHeapArena is full");
+    }
+    if (chunkCount == current.length) {
+      chunks = Arrays.copyOf(current, Math.min(MAX_CHUNKS,
+          current.length * 2));
+    }
+    // the word 0 of the first chunk is the null handle.
+    top = (chunkCount == 0) ? 1 : 0;
+    capacity = Math.min(CHUNK_WORDS, INITIAL_CHUNK_WORDS << Math.min(
+        chunkCount, CHUNK_WORD_SHIFT));
+    while (capacity < top + words) {
+      capacity <<= 1;
+    }
+    chunks[chunkCount++] = ByteBuffer.allocateDirect(capacity << WORD_SHIFT);
+  }
+
+  private ByteBuffer[] chunks() {
+    ByteBuffer[] current = chunks;
+    if (current == null) {
+      throw new IllegalStateException("OffHeapTrie is closed");
+    }
+    return current;
+  }
+
+  private ByteBuffer chunk(int handle) {
+    return chunks()[handle >>> CHUNK_WORD_SHIFT];
+  }
+
+  /**
+   * Frees the memory of the chunks now, the arena cannot be used afterwards.
+   * The memory is freed by the Cleaner of each buffer where the runtime lets
+   * it be called, else it is freed when the buffers are garbage collected.
+   */
+  void release() {
+    ByteBuffer[] current = chunks;
+    if (current == null) {
+      return;
+    }
+    chunks = null;
+    for (int i = 0; i < chunkCount; i++) {
+      clean(current[i]);
+    }
+    allocatedBytes = 0;
+  }
+
+  private static void clean(ByteBuffer buffer) {
+    try {
+      // Unsafe.invokeCleaner, since Java 9.
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+          ByteBuffer.class);
+      invokeCleaner.invoke(field.get(null), buffer);
+      return;
+    } catch (ReflectiveOperationException e) {
+      // not available, try the Cleaner of Java 8.
+    } catch (RuntimeException e) {
+      return;
+    }
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (ReflectiveOperationException e) {
+      // left to the garbage collector.
+    } catch (RuntimeException e) {
+      // left to the garbage collector.
+    }
+  }
+
+  private static int position(int handle, int offset) {
+    return ((handle & CHUNK_MASK) << WORD_SHIFT) + offset;
+  }
+
+  int getInt(int handle, int offset) {
+    return chunk(handle).getInt(position(handle, offset));
+  }
+
+  void putInt(int handle, int offset, int value) {
+    chunk(handle).putInt(position(handle, offset), value);
+  }
+
+  short getShort(int handle, int offset) {
+    return chunk(handle).getShort(position(handle, offset));
+  }
+
+  void putShort(int handle, int offset, short value) {
+    chunk(handle).putShort(position(handle, offset), value);
+  }
+
+  /**
+   * Copies the ints from one block to another.
+   */
+  void copyInts(int from, int fromOffset, int to, int toOffset, int count) {
+    if (from == to && fromOffset < toOffset) {
+      for (int i = count - 1; i >= 0; i--) {
+        putInt(to, toOffset + 4 * i, getInt(from, fromOffset + 4 * i));
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        putInt(to, toOffset + 4 * i, getInt(from, fromOffset + 4 * i));
+      }
+    }
+  }
+
+  /**
+   * Returns the bytes of the allocated blocks.
+   */
+  long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Returns the bytes of the reserved chunks.
+   */
+  long getReservedBytes() {
+    ByteBuffer[] current = chunks;
+    long reserved = 0;
+    for (int i = 0; current != null && i < chunkCount; i++) {
+      reserved += current[i].capacity();
+    }
+    return reserved;
+  }
+}
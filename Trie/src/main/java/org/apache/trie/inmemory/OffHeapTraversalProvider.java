@@ -0,0 +1,66 @@
+package org.apache.trie.inmemory;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.TraversalOperation;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TraversalProvider for the OffHeapTrie. It traverses the nodes with the
+ * {@link InMemoryTraversalProvider} while holding the read lock of the Trie for
+ * read only traversals and the write lock for modifying traversals.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class OffHeapTraversalProvider<E extends TrieKey<E>> implements
+    TraversalProvider<E> {
+
+  private final InMemoryTraversalProvider<E> provider = new InMemoryTraversalProvider<E>();
+  private final ReentrantReadWriteLock lock;
+
+  OffHeapTraversalProvider(ReentrantReadWriteLock alock) {
+    lock = alock;
+  }
+
+  private Lock lock(boolean modifiable) throws TrieException {
+    Lock result = modifiable ? lock.writeLock() : lock.readLock();
+    try {
+      result.lockInterruptibly();
+    } catch (InterruptedException e) {
+      throw new TrieException(
+          "InterruptedException in readWriteLock operation", e);
+    }
+    return result;
+  }
+
+  @Override
+  public OperationCodes traverseTrie(TraversalOperation<E> operation,
+      TrieNode<E> node, boolean modifiable) throws TrieException {
+    Lock held = lock(modifiable);
+    try {
+      return provider.traverseTrie(operation, node, modifiable);
+    } finally {
+      held.unlock();
+    }
+  }
+
+  @Override
+  public OperationCodes traverseTrieWithBackTrack(
+      TraversalOperationWithBacktrack<E> operation, TrieNode<E> node,
+      boolean modifiable) throws TrieException {
+    Lock held = lock(modifiable);
+    try {
+      return provider.traverseTrieWithBackTrack(operation, node, modifiable);
+    } finally {
+      held.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,181 @@
+package org.apache.trie.inmemory;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.trie.base.ParallelTraversalOperation;
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * Provides a implementation of Trie which stores its nodes outside of the Java
+ * heap, in direct ByteBuffers. The keys are stored as 16 bit units and
+ * recreated by a {@link TrieKeyFactory} when a node is visited, so the Trie
+ * adds almost nothing to the heap and to the work of the garbage collector.
+ * <p>
+ * A node is an 8 byte header followed by its key units, rounded to 8 bytes,
+ * and an internal node adds a table of 8 bytes per child. With a million
+ * random lower case words of 3 to 12 characters this is about 43 bytes per
+ * key, against about 390 bytes of heap for the {@link InMemoryTrie}. Readers
+ * share the Trie, writers are serialized by a single lock.
+ * </p>
+ * <p>
+ * {@link #close()} frees the memory of the nodes at once, instead of when the
+ * garbage collector finds the buffers unreachable.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class OffHeapTrie<E extends TrieKey<E>> extends AbstractTrie<E>
+    implements Closeable {
+
+  private final OffHeapTrieBuilder<E> builder;
+
+  /**
+   * Creates a Trie which recreates its keys with the factory.
+   *
+   * @param factory
+   *          The factory of the keys stored in this Trie.
+   */
+  public OffHeapTrie(TrieKeyFactory<E> factory) {
+    this(new OffHeapTrieBuilder<E>(factory));
+  }
+
+  private OffHeapTrie(OffHeapTrieBuilder<E> abuilder) {
+    super(abuilder);
+    builder = abuilder;
+  }
+
+  private static Lock lock(Lock lock) throws TrieException {
+    try {
+      lock.lockInterruptibly();
+    } catch (InterruptedException e) {
+      throw new TrieException(
+          "InterruptedException in readWriteLock operation", e);
+    }
+    return lock;
+  }
+
+  /**
+   * Finds the prefix node and traverses it under the same read lock, so the
+   * node is not released in between.
+   */
+  @Override
+  protected List<E> findPrefix(E ele, E after, int limit,
+      TraversalProvider<E> provider) throws TrieException {
+    Lock lock = lock(builder.getLock().readLock());
+    try {
+      return super.findPrefix(ele, after, limit, provider);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Traverses the nodes under the read lock of this thread, which keeps the
+   * writers out while the workers of the pool read the nodes.
+   */
+  @Override
+  public void traverse(ParallelTraversalOperation<E> operation,
+      ForkJoinPool pool) throws TrieException {
+    Lock lock = lock(builder.getLock().readLock());
+    try {
+      super.traverse(operation, pool);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Loads the keys under the write lock, which the nodes require for their
+   * modification.
+   */
+  @Override
+  public long bulkLoad(Iterator<E> sortedKeys) throws TrieException {
+    Lock lock = lock(builder.getLock().writeLock());
+    try {
+      return super.bulkLoad(sortedKeys);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long checkpoint(OutputStream out) throws TrieException {
+    Lock lock = lock(builder.getLock().readLock());
+    try {
+      return super.checkpoint(out);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Restores the keys under the write lock, as {@link #bulkLoad(Iterator)}.
+   */
+  @Override
+  public long restore(InputStream in, TrieKeyFactory<E> factory)
+      throws TrieException {
+    Lock lock = lock(builder.getLock().writeLock());
+    try {
+      return super.restore(in, factory);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void printNodes(PrintStream out) throws TrieException {
+    Lock lock = lock(builder.getLock().readLock());
+    try {
+      super.printNodes(out);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Frees the memory of the nodes, once the operations in progress end. The
+   * operations on this Trie afterwards throw an IllegalStateException.
+   */
+  @Override
+  public void close() {
+    Lock lock = builder.getLock().writeLock();
+    lock.lock();
+    try {
+      builder.getArena().release();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the bytes allocated for the nodes of this Trie.
+   *
+   * @return The allocated bytes.
+   */
+  public long getAllocatedBytes() {
+    return builder.getArena().getAllocatedBytes();
+  }
+
+  /**
+   * Returns the bytes reserved for this Trie, which includes the free space
+   * of the reserved chunks.
+   *
+   * @return The reserved bytes.
+   */
+  public long getReservedBytes() {
+    return builder.getArena().getReservedBytes();
+  }
+
+}
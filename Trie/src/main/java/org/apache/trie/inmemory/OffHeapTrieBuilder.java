@@ -0,0 +1,62 @@
+package org.apache.trie.inmemory;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TrieBuilder for the OffHeapTrie. It stores the nodes in an
+ * {@link OffHeapArena} and guards the whole Trie with a single read write
+ * lock, which the {@link OffHeapTraversalProvider} holds for each traversal.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class OffHeapTrieBuilder<E extends TrieKey<E>> implements TrieBuilder<E> {
+
+  private final OffHeapArena arena = new OffHeapArena();
+  private final TrieKeyFactory<E> factory;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  OffHeapTrieBuilder(TrieKeyFactory<E> afactory) {
+    factory = afactory;
+  }
+
+  @Override
+  public TrieNode<E> createNode(E ele) {
+    return new OffHeapTrieNode<E>(this, OffHeapTrieNode.allocate(arena, ele),
+        TrieNode.Type.LEAF_NODE, ele);
+  }
+
+  @Override
+  public TrieNode<E> createRootNode() {
+    return new OffHeapTrieNode<E>(this, OffHeapTrieNode.allocate(arena,
+        (E) null), TrieNode.Type.ROOT_NODE, null);
+  }
+
+  @Override
+  public TraversalProvider<E> getTraversalProvider() {
+    return new OffHeapTraversalProvider<E>(lock);
+  }
+
+  OffHeapArena getArena() {
+    return arena;
+  }
+
+  TrieKeyFactory<E> getFactory() {
+    return factory;
+  }
+
+  ReentrantReadWriteLock getLock() {
+    return lock;
+  }
+
+  boolean isWriteLockedByCurrentThread() {
+    return lock.isWriteLockedByCurrentThread();
+  }
+
+}
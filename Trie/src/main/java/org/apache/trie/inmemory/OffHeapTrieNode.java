@@ -0,0 +1,370 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+
+/**
+ * The TrieNode for the OffHeapTrie. The node is a flyweight over a record in
+ * the {@link OffHeapArena} and is its own {@link TrieNodeList}, it is created
+ * whenever a node is returned by an iterator.
+ * <p>
+ * A node record holds the length of the key, the handle of the child table and
+ * the key units as 16 bit values. The child table holds its size and capacity,
+ * the handles of the children in descending order and the first key unit of
+ * each child in a parallel array, which is binary searched like the labels of
+ * the {@link InMemoryTrieNodeList}. A leaf has no child table. The records are
+ * only accessed while the lock of the {@link OffHeapTrieBuilder} is held, so
+ * the iterators do not lock.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class OffHeapTrieNode<E extends TrieKey<E>> implements TrieNode<E>,
+    TrieNodeList<E> {
+
+  private static final int LENGTH = 0;
+  private static final int TABLE = 4;
+  private static final int UNITS = 8;
+
+  private static final int SIZE = 0;
+  private static final int CAPACITY = 4;
+  private static final int HANDLES = 8;
+  private static final int INITIAL_CAPACITY = 2;
+
+  private final OffHeapTrieBuilder<E> builder;
+  private final OffHeapArena arena;
+  private final int handle;
+  private final Type type;
+  /**
+   * The key decoded by {@link #getKey()}.
+   */
+  private E key;
+
+  OffHeapTrieNode(OffHeapTrieBuilder<E> abuilder, int ahandle, Type atype,
+      E akey) {
+    builder = abuilder;
+    arena = abuilder.getArena();
+    handle = ahandle;
+    type = atype;
+    key = akey;
+  }
+
+  /**
+   * Stores the key in a new node record.
+   *
+   * @return the handle of the record.
+   */
+  static <E extends TrieKey<E>> int allocate(OffHeapArena arena, E ele) {
+    int length = (ele == null) ? 0 : ele.getKeyLength();
+    int record = arena.allocate(UNITS + 2 * length);
+    arena.putInt(record, LENGTH, length);
+    arena.putInt(record, TABLE, 0);
+    for (int i = 0; i < length; i++) {
+      int unit = ele.getKeyUnit(i);
+      if (unit < Short.MIN_VALUE || unit > 0xFFFF) {
+        arena.free(record, UNITS + 2 * length);
+        throw new IllegalArgumentException("Key unit " + unit
+            + " does not fit in 16 bits");
+      }
+      arena.putShort(record, UNITS + 2 * i, (short) unit);
+    }
+    return record;
+  }
+
+  /**
+   * Releases the record and the records of all its descendants.
+   */
+  static void free(OffHeapArena arena, int record) {
+    int table = arena.getInt(record, TABLE);
+    if (table != 0) {
+      int size = arena.getInt(table, SIZE);
+      for (int i = 0; i < size; i++) {
+        free(arena, arena.getInt(table, HANDLES + 4 * i));
+      }
+      arena.free(table, tableBytes(arena.getInt(table, CAPACITY)));
+    }
+    arena.free(record, UNITS + 2 * arena.getInt(record, LENGTH));
+  }
+
+  private static int tableBytes(int capacity) {
+    return HANDLES + 8 * capacity;
+  }
+
+  int getHandle() {
+    return handle;
+  }
+
+  @Override
+  public TrieNodeList<E> children() {
+    return this;
+  }
+
+  @Override
+  public E getKey() {
+    if (key == null && type != Type.ROOT_NODE) {
+      int length = arena.getInt(handle, LENGTH);
+      int[] units = new int[length];
+      for (int i = 0; i < length; i++) {
+        units[i] = arena.getShort(handle, UNITS + 2 * i);
+      }
+      key = builder.getFactory().createKey(units, 0, length);
+    }
+    return key;
+  }
+
+  @Override
+  public Type getType() {
+    if (type != Type.ROOT_NODE) {
+      return ((isEmpty()) ? Type.LEAF_NODE : Type.INTERNAL_NODE);
+    }
+    return type;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return arena.getInt(handle, TABLE) == 0;
+  }
+
+  @Override
+  public TrieIterator<E> trieReadOnlyIterator() throws TrieException {
+    return new ReadOnlyIterator();
+  }
+
+  @Override
+  public TrieIterator<E> trieWritableIterator() throws TrieException {
+    return new WritableIterator();
+  }
+
+  @Override
+  public String toString() {
+    if (type == Type.ROOT_NODE) {
+      return "[OffHeapTrieNode]key=null";
+    } else {
+      return "[OffHeapTrieNode]" + getKey().toString();
+    }
+  }
+
+  private int table() {
+    return arena.getInt(handle, TABLE);
+  }
+
+  private int size() {
+    int table = table();
+    return (table == 0) ? 0 : arena.getInt(table, SIZE);
+  }
+
+  private TrieNode<E> child(int index) {
+    int child = arena.getInt(table(), HANDLES + 4 * index);
+    return new OffHeapTrieNode<E>(builder, child, Type.LEAF_NODE, null);
+  }
+
+  /**
+   * Returns the position of the first child whose label is not greater than
+   * unit, as {@link InMemoryTrieNodeList#search(int[], int, int)}.
+   */
+  private int search(int unit) {
+    int table = table();
+    if (table == 0) {
+      return 0;
+    }
+    int labels = HANDLES + 4 * arena.getInt(table, CAPACITY);
+    int low = 0;
+    int high = arena.getInt(table, SIZE);
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (arena.getInt(table, labels + 4 * mid) > unit) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * TrieIterator which supports read only semantics.
+   */
+  class ReadOnlyIterator extends AbstractIterator<E> {
+    /**
+     * The index for the iteration operations.
+     */
+    protected int count = 0;
+
+    @Override
+    public boolean hasNext() {
+      return size() > count;
+    }
+
+    @Override
+    public TrieNode<E> next() {
+      return child(count++);
+    }
+
+    @Override
+    public TrieNode<E> previous() {
+      if (count > 0) {
+        return child(count - 1);
+      }
+      return null;
+    }
+
+    @Override
+    public void seek(E akey, int index) throws TrieException {
+      count = search(akey.getKeyUnit(index));
+    }
+
+    @Override
+    public void reset() throws TrieException {
+      count = 0;
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      // the builder lock is released by the traversal provider.
+    }
+  }
+
+  /**
+   * TrieIterator which supports read and write semantics. The modifications
+   * are only allowed after lockExclusive(), which requires the write lock of
+   * the builder.
+   */
+  class WritableIterator extends ReadOnlyIterator {
+    private boolean writable = false;
+
+    private void checkLock() {
+      if (!writable) {
+        throw new IllegalStateException("Write Lock missing");
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int handleOf(TrieNode<E> node) {
+      return ((OffHeapTrieNode<E>) node).getHandle();
+    }
+
+    private void insertAt(int index, TrieNode<E> node) {
+      int table = table();
+      int size = 0;
+      int capacity = 0;
+      if (table != 0) {
+        size = arena.getInt(table, SIZE);
+        capacity = arena.getInt(table, CAPACITY);
+      }
+      int label = node.getKey().getKeyUnit(0);
+      if (size == capacity) {
+        // grow geometrically, the handles and labels share the capacity.
+        int newcapacity = Math.max(INITIAL_CAPACITY, capacity * 2);
+        int newtable = arena.allocate(tableBytes(newcapacity));
+        arena.putInt(newtable, CAPACITY, newcapacity);
+        if (table != 0) {
+          int labels = HANDLES + 4 * capacity;
+          int newlabels = HANDLES + 4 * newcapacity;
+          arena.copyInts(table, HANDLES, newtable, HANDLES, index);
+          arena.copyInts(table, HANDLES + 4 * index, newtable, HANDLES + 4
+              * (index + 1), size - index);
+          arena.copyInts(table, labels, newtable, newlabels, index);
+          arena.copyInts(table, labels + 4 * index, newtable, newlabels + 4
+              * (index + 1), size - index);
+          arena.free(table, tableBytes(capacity));
+        }
+        table = newtable;
+        capacity = newcapacity;
+        arena.putInt(handle, TABLE, table);
+      } else {
+        int labels = HANDLES + 4 * capacity;
+        arena.copyInts(table, HANDLES + 4 * index, table, HANDLES + 4
+            * (index + 1), size - index);
+        arena.copyInts(table, labels + 4 * index, table, labels + 4
+            * (index + 1), size - index);
+      }
+      arena.putInt(table, HANDLES + 4 * index, handleOf(node));
+      arena.putInt(table, HANDLES + 4 * capacity + 4 * index, label);
+      arena.putInt(table, SIZE, size + 1);
+    }
+
+    @Override
+    public void insert(TrieNode<E> node) throws TrieException {
+      checkLock();
+      insertAt(count - 1, node);
+    }
+
+    @Override
+    public void insertAtEnd(TrieNode<E> node) throws TrieException {
+      checkLock();
+      insertAt(size(), node);
+    }
+
+    @Override
+    public void removeNode() throws TrieException {
+      checkLock();
+      int size = size();
+      if (size == 0 || count == 0) {
+        throw new IllegalArgumentException(
+            "Cannot remove from empty list or before first element");
+      }
+      int index = count - 1;
+      int table = table();
+      int capacity = arena.getInt(table, CAPACITY);
+      free(arena, arena.getInt(table, HANDLES + 4 * index));
+      if (size == 1) {
+        // a node without children has no table.
+        arena.free(table, tableBytes(capacity));
+        arena.putInt(handle, TABLE, 0);
+        return;
+      }
+      int labels = HANDLES + 4 * capacity;
+      arena.copyInts(table, HANDLES + 4 * (index + 1), table, HANDLES + 4
+          * index, size - 1 - index);
+      arena.copyInts(table, labels + 4 * (index + 1), table, labels + 4
+          * index, size - 1 - index);
+      arena.putInt(table, SIZE, size - 1);
+    }
+
+    /**
+     * Replaces the previous node and releases its records. The returned node
+     * only provides its key.
+     */
+    @Override
+    public TrieNode<E> replaceNode(TrieNode<E> newnode) throws TrieException {
+      checkLock();
+      int index = Math.max(count - 1, 0);
+      int table = table();
+      int old = arena.getInt(table, HANDLES + 4 * index);
+      TrieNode<E> tmp = child(index);
+      E oldkey = tmp.getKey();
+      arena.putInt(table, HANDLES + 4 * index, handleOf(newnode));
+      arena.putInt(table, HANDLES + 4 * arena.getInt(table, CAPACITY) + 4
+          * index, newnode.getKey().getKeyUnit(0));
+      free(arena, old);
+      return new OffHeapTrieNode<E>(builder, 0, Type.LEAF_NODE, oldkey);
+    }
+
+    @Override
+    public void lockExclusive() throws TrieException {
+      if (!builder.isWriteLockedByCurrentThread()) {
+        throw new IllegalStateException("Write Lock missing");
+      }
+      writable = true;
+    }
+
+    @Override
+    public void markRemoved() throws TrieException {
+      // the nodes of the OffHeapTrie are not merged.
+    }
+
+    @Override
+    public void unlockExclusive() throws TrieException {
+      writable = false;
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      unlockExclusive();
+    }
+  }
+}
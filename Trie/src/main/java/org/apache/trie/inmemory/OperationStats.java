@@ -0,0 +1,64 @@
+package org.apache.trie.inmemory;
+
+/**
+ * The statistics of an operation of a {@link MeteredTrie} since the metrics
+ * were reset. The getters make it an open type of {@link TrieMetricsMXBean}.
+ */
+public final class OperationStats {
+
+  private final long count;
+  private final long errors;
+  private final double throughput;
+  private final HistogramSnapshot latency;
+
+  OperationStats(long acount, long aerrors, HistogramSnapshot alatency,
+      long intervalNanos) {
+    count = acount;
+    errors = aerrors;
+    latency = alatency;
+    throughput = (intervalNanos <= 0) ? 0 : acount * 1e9 / intervalNanos;
+  }
+
+  /**
+   * Returns the number of operations which completed.
+   *
+   * @return The number of operations.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the number of operations which threw an exception, they are not
+   * counted in the latencies.
+   *
+   * @return The number of failed operations.
+   */
+  public long getErrors() {
+    return errors;
+  }
+
+  /**
+   * Returns the completed operations per second.
+   *
+   * @return The throughput.
+   */
+  public double getThroughput() {
+    return throughput;
+  }
+
+  /**
+   * Returns the latencies of the sampled operations, in nanoseconds.
+   *
+   * @return The latencies.
+   */
+  public HistogramSnapshot getLatency() {
+    return latency;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + count + " errors=" + errors + " ops/s=" + Math.round(throughput) + " ns: "
+        + latency;
+  }
+}
@@ -0,0 +1,388 @@
+package org.apache.trie.inmemory;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+import org.apache.trie.base.TrieRestartException;
+
+/**
+ * The TrieNodeList for the {@link LockingMode#OPTIMISTIC} mode of the
+ * InMemoryTrie. The children are kept as in {@link InMemoryTrieNodeList}, but
+ * they are guarded by a StampedLock.
+ * <p>
+ * The iterators read the children without locking. Every read is validated
+ * against the version stamp of the list. When a writer modified the list in
+ * the meantime, the read is restarted on the new version, continuing after the
+ * label of the last returned child. As the labels of the children are unique
+ * the iteration neither skips nor repeats a child. A writable iterator locks
+ * the list only in {@link TrieIterator#lockExclusive()} and then works on the
+ * children directly.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class OptimisticTrieNodeList<E extends TrieKey<E>> implements TrieNodeList<E> {
+
+  private static final int INITIAL_CAPACITY = 2;
+
+  @SuppressWarnings("unchecked")
+  private TrieNode nodes[] = new TrieNode[0];
+  private int labels[] = new int[0];
+  private int size = 0;
+  private final StampedLock lock = new StampedLock();
+  /**
+   * Set when the node of this list was removed from the Trie.
+   */
+  private boolean removed = false;
+  private final InMemoryTrieNode<E> parent;
+
+  OptimisticTrieNodeList(InMemoryTrieNode<E> aparentNode) {
+    parent = aparentNode;
+  }
+
+  /**
+   * Sets the children of a new list, in descending order, before the list is
+   * reachable from the Trie. It does not lock.
+   */
+  @SuppressWarnings("unchecked")
+  void load(List<TrieNode<E>> children) {
+    size = children.size();
+    nodes = children.toArray(new TrieNode[size]);
+    labels = new int[size];
+    for (int i = 0; i < size; i++) {
+      labels[i] = nodes[i].getKey().getKeyUnit(0);
+    }
+  }
+
+  @Override
+  public TrieIterator<E> trieReadOnlyIterator() throws TrieException {
+    return new ReadOnlyIterator();
+  }
+
+  @Override
+  public TrieIterator<E> trieWritableIterator() throws TrieException {
+    return new WritableIterator();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    long stamp = lock.tryOptimisticRead();
+    int current = size;
+    while (stamp != 0L && !lock.validate(stamp)) {
+      stamp = lock.tryOptimisticRead();
+      current = size;
+    }
+    // while a writer holds the lock the size is read as by the
+    // InMemoryTrieNodeList.
+    return current == 0;
+  }
+
+  @Override
+  public String toString() {
+    return "OptimisticTrieNodeList [node=" + parent + "]";
+  }
+
+  /**
+   * Returns a stamp for an optimistic read, waiting while a writer holds the
+   * lock.
+   */
+  private long optimisticRead() {
+    long stamp = lock.tryOptimisticRead();
+    while (stamp == 0L) {
+      Thread.yield();
+      stamp = lock.tryOptimisticRead();
+    }
+    return stamp;
+  }
+
+  /**
+   * TrieIterator which validates every read against the version stamp of the
+   * list.
+   */
+  class ReadOnlyIterator extends AbstractIterator<E> {
+    /**
+     * The version of the list the position is valid for.
+     */
+    protected long stamp;
+    /**
+     * The index for the iteration operations.
+     */
+    protected int count = 0;
+    /**
+     * The next returned node has the greatest label not greater than bound.
+     */
+    private int bound = Integer.MAX_VALUE;
+    private TrieNode<E> pending;
+    private TrieNode<E> last;
+    /**
+     * Is count valid for the version of stamp.
+     */
+    private boolean positioned = true;
+
+    ReadOnlyIterator() {
+      stamp = optimisticRead();
+    }
+
+    /**
+     * Continues the iteration on the current version of the list.
+     */
+    private void restart() {
+      stamp = optimisticRead();
+      positioned = false;
+    }
+
+    /**
+     * Continues the iteration after the specified node, which is returned by
+     * previous().
+     */
+    protected void restartAfter(TrieNode<E> node) {
+      pending = null;
+      last = node;
+      bound = (node == null) ? Integer.MAX_VALUE : node.getKey()
+          .getKeyUnit(0) - 1;
+      restart();
+    }
+
+    /**
+     * Reads the next child into pending.
+     */
+    @SuppressWarnings("unchecked")
+    private void fetch() {
+      while (true) {
+        TrieNode<E> node = null;
+        int label = 0;
+        try {
+          int[] currentLabels = labels;
+          TrieNode[] currentNodes = nodes;
+          int currentSize = size;
+          if (!positioned) {
+            count = InMemoryTrieNodeList.search(currentLabels, currentSize,
+                bound);
+          }
+          if (count < currentSize) {
+            node = currentNodes[count];
+            label = currentLabels[count];
+          }
+        } catch (ArrayIndexOutOfBoundsException e) {
+          // inconsistent read, rejected by the validation.
+          node = null;
+        }
+        if (lock.validate(stamp)) {
+          positioned = true;
+          if (node != null) {
+            pending = node;
+            bound = label - 1;
+            count++;
+          }
+          return;
+        }
+        restart();
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (pending == null) {
+        fetch();
+      }
+      return pending != null;
+    }
+
+    @Override
+    public TrieNode<E> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = pending;
+      pending = null;
+      return last;
+    }
+
+    @Override
+    public TrieNode<E> previous() {
+      return last;
+    }
+
+    @Override
+    public void seek(E key, int index) throws TrieException {
+      pending = null;
+      bound = key.getKeyUnit(index);
+      restart();
+    }
+
+    @Override
+    public void reset() throws TrieException {
+      restartAfter(null);
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      // nothing is locked.
+    }
+  }
+
+  /**
+   * TrieIterator which supports read and write semantics. The modifications
+   * are only allowed between lockExclusive() and unlockExclusive(), when the
+   * children are accessed directly.
+   */
+  class WritableIterator extends ReadOnlyIterator {
+    private boolean writable = false;
+
+    private void checkLock() {
+      if (!writable) {
+        throw new IllegalStateException("Write Lock missing");
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (writable) {
+        return size > count;
+      }
+      return super.hasNext();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public TrieNode<E> next() {
+      if (writable) {
+        return nodes[count++];
+      }
+      return super.next();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public TrieNode<E> previous() {
+      if (writable) {
+        if (count > 0) {
+          return nodes[count - 1];
+        }
+        return null;
+      }
+      return super.previous();
+    }
+
+    @Override
+    public void seek(E key, int index) throws TrieException {
+      if (writable) {
+        count = InMemoryTrieNodeList.search(labels, size,
+            key.getKeyUnit(index));
+      } else {
+        super.seek(key, index);
+      }
+    }
+
+    @Override
+    public void reset() throws TrieException {
+      if (writable) {
+        count = 0;
+      } else {
+        super.reset();
+      }
+    }
+
+    @Override
+    public void insert(TrieNode<E> node) throws TrieException {
+      checkLock();
+      insertNode(node, count - 1);
+    }
+
+    @Override
+    public void insertAtEnd(TrieNode<E> node) throws TrieException {
+      checkLock();
+      insertNode(node, size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertNode(TrieNode<E> node, int index) {
+      if (size == nodes.length) {
+        int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+        TrieNode[] tmpnodes = new TrieNode[capacity];
+        int[] tmplabels = new int[capacity];
+        System.arraycopy(nodes, 0, tmpnodes, 0, index);
+        System.arraycopy(labels, 0, tmplabels, 0, index);
+        System.arraycopy(nodes, index, tmpnodes, index + 1, size - index);
+        System.arraycopy(labels, index, tmplabels, index + 1, size - index);
+        nodes = tmpnodes;
+        labels = tmplabels;
+      } else {
+        System.arraycopy(nodes, index, nodes, index + 1, size - index);
+        System.arraycopy(labels, index, labels, index + 1, size - index);
+      }
+      nodes[index] = node;
+      labels[index] = node.getKey().getKeyUnit(0);
+      size++;
+    }
+
+    @Override
+    public void removeNode() throws TrieException {
+      checkLock();
+      if (size == 0 || count == 0) {
+        throw new IllegalArgumentException(
+            "Cannot remove from empty list or before first element");
+      }
+      int index = count - 1;
+      System.arraycopy(nodes, index + 1, nodes, index, size - 1 - index);
+      System.arraycopy(labels, index + 1, labels, index, size - 1 - index);
+      nodes[size - 1] = null;
+      size--;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public TrieNode<E> replaceNode(TrieNode<E> newnode) throws TrieException {
+      checkLock();
+      int index = Math.max(count - 1, 0);
+      TrieNode<E> tmp = nodes[index];
+      nodes[index] = newnode;
+      return tmp;
+    }
+
+    @Override
+    public void lockExclusive() throws TrieException {
+      try {
+        stamp = lock.writeLockInterruptibly();
+      } catch (InterruptedException e) {
+        throw new TrieException("InterruptedException in lock operation", e);
+      }
+      writable = true;
+      if (removed) {
+        throw new TrieRestartException("Node removed by a concurrent operation");
+      }
+    }
+
+    @Override
+    public void markRemoved() throws TrieException {
+      checkLock();
+      removed = true;
+    }
+
+    @Override
+    public void unlockExclusive() throws TrieException {
+      if (writable) {
+        // continue optimistically after the previous node.
+        TrieNode<E> node = previous();
+        writable = false;
+        lock.unlockWrite(stamp);
+        restartAfter(node);
+      }
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      if (writable) {
+        writable = false;
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.apache.trie.inmemory;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * The read only Trie of the keys of a PersistentTrie at a point in time. It
+ * presents the immutable nodes of one root, so it is not affected by the
+ * later updates of the PersistentTrie and its readers take no lock.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class PersistentSnapshot<E extends TrieKey<E>> extends AbstractTrie<E> {
+
+  PersistentSnapshot(PersistentTrieBuilder<E> builder,
+      PersistentTrieNode<E> node) {
+    super(builder, node);
+  }
+
+  PersistentTrieNode<E> getRoot() {
+    return (PersistentTrieNode<E>) root;
+  }
+
+  @Override
+  public void addElement(E ele) throws TrieException {
+    throw new UnsupportedOperationException("Snapshot is read only");
+  }
+
+  @Override
+  public void addElement(E ele, long weight) throws TrieException {
+    throw new UnsupportedOperationException("Snapshot is read only");
+  }
+
+  @Override
+  public boolean removeElement(E ele) throws TrieException {
+    throw new UnsupportedOperationException("Snapshot is read only");
+  }
+
+  @Override
+  public void addAll(Collection<E> elements) throws TrieException {
+    throw new UnsupportedOperationException("Snapshot is read only");
+  }
+
+  @Override
+  public long bulkLoad(Iterator<E> sortedKeys) throws TrieException {
+    throw new UnsupportedOperationException("Snapshot is read only");
+  }
+
+  @Override
+  public long restore(InputStream in, TrieKeyFactory<E> factory)
+      throws TrieException {
+    throw new UnsupportedOperationException("Snapshot is read only");
+  }
+
+}
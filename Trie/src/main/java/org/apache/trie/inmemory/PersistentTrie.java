@@ -0,0 +1,135 @@
+package org.apache.trie.inmemory;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * Provides a Trie whose nodes are immutable and shared between its versions.
+ * An update copies the nodes of the path of its key, up to a new root, and
+ * publishes the root with a compare and set; an update which loses the race
+ * with another one is copied again from the new root. The readers never lock:
+ * they read the nodes of the root published when they start.
+ * <p>
+ * {@link #snapshot()} returns the current version as a read only Trie without
+ * copying anything, so a long listing or an export, like
+ * {@link MappedTrie#write(AbstractTrie, java.io.File)}, sees the keys of a
+ * single point in time while the writers go on. The nodes are path compressed like
+ * those of the {@link RadixTrie}. The writers of different keys retry each
+ * other's copies, so this Trie suits the read mostly workloads.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class PersistentTrie<E extends TrieKey<E>> implements Trie<E> {
+
+  private final PersistentTrieBuilder<E> builder;
+  private final AtomicReference<PersistentSnapshot<E>> current;
+
+  public PersistentTrie() {
+    builder = new PersistentTrieBuilder<E>();
+    PersistentTrieNode<E> root = PersistentTrieNode.createRoot();
+    current = new AtomicReference<PersistentSnapshot<E>>(
+        new PersistentSnapshot<E>(builder, root));
+  }
+
+  /**
+   * Returns the keys of this Trie at the time of the call, as a read only
+   * Trie. The snapshot is not affected by the later updates of this Trie.
+   *
+   * @return The snapshot.
+   */
+  public AbstractTrie<E> snapshot() {
+    return current.get();
+  }
+
+  /**
+   * Publishes the root if the current snapshot is still expect.
+   */
+  private boolean publish(PersistentSnapshot<E> expect,
+      PersistentTrieNode<E> node) {
+    return current.compareAndSet(expect, new PersistentSnapshot<E>(builder,
+        node));
+  }
+
+  @Override
+  public void addElement(E ele) throws TrieException {
+    while (true) {
+      PersistentSnapshot<E> snapshot = current.get();
+      PersistentTrieNode<E> node = snapshot.getRoot().insert(ele, 0);
+      if (node == snapshot.getRoot() || publish(snapshot, node)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean removeElement(E ele) throws TrieException {
+    while (true) {
+      PersistentSnapshot<E> snapshot = current.get();
+      PersistentTrieNode<E> node = snapshot.getRoot().remove(ele, 0);
+      if (node == snapshot.getRoot()) {
+        return false;
+      }
+      if (publish(snapshot, node)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Adds the elements with a single new root, so the readers see all of them
+   * or none.
+   */
+  @Override
+  public void addAll(Collection<E> elements) throws TrieException {
+    while (true) {
+      PersistentSnapshot<E> snapshot = current.get();
+      PersistentTrieNode<E> node = snapshot.getRoot();
+      for (E ele : elements) {
+        node = node.insert(ele, 0);
+      }
+      if (node == snapshot.getRoot() || publish(snapshot, node)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean contains(E ele) throws TrieException {
+    return current.get().contains(ele);
+  }
+
+  @Override
+  public BitSet containsAll(Collection<E> elements) throws TrieException {
+    return current.get().containsAll(elements);
+  }
+
+  @Override
+  public List<E> findPrefix(E ele) throws TrieException {
+    return current.get().findPrefix(ele);
+  }
+
+  /**
+   * Iterates over the Elements based on the prefix in the snapshot of the
+   * call, the updates made during the iteration are not returned.
+   */
+  @Override
+  public Iterator<E> findPrefixIterator(E ele) {
+    return current.get().findPrefixIterator(ele);
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele, int limit) {
+    return current.get().findPrefixIterator(ele, limit);
+  }
+
+}
@@ -0,0 +1,33 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TraversalProvider;
+import org.apache.trie.base.TrieBuilder;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TrieBuilder for the snapshots of the PersistentTrie. It creates the
+ * immutable leaves and roots, the other nodes are created by the path copying
+ * of {@link PersistentTrieNode}.
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class PersistentTrieBuilder<E extends TrieKey<E>> implements TrieBuilder<E> {
+
+  @Override
+  public TrieNode<E> createNode(E ele) {
+    return new PersistentTrieNode<E>(ele);
+  }
+
+  @Override
+  public TrieNode<E> createRootNode() {
+    return PersistentTrieNode.createRoot();
+  }
+
+  @Override
+  public TraversalProvider<E> getTraversalProvider() {
+    return new InMemoryTraversalProvider<E>();
+  }
+
+}
@@ -0,0 +1,284 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+
+/**
+ * The immutable TrieNode for the PersistentTrie. The node is its own
+ * {@link TrieNodeList}, its children are in descending order of their first
+ * key unit. The tree is path compressed: an internal node has two children at
+ * least, and the label of a leaf ends with the EOLN.
+ * <p>
+ * A node is never modified once created. An insertion or a removal returns a
+ * new node for each node of the path of the key, which share the other
+ * children with the old ones, so the old root still presents the keys it had.
+ * As nothing is modified, the iterators do not lock.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class PersistentTrieNode<E extends TrieKey<E>> implements TrieNode<E>,
+    TrieNodeList<E> {
+
+  private static final PersistentTrieNode<?>[] NO_CHILDREN = {};
+  private static final int[] NO_UNITS = {};
+
+  private final E key;
+  private final PersistentTrieNode<E>[] children;
+  /**
+   * The first key unit of each child, for the binary search.
+   */
+  private final int[] units;
+
+  @SuppressWarnings("unchecked")
+  PersistentTrieNode(E ele) {
+    this(ele, (PersistentTrieNode<E>[]) NO_CHILDREN, NO_UNITS);
+  }
+
+  private PersistentTrieNode(E ele, PersistentTrieNode<E>[] achildren,
+      int[] aunits) {
+    key = ele;
+    children = achildren;
+    units = aunits;
+  }
+
+  /**
+   * Creates the root of an empty Trie, the root has no key.
+   */
+  static <E extends TrieKey<E>> PersistentTrieNode<E> createRoot() {
+    return new PersistentTrieNode<E>(null);
+  }
+
+  @Override
+  public TrieNodeList<E> children() {
+    return this;
+  }
+
+  @Override
+  public E getKey() {
+    return key;
+  }
+
+  @Override
+  public Type getType() {
+    if (key == null) {
+      return Type.ROOT_NODE;
+    }
+    return (children.length == 0) ? Type.LEAF_NODE : Type.INTERNAL_NODE;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return children.length == 0;
+  }
+
+  @Override
+  public TrieIterator<E> trieReadOnlyIterator() throws TrieException {
+    return new ReadOnlyIterator();
+  }
+
+  @Override
+  public TrieIterator<E> trieWritableIterator() throws TrieException {
+    throw new UnsupportedOperationException(
+        "PersistentTrie nodes are immutable");
+  }
+
+  @Override
+  public String toString() {
+    if (key == null) {
+      return "[PersistentTrieNode]key=null";
+    } else {
+      return "[PersistentTrieNode]" + key.toString();
+    }
+  }
+
+  /**
+   * Returns the position of the first child whose label is not greater than
+   * unit, as {@link InMemoryTrieNodeList#search(int[], int, int)}.
+   */
+  private int search(int unit) {
+    int low = 0;
+    int high = units.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (units[mid] > unit) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the subkey of ele stored in a new leaf, it is only copied when the
+   * leaf is below the root.
+   */
+  private static <E extends TrieKey<E>> E suffix(E ele, int offset) {
+    if (offset == 0) {
+      return ele;
+    }
+    return ele.getKeyFrom(offset);
+  }
+
+  private boolean isLeaf() {
+    return key != null && children.length == 0;
+  }
+
+  /**
+   * Returns the node with the subkey of ele starting at offset added below
+   * this node, or this node if the key is already found.
+   */
+  PersistentTrieNode<E> insert(E ele, int offset) {
+    int index = search(ele.getKeyUnit(offset));
+    if (index == units.length || units[index] != ele.getKeyUnit(offset)) {
+      return copy(index, new PersistentTrieNode<E>(suffix(ele, offset)), 0);
+    }
+    PersistentTrieNode<E> child = children[index];
+    E label = child.key;
+    int length = label.getKeyLength();
+    int match = label.matchLength(ele, offset);
+    PersistentTrieNode<E> replacement;
+    if (match == length) {
+      if (child.isLeaf()) {
+        // the label of a leaf ends with the EOLN, so the key is found.
+        return this;
+      }
+      replacement = child.insert(ele, offset + length);
+      if (replacement == child) {
+        return this;
+      }
+    } else {
+      // split the child at the end of the label shared with the key.
+      PersistentTrieNode<E> lower;
+      if (child.isLeaf()) {
+        lower = new PersistentTrieNode<E>(label.getKeyFrom(match));
+      } else {
+        lower = new PersistentTrieNode<E>(label.getLabel(match, length),
+            child.children, child.units);
+      }
+      replacement = createBranch(label.getLabel(0, match), lower,
+          new PersistentTrieNode<E>(suffix(ele, offset + match)));
+    }
+    return copy(index, replacement, 1);
+  }
+
+  /**
+   * Returns the node with the subkey of ele starting at offset removed below
+   * this node, or this node if the key is not found. An internal node left
+   * with a single child is merged with it.
+   */
+  PersistentTrieNode<E> remove(E ele, int offset) {
+    int index = search(ele.getKeyUnit(offset));
+    if (index == units.length || units[index] != ele.getKeyUnit(offset)) {
+      return this;
+    }
+    PersistentTrieNode<E> child = children[index];
+    E label = child.key;
+    int length = label.getKeyLength();
+    if (label.matchLength(ele, offset) < length) {
+      return this;
+    }
+    if (child.isLeaf()) {
+      if (key != null && children.length == 2) {
+        PersistentTrieNode<E> other = children[1 - index];
+        return new PersistentTrieNode<E>(key.concat(other.key),
+            other.children, other.units);
+      }
+      return copy(index, null, 1);
+    }
+    PersistentTrieNode<E> replacement = child.remove(ele, offset + length);
+    if (replacement == child) {
+      return this;
+    }
+    return copy(index, replacement, 1);
+  }
+
+  /**
+   * Returns a copy of this node where the node replaces the removed children
+   * at index, the node may be null.
+   */
+  @SuppressWarnings("unchecked")
+  private PersistentTrieNode<E> copy(int index, PersistentTrieNode<E> node,
+      int removed) {
+    int size = children.length + ((node == null) ? 0 : 1) - removed;
+    PersistentTrieNode<E>[] newChildren = new PersistentTrieNode[size];
+    int[] newUnits = new int[size];
+    System.arraycopy(children, 0, newChildren, 0, index);
+    System.arraycopy(units, 0, newUnits, 0, index);
+    int tail = index;
+    if (node != null) {
+      newChildren[tail] = node;
+      newUnits[tail] = node.key.getKeyUnit(0);
+      tail++;
+    }
+    System.arraycopy(children, index + removed, newChildren, tail,
+        children.length - index - removed);
+    System.arraycopy(units, index + removed, newUnits, tail, units.length
+        - index - removed);
+    return new PersistentTrieNode<E>(key, newChildren, newUnits);
+  }
+
+  /**
+   * Creates the internal node for label with the two children.
+   */
+  @SuppressWarnings("unchecked")
+  private static <E extends TrieKey<E>> PersistentTrieNode<E> createBranch(
+      E label, PersistentTrieNode<E> first, PersistentTrieNode<E> second) {
+    if (first.key.getKeyUnit(0) < second.key.getKeyUnit(0)) {
+      PersistentTrieNode<E> swap = first;
+      first = second;
+      second = swap;
+    }
+    return new PersistentTrieNode<E>(label, new PersistentTrieNode[] { first,
+        second }, new int[] { first.key.getKeyUnit(0),
+        second.key.getKeyUnit(0) });
+  }
+
+  /**
+   * TrieIterator which supports read only semantics.
+   */
+  class ReadOnlyIterator extends AbstractIterator<E> {
+    /**
+     * The index for the iteration operations.
+     */
+    protected int count = 0;
+
+    @Override
+    public boolean hasNext() {
+      return children.length > count;
+    }
+
+    @Override
+    public TrieNode<E> next() {
+      return children[count++];
+    }
+
+    @Override
+    public TrieNode<E> previous() {
+      if (count > 0) {
+        return children[count - 1];
+      }
+      return null;
+    }
+
+    @Override
+    public void seek(E akey, int index) throws TrieException {
+      count = search(akey.getKeyUnit(index));
+    }
+
+    @Override
+    public void reset() throws TrieException {
+      count = 0;
+    }
+
+    @Override
+    public void finishIteration() throws TrieException {
+      // nothing is locked.
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.impl.AbstractTrie;
+
+/**
+ * Provides a implementation of Trie which is completely in Memory and path
+ * compressed. An internal node stores the whole label shared by its keys, it is
+ * split only where the keys branch and merged with its child when a branch is
+ * removed. Keys with long common prefixes, like URLs or file paths, need a
+ * fraction of the nodes and levels of the {@link InMemoryTrie}.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class RadixTrie<E extends TrieKey<E>> extends AbstractTrie<E> {
+
+  public RadixTrie() {
+    this(LockingMode.READ_WRITE_LOCK);
+  }
+
+  /**
+   * Creates a Trie which guards its nodes as defined by the LockingMode.
+   * 
+   * @param mode
+   *          The LockingMode of the nodes.
+   */
+  public RadixTrie(LockingMode mode) {
+    super(new RadixTrieBuilder<E>(mode));
+  }
+
+  /**
+   * Creates a Trie which guards its nodes as defined by the LockingMode. The
+   * nodes of a weighted Trie store the weights used by
+   * {@link #topK(TrieKey, int)}, at the cost of 8 bytes per node.
+   * 
+   * @param mode
+   *          The LockingMode of the nodes.
+   * @param weighted
+   *          Whether the nodes store weights.
+   */
+  public RadixTrie(LockingMode mode, boolean weighted) {
+    super(new RadixTrieBuilder<E>(mode, weighted));
+  }
+
+}
@@ -0,0 +1,35 @@
+package org.apache.trie.inmemory;
+
+import org.apache.trie.base.PathCompressingTrieBuilder;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+
+/**
+ * The TrieBuilder for the RadixTrie. It creates the same nodes as the
+ * InMemoryTrieBuilder, the internal nodes store multi unit labels.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class RadixTrieBuilder<E extends TrieKey<E>> extends InMemoryTrieBuilder<E>
+    implements PathCompressingTrieBuilder<E> {
+
+  RadixTrieBuilder(LockingMode amode) {
+    super(amode);
+  }
+
+  RadixTrieBuilder(LockingMode amode, boolean aweighted) {
+    super(amode, aweighted);
+  }
+
+  @Override
+  public TrieNode<E> createNode(E ele, TrieNode<E> adopt) {
+    if (weighted) {
+      return new WeightedInMemoryTrieNode<E>(TrieNode.Type.LEAF_NODE, ele,
+          adopt.children());
+    }
+    return new InMemoryTrieNode<E>(TrieNode.Type.LEAF_NODE, ele,
+        adopt.children());
+  }
+
+}
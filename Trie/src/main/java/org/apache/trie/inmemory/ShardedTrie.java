@@ -0,0 +1,304 @@
+package org.apache.trie.inmemory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeys;
+
+/**
+ * Spreads the keys over independent Tries, the shards, by a hash of their
+ * first primitive keys. Each shard has its own root, so the operations on
+ * keys of different shards do not share the lock of a root, which every
+ * operation of a single Trie takes.
+ * <p>
+ * The keys starting with a prefix of the hashed length are all in the shard
+ * of the prefix, so findPrefix of such a prefix reads one shard. A shorter
+ * prefix reads all the shards, and their keys are merged in the order of a
+ * single Trie: the keys are in descending order of their primitive keys.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+public class ShardedTrie<E extends TrieKey<E>> implements Trie<E> {
+
+  public static final int DEFAULT_SHARDS = 64;
+  /**
+   * The number of first primitive keys hashed by default.
+   */
+  public static final int DEFAULT_PREFIX_LENGTH = 1;
+
+  private final List<Trie<E>> shards;
+  private final int prefixLength;
+
+  /**
+   * Creates the {@link #DEFAULT_SHARDS} shards, which are spread by their
+   * first primitive key.
+   *
+   * @see #ShardedTrie(Supplier, int, int)
+   */
+  public ShardedTrie(Supplier<? extends Trie<E>> factory) {
+    this(factory, DEFAULT_SHARDS, DEFAULT_PREFIX_LENGTH);
+  }
+
+  /**
+   * Creates the shards with the factory.
+   *
+   * @param factory
+   *          Creates an empty Trie for each shard.
+   * @param count
+   *          The number of shards.
+   * @param aprefixLength
+   *          The number of first primitive keys which are hashed, the keys
+   *          starting with a longer prefix are all in a single shard.
+   */
+  public ShardedTrie(Supplier<? extends Trie<E>> factory, int count,
+      int aprefixLength) {
+    if (count < 1 || aprefixLength < 1) {
+      throw new IllegalArgumentException("Invalid sharding: " + count
+          + " shards on " + aprefixLength + " primitive keys");
+    }
+    shards = new ArrayList<Trie<E>>(count);
+    for (int i = 0; i < count; i++) {
+      shards.add(factory.get());
+    }
+    prefixLength = aprefixLength;
+  }
+
+  /**
+   * Returns the shard of the key, which starts with its first prefixLength
+   * primitive keys, or is the whole key if it is shorter.
+   */
+  private int shardIndex(E key) {
+    int length = Math.min(prefixLength, key.getKeyLength());
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + key.getKeyUnit(i);
+    }
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) % shards.size();
+  }
+
+  private Trie<E> shard(E key) {
+    return shards.get(shardIndex(key));
+  }
+
+  /**
+   * Tells whether the keys starting with prefix are all in its shard.
+   */
+  private boolean isRouted(E prefix) {
+    int length = prefix.getKeyLength();
+    if (length > 0 && prefix.isEoln(length - 1)) {
+      length--;
+    }
+    return length >= prefixLength;
+  }
+
+  /**
+   * Returns the shards, for the operations which are not part of the Trie
+   * interface, like the checkpoint of each shard.
+   *
+   * @return The shards.
+   */
+  public List<Trie<E>> getShards() {
+    return shards;
+  }
+
+  @Override
+  public void addElement(E ele) throws TrieException {
+    shard(ele).addElement(ele);
+  }
+
+  @Override
+  public boolean contains(E ele) throws TrieException {
+    return shard(ele).contains(ele);
+  }
+
+  @Override
+  public boolean removeElement(E ele) throws TrieException {
+    return shard(ele).removeElement(ele);
+  }
+
+  @Override
+  public List<E> findPrefix(E ele) throws TrieException {
+    if (isRouted(ele)) {
+      return shard(ele).findPrefix(ele);
+    }
+    List<Iterator<E>> results = new ArrayList<Iterator<E>>(shards.size());
+    for (Trie<E> shard : shards) {
+      results.add(shard.findPrefix(ele).iterator());
+    }
+    List<E> result = new ArrayList<E>();
+    Iterator<E> merged = new MergeIterator<E>(results);
+    while (merged.hasNext()) {
+      result.add(merged.next());
+    }
+    return result;
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele) {
+    return findPrefixIterator(ele, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public Iterator<E> findPrefixIterator(E ele, int limit) {
+    if (isRouted(ele)) {
+      return shard(ele).findPrefixIterator(ele, limit);
+    }
+    List<Iterator<E>> results = new ArrayList<Iterator<E>>(shards.size());
+    for (Trie<E> shard : shards) {
+      results.add(shard.findPrefixIterator(ele, limit));
+    }
+    final Iterator<E> merged = new MergeIterator<E>(results);
+    final int max = limit;
+    return new Iterator<E>() {
+      private int count;
+
+      @Override
+      public boolean hasNext() {
+        return count < max && merged.hasNext();
+      }
+
+      @Override
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        count++;
+        return merged.next();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("remove");
+      }
+    };
+  }
+
+  /**
+   * Adds the elements of each shard with a single addAll.
+   */
+  @Override
+  public void addAll(Collection<E> elements) throws TrieException {
+    List<List<E>> groups = group(elements, null);
+    for (int i = 0; i < groups.size(); i++) {
+      if (!groups.get(i).isEmpty()) {
+        shards.get(i).addAll(groups.get(i));
+      }
+    }
+  }
+
+  @Override
+  public BitSet containsAll(Collection<E> elements) throws TrieException {
+    List<List<Integer>> positions = new ArrayList<List<Integer>>();
+    List<List<E>> groups = group(elements, positions);
+    BitSet result = new BitSet(elements.size());
+    for (int i = 0; i < groups.size(); i++) {
+      if (groups.get(i).isEmpty()) {
+        continue;
+      }
+      BitSet found = shards.get(i).containsAll(groups.get(i));
+      for (int j = found.nextSetBit(0); j >= 0; j = found.nextSetBit(j + 1)) {
+        result.set(positions.get(i).get(j));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Splits the elements by shard, keeping their order. The positions of the
+   * elements in the collection are added to positions if it is not null.
+   */
+  private List<List<E>> group(Collection<E> elements,
+      List<List<Integer>> positions) {
+    List<List<E>> groups = new ArrayList<List<E>>(shards.size());
+    for (int i = 0; i < shards.size(); i++) {
+      groups.add(new ArrayList<E>());
+      if (positions != null) {
+        positions.add(new ArrayList<Integer>());
+      }
+    }
+    int position = 0;
+    for (E ele : elements) {
+      int index = shardIndex(ele);
+      groups.get(index).add(ele);
+      if (positions != null) {
+        positions.get(index).add(position);
+      }
+      position++;
+    }
+    return groups;
+  }
+
+  /**
+   * Merges the keys of iterators which are each in the order of a Trie.
+   */
+  private static final class MergeIterator<E extends TrieKey<E>> implements
+      Iterator<E> {
+    private final PriorityQueue<Head<E>> heads;
+
+    MergeIterator(List<Iterator<E>> iterators) {
+      heads = new PriorityQueue<Head<E>>(Math.max(1, iterators.size()),
+          new Comparator<Head<E>>() {
+            @Override
+            public int compare(Head<E> first, Head<E> second) {
+              // the order of a Trie, the descending order of the keys.
+              return TrieKeys.compare(second.key, first.key);
+            }
+          });
+      for (Iterator<E> iter : iterators) {
+        if (iter.hasNext()) {
+          heads.add(new Head<E>(iter));
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !heads.isEmpty();
+    }
+
+    @Override
+    public E next() {
+      Head<E> head = heads.poll();
+      if (head == null) {
+        throw new NoSuchElementException();
+      }
+      E key = head.key;
+      if (head.iter.hasNext()) {
+        head.key = head.iter.next();
+        heads.add(head);
+      }
+      return key;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("remove");
+    }
+  }
+
+  /**
+   * The next key of an iterator.
+   */
+  private static final class Head<E extends TrieKey<E>> {
+    private final Iterator<E> iter;
+    private E key;
+
+    Head(Iterator<E> aiter) {
+      iter = aiter;
+      key = aiter.next();
+    }
+  }
+}
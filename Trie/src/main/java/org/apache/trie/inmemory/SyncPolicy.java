@@ -0,0 +1,25 @@
+package org.apache.trie.inmemory;
+
+/**
+ * Defines when the records of the write-ahead log of a {@link DurableTrie}
+ * reach the disk, before or after its updates return.
+ */
+public enum SyncPolicy {
+  /**
+   * An update returns after its record is written and forced to the disk, so
+   * it survives a power failure. The concurrent updates share each force of
+   * the log. This is the default.
+   */
+  ALWAYS,
+  /**
+   * An update returns after its record is written to the log file, without
+   * forcing it. It survives a crash of the process, but not of the system.
+   */
+  WRITE,
+  /**
+   * An update returns once its record is buffered, the log is written and
+   * forced in the background at a fixed interval. The updates of the last
+   * interval are lost with the process.
+   */
+  INTERVAL;
+}
@@ -0,0 +1,191 @@
+package org.apache.trie.inmemory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records the operations of a {@link MeteredTrie}, and the sizes of the
+ * results of findPrefix. Each operation is counted, and the latency of one
+ * operation in sample period is recorded: reading the clock costs more than
+ * the counters. The statistics are pulled with {@link #getStats(Operation)},
+ * or read as the attributes of the MXBean once it is registered.
+ */
+public class TrieMetrics implements TrieMetricsMXBean {
+
+  /**
+   * The metered operations of the Trie.
+   */
+  public enum Operation {
+    ADD_ELEMENT, CONTAINS, FIND_PREFIX, REMOVE_ELEMENT
+  }
+
+  /**
+   * The sample period of {@link #TrieMetrics()}.
+   */
+  public static final int DEFAULT_SAMPLE_PERIOD = 8;
+  private static final int OPERATIONS = Operation.values().length;
+
+  private final int samplePeriod;
+  private final LongAdder[] counts = new LongAdder[OPERATIONS];
+  private final Histogram[] latencies = new Histogram[OPERATIONS];
+  private final LongAdder[] errors = new LongAdder[OPERATIONS];
+  private final Histogram prefixSizes = new Histogram();
+  private volatile long startNanos = System.nanoTime();
+
+  public TrieMetrics() {
+    this(DEFAULT_SAMPLE_PERIOD);
+  }
+
+  /**
+   * @param asamplePeriod
+   *          The latency of one operation in asamplePeriod is recorded, 1
+   *          records all of them.
+   */
+  public TrieMetrics(int asamplePeriod) {
+    if (asamplePeriod < 1) {
+      throw new IllegalArgumentException("Invalid sample period "
+          + asamplePeriod);
+    }
+    samplePeriod = asamplePeriod;
+    for (int i = 0; i < OPERATIONS; i++) {
+      counts[i] = new LongAdder();
+      latencies[i] = new Histogram();
+      errors[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Tells whether the latency of the next operation of this thread is
+   * recorded.
+   *
+   * @return true for one call in the sample period, at random.
+   */
+  public boolean sample() {
+    return samplePeriod == 1
+        || ThreadLocalRandom.current().nextInt(samplePeriod) == 0;
+  }
+
+  /**
+   * Records an operation which completed.
+   *
+   * @param operation
+   *          The operation.
+   */
+  public void record(Operation operation) {
+    counts[operation.ordinal()].increment();
+  }
+
+  /**
+   * Records an operation which completed and was sampled.
+   *
+   * @param operation
+   *          The operation.
+   * @param nanos
+   *          The latency of the operation.
+   */
+  public void record(Operation operation, long nanos) {
+    counts[operation.ordinal()].increment();
+    latencies[operation.ordinal()].record(nanos);
+  }
+
+  /**
+   * Records an operation which threw an exception.
+   *
+   * @param operation
+   *          The operation.
+   */
+  public void recordError(Operation operation) {
+    errors[operation.ordinal()].increment();
+  }
+
+  /**
+   * Records the number of keys found by a findPrefix.
+   *
+   * @param size
+   *          The size of the result.
+   */
+  public void recordPrefixSize(int size) {
+    prefixSizes.record(size);
+  }
+
+  /**
+   * Returns the statistics of the operation since the last reset.
+   *
+   * @param operation
+   *          The operation.
+   * @return The statistics.
+   */
+  public OperationStats getStats(Operation operation) {
+    int index = operation.ordinal();
+    return new OperationStats(counts[index].sum(), errors[index].sum(),
+        latencies[index].snapshot(), System.nanoTime() - startNanos);
+  }
+
+  @Override
+  public OperationStats getAddElement() {
+    return getStats(Operation.ADD_ELEMENT);
+  }
+
+  @Override
+  public OperationStats getContains() {
+    return getStats(Operation.CONTAINS);
+  }
+
+  @Override
+  public OperationStats getFindPrefix() {
+    return getStats(Operation.FIND_PREFIX);
+  }
+
+  @Override
+  public OperationStats getRemoveElement() {
+    return getStats(Operation.REMOVE_ELEMENT);
+  }
+
+  @Override
+  public HistogramSnapshot getFindPrefixSizes() {
+    return prefixSizes.snapshot();
+  }
+
+  @Override
+  public void reset() {
+    for (int i = 0; i < OPERATIONS; i++) {
+      counts[i].reset();
+      latencies[i].reset();
+      errors[i].reset();
+    }
+    prefixSizes.reset();
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Registers this MXBean in the platform MBean server.
+   *
+   * @param name
+   *          The name of the Trie, the value of the name key of the
+   *          ObjectName.
+   * @return The ObjectName of the MXBean, to unregister it.
+   * @throws JMException
+   *           If the name is invalid or already registered.
+   */
+  public ObjectName register(String name) throws JMException {
+    ObjectName objectName = new ObjectName("org.apache.trie:type=TrieMetrics,"
+        + "name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    return objectName;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (Operation operation : Operation.values()) {
+      result.append(operation).append(": ").append(getStats(operation))
+          .append('\n');
+    }
+    result.append("FIND_PREFIX sizes: ").append(getFindPrefixSizes());
+    return result.toString();
+  }
+}
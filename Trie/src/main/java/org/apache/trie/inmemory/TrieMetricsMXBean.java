@@ -0,0 +1,27 @@
+package org.apache.trie.inmemory;
+
+/**
+ * The management interface of the {@link TrieMetrics}.
+ */
+public interface TrieMetricsMXBean {
+
+  OperationStats getAddElement();
+
+  OperationStats getContains();
+
+  OperationStats getFindPrefix();
+
+  OperationStats getRemoveElement();
+
+  /**
+   * Returns the number of keys found by the findPrefix operations.
+   *
+   * @return The sizes of the results.
+   */
+  HistogramSnapshot getFindPrefixSizes();
+
+  /**
+   * Clears the statistics, the throughput is measured from now on.
+   */
+  void reset();
+}
@@ -0,0 +1,37 @@
+package org.apache.trie.inmemory;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.WeightedTrieNode;
+
+/**
+ * The TrieNode for the weighted ArtTrie. It stores the weight used by topK,
+ * the nodes of the other ArtTries do not pay for it.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class WeightedArtTrieNode<E extends TrieKey<E>> extends ArtTrieNode<E>
+    implements WeightedTrieNode<E> {
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<WeightedArtTrieNode> WEIGHT_UPDATER = AtomicLongFieldUpdater
+      .newUpdater(WeightedArtTrieNode.class, "weight");
+
+  private volatile long weight;
+
+  WeightedArtTrieNode(Type atype, E ele) {
+    super(atype, ele);
+  }
+
+  @Override
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public boolean compareAndSetWeight(long expect, long update) {
+    return WEIGHT_UPDATER.compareAndSet(this, expect, update);
+  }
+}
@@ -0,0 +1,49 @@
+package org.apache.trie.inmemory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.base.TrieNodeList;
+import org.apache.trie.base.WeightedTrieNode;
+
+/**
+ * The TrieNode for the weighted InMemoryTrie and RadixTrie. It stores the
+ * weight used by topK, the nodes of the other Tries do not pay for it.
+ * 
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class WeightedInMemoryTrieNode<E extends TrieKey<E>> extends
+    InMemoryTrieNode<E> implements WeightedTrieNode<E> {
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<WeightedInMemoryTrieNode> WEIGHT_UPDATER = AtomicLongFieldUpdater
+      .newUpdater(WeightedInMemoryTrieNode.class, "weight");
+
+  private volatile long weight;
+
+  WeightedInMemoryTrieNode(Type atype, E ele, LockingMode mode) {
+    super(atype, ele, mode);
+  }
+
+  WeightedInMemoryTrieNode(Type atype, E ele, LockingMode mode,
+      List<TrieNode<E>> children) {
+    super(atype, ele, mode, children);
+  }
+
+  WeightedInMemoryTrieNode(Type atype, E ele, TrieNodeList<E> children) {
+    super(atype, ele, children);
+  }
+
+  @Override
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public boolean compareAndSetWeight(long expect, long update) {
+    return WEIGHT_UPDATER.compareAndSet(this, expect, update);
+  }
+}
@@ -0,0 +1,428 @@
+package org.apache.trie.inmemory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+
+/**
+ * The write-ahead log of a {@link DurableTrie}. The file starts with the magic
+ * number and the format version, followed by a record for each update: the
+ * operation, the number of key units, the units as 16 bit values like in a
+ * {@link MappedTrie} snapshot, and the CRC32 of the record.
+ * <p>
+ * The records are appended to a buffer in memory. A writer which waits for its
+ * record becomes the leader if no write is in progress: it takes the whole
+ * buffer, writes it and forces the file, while the records of the other
+ * writers accumulate for the next leader. A single force thus commits the
+ * records of all the writers which arrived during the previous one. A record
+ * cut by a crash ends the log, it is truncated when the log is opened. The
+ * file is written without a FileChannel, which an interrupted writer would
+ * close.
+ * </p>
+ *
+ * @param <E>
+ *          TrieKey used for this Trie.
+ */
+class WriteAheadLog<E extends TrieKey<E>> {
+
+  /**
+   * The magic number of a log, "TWAL".
+   */
+  static final int MAGIC = 0x5457414c;
+  static final int VERSION = 1;
+  static final int HEADER_LENGTH = 8;
+  static final byte ADD = 1;
+  static final byte REMOVE = 2;
+  private static final int INITIAL_BUFFER = 1 << 16;
+
+  private final File file;
+  private final TrieKeyFactory<E> factory;
+  private final SyncPolicy policy;
+  private final RandomAccessFile raf;
+  private final Object lock = new Object();
+  private byte[] buffer = new byte[INITIAL_BUFFER];
+  private byte[] spare = new byte[INITIAL_BUFFER];
+  private int buffered = 0;
+  /**
+   * The log positions after the last appended, written and forced records.
+   */
+  private long appended;
+  private long written;
+  private long forced;
+  private boolean writing = false;
+  private boolean closing = false;
+  private boolean closed = false;
+  private IOException failure;
+  private final Thread syncer;
+
+  /**
+   * Opens the log, creating it if needed, and adds the keys of its records to
+   * the Trie.
+   */
+  WriteAheadLog(File afile, TrieKeyFactory<E> afactory, SyncPolicy apolicy,
+      long intervalMillis, Trie<E> trie) throws TrieException {
+    file = afile;
+    factory = afactory;
+    policy = apolicy;
+    long end;
+    try {
+      end = replay(trie);
+      raf = new RandomAccessFile(file, "rw");
+      if (end < HEADER_LENGTH) {
+        raf.setLength(0);
+        raf.writeInt(MAGIC);
+        raf.writeInt(VERSION);
+        raf.getFD().sync();
+        end = HEADER_LENGTH;
+      } else if (end < raf.length()) {
+        // the last record was cut by a crash.
+        raf.setLength(end);
+        raf.getFD().sync();
+      }
+      raf.seek(end);
+    } catch (IOException e) {
+      throw new TrieException("Cannot open log " + file, e);
+    }
+    appended = end;
+    written = appended;
+    forced = appended;
+    if (policy == SyncPolicy.INTERVAL) {
+      syncer = new Syncer(intervalMillis);
+      syncer.start();
+    } else {
+      syncer = null;
+    }
+  }
+
+  /**
+   * Adds the keys of the valid records to the Trie, and returns the position
+   * after the last valid record, or 0 if the file has no header.
+   */
+  private long replay(Trie<E> trie) throws IOException, TrieException {
+    if (!file.exists() || file.length() < HEADER_LENGTH) {
+      return 0;
+    }
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(file), INITIAL_BUFFER));
+    try {
+      if (in.readInt() != MAGIC) {
+        throw new TrieException(file + " is not a Trie log");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new TrieException("Unsupported log version " + version + " in "
+            + file);
+      }
+      long end = HEADER_LENGTH;
+      CRC32 crc = new CRC32();
+      int[] units = new int[16];
+      while (true) {
+        int op = in.read();
+        if (op == -1) {
+          return end;
+        }
+        int count;
+        try {
+          count = in.readInt();
+          if ((op != ADD && op != REMOVE) || count < 0
+              || count > file.length()) {
+            return end;
+          }
+          if (units.length < count) {
+            units = new int[Math.max(count, units.length * 2)];
+          }
+          crc.reset();
+          crc.update(op);
+          updateInt(crc, count);
+          for (int i = 0; i < count; i++) {
+            short unit = in.readShort();
+            crc.update(unit >>> 8);
+            crc.update(unit);
+            units[i] = unit;
+          }
+          if (in.readInt() != (int) crc.getValue()) {
+            return end;
+          }
+        } catch (EOFException e) {
+          return end;
+        }
+        E key = factory.createKey(units, 0, count);
+        if (op == ADD) {
+          trie.addElement(key);
+        } else {
+          trie.removeElement(key);
+        }
+        end += recordLength(count);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void updateInt(CRC32 crc, int value) {
+    crc.update(value >>> 24);
+    crc.update(value >>> 16);
+    crc.update(value >>> 8);
+    crc.update(value);
+  }
+
+  private static int recordLength(int count) {
+    return 1 + 4 + 2 * count + 4;
+  }
+
+  /**
+   * Encodes the record of the operation on the key.
+   */
+  static byte[] encode(byte op, TrieKey<?> key) {
+    int count = key.getKeyLength();
+    ByteBuffer record = ByteBuffer.allocate(recordLength(count));
+    record.put(op).putInt(count);
+    for (int i = 0; i < count; i++) {
+      record.putShort((short) key.getKeyUnit(i));
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 0, record.position());
+    record.putInt((int) crc.getValue());
+    return record.array();
+  }
+
+  /**
+   * Appends the encoded record to the buffer.
+   *
+   * @return The position after the record, to wait for.
+   */
+  long append(byte[] record) throws TrieException {
+    synchronized (lock) {
+      check();
+      if (buffered + record.length > buffer.length) {
+        byte[] grown = new byte[Math.max(buffer.length * 2, buffered
+            + record.length)];
+        System.arraycopy(buffer, 0, grown, 0, buffered);
+        buffer = grown;
+      }
+      System.arraycopy(record, 0, buffer, buffered, record.length);
+      buffered += record.length;
+      appended += record.length;
+      return appended;
+    }
+  }
+
+  private void check() throws TrieException {
+    if (failure != null) {
+      throw new TrieException("Log " + file + " failed", failure);
+    }
+    if (closing || closed) {
+      throw new IllegalStateException("Log " + file + " is closed");
+    }
+  }
+
+  /**
+   * Waits until the record ending at position is durable as defined by the
+   * SyncPolicy.
+   */
+  void await(long position) throws TrieException {
+    switch (policy) {
+    case ALWAYS:
+      sync(position, true);
+      break;
+    case WRITE:
+      sync(position, false);
+      break;
+    default:
+      // written by the syncer.
+      break;
+    }
+  }
+
+  /**
+   * Writes the buffer, and forces the file if force is set, until the
+   * position is written or forced. The calling thread either waits for the
+   * current leader or becomes the leader.
+   */
+  private void sync(long position, boolean force) throws TrieException {
+    byte[] batch;
+    int length;
+    long target;
+    synchronized (lock) {
+      while (true) {
+        if (failure != null) {
+          check();
+        }
+        if ((force ? forced : written) >= position) {
+          return;
+        }
+        if (!writing) {
+          break;
+        }
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new TrieException("Interrupted while waiting for the log", e);
+        }
+      }
+      writing = true;
+      batch = buffer;
+      length = buffered;
+      target = appended;
+      buffer = spare;
+      spare = batch;
+      buffered = 0;
+    }
+    IOException error = null;
+    try {
+      raf.write(batch, 0, length);
+      if (force) {
+        raf.getFD().sync();
+      }
+    } catch (IOException e) {
+      error = e;
+    }
+    synchronized (lock) {
+      writing = false;
+      if (error != null) {
+        failure = error;
+      } else {
+        written = target;
+        if (force) {
+          forced = target;
+        }
+      }
+      lock.notifyAll();
+    }
+    if (error != null) {
+      throw new TrieException("Cannot write log " + file, error);
+    }
+  }
+
+  /**
+   * Drops the records, which are all in a checkpoint, and empties the file.
+   * It is called while no record is appended, the waiters of the dropped
+   * records return.
+   */
+  void truncate() throws TrieException {
+    synchronized (lock) {
+      check();
+      while (writing) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new TrieException("Interrupted while waiting for the log", e);
+        }
+      }
+      check();
+      writing = true;
+    }
+    IOException error = null;
+    try {
+      raf.setLength(HEADER_LENGTH);
+      raf.seek(HEADER_LENGTH);
+      raf.getFD().sync();
+    } catch (IOException e) {
+      error = e;
+    }
+    synchronized (lock) {
+      writing = false;
+      if (error != null) {
+        failure = error;
+      } else {
+        // the positions stay increasing for the waiters.
+        buffered = 0;
+        written = appended;
+        forced = appended;
+      }
+      lock.notifyAll();
+    }
+    if (error != null) {
+      throw new TrieException("Cannot truncate log " + file, error);
+    }
+  }
+
+  /**
+   * Forces the buffered records to the disk and closes the file.
+   */
+  void close() throws TrieException {
+    long position;
+    synchronized (lock) {
+      if (closed || closing) {
+        return;
+      }
+      closing = true;
+      position = appended;
+      lock.notifyAll();
+    }
+    if (syncer != null) {
+      try {
+        syncer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      if (failure == null) {
+        sync(position, true);
+      }
+    } finally {
+      synchronized (lock) {
+        closed = true;
+      }
+      try {
+        raf.close();
+      } catch (IOException e) {
+        throw new TrieException("Cannot close log " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Writes and forces the log at a fixed interval for
+   * {@link SyncPolicy#INTERVAL}.
+   */
+  private final class Syncer extends Thread {
+    private final long interval;
+
+    Syncer(long aintervalMillis) {
+      super("WriteAheadLog syncer " + file.getName());
+      setDaemon(true);
+      interval = aintervalMillis;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          long position;
+          synchronized (lock) {
+            long deadline = System.currentTimeMillis() + interval;
+            long wait = interval;
+            while (!closing && wait > 0) {
+              lock.wait(wait);
+              wait = deadline - System.currentTimeMillis();
+            }
+            if (closing) {
+              return;
+            }
+            position = appended;
+          }
+          sync(position, true);
+        }
+      } catch (InterruptedException e) {
+        // stop syncing, close forces the log.
+      } catch (TrieException e) {
+        // the failure is reported to the next update.
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.IntegerKey;
+import org.junit.Test;
+
+/**
+ * Runs the IntegerKey tests on the ArtTrie, and checks a node whose layout
+ * grows and shrinks while it is read. The IntegerKey EOLN is a negative label,
+ * which keeps the node in the sorted layouts.
+ */
+public class ArtIntegerTrieTest extends InMemoryIntegerTrieTest {
+
+  @Override
+  protected AbstractTrie<IntegerKey> createTrie() {
+    return new ArtTrie<IntegerKey>();
+  }
+
+  @Test
+  public void layoutChurnTests() throws Exception {
+    final ArtTrie<IntegerKey> trie = new ArtTrie<IntegerKey>();
+    // the node of 1 keeps the EOLN of 1 and the first digit of 15.
+    trie.addElement(new IntegerKey(1));
+    trie.addElement(new IntegerKey(15));
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicInteger misses = new AtomicInteger();
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        try {
+          while (!done.get()) {
+            if (!trie.contains(new IntegerKey(1))
+                || !trie.contains(new IntegerKey(15))
+                || trie.findPrefix(new IntegerKey(1)).size() < 2) {
+              misses.incrementAndGet();
+            }
+          }
+        } catch (Exception e) {
+          misses.incrementAndGet();
+        }
+      }
+    };
+    reader.start();
+    try {
+      for (int round = 0; round < 50; round++) {
+        // 2 to 11 children, across the Node4 and Node16 layouts.
+        for (int digit = 0; digit < 10; digit++) {
+          trie.addElement(new IntegerKey(10 + digit));
+        }
+        assertEquals(11, trie.findPrefix(new IntegerKey(1)).size());
+        for (int digit = 0; digit < 10; digit += 2) {
+          assertTrue(trie.removeElement(new IntegerKey(10 + digit)));
+        }
+        for (int digit = 1; digit < 10; digit += 2) {
+          if (digit != 5) {
+            assertTrue(trie.removeElement(new IntegerKey(10 + digit)));
+          }
+        }
+        assertEquals(2, trie.findPrefix(new IntegerKey(1)).size());
+      }
+    } finally {
+      done.set(true);
+      reader.join();
+    }
+    assertEquals(0, misses.get());
+    // the shared empty layout of the leaves is not modified.
+    assertFalse(trie.contains(new IntegerKey(150)));
+    assertEquals(1, trie.findPrefix(new IntegerKey(15)).size());
+  }
+}
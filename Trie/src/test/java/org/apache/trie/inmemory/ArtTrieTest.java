@@ -0,0 +1,45 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+import org.junit.Test;
+
+/**
+ * Runs the StringKey tests on the ArtTrie, and checks the layout changes of a
+ * node that grows to 256 children and shrinks again.
+ */
+public class ArtTrieTest extends InMemoryTrieTest {
+
+  @Override
+  protected AbstractTrie<StringKey> createTrie() {
+    return new ArtTrie<StringKey>();
+  }
+
+  @Override
+  protected AbstractTrie<StringKey> createWeightedTrie() {
+    return new ArtTrie<StringKey>(true);
+  }
+
+  @Test
+  public void wideNodeTests() throws Exception {
+    ArtTrie<StringKey> trie = new ArtTrie<StringKey>();
+    // 256 Latin-1 labels below the prefix x, then a label outside the range.
+    for (int i = 1; i < 256; i++) {
+      trie.addElement(new StringKey("x" + (char) i + "y"));
+    }
+    trie.addElement(new StringKey("x\u0100y"));
+    assertEquals(256, trie.findPrefix(new StringKey("x")).size());
+    for (int i = 1; i < 256; i++) {
+      StringKey key = new StringKey("x" + (char) i + "y");
+      assertTrue(key.toString(), trie.contains(key));
+      assertTrue(key.toString(), trie.removeElement(key));
+      assertFalse(key.toString(), trie.contains(key));
+    }
+    assertTrue(trie.contains(new StringKey("x\u0100y")));
+    assertEquals(1, trie.findPrefix(new StringKey("x")).size());
+  }
+}
@@ -0,0 +1,97 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.trie.datatypes.StringKey;
+import org.junit.Test;
+
+/**
+ * Test case for the AsyncTrie and the coalescing of its requests.
+ */
+public class AsyncTrieTest {
+
+  @Test
+  public void asyncTests() throws Exception {
+    AsyncTrie<StringKey> trie =
+        new AsyncTrie<StringKey>(new RadixTrie<StringKey>());
+    try {
+      trie.addElement(new StringKey("abc")).get();
+      trie.addAll(Arrays.asList(new StringKey("abd"), new StringKey("b")))
+          .get();
+      assertTrue(trie.contains(new StringKey("abc")).get());
+      assertFalse(trie.contains(new StringKey("ab")).get());
+      assertEquals(2, trie.findPrefix(new StringKey("ab")).get().size());
+      BitSet found = trie.containsAll(
+          Arrays.asList(new StringKey("b"), new StringKey("c"))).get();
+      assertEquals(1, found.cardinality());
+      assertTrue(found.get(0));
+      assertTrue(trie.removeElement(new StringKey("b")).get());
+      assertFalse(trie.contains(new StringKey("b")).get());
+    } finally {
+      trie.close();
+    }
+  }
+
+  @Test
+  public void coalesceTests() throws Exception {
+    TrieMetrics metrics = new TrieMetrics(1);
+    MeteredTrie<StringKey> metered = new MeteredTrie<StringKey>(
+        new RadixTrie<StringKey>(), metrics);
+    metered.addElement(new StringKey("abc"));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    final CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      AsyncTrie<StringKey> trie =
+          new AsyncTrie<StringKey>(metered, executor);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            blocked.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+      List<CompletableFuture<Boolean>> contains =
+          new ArrayList<CompletableFuture<Boolean>>();
+      List<CompletableFuture<List<StringKey>>> prefixes =
+          new ArrayList<CompletableFuture<List<StringKey>>>();
+      for (int i = 0; i < 3; i++) {
+        contains.add(trie.contains(new StringKey("abc")));
+        prefixes.add(trie.findPrefix(new StringKey("ab")));
+      }
+      CompletableFuture<Boolean> other = trie.contains(new StringKey("ab"));
+      // the cancellation of a request does not cancel the coalesced ones
+      contains.get(0).cancel(false);
+      blocked.countDown();
+      for (int i = 1; i < 3; i++) {
+        assertTrue(contains.get(i).get());
+      }
+      assertFalse(other.get());
+      assertEquals(1, prefixes.get(0).get().size());
+      assertSame(prefixes.get(0).get(), prefixes.get(2).get());
+      assertEquals(2, metrics.getContains().getCount());
+      assertEquals(1, metrics.getFindPrefix().getCount());
+
+      // a request made once the traversal started is not coalesced
+      assertTrue(trie.contains(new StringKey("abc")).get());
+      assertEquals(3, metrics.getContains().getCount());
+    } finally {
+      blocked.countDown();
+      executor.shutdown();
+    }
+  }
+}
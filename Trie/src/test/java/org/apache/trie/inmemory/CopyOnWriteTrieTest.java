@@ -0,0 +1,48 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+import org.junit.Test;
+
+/**
+ * Runs the StringKey tests on the copy on write InMemoryTrie, and checks that
+ * a reader keeps the children published when it started.
+ */
+public class CopyOnWriteTrieTest extends InMemoryTrieTest {
+
+  @Override
+  protected AbstractTrie<StringKey> createTrie() {
+    return new InMemoryTrie<StringKey>(LockingMode.COPY_ON_WRITE);
+  }
+
+  @Override
+  protected AbstractTrie<StringKey> createWeightedTrie() {
+    return new InMemoryTrie<StringKey>(LockingMode.COPY_ON_WRITE, true);
+  }
+
+  @Test
+  public void publicationTests() throws Exception {
+    final AbstractTrie<StringKey> trie = createTrie();
+    trie.addElement(new StringKey("b"));
+    trie.addElement(new StringKey("c"));
+    PausingTraversal reader = new PausingTraversal();
+    reader.start(trie);
+    // the paused reader holds no lock, the writer publishes new children.
+    assertTrue(PausingTraversal.runConcurrently(
+        new PausingTraversal.Modification() {
+          @Override
+          public void run() throws TrieException {
+            trie.addElement(new StringKey("a"));
+            trie.addElement(new StringKey("d"));
+          }
+        }));
+    assertEquals(Arrays.asList("c", "b"), reader.finish());
+    assertEquals(4, trie.findPrefix(new StringKey("")).size());
+  }
+}
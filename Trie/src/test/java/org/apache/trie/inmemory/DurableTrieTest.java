@@ -0,0 +1,134 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.datatypes.StringKeyFactory;
+import org.junit.Test;
+
+/**
+ * Test case for the DurableTrie and its write-ahead log.
+ */
+public class DurableTrieTest {
+
+  private static StringKey key(String value) {
+    return new StringKey(value);
+  }
+
+  private static DurableTrie<StringKey> open(File file, SyncPolicy policy)
+      throws Exception {
+    return new DurableTrie<StringKey>(new RadixTrie<StringKey>(), file,
+        new StringKeyFactory(), policy, 10);
+  }
+
+  @Test
+  public void replayTests() throws Exception {
+    File file = File.createTempFile("durable", ".log");
+    try {
+      final DurableTrie<StringKey> trie = open(file, SyncPolicy.ALWAYS);
+      List<Thread> writers = new ArrayList<Thread>();
+      for (int t = 0; t < 4; t++) {
+        final int id = t;
+        writers.add(new Thread() {
+          @Override
+          public void run() {
+            try {
+              for (int i = 0; i < 100; i++) {
+                trie.addElement(key("w" + id + "-" + i));
+              }
+            } catch (Exception e) {
+              throw new IllegalStateException(e);
+            }
+          }
+        });
+      }
+      for (Thread writer : writers) {
+        writer.start();
+      }
+      for (Thread writer : writers) {
+        writer.join();
+      }
+      assertTrue(trie.removeElement(key("w0-0")));
+      assertFalse(trie.removeElement(key("w0-0")));
+      trie.addAll(Arrays.asList(key("a"), key("ab")));
+      trie.close();
+
+      DurableTrie<StringKey> reopened = open(file, SyncPolicy.WRITE);
+      assertEquals(399, reopened.findPrefix(key("w")).size());
+      assertFalse(reopened.contains(key("w0-0")));
+      assertTrue(reopened.contains(key("ab")));
+      reopened.addElement(key("w0-0"));
+      reopened.close();
+
+      // a record cut by a crash is dropped.
+      long length = file.length();
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      raf.seek(length);
+      raf.write(new byte[] { WriteAheadLog.ADD, 0, 0 });
+      raf.close();
+      reopened = open(file, SyncPolicy.INTERVAL);
+      assertEquals(400, reopened.findPrefix(key("w")).size());
+      assertEquals(length, file.length());
+      reopened.addElement(key("x"));
+      reopened.close();
+
+      reopened = open(file, SyncPolicy.ALWAYS);
+      assertTrue(reopened.contains(key("x")));
+      reopened.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void compactTests() throws Exception {
+    File file = File.createTempFile("durable", ".log");
+    File checkpoint = new File(file.getPath() + DurableTrie.CHECKPOINT_SUFFIX);
+    try {
+      DurableTrie<StringKey> trie = open(file, SyncPolicy.WRITE);
+      for (int i = 0; i < 100; i++) {
+        trie.addElement(key("k" + i));
+      }
+      for (int i = 0; i < 50; i++) {
+        assertTrue(trie.removeElement(key("k" + i)));
+      }
+      trie.compact();
+      assertEquals(WriteAheadLog.HEADER_LENGTH, file.length());
+      assertTrue(checkpoint.exists());
+      trie.addElement(key("a"));
+      assertTrue(trie.removeElement(key("k50")));
+      trie.close();
+
+      // an update which cannot be logged is not applied.
+      try {
+        trie.addElement(key("b"));
+        fail("add to a closed log");
+      } catch (IllegalStateException e) {
+        assertFalse(trie.contains(key("b")));
+      }
+
+      DurableTrie<StringKey> reopened = open(file, SyncPolicy.ALWAYS);
+      assertEquals(49, reopened.findPrefix(key("k")).size());
+      assertTrue(reopened.contains(key("a")));
+      assertFalse(reopened.contains(key("k50")));
+      reopened.compact();
+      reopened.close();
+
+      reopened = open(file, SyncPolicy.ALWAYS);
+      assertEquals(50, reopened.findPrefix(key("")).size());
+      reopened.close();
+    } finally {
+      file.delete();
+      checkpoint.delete();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.ByteArrayKey;
+import org.junit.Test;
+
+/**
+ * Test cases for ByteArrayKey Trie.
+ */
+public class InMemoryByteArrayTrieTest {
+
+  /**
+   * Creates the Trie under test, subclasses run the same tests on other
+   * implementations.
+   */
+  protected AbstractTrie<ByteArrayKey> createTrie() {
+    return new InMemoryTrie<ByteArrayKey>();
+  }
+
+  @Test
+  public void checkOperations() throws Exception {
+    AbstractTrie<ByteArrayKey> trie = createTrie();
+    // a buffer holding several keys, and bytes which are not text.
+    byte[] buffer = "abc,abd,ab,\u00e9t\u00e9".getBytes("UTF-8");
+    trie.addElement(new ByteArrayKey(buffer, 0, 3));
+    trie.addElement(new ByteArrayKey(buffer, 4, 3));
+    trie.addElement(new ByteArrayKey(buffer, 8, 2));
+    trie.addElement(new ByteArrayKey("\u00e9t\u00e9"));
+    trie.addElement(new ByteArrayKey(new byte[] { 0, (byte) 0xff }));
+    trie.addElement(new ByteArrayKey(new byte[] { 0 }));
+
+    assertTrue(trie.contains(new ByteArrayKey("abd")));
+    assertTrue(trie.contains(new ByteArrayKey(buffer, 11, 5)));
+    assertFalse(trie.contains(new ByteArrayKey("a")));
+    assertTrue(trie.contains(new ByteArrayKey(new byte[] { 0 })));
+    assertFalse(trie.contains(new ByteArrayKey(new byte[] { 0, 0 })));
+    assertEquals(3, trie.findPrefix(new ByteArrayKey("ab")).size());
+    assertEquals(2, trie.findPrefix(new ByteArrayKey(new byte[] { 0 }))
+        .size());
+    List<ByteArrayKey> found = trie.findPrefix(new ByteArrayKey("\u00e9"));
+    assertEquals(1, found.size());
+    assertEquals("\u00e9t\u00e9", new String(found.get(0).toByteArray(),
+        "UTF-8"));
+
+    assertTrue(trie.removeElement(new ByteArrayKey("ab")));
+    assertFalse(trie.contains(new ByteArrayKey("ab")));
+    assertTrue(trie.contains(new ByteArrayKey("abc")));
+    assertEquals(5, trie.findPrefix(new ByteArrayKey()).size());
+  }
+
+}
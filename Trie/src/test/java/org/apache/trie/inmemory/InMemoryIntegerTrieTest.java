@@ -1,5 +1,6 @@
 package org.apache.trie.inmemory;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -7,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.PrintStream;
 import java.util.List;
 
+import org.apache.trie.base.impl.AbstractTrie;
 import org.apache.trie.datatypes.IntegerKey;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,13 +17,21 @@ import org.junit.Test;
  * Test cases for IntegerKey Trie.
  */
 public class InMemoryIntegerTrieTest {
-  private InMemoryTrie<IntegerKey> trie;
+  private AbstractTrie<IntegerKey> trie;
   private PrintStream stream;
 
   @Before
   public void setupData() {
     stream = System.out;
-    trie = new InMemoryTrie<IntegerKey>();
+    trie = createTrie();
+  }
+
+  /**
+   * Creates the Trie under test, subclasses run the same tests on other
+   * implementations.
+   */
+  protected AbstractTrie<IntegerKey> createTrie() {
+    return new InMemoryTrie<IntegerKey>();
   }
 
   @Test
@@ -67,4 +77,21 @@ public class InMemoryIntegerTrieTest {
     assertSame("keys size:" + keys.size(), keys.size(), 0);
   }
 
+  @Test
+  public void zeroAndNegativeTests() throws Exception {
+    int[] lists = { 0, -5, 5, -50, Integer.MIN_VALUE, Integer.MAX_VALUE };
+    for (int value : lists) {
+      trie.addElement(new IntegerKey(value));
+    }
+    for (int value : lists) {
+      assertTrue(Integer.toString(value), trie.contains(new IntegerKey(value)));
+    }
+    assertFalse(trie.contains(new IntegerKey(50)));
+    assertEquals("-5-1", new IntegerKey(-5).toString());
+    assertEquals("0-1", new IntegerKey(0).toString());
+    assertTrue(trie.removeElement(new IntegerKey(-5)));
+    assertTrue(trie.contains(new IntegerKey(-50)));
+    assertFalse(trie.contains(new IntegerKey(-5)));
+  }
+
 }
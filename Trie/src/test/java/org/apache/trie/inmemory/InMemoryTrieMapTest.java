@@ -0,0 +1,124 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+import org.junit.Test;
+
+/**
+ * Test case for the InMemoryTrieMap, the Trie tests run on its keys.
+ */
+public class InMemoryTrieMapTest extends InMemoryTrieTest {
+
+  @Override
+  protected AbstractTrie<StringKey> createTrie() {
+    return new InMemoryTrieMap<StringKey, Object>();
+  }
+
+  @Test
+  @Override
+  public void topKTests() throws Exception {
+    // the nodes of the map do not store weights.
+    try {
+      createTrie().topK(new StringKey("t"), 3);
+      fail("topK without weights");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  private static StringKey key(String value) {
+    return new StringKey(value);
+  }
+
+  @Test
+  public void mapTests() throws Exception {
+    InMemoryTrieMap<StringKey, Integer> map;
+    map = new InMemoryTrieMap<StringKey, Integer>();
+    assertNull(map.put(key("romane"), 1));
+    assertNull(map.put(key("romanus"), 2));
+    assertNull(map.put(key("rubens"), 3));
+    // the leaves of romane and romanus are split, they keep their values.
+    assertNull(map.put(key("roman"), 4));
+    assertNull(map.put(key("rom"), 5));
+    assertEquals(Integer.valueOf(1), map.put(key("romane"), 6));
+    assertEquals(Integer.valueOf(6), map.get(key("romane")));
+    assertEquals(Integer.valueOf(2), map.get(key("romanus")));
+    assertEquals(Integer.valueOf(4), map.get(key("roman")));
+    assertNull(map.get(key("roma")));
+
+    assertEquals(Integer.valueOf(3), map.putIfAbsent(key("rubens"), 7));
+    assertNull(map.putIfAbsent(key("ruber"), 7));
+    assertEquals(Integer.valueOf(7), map.get(key("ruber")));
+    Function<StringKey, Integer> length = new Function<StringKey, Integer>() {
+      @Override
+      public Integer apply(StringKey arg) {
+        return arg.getKeyLength();
+      }
+    };
+    assertEquals(Integer.valueOf(7), map.computeIfAbsent(key("ruber"),
+        length));
+    // the length of the key counts its EOLN.
+    assertEquals(Integer.valueOf(8), map.computeIfAbsent(key("rubicon"),
+        length));
+    assertTrue(map.contains(key("rubicon")));
+
+    // a key added to the set has no value until one is put.
+    map.addElement(key("ro"));
+    assertNull(map.get(key("ro")));
+    assertNull(map.putIfAbsent(key("ro"), 8));
+    assertEquals(Integer.valueOf(8), map.get(key("ro")));
+
+    // the merged leaves keep their values.
+    assertEquals(Integer.valueOf(4), map.remove(key("roman")));
+    assertEquals(Integer.valueOf(5), map.remove(key("rom")));
+    assertNull(map.remove(key("rom")));
+    assertFalse(map.contains(key("rom")));
+    assertEquals(Integer.valueOf(6), map.get(key("romane")));
+    assertEquals(Integer.valueOf(2), map.remove(key("romanus")));
+    assertEquals(Integer.valueOf(6), map.get(key("romane")));
+    assertNull(map.put(key("rom"), 9));
+    assertEquals(Integer.valueOf(9), map.get(key("rom")));
+
+    assertEntries(map.findPrefixEntries(key("rub")), "rubicon=8", "ruber=7",
+        "rubens=3");
+    assertEntries(map.findPrefixEntries(key("romane")), "romane=6");
+    assertEntries(map.findPrefixEntries(key("x")));
+    assertEquals(6, map.findPrefixEntries(key("")).size());
+  }
+
+  @Test
+  public void batchValueTests() throws Exception {
+    InMemoryTrieMap<StringKey, Integer> map;
+    map = new InMemoryTrieMap<StringKey, Integer>();
+    map.put(key("abc"), 1);
+    map.addAll(Arrays.asList(key("ab"), key("abcd"), key("b")));
+    assertEquals(Integer.valueOf(1), map.get(key("abc")));
+    assertNull(map.get(key("abcd")));
+    assertTrue(map.removeElement(key("abc")));
+    assertNull(map.get(key("abc")));
+    assertNull(map.put(key("abc"), 2));
+    assertEquals(Integer.valueOf(2), map.get(key("abc")));
+  }
+
+  private static void assertEntries(List<Map.Entry<StringKey, Integer>> found,
+      String... expected) {
+    assertEquals(expected.length, found.size());
+    for (int i = 0; i < expected.length; i++) {
+      Map.Entry<StringKey, Integer> entry = found.get(i);
+      String name = expected[i].substring(0, expected[i].indexOf('='));
+      assertTrue(expected[i], entry.getKey().equalsTrie(key(name)));
+      assertEquals(expected[i], name + "=" + entry.getValue());
+    }
+  }
+}
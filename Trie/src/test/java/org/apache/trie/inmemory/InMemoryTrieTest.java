@@ -4,6 +4,24 @@ import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.ParallelTraversalOperation;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.impl.AbstractTrie;
 import org.apache.trie.datatypes.StringKey;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,13 +41,28 @@ public class InMemoryTrieTest {
 
   @Before
   public void setupData() {
-    runner = new RunnableOperation(new InMemoryTrie<StringKey>());
+    runner = new RunnableOperation(createTrie());
     logger.setLevel(Level.ALL);
     ConsoleHandler handler = new ConsoleHandler();
     handler.setLevel(Level.ALL);
     logger.addHandler(handler);
   }
 
+  /**
+   * Creates the Trie under test, subclasses run the same tests on other
+   * implementations.
+   */
+  protected AbstractTrie<StringKey> createTrie() {
+    return new InMemoryTrie<StringKey>();
+  }
+
+  /**
+   * Creates the Trie under test with nodes which store weights.
+   */
+  protected AbstractTrie<StringKey> createWeightedTrie() {
+    return new InMemoryTrie<StringKey>(LockingMode.READ_WRITE_LOCK, true);
+  }
+
   @Test
   public void sequentialOperationTests() throws Exception {
 
@@ -57,6 +90,280 @@ public class InMemoryTrieTest {
 //    logger.info("TOTAL THREADS=" + RunnableOperation.totalThreads);
 //  }
   
+  @Test
+  public void findPrefixTests() throws Exception {
+    AbstractTrie<StringKey> trie = createTrie();
+    trie.addElement(new StringKey("leaf"));
+    trie.addElement(new StringKey("abcd"));
+    trie.addElement(new StringKey("abce"));
+    // the prefix ends within a leaf, within a label and at a key.
+    assertEquals(1, trie.findPrefix(new StringKey("le")).size());
+    List<StringKey> found = trie.findPrefix(new StringKey("leaf"));
+    assertEquals(1, found.size());
+    assertTrue(found.get(0).equalsTrie(new StringKey("leaf")));
+    assertEquals(2, trie.findPrefix(new StringKey("ab")).size());
+    assertEquals(0, trie.findPrefix(new StringKey("lex")).size());
+    assertEquals(3, trie.findPrefix(new StringKey("")).size());
+  }
+
+  @Test
+  public void bulkLoadTests() throws Exception {
+    AbstractTrie<StringKey> trie = createTrie();
+    String[] sorted = { "ab", "abc", "abc", "abc1", "abc3", "acb", "b",
+        "http://example.com/a", "http://example.com/b" };
+    List<StringKey> keys = new ArrayList<StringKey>();
+    for (String word : sorted) {
+      keys.add(new StringKey(word));
+    }
+    assertEquals(sorted.length - 1, trie.bulkLoad(keys.iterator()));
+    for (String word : sorted) {
+      assertTrue(trie.contains(new StringKey(word)));
+    }
+    assertFalse(trie.contains(new StringKey("a")));
+    assertEquals(5, trie.findPrefix(new StringKey("a")).size());
+    assertEquals(2, trie.findPrefix(new StringKey("http://")).size());
+    // the loaded nodes support the other operations.
+    trie.addElement(new StringKey("abd"));
+    assertTrue(trie.removeElement(new StringKey("abc1")));
+    assertEquals(4, trie.findPrefix(new StringKey("ab")).size());
+
+    AbstractTrie<StringKey> unsorted = createTrie();
+    try {
+      unsorted.bulkLoad(Arrays.asList(new StringKey("b"), new StringKey("a"))
+          .iterator());
+      fail("unsorted keys loaded");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void batchTests() throws Exception {
+    AbstractTrie<StringKey> trie = createTrie();
+    trie.addElement(new StringKey("abc"));
+    trie.addElement(new StringKey("x"));
+    // new branches, a split leaf, duplicates and existing keys.
+    trie.addAll(Arrays.asList(new StringKey("abd"), new StringKey("abc"),
+        new StringKey("abcde"), new StringKey("b"), new StringKey("b"),
+        new StringKey("http://example.com/a"), new StringKey(
+            "http://example.com/b"), new StringKey("a")));
+    assertEquals(4, trie.findPrefix(new StringKey("a")).size());
+    assertEquals(2, trie.findPrefix(new StringKey("http://")).size());
+    BitSet found = trie.containsAll(Arrays.asList(new StringKey("x"),
+        new StringKey("ab"), new StringKey("abcde"), new StringKey("y"),
+        new StringKey("b"), new StringKey("x")));
+    assertEquals("{0, 2, 4, 5}", found.toString());
+    assertTrue(trie.containsAll(new ArrayList<StringKey>()).isEmpty());
+  }
+
+  @Test
+  public void findPrefixIteratorTests() throws Exception {
+    AbstractTrie<StringKey> trie = createTrie();
+    trie.addElement(new StringKey("leaf"));
+    // more keys than the first chunk, so the iteration resumes.
+    for (int i = 0; i < 50; i++) {
+      trie.addElement(new StringKey("k" + i));
+    }
+    List<StringKey> all = trie.findPrefix(new StringKey("k"));
+    List<StringKey> found = new ArrayList<StringKey>();
+    Iterator<StringKey> iter = trie.findPrefixIterator(new StringKey("k"));
+    while (iter.hasNext()) {
+      found.add(iter.next());
+    }
+    assertEquals(all.toString(), found.toString());
+    try {
+      iter.next();
+      fail("next after the last key");
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+
+    found.clear();
+    iter = trie.findPrefixIterator(new StringKey("k"), 10);
+    while (iter.hasNext()) {
+      found.add(iter.next());
+    }
+    assertEquals(all.subList(0, 10).toString(), found.toString());
+    assertFalse(trie.findPrefixIterator(new StringKey("k"), 0).hasNext());
+    assertFalse(trie.findPrefixIterator(new StringKey("x")).hasNext());
+    iter = trie.findPrefixIterator(new StringKey("le"));
+    assertTrue(iter.next().equalsTrie(new StringKey("leaf")));
+    assertFalse(iter.hasNext());
+  }
+
+  private static void assertKeys(List<StringKey> found, String... expected) {
+    assertEquals(expected.length, found.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertTrue(expected[i], found.get(i).equalsTrie(
+          new StringKey(expected[i])));
+    }
+  }
+
+  @Test
+  public void topKTests() throws Exception {
+    // the nodes store weights only when asked for.
+    try {
+      createTrie().topK(new StringKey("t"), 3);
+      fail("topK without weights");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    AbstractTrie<StringKey> trie = createWeightedTrie();
+    trie.addElement(new StringKey("the"), 50);
+    trie.addElement(new StringKey("then"), 20);
+    trie.addElement(new StringKey("there"), 40);
+    trie.addElement(new StringKey("theory"), 10);
+    trie.addElement(new StringKey("this"), 30);
+    trie.addElement(new StringKey("thin"));
+    assertKeys(trie.topK(new StringKey("th"), 3), "the", "there", "this");
+    assertKeys(trie.topK(new StringKey("the"), 5), "the", "there", "then",
+        "theory");
+    // the weights follow the updates, the splits and the merges.
+    trie.addElement(new StringKey("theory"), 60);
+    assertTrue(trie.removeElement(new StringKey("the")));
+    trie.addElement(new StringKey("thera"));
+    assertKeys(trie.topK(new StringKey(""), 2), "theory", "there");
+    assertTrue(trie.removeElement(new StringKey("theory")));
+    assertKeys(trie.topK(new StringKey("t"), 3), "there", "this", "then");
+    assertKeys(trie.topK(new StringKey("x"), 3));
+    assertKeys(trie.topK(new StringKey("t"), 0));
+  }
+
+  /**
+   * Counts the keys, the forked counters are summed.
+   */
+  private static class KeyCounter implements
+      ParallelTraversalOperation<StringKey> {
+    private int count = 0;
+
+    @Override
+    public OperationCodes startInternalTrieNode(StringKey key) {
+      return OperationCodes.TRAVERSE_CHILD;
+    }
+
+    @Override
+    public OperationCodes leafTrieNode(StringKey key) {
+      if (key.isEoln(key.getKeyLength() - 1)) {
+        count++;
+      }
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+
+    @Override
+    public OperationCodes endInternalTrieNode(StringKey key) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+
+    @Override
+    public OperationCodes endTrie() {
+      return OperationCodes.TRAVERSE_END;
+    }
+
+    @Override
+    public OperationCodes noNextNode() {
+      return OperationCodes.TRAVERSE_BACKTRACK;
+    }
+
+    @Override
+    public OperationCodes processNode(TrieIterator<StringKey> iter) {
+      return OperationCodes.TRAVERSE_ERROR;
+    }
+
+    @Override
+    public void lockIteration() {
+    }
+
+    @Override
+    public void unlockIteration() {
+    }
+
+    @Override
+    public ParallelTraversalOperation<StringKey> fork() {
+      return new KeyCounter();
+    }
+
+    @Override
+    public OperationCodes combine(
+        ParallelTraversalOperation<StringKey> forked) {
+      count += ((KeyCounter) forked).count;
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+  }
+
+  /**
+   * Counts the leaves slowly in a shared counter, and fails at the 100th.
+   */
+  private static class FailingCounter extends KeyCounter {
+    private final AtomicInteger visited;
+
+    FailingCounter(AtomicInteger avisited) {
+      visited = avisited;
+    }
+
+    @Override
+    public OperationCodes leafTrieNode(StringKey key) {
+      if (visited.incrementAndGet() == 100) {
+        throw new IllegalArgumentException("failing leaf");
+      }
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+
+    @Override
+    public ParallelTraversalOperation<StringKey> fork() {
+      return new FailingCounter(visited);
+    }
+  }
+
+  @Test
+  public void forkJoinFailureTests() throws Exception {
+    AbstractTrie<StringKey> trie = createTrie();
+    for (int i = 0; i < 500; i++) {
+      trie.addElement(new StringKey("k" + i));
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      AtomicInteger visited = new AtomicInteger();
+      try {
+        trie.traverse(new FailingCounter(visited), pool);
+        fail("traversal of a failing leaf");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      // no task is left traversing the Trie.
+      int count = visited.get();
+      Thread.sleep(50);
+      assertEquals(count, visited.get());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void forkJoinTraversalTests() throws Exception {
+    AbstractTrie<StringKey> trie = createTrie();
+    trie.addElement(new StringKey("leaf"));
+    for (int i = 0; i < 2000; i++) {
+      trie.addElement(new StringKey("k" + i));
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (String prefix : new String[] { "", "k", "k1", "k1999", "le", "x" }) {
+        assertEquals(trie.findPrefix(new StringKey(prefix)).toString(), trie
+            .findPrefix(new StringKey(prefix), pool).toString());
+      }
+      KeyCounter counter = new KeyCounter();
+      trie.traverse(counter, pool);
+      assertEquals(2001, counter.count);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
   @Test
   public void parallelOperationTests() throws Exception {
 
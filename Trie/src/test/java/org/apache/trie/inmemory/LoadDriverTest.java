@@ -0,0 +1,91 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.trie.inmemory.TrieMetrics.Operation;
+import org.junit.Test;
+
+/**
+ * Test case for a short run of the LoadDriver.
+ */
+public class LoadDriverTest {
+
+  private File corpus() throws Exception {
+    File file = File.createTempFile("corpus", ".txt");
+    file.deleteOnExit();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+        StandardCharsets.UTF_8);
+    try {
+      for (int i = 0; i < 1000; i++) {
+        writer.write("key" + i + "\n");
+      }
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+
+  @Test
+  public void loadTests() throws Exception {
+    LoadDriver.Options options = LoadDriver.Options.parse("--keys",
+        corpus().getPath(), "--mix", "contains=60,prefix=10,add=20,remove=10",
+        "--threads", "2", "--warmup", "100ms", "--duration", "400ms",
+        "--interval", "200ms", "--trie", "sharded");
+    ByteArrayOutputStream text = new ByteArrayOutputStream();
+    StringWriter csv = new StringWriter();
+    TrieMetrics metrics = new LoadDriver(options).run(new PrintStream(text),
+        csv);
+    for (Operation operation : Operation.values()) {
+      OperationStats stats = metrics.getStats(operation);
+      assertTrue(operation.toString(), stats.getCount() > 0);
+      assertEquals(operation.toString(), 0, stats.getErrors());
+      assertTrue(stats.getLatency().getP999() >= stats.getLatency().getP50());
+    }
+    String[] lines = csv.toString().split("\n");
+    assertTrue(lines[0].startsWith("phase,elapsed_s,operation,count,errors"));
+    int intervals = 0;
+    int totals = 0;
+    for (int i = 1; i < lines.length; i++) {
+      assertEquals(lines[i], 11, lines[i].split(",").length);
+      if (lines[i].startsWith("interval,")) {
+        intervals++;
+      } else if (lines[i].startsWith("total,")) {
+        totals++;
+      }
+    }
+    // a line per operation at each interval and in the totals
+    assertTrue(intervals > 0 && intervals % 4 == 0);
+    assertEquals(4, totals);
+    assertTrue(text.toString().contains("p999"));
+  }
+
+  @Test
+  public void optionTests() throws Exception {
+    assertEquals(500, LoadDriver.Options.parseMillis("500ms"));
+    assertEquals(30000, LoadDriver.Options.parseMillis("30"));
+    assertEquals(600000, LoadDriver.Options.parseMillis("10m"));
+    assertEquals(7200000, LoadDriver.Options.parseMillis("2h"));
+    String[][] invalid = { {}, { "--keys" }, { "--keys", "a", "--x", "1" },
+        { "--keys", "a", "--mix", "contains=0" },
+        { "--keys", "a", "--mix", "get=1" },
+        { "--keys", "a", "--threads", "0" } };
+    for (String[] args : invalid) {
+      try {
+        LoadDriver.Options.parse(args);
+        assertTrue(String.join(" ", args), false);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
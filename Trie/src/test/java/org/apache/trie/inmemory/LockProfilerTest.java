@@ -0,0 +1,206 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.TrieNode;
+import org.apache.trie.datatypes.StringKey;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test case for the profiling of the locks of the nodes.
+ */
+public class LockProfilerTest {
+
+  @After
+  public void stopProfiler() {
+    LockProfiler.stop();
+  }
+
+  /**
+   * Adds the key in another thread, which waits 20 ms for the write lock of
+   * the children of the root while a traversal holds their read lock.
+   */
+  private void blockedAdd(final RadixTrie<StringKey> trie, String word)
+      throws Exception {
+    final StringKey key = new StringKey(word);
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        try {
+          trie.traverse(new BlockingTraversal(locked, release));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    reader.start();
+    Thread writer;
+    try {
+      locked.await();
+      writer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            trie.addElement(key);
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      writer.start();
+      while (writer.getState() != Thread.State.TIMED_WAITING) {
+        Thread.sleep(1);
+      }
+      Thread.sleep(20);
+    } finally {
+      release.countDown();
+    }
+    reader.join();
+    writer.join();
+    assertTrue(trie.contains(key));
+  }
+
+  @Test
+  public void profilerTests() throws Exception {
+    RadixTrie<StringKey> trie = new RadixTrie<StringKey>();
+    trie.addElement(new StringKey("abc"));
+    trie.addElement(new StringKey("abd"));
+
+    LockProfiler profiler = LockProfiler.start();
+    trie.contains(new StringKey("abc"));
+    assertTrue(profiler.getReadAcquisitions() >= 2);
+    blockedAdd(trie, "b");
+    assertTrue(profiler.getWriteAcquisitions() >= 1);
+    long waits = profiler.getReadWaits().getCount()
+        + profiler.getWriteWaits().getCount();
+    assertTrue(waits >= 1);
+
+    List<NodeContention<StringKey>> hottest = profiler.hottest(trie, 10);
+    assertEquals(1, hottest.size());
+    assertEquals(0, hottest.get(0).getDepth());
+    assertNull(hottest.get(0).getPrefix());
+    assertTrue(hottest.get(0).getWaitNanos() >= 20000000L);
+
+    LockProfiler.stop();
+    blockedAdd(trie, "c");
+    assertEquals(waits, profiler.getReadWaits().getCount()
+        + profiler.getWriteWaits().getCount());
+    // a new profiler does not report the waits of the previous one.
+    assertEquals(0, LockProfiler.start().hottest(trie, 10).size());
+  }
+
+  @Test
+  public void flightRecorderTests() throws Exception {
+    RadixTrie<StringKey> trie = new RadixTrie<StringKey>();
+    File file = File.createTempFile("trie", ".jfr");
+    file.deleteOnExit();
+    Recording recording = new Recording();
+    try {
+      recording.enable("org.apache.trie.LockWait").withThreshold(
+          Duration.ofMillis(10));
+      recording.start();
+      blockedAdd(trie, "abc");
+      recording.stop();
+      recording.dump(file.toPath());
+    } finally {
+      recording.close();
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+    assertTrue(events.size() >= 1);
+    assertEquals("root", events.get(0).getString("node"));
+    assertTrue(events.get(0).getDuration().toMillis() >= 20);
+  }
+
+  @Test
+  public void labelTests() throws Exception {
+    // a node which adopts the children of a merged node reports their waits.
+    StringKey child = new StringKey("c");
+    StringKey merged = new StringKey("abc");
+    InMemoryTrieNode<StringKey> node = new InMemoryTrieNode<StringKey>(
+        TrieNode.Type.LEAF_NODE, child);
+    InMemoryTrieNodeList<StringKey> list =
+        (InMemoryTrieNodeList<StringKey>) node.children();
+    assertEquals(child.toString(), list.getLabel());
+    new InMemoryTrieNode<StringKey>(TrieNode.Type.LEAF_NODE, merged, list);
+    assertEquals(merged.toString(), list.getLabel());
+  }
+
+  /**
+   * Visits the children of the root only, and waits for the release at their
+   * end while their read lock is held.
+   */
+  private static final class BlockingTraversal implements
+      TraversalOperationWithBacktrack<StringKey> {
+    private final CountDownLatch locked;
+    private final CountDownLatch release;
+
+    BlockingTraversal(CountDownLatch alocked, CountDownLatch arelease) {
+      locked = alocked;
+      release = arelease;
+    }
+
+    @Override
+    public OperationCodes leafTrieNode(StringKey key) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+
+    @Override
+    public OperationCodes startInternalTrieNode(StringKey key) {
+      return OperationCodes.TRAVERSE_SIBLING;
+    }
+
+    @Override
+    public OperationCodes noNextNode() {
+      locked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return OperationCodes.TRAVERSE_END;
+    }
+
+    @Override
+    public OperationCodes endInternalTrieNode(StringKey key) {
+      return OperationCodes.TRAVERSE_ERROR;
+    }
+
+    @Override
+    public OperationCodes endTrie() {
+      return OperationCodes.TRAVERSE_END;
+    }
+
+    @Override
+    public OperationCodes processNode(TrieIterator<StringKey> iter) {
+      return OperationCodes.TRAVERSE_ERROR;
+    }
+
+    @Override
+    public void lockIteration() throws TrieException {
+      // read only traversal
+    }
+
+    @Override
+    public void unlockIteration() throws TrieException {
+      // read only traversal
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import org.junit.Test;
+
+/**
+ * Test case for the LongTrie.
+ */
+public class LongTrieTest {
+
+  private final long[] keys = { 0, 1, 15, 16, 17, -1, -16, 1000000007,
+      Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, 0x1234567890L };
+
+  @Test
+  public void operationTests() throws Exception {
+    LongTrie trie = new LongTrie();
+    for (long key : keys) {
+      assertTrue(Long.toString(key), trie.add(key));
+    }
+    assertFalse(trie.add(16));
+    assertEquals(keys.length, trie.size());
+    for (long key : keys) {
+      assertTrue(Long.toString(key), trie.contains(key));
+    }
+    assertFalse(trie.contains(2));
+    assertFalse(trie.contains(-2));
+    assertFalse(trie.contains(0x1234567891L));
+
+    final List<Long> found = new ArrayList<Long>();
+    trie.forEach(new LongConsumer() {
+      @Override
+      public void accept(long key) {
+        found.add(key);
+      }
+    });
+    assertEquals("[-9223372036854775808, -2147483648, -16, -1, 0, 1, 15, 16, "
+        + "17, 1000000007, 78187493520, 9223372036854775807]", found.toString());
+
+    for (long key : keys) {
+      assertTrue(Long.toString(key), trie.remove(key));
+      assertFalse(Long.toString(key), trie.contains(key));
+    }
+    assertFalse(trie.remove(16));
+    assertEquals(0, trie.size());
+    // the freed nodes are reused.
+    for (long key = 0; key < 1000; key += 7) {
+      assertTrue(trie.add(key << 20));
+    }
+    assertTrue(trie.contains(994L << 20));
+    assertFalse(trie.contains(995L << 20));
+  }
+}
@@ -0,0 +1,125 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.datatypes.StringKeyFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test case for the snapshots of the MappedTrie.
+ */
+public class MappedTrieTest {
+
+  private final String[] words = { "abc", "abc1", "abc3", "acb", "b",
+      "http://example.com/a", "http://example.com/b" };
+  private File file;
+
+  @Before
+  public void writeSnapshot() throws Exception {
+    InMemoryTrie<StringKey> trie = new InMemoryTrie<StringKey>();
+    for (String word : words) {
+      trie.addElement(new StringKey(word));
+    }
+    // a removed key leaves an internal node without children.
+    trie.addElement(new StringKey("zz"));
+    trie.removeElement(new StringKey("zz"));
+    file = File.createTempFile("trie", ".snapshot");
+    file.deleteOnExit();
+    MappedTrie.write(trie, file);
+  }
+
+  @Test
+  public void readTests() throws Exception {
+    MappedTrie<StringKey> trie = MappedTrie.open(file, new StringKeyFactory());
+    assertEquals(words.length, trie.size());
+    for (String word : words) {
+      assertTrue(word, trie.contains(new StringKey(word)));
+    }
+    assertFalse(trie.contains(new StringKey("ab")));
+    assertFalse(trie.contains(new StringKey("abc2")));
+    assertFalse(trie.contains(new StringKey("zz")));
+    assertEquals(3, trie.findPrefix(new StringKey("abc")).size());
+    assertEquals(4, trie.findPrefix(new StringKey("a")).size());
+    assertEquals(2, trie.findPrefix(new StringKey("http://ex")).size());
+    assertEquals(0, trie.findPrefix(new StringKey("c")).size());
+  }
+
+  @Test
+  public void searchTests() throws Exception {
+    // the units above 0x7FFF are stored sign extended.
+    String[] prefixes = { "", "a", "ab", "\u9000", "\u9000\u8001", "z" };
+    InMemoryTrie<StringKey> expected = new InMemoryTrie<StringKey>();
+    for (String prefix : prefixes) {
+      for (int i = 0; i < 150; i++) {
+        expected.addElement(new StringKey(prefix + (char) ('a' + i % 7)
+            + (char) (0x7FF0 + i)));
+      }
+    }
+    MappedTrie.write(expected, file);
+    MappedTrie<StringKey> trie = MappedTrie.open(file, new StringKeyFactory());
+    for (String prefix : prefixes) {
+      StringKey key = new StringKey(prefix + "b" + (char) 0x7FF1);
+      assertEquals(expected.contains(key), trie.contains(key));
+      assertFalse(trie.contains(new StringKey(prefix + "b")));
+      for (String search : new String[] { prefix, prefix + "c",
+          prefix + "c" + (char) 0x8000, prefix + "\u9000\u8001" }) {
+        StringKey searchKey = new StringKey(search);
+        assertEquals(search,
+            list(expected.findPrefix(searchKey).iterator()),
+            list(trie.findPrefix(searchKey).iterator()));
+        assertEquals(search, list(expected.findPrefixIterator(searchKey)),
+            list(trie.findPrefixIterator(searchKey)));
+      }
+    }
+  }
+
+  /**
+   * Returns the strings of the keys, StringKey has no equals.
+   */
+  private static List<String> list(Iterator<StringKey> keys) {
+    List<String> result = new ArrayList<String>();
+    while (keys.hasNext()) {
+      result.add(keys.next().toString());
+    }
+    return result;
+  }
+
+  @Test
+  public void corruptTests() throws Exception {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    raf.seek(raf.length() - 1);
+    int last = raf.read();
+    raf.seek(raf.length() - 1);
+    raf.write(last ^ 1);
+    raf.close();
+    try {
+      MappedTrie.open(file, new StringKeyFactory());
+      fail("corrupt snapshot opened");
+    } catch (TrieException e) {
+      assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+    }
+
+    raf = new RandomAccessFile(file, "rw");
+    raf.seek(4);
+    raf.writeInt(MappedTrie.VERSION + 1);
+    raf.close();
+    try {
+      MappedTrie.open(file, new StringKeyFactory());
+      fail("unknown version opened");
+    } catch (TrieException e) {
+      assertTrue(e.getMessage().startsWith("Unsupported snapshot version"));
+    }
+  }
+}
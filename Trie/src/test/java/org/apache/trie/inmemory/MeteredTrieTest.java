@@ -0,0 +1,89 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.inmemory.TrieMetrics.Operation;
+import org.junit.Test;
+
+/**
+ * Test case for the metrics of the MeteredTrie.
+ */
+public class MeteredTrieTest {
+
+  @Test
+  public void histogramTests() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(1000, snapshot.getCount());
+    assertEquals(500500.0, snapshot.getMean(), 0.1);
+    // the percentiles are within 1/16 of the values.
+    assertTrue(snapshot.getP50() >= 500000 && snapshot.getP50() < 532000);
+    assertTrue(snapshot.getP99() >= 990000 && snapshot.getP99() < 1052000);
+    assertTrue(snapshot.getMax() >= 1000000 && snapshot.getMax() < 1063000);
+    for (int i = 0; i < 16; i++) {
+      assertEquals(i, Histogram.highestValue(Histogram.index(i)));
+    }
+    assertEquals(Long.MAX_VALUE, Histogram.highestValue(Histogram
+        .index(Long.MAX_VALUE)));
+    histogram.reset();
+    assertEquals(0, histogram.snapshot().getCount());
+    assertEquals(0, histogram.snapshot().getP999());
+  }
+
+  @Test
+  public void meteredTests() throws Exception {
+    // the latencies of all the operations are recorded.
+    MeteredTrie<StringKey> trie = new MeteredTrie<StringKey>(
+        new RadixTrie<StringKey>(), new TrieMetrics(1));
+    String[] words = { "abc", "abd", "b", "bcd" };
+    for (String word : words) {
+      trie.addElement(new StringKey(word));
+    }
+    assertTrue(trie.contains(new StringKey("abd")));
+    assertEquals(2, trie.findPrefix(new StringKey("ab")).size());
+    assertEquals(0, trie.findPrefix(new StringKey("c")).size());
+    assertTrue(trie.removeElement(new StringKey("b")));
+    try {
+      trie.contains(null);
+      fail("null key found");
+    } catch (NullPointerException e) {
+      // expected.
+    }
+
+    TrieMetrics metrics = trie.getMetrics();
+    assertEquals(4, metrics.getStats(Operation.ADD_ELEMENT).getCount());
+    assertEquals(1, metrics.getStats(Operation.CONTAINS).getCount());
+    assertEquals(1, metrics.getStats(Operation.CONTAINS).getErrors());
+    assertEquals(2, metrics.getStats(Operation.FIND_PREFIX).getCount());
+    assertEquals(1, metrics.getStats(Operation.REMOVE_ELEMENT).getCount());
+    assertEquals(2, metrics.getFindPrefixSizes().getCount());
+    assertEquals(2, metrics.getFindPrefixSizes().getMax());
+    assertTrue(metrics.getStats(Operation.ADD_ELEMENT).getThroughput() > 0);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = metrics.register("test");
+    try {
+      CompositeData add = (CompositeData) server.getAttribute(name,
+          "AddElement");
+      assertEquals(4L, add.get("count"));
+      CompositeData latency = (CompositeData) add.get("latency");
+      assertTrue((Long) latency.get("p999") > 0);
+      server.invoke(name, "reset", null, null);
+      assertEquals(0, metrics.getStats(Operation.ADD_ELEMENT).getCount());
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package org.apache.trie.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.ByteArrayKey;
+import org.apache.trie.datatypes.ByteArrayKeyFactory;
+import org.junit.Test;
+
+/**
+ * Runs the ByteArrayKey tests on the OffHeapTrie, and checks that the blocks
+ * of the removed nodes are reused whatever the lengths of their labels.
+ */
+public class OffHeapByteArrayTrieTest extends InMemoryByteArrayTrieTest {
+
+  @Override
+  protected AbstractTrie<ByteArrayKey> createTrie() {
+    return new OffHeapTrie<ByteArrayKey>(new ByteArrayKeyFactory());
+  }
+
+  @Test
+  public void freeListTests() throws Exception {
+    // the labels of the keys have from 1 to 15 bytes.
+    List<ByteArrayKey> keys = new ArrayList<ByteArrayKey>();
+    for (int i = 0; i < 5000; i++) {
+      keys.add(new ByteArrayKey(Integer.toString(i * 7919)
+          + "abcdefghijklmn".substring(i % 14)));
+    }
+    OffHeapFreeListCheck.run(new OffHeapTrie<ByteArrayKey>(
+        new ByteArrayKeyFactory()), keys);
+  }
+}
@@ -0,0 +1,42 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.trie.base.TrieKey;
+
+/**
+ * Checks that an OffHeapTrie reuses the blocks of its removed nodes. The keys
+ * are added and removed in rounds, the rounds after the first one must not
+ * reserve more memory and every removal must free its blocks.
+ */
+final class OffHeapFreeListCheck {
+
+  private OffHeapFreeListCheck() {
+  }
+
+  static <E extends TrieKey<E>> void run(OffHeapTrie<E> trie, List<E> keys)
+      throws Exception {
+    long empty = trie.getAllocatedBytes();
+    long reserved = 0;
+    for (int round = 0; round < 3; round++) {
+      for (E key : keys) {
+        trie.addElement(key);
+      }
+      if (round == 0) {
+        reserved = trie.getReservedBytes();
+      }
+      // the new nodes take the blocks freed by the previous round.
+      assertEquals(reserved, trie.getReservedBytes());
+      for (E key : keys) {
+        assertTrue(trie.removeElement(key));
+      }
+      assertEquals(empty, trie.getAllocatedBytes());
+    }
+    assertFalse(trie.contains(keys.get(0)));
+    trie.close();
+  }
+}
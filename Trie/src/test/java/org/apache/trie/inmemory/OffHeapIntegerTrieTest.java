@@ -0,0 +1,31 @@
+package org.apache.trie.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.IntegerKey;
+import org.apache.trie.datatypes.IntegerKeyFactory;
+import org.junit.Test;
+
+/**
+ * Runs the IntegerKey tests on the OffHeapTrie, and checks that the blocks of
+ * the removed nodes are reused.
+ */
+public class OffHeapIntegerTrieTest extends InMemoryIntegerTrieTest {
+
+  @Override
+  protected AbstractTrie<IntegerKey> createTrie() {
+    return new OffHeapTrie<IntegerKey>(new IntegerKeyFactory());
+  }
+
+  @Test
+  public void freeListTests() throws Exception {
+    List<IntegerKey> keys = new ArrayList<IntegerKey>();
+    for (int i = 0; i < 20000; i++) {
+      keys.add(new IntegerKey(i));
+    }
+    OffHeapFreeListCheck.run(new OffHeapTrie<IntegerKey>(
+        new IntegerKeyFactory()), keys);
+  }
+}
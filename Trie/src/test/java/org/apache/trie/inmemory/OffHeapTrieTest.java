@@ -0,0 +1,57 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.datatypes.StringKeyFactory;
+import org.junit.Test;
+
+/**
+ * Runs the StringKey tests on the OffHeapTrie.
+ */
+public class OffHeapTrieTest extends InMemoryTrieTest {
+
+  @Override
+  protected AbstractTrie<StringKey> createTrie() {
+    return new OffHeapTrie<StringKey>(new StringKeyFactory());
+  }
+
+  @Test
+  @Override
+  public void topKTests() throws Exception {
+    // the off heap nodes do not store weights.
+    try {
+      createTrie().topK(new StringKey("t"), 3);
+      fail("topK without weights");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void closeTests() throws Exception {
+    OffHeapTrie<StringKey> trie = new OffHeapTrie<StringKey>(
+        new StringKeyFactory());
+    // spans several chunks, which are added without copying the full ones.
+    for (int i = 0; i < 50000; i++) {
+      trie.addElement(new StringKey("key" + i));
+    }
+    assertTrue(trie.getReservedBytes() > 1 << 20);
+    for (int i = 0; i < 50000; i += 997) {
+      assertTrue(trie.contains(new StringKey("key" + i)));
+    }
+    assertEquals(50000, trie.findPrefix(new StringKey("key")).size());
+    trie.close();
+    assertEquals(0, trie.getReservedBytes());
+    try {
+      trie.contains(new StringKey("key1"));
+      fail("contains on a closed Trie");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    trie.close();
+  }
+}
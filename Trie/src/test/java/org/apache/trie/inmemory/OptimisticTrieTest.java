@@ -0,0 +1,50 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+import org.junit.Test;
+
+/**
+ * Runs the StringKey tests on the optimistic InMemoryTrie, and checks that a
+ * reader restarted by a writer continues after its last child.
+ */
+public class OptimisticTrieTest extends InMemoryTrieTest {
+
+  @Override
+  protected AbstractTrie<StringKey> createTrie() {
+    return new InMemoryTrie<StringKey>(LockingMode.OPTIMISTIC);
+  }
+
+  @Override
+  protected AbstractTrie<StringKey> createWeightedTrie() {
+    return new InMemoryTrie<StringKey>(LockingMode.OPTIMISTIC, true);
+  }
+
+  @Test
+  public void restartTests() throws Exception {
+    final AbstractTrie<StringKey> trie = createTrie();
+    trie.addElement(new StringKey("b"));
+    trie.addElement(new StringKey("c"));
+    PausingTraversal reader = new PausingTraversal();
+    reader.start(trie);
+    // the version of the children changes under the paused reader.
+    assertTrue(PausingTraversal.runConcurrently(
+        new PausingTraversal.Modification() {
+          @Override
+          public void run() throws TrieException {
+            trie.addElement(new StringKey("a"));
+            trie.addElement(new StringKey("d"));
+            trie.removeElement(new StringKey("b"));
+            trie.addElement(new StringKey("b"));
+          }
+        }));
+    // d is before the position of the reader, b and a are after it.
+    assertEquals(Arrays.asList("c", "b", "a"), reader.finish());
+  }
+}
@@ -0,0 +1,151 @@
+package org.apache.trie.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.trie.base.OperationCodes;
+import org.apache.trie.base.TraversalOperationWithBacktrack;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieIterator;
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+
+/**
+ * A read only traversal listing the keys of a Trie in another thread, which
+ * pauses at the first key until it is resumed. The tests modify the Trie while
+ * the traversal is paused, with the iterators of the path of the first key
+ * open.
+ */
+class PausingTraversal implements TraversalOperationWithBacktrack<StringKey> {
+
+  private final List<String> keys = new ArrayList<String>();
+  private final Stack<String> prefixes = new Stack<String>();
+  private final CountDownLatch paused = new CountDownLatch(1);
+  private final CountDownLatch resumed = new CountDownLatch(1);
+  private Thread thread;
+  private Exception error;
+
+  PausingTraversal() {
+    prefixes.push("");
+  }
+
+  /**
+   * Starts the traversal of the Trie and waits until it pauses.
+   */
+  void start(final AbstractTrie<StringKey> trie) throws InterruptedException {
+    thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          trie.traverse(PausingTraversal.this);
+        } catch (Exception e) {
+          error = e;
+        } finally {
+          paused.countDown();
+        }
+      }
+    };
+    thread.start();
+    paused.await();
+  }
+
+  /**
+   * Resumes the traversal and returns the keys it found.
+   */
+  List<String> finish() throws Exception {
+    resumed.countDown();
+    thread.join();
+    if (error != null) {
+      throw error;
+    }
+    return keys;
+  }
+
+  /**
+   * Runs the modification in another thread, and returns false if it did not
+   * end within 10 seconds, because it waits for a lock held by the traversal.
+   */
+  static boolean runConcurrently(final Modification modification)
+      throws Exception {
+    final Exception[] failure = new Exception[1];
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          modification.run();
+        } catch (Exception e) {
+          failure[0] = e;
+        }
+      }
+    };
+    writer.start();
+    writer.join(10000);
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    return !writer.isAlive();
+  }
+
+  /**
+   * A modification of the Trie.
+   */
+  interface Modification {
+    void run() throws TrieException;
+  }
+
+  @Override
+  public OperationCodes leafTrieNode(StringKey key) {
+    if (key.isEoln(key.getKeyLength() - 1)) {
+      String label = key.toString();
+      keys.add(prefixes.peek() + label.substring(0, label.length() - 1));
+      if (keys.size() == 1) {
+        paused.countDown();
+        try {
+          resumed.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    return OperationCodes.TRAVERSE_SIBLING;
+  }
+
+  @Override
+  public OperationCodes startInternalTrieNode(StringKey key) {
+    prefixes.push(prefixes.peek() + key);
+    return OperationCodes.TRAVERSE_CHILD;
+  }
+
+  @Override
+  public OperationCodes endInternalTrieNode(StringKey key) {
+    prefixes.pop();
+    return OperationCodes.TRAVERSE_SIBLING;
+  }
+
+  @Override
+  public OperationCodes endTrie() {
+    return OperationCodes.TRAVERSE_END;
+  }
+
+  @Override
+  public OperationCodes noNextNode() {
+    return OperationCodes.TRAVERSE_BACKTRACK;
+  }
+
+  @Override
+  public OperationCodes processNode(TrieIterator<StringKey> iter) {
+    return OperationCodes.TRAVERSE_ERROR;
+  }
+
+  @Override
+  public void lockIteration() throws TrieException {
+    // read only traversal
+  }
+
+  @Override
+  public void unlockIteration() throws TrieException {
+    // read only traversal
+  }
+}
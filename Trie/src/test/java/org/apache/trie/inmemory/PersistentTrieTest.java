@@ -0,0 +1,128 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.datatypes.StringKeyFactory;
+import org.junit.Test;
+
+/**
+ * Test case for the PersistentTrie and its snapshots.
+ */
+public class PersistentTrieTest {
+
+  private static StringKey key(String value) {
+    return new StringKey(value);
+  }
+
+  @Test
+  public void operationTests() throws Exception {
+    PersistentTrie<StringKey> trie = new PersistentTrie<StringKey>();
+    String[] words = { "romane", "romanus", "romulus", "rubens", "ruber",
+        "rubicon", "rubicundus", "rom", "r" };
+    for (String word : words) {
+      trie.addElement(key(word));
+    }
+    trie.addElement(key("ruber"));
+    for (String word : words) {
+      assertTrue(word, trie.contains(key(word)));
+    }
+    assertFalse(trie.contains(key("roma")));
+    assertEquals(4, trie.findPrefix(key("rom")).size());
+    assertEquals(words.length, trie.findPrefix(key("")).size());
+    assertEquals("{0, 2}", trie.containsAll(
+        Arrays.asList(key("rubens"), key("rube"), key("r"))).toString());
+
+    // the removals merge the nodes left with a single child.
+    assertTrue(trie.removeElement(key("romanus")));
+    assertFalse(trie.removeElement(key("romanus")));
+    assertFalse(trie.removeElement(key("roma")));
+    assertTrue(trie.removeElement(key("rubicon")));
+    assertTrue(trie.removeElement(key("r")));
+    assertTrue(trie.contains(key("romane")));
+    assertTrue(trie.contains(key("rubicundus")));
+    assertEquals(3, trie.findPrefix(key("ru")).size());
+
+    trie.addAll(Arrays.asList(key("x"), key("xy"), key("rom")));
+    assertEquals(8, trie.findPrefix(key("")).size());
+  }
+
+  @Test
+  public void snapshotTests() throws Exception {
+    PersistentTrie<StringKey> trie = new PersistentTrie<StringKey>();
+    for (int i = 0; i < 100; i++) {
+      trie.addElement(key("k" + i));
+    }
+    AbstractTrie<StringKey> snapshot = trie.snapshot();
+    List<StringKey> before = snapshot.findPrefix(key("k"));
+    for (int i = 0; i < 100; i += 2) {
+      trie.removeElement(key("k" + i));
+    }
+    trie.addElement(key("k1000"));
+    // the snapshot still presents the keys it had.
+    assertEquals(before.toString(), snapshot.findPrefix(key("k")).toString());
+    assertTrue(snapshot.contains(key("k0")));
+    assertFalse(snapshot.contains(key("k1000")));
+    assertEquals(51, trie.findPrefix(key("k")).size());
+    try {
+      snapshot.addElement(key("y"));
+      fail("snapshot modified");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    File file = File.createTempFile("persistent", ".trie");
+    try {
+      MappedTrie.write(snapshot, file);
+      MappedTrie<StringKey> mapped = MappedTrie.open(file,
+          new StringKeyFactory());
+      assertEquals(100, mapped.size());
+      assertEquals(before.toString(), mapped.findPrefix(key("k")).toString());
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void concurrentWriterTests() throws Exception {
+    final PersistentTrie<StringKey> trie = new PersistentTrie<StringKey>();
+    List<Thread> writers = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final int id = t;
+      writers.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 500; i++) {
+              trie.addElement(key("w" + id + "-" + i));
+            }
+            for (int i = 0; i < 500; i += 2) {
+              trie.removeElement(key("w" + id + "-" + i));
+            }
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      });
+    }
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    // no update is lost when the writers retry their copies.
+    assertEquals(1000, trie.findPrefix(key("w")).size());
+    assertTrue(trie.contains(key("w3-499")));
+    assertFalse(trie.contains(key("w3-498")));
+  }
+}
@@ -0,0 +1,56 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.StringKey;
+import org.junit.Test;
+
+/**
+ * Runs the StringKey tests on the RadixTrie, and checks the splitting and
+ * merging of the path compressed labels.
+ */
+public class RadixTrieTest extends InMemoryTrieTest {
+
+  private final String[] urls = { "http://example.com/a/x",
+      "http://example.com/a/y", "http://example.com/b", "http://example.org" };
+
+  @Override
+  protected AbstractTrie<StringKey> createTrie() {
+    return new RadixTrie<StringKey>();
+  }
+
+  @Override
+  protected AbstractTrie<StringKey> createWeightedTrie() {
+    return new RadixTrie<StringKey>(LockingMode.READ_WRITE_LOCK, true);
+  }
+
+  @Test
+  public void labelTests() throws Exception {
+    RadixTrie<StringKey> trie = new RadixTrie<StringKey>();
+    for (String url : urls) {
+      trie.addElement(new StringKey(url));
+    }
+    assertEquals(4, trie.findPrefix(new StringKey("http://ex")).size());
+    assertEquals(3, trie.findPrefix(new StringKey("http://example.c")).size());
+    assertEquals(2, trie.findPrefix(new StringKey("http://example.com/a"))
+        .size());
+    assertFalse(trie.contains(new StringKey("http://example.co")));
+    assertFalse(trie.contains(new StringKey("http://example.com/a/")));
+
+    // the label http://example.com/a/ is merged back into the leaf.
+    assertTrue(trie.removeElement(new StringKey("http://example.com/a/x")));
+    assertTrue(trie.contains(new StringKey("http://example.com/a/y")));
+    assertFalse(trie.contains(new StringKey("http://example.com/a/x")));
+    // the prefix ends within the label, the shorter key splits it again.
+    trie.addElement(new StringKey("http://example"));
+    assertEquals(4, trie.findPrefix(new StringKey("http://example")).size());
+    for (String url : urls) {
+      trie.removeElement(new StringKey(url));
+    }
+    assertEquals(1, trie.findPrefix(new StringKey("h")).size());
+    assertTrue(trie.contains(new StringKey("http://example")));
+  }
+}
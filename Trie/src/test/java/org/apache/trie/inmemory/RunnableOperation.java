@@ -14,6 +14,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.trie.base.impl.AbstractTrie;
 import org.apache.trie.datatypes.StringKey;
 
 /**
@@ -30,7 +31,7 @@ class RunnableOperation {
 
   private final OperationType type;
   private final RunnableOperation parent;
-  private final InMemoryTrie<StringKey> trie;
+  private final AbstractTrie<StringKey> trie;
   private final ThreadPool pool;
   private final String keyArr[];
   private final int size;
@@ -40,7 +41,7 @@ class RunnableOperation {
    */
   static long totalThreads = 0;
 
-  RunnableOperation(InMemoryTrie<StringKey> atrie, RunnableOperation par,
+  RunnableOperation(AbstractTrie<StringKey> atrie, RunnableOperation par,
       OperationType atype, int pops, ThreadPool apool) {
     parent = par;
     trie = atrie;
@@ -51,7 +52,7 @@ class RunnableOperation {
     keyArr = null;
   }
 
-  RunnableOperation(InMemoryTrie<StringKey> atrie, RunnableOperation par,
+  RunnableOperation(AbstractTrie<StringKey> atrie, RunnableOperation par,
       OperationType atype, int pops, ThreadPool apool, int asize, String[] akey) {
     parent = par;
     trie = atrie;
@@ -62,7 +63,7 @@ class RunnableOperation {
     keyArr = akey;
   }
 
-  RunnableOperation(InMemoryTrie<StringKey> atrie) {
+  RunnableOperation(AbstractTrie<StringKey> atrie) {
     parent = null;
     trie = atrie;
     type = OperationType.NULL_OP;
@@ -0,0 +1,106 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.datatypes.StringKey;
+import org.junit.Test;
+
+/**
+ * Test case for the ShardedTrie, which must behave as a single Trie.
+ */
+public class ShardedTrieTest {
+
+  private final String[] words = { "abc", "abc1", "abc3", "acb", "b", "ba",
+      "", "bcd", "c", "http://example.com/a", "http://example.com/b" };
+  private final String[] prefixes = { "", "a", "ab", "abc", "b", "bc", "h",
+      "http://", "x" };
+
+  private static final Supplier<Trie<StringKey>> RADIX =
+      new Supplier<Trie<StringKey>>() {
+        @Override
+        public Trie<StringKey> get() {
+          return new RadixTrie<StringKey>();
+        }
+      };
+
+  private List<StringKey> keys(String... values) {
+    List<StringKey> result = new ArrayList<StringKey>();
+    for (String value : values) {
+      result.add(new StringKey(value));
+    }
+    return result;
+  }
+
+  private List<String> strings(Iterator<StringKey> keys) {
+    List<String> result = new ArrayList<String>();
+    while (keys.hasNext()) {
+      result.add(keys.next().toString());
+    }
+    return result;
+  }
+
+  private void assertSameKeys(Trie<StringKey> expected,
+      Trie<StringKey> actual) throws Exception {
+    for (String prefix : prefixes) {
+      StringKey key = new StringKey(prefix);
+      assertEquals(prefix, strings(expected.findPrefix(key).iterator()),
+          strings(actual.findPrefix(key).iterator()));
+      assertEquals(prefix, strings(expected.findPrefixIterator(key)),
+          strings(actual.findPrefixIterator(key)));
+      assertEquals(prefix, strings(expected.findPrefixIterator(key, 2)),
+          strings(actual.findPrefixIterator(key, 2)));
+    }
+  }
+
+  @Test
+  public void shardTests() throws Exception {
+    RadixTrie<StringKey> expected = new RadixTrie<StringKey>();
+    List<Trie<StringKey>> tries = new ArrayList<Trie<StringKey>>();
+    tries.add(new ShardedTrie<StringKey>(RADIX));
+    tries.add(new ShardedTrie<StringKey>(RADIX, 3, 2));
+    tries.add(new ShardedTrie<StringKey>(RADIX, 1, 1));
+    for (String word : words) {
+      expected.addElement(new StringKey(word));
+    }
+    for (Trie<StringKey> trie : tries) {
+      for (String word : words) {
+        trie.addElement(new StringKey(word));
+      }
+      assertSameKeys(expected, trie);
+      assertTrue(trie.contains(new StringKey("")));
+      assertFalse(trie.contains(new StringKey("ab")));
+      assertTrue(trie.removeElement(new StringKey("abc1")));
+      assertFalse(trie.removeElement(new StringKey("abc1")));
+    }
+    expected.removeElement(new StringKey("abc1"));
+    for (Trie<StringKey> trie : tries) {
+      assertSameKeys(expected, trie);
+    }
+  }
+
+  @Test
+  public void batchTests() throws Exception {
+    ShardedTrie<StringKey> trie = new ShardedTrie<StringKey>(RADIX, 4, 1);
+    trie.addAll(keys(words));
+    RadixTrie<StringKey> expected = new RadixTrie<StringKey>();
+    expected.addAll(keys(words));
+    assertSameKeys(expected, trie);
+
+    List<StringKey> queries = keys("b", "zz", "abc3", "ab", "", "c");
+    BitSet found = trie.containsAll(queries);
+    assertEquals(expected.containsAll(queries), found);
+    assertEquals(Arrays.asList(true, false, true, false, true, true),
+        Arrays.asList(found.get(0), found.get(1), found.get(2), found.get(3),
+            found.get(4), found.get(5)));
+  }
+}
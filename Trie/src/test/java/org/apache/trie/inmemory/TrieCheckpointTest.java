@@ -0,0 +1,125 @@
+package org.apache.trie.inmemory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.impl.AbstractTrie;
+import org.apache.trie.datatypes.IntegerKey;
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.datatypes.StringKeyFactory;
+import org.junit.Test;
+
+/**
+ * Test case for the checkpoints of the Tries and the serialization of the
+ * keys.
+ */
+public class TrieCheckpointTest {
+
+  private final String[] words = { "abc", "abc1", "abc3", "acb", "b", "",
+      "http://example.com/a", "http://example.com/b" };
+
+  private byte[] checkpoint(AbstractTrie<StringKey> trie) throws Exception {
+    for (String word : words) {
+      trie.addElement(new StringKey(word));
+    }
+    // a removed key leaves an internal node without children.
+    trie.addElement(new StringKey("zz"));
+    trie.addElement(new StringKey("zzz"));
+    trie.removeElement(new StringKey("zz"));
+    trie.removeElement(new StringKey("zzz"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(words.length, trie.checkpoint(out));
+    return out.toByteArray();
+  }
+
+  private void assertRestored(byte[] data, AbstractTrie<StringKey> trie)
+      throws Exception {
+    assertEquals(words.length, trie.restore(new ByteArrayInputStream(data),
+        new StringKeyFactory()));
+    for (String word : words) {
+      assertTrue(word, trie.contains(new StringKey(word)));
+    }
+    assertFalse(trie.contains(new StringKey("ab")));
+    assertFalse(trie.contains(new StringKey("zz")));
+    assertEquals(3, trie.findPrefix(new StringKey("abc")).size());
+    assertEquals(2, trie.findPrefix(new StringKey("http://ex")).size());
+    // the restored Trie is modified as usual.
+    trie.addElement(new StringKey("abd"));
+    assertTrue(trie.removeElement(new StringKey("abc1")));
+    assertEquals(3, trie.findPrefix(new StringKey("ab")).size());
+  }
+
+  @Test
+  public void restoreTests() throws Exception {
+    byte[] data = checkpoint(new InMemoryTrie<StringKey>());
+    assertRestored(data, new InMemoryTrie<StringKey>());
+    // the labels are merged for the path compressed Tries.
+    assertRestored(data, new RadixTrie<StringKey>());
+    assertRestored(data, new ArtTrie<StringKey>());
+
+    data = checkpoint(new RadixTrie<StringKey>());
+    assertRestored(data, new RadixTrie<StringKey>(LockingMode.OPTIMISTIC));
+    // the labels are split for the Tries without path compression.
+    assertRestored(data, new InMemoryTrie<StringKey>());
+    assertRestored(data, new OffHeapTrie<StringKey>(new StringKeyFactory()));
+  }
+
+  @Test
+  public void corruptTests() throws Exception {
+    byte[] data = checkpoint(new RadixTrie<StringKey>());
+    data[data.length / 2] ^= 1;
+    RadixTrie<StringKey> trie = new RadixTrie<StringKey>();
+    try {
+      trie.restore(new ByteArrayInputStream(data), new StringKeyFactory());
+      fail("corrupt checkpoint restored");
+    } catch (TrieException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Checksum mismatch")
+          || e.getMessage().startsWith("Cannot read checkpoint"));
+    }
+    // nothing is added from a corrupt checkpoint.
+    assertFalse(trie.contains(new StringKey("abc")));
+
+    trie.addElement(new StringKey("a"));
+    try {
+      trie.restore(new ByteArrayInputStream(data), new StringKeyFactory());
+      fail("checkpoint restored in a Trie with keys");
+    } catch (IllegalStateException e) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void externalizeTests() throws Exception {
+    StringKey word = new StringKey("snapshot\nline");
+    StringKey label = word.getLabel(0, 4);
+    IntegerKey number = new IntegerKey(-123456);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    word.writeExternal(out);
+    label.writeExternal(out);
+    number.writeExternal(out);
+    out.close();
+
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+        bytes.toByteArray()));
+    StringKey readWord = new StringKey();
+    readWord.readExternal(in);
+    StringKey readLabel = new StringKey();
+    readLabel.readExternal(in);
+    IntegerKey readNumber = new IntegerKey();
+    readNumber.readExternal(in);
+    assertTrue(word.equalsTrie(readWord));
+    assertEquals(word.getKeyLength(), readWord.getKeyLength());
+    assertTrue(label.equalsTrie(readLabel));
+    assertFalse(readLabel.isEoln(readLabel.getKeyLength() - 1));
+    assertTrue(number.equalsTrie(readNumber));
+  }
+}
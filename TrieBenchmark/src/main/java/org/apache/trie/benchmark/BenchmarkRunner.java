@@ -0,0 +1,44 @@
+package org.apache.trie.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark of this module at 1, 4, 16 and 64 threads with the GC
+ * profiler attached, so each result also reports the allocation per
+ * operation. Any JMH command line option given to main (for example
+ * <code>-p size=1000</code> or a benchmark regexp) is applied to every run; an
+ * explicit <code>-t</code> replaces the thread sweep.
+ */
+public final class BenchmarkRunner {
+
+  private static final int[] THREADS = { 1, 4, 16, 64 };
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws RunnerException,
+      CommandLineOptionException {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    int[] sweep = THREADS;
+    if (cmd.getThreads().hasValue()) {
+      sweep = new int[] { cmd.getThreads().get() };
+    }
+    for (int threads : sweep) {
+      ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd)
+          .threads(threads).addProfiler(GCProfiler.class)
+          .result("trie-benchmark-" + threads + "t.csv").resultFormat(
+              ResultFormatType.CSV);
+      if (cmd.getIncludes().isEmpty()) {
+        options.include("org\\.apache\\.trie\\.benchmark\\..*");
+      }
+      new Runner(options.build()).run();
+    }
+  }
+}
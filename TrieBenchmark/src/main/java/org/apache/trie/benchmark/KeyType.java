@@ -0,0 +1,207 @@
+package org.apache.trie.benchmark;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieException;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.datatypes.IntegerKey;
+import org.apache.trie.datatypes.IntegerKeyFactory;
+import org.apache.trie.datatypes.StringKey;
+import org.apache.trie.datatypes.StringKeyFactory;
+
+/**
+ * The key types covered by the benchmarks. Each constant knows how to generate
+ * a reproducible {@link Dataset} of distinct keys for its TrieKey.
+ */
+public enum KeyType {
+  /**
+   * Random lower case words of 6 to 16 characters stored as {@link StringKey}.
+   */
+  STRING {
+    @Override
+    TrieKeyFactory<?> createFactory() {
+      return new StringKeyFactory();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    Dataset<?> createDataset(int size, long seed, Trie<?> trie)
+        throws TrieException {
+      Random random = new Random(seed);
+      Set<String> seen = new HashSet<String>(size * 2);
+      StringKey[] keys = new StringKey[size];
+      StringKey[] missing = new StringKey[size];
+      StringKey[] prefixes = new StringKey[size];
+      for (int i = 0; i < size; i++) {
+        String word = nextWord(random, seen);
+        keys[i] = new StringKey(word);
+        prefixes[i] = new StringKey(word.substring(0, PREFIX_LENGTH));
+      }
+      for (int i = 0; i < size; i++) {
+        missing[i] = new StringKey(nextWord(random, seen));
+      }
+      return new Dataset<StringKey>((Trie<StringKey>) trie, keys,
+          missing, prefixes);
+    }
+
+    private String nextWord(Random random, Set<String> seen) {
+      String word;
+      do {
+        int length = MIN_WORD + random.nextInt(MAX_WORD - MIN_WORD + 1);
+        char[] chars = new char[length];
+        for (int j = 0; j < length; j++) {
+          chars[j] = (char) ('a' + random.nextInt(26));
+        }
+        word = new String(chars);
+      } while (!seen.add(word));
+      return word;
+    }
+  },
+  /**
+   * Random integers of the whole int range stored as {@link IntegerKey}.
+   */
+  INTEGER {
+    @Override
+    TrieKeyFactory<?> createFactory() {
+      return new IntegerKeyFactory();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    Dataset<?> createDataset(int size, long seed, Trie<?> trie)
+        throws TrieException {
+      Random random = new Random(seed);
+      Set<Integer> seen = new HashSet<Integer>(size * 2);
+      IntegerKey[] keys = new IntegerKey[size];
+      IntegerKey[] missing = new IntegerKey[size];
+      IntegerKey[] prefixes = new IntegerKey[size];
+      for (int i = 0; i < size; i++) {
+        int value = nextValue(random, seen);
+        keys[i] = new IntegerKey(value);
+        prefixes[i] = new IntegerKey(leadingDigits(value));
+      }
+      for (int i = 0; i < size; i++) {
+        missing[i] = new IntegerKey(nextValue(random, seen));
+      }
+      return new Dataset<IntegerKey>((Trie<IntegerKey>) trie, keys,
+          missing, prefixes);
+    }
+
+    private int nextValue(Random random, Set<Integer> seen) {
+      int value;
+      do {
+        value = random.nextInt();
+      } while (!seen.add(value));
+      return value;
+    }
+
+    private int leadingDigits(int value) {
+      // the minus sign of a negative number is its first key unit.
+      long prefix = Math.abs((long) value);
+      int digits = (value < 0) ? PREFIX_LENGTH - 1 : PREFIX_LENGTH;
+      long limit = 1;
+      for (int i = 0; i < digits; i++) {
+        limit *= 10;
+      }
+      while (prefix >= limit) {
+        prefix /= 10;
+      }
+      return (int) ((value < 0) ? -prefix : prefix);
+    }
+  };
+
+  /**
+   * Number of key units used by the findPrefix benchmarks.
+   */
+  static final int PREFIX_LENGTH = 3;
+  private static final int MIN_WORD = 6;
+  private static final int MAX_WORD = 16;
+
+  /**
+   * Creates the TrieKeyFactory of this KeyType.
+   * 
+   * @return the new factory.
+   */
+  abstract TrieKeyFactory<?> createFactory();
+
+  /**
+   * Creates the keys for a benchmark run in the specified empty trie. The keys
+   * are not inserted; see {@link Dataset#load()}.
+   * 
+   * @param size
+   *          number of keys stored in the trie.
+   * @param seed
+   *          seed for the random generator.
+   * @param trie
+   *          the empty trie for the keys of this KeyType.
+   * @return the generated dataset.
+   * @throws TrieException
+   */
+  abstract Dataset<?> createDataset(int size, long seed, Trie<?> trie)
+      throws TrieException;
+
+  /**
+   * The trie and the keys used by a benchmark. The generic type is kept inside
+   * this class so the benchmark methods can stay independent of the key type.
+   * 
+   * @param <E>
+   *          TrieKey used for this Trie.
+   */
+  static final class Dataset<E extends TrieKey<E>> {
+    private final Trie<E> trie;
+    private final E[] keys;
+    private final E[] missing;
+    private final E[] prefixes;
+
+    Dataset(Trie<E> atrie, E[] akeys, E[] amissing, E[] aprefixes) {
+      trie = atrie;
+      keys = akeys;
+      missing = amissing;
+      prefixes = aprefixes;
+    }
+
+    void load() throws TrieException {
+      for (E key : keys) {
+        trie.addElement(key);
+      }
+    }
+
+    int size() {
+      return keys.length;
+    }
+
+    boolean containsPresent(int index) throws TrieException {
+      return trie.contains(keys[index]);
+    }
+
+    boolean containsMissing(int index) throws TrieException {
+      return trie.contains(missing[index]);
+    }
+
+    int findPrefix(int index) throws TrieException {
+      return trie.findPrefix(prefixes[index]).size();
+    }
+
+    boolean addMissing(int index) throws TrieException {
+      trie.addElement(missing[index]);
+      return true;
+    }
+
+    boolean removeMissing(int index) throws TrieException {
+      return trie.removeElement(missing[index]);
+    }
+
+    boolean addPresent(int index) throws TrieException {
+      trie.addElement(keys[index]);
+      return true;
+    }
+
+    boolean removePresent(int index) throws TrieException {
+      return trie.removeElement(keys[index]);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.apache.trie.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.trie.base.TrieException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read/write mix on a populated trie. Reads are contains calls split evenly
+ * between present and missing keys; writes alternate between adding and
+ * removing a missing key of the thread's own slice.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedWorkloadBenchmark {
+
+  /**
+   * Percentage of read operations in the mix, 100/0, 95/5 and 50/50.
+   */
+  @State(Scope.Benchmark)
+  public static class Mix {
+    @Param({ "100", "95", "50" })
+    public int readPercent;
+  }
+
+  /**
+   * Remembers whether the next write of a thread adds or removes its key.
+   */
+  @State(Scope.Thread)
+  public static class WriteState {
+    boolean added;
+    int index;
+  }
+
+  @Benchmark
+  public boolean readWrite(TrieState state, Mix mix, ThreadCursor cursor,
+      WriteState writes) throws TrieException {
+    int percent = cursor.percent();
+    if (percent < mix.readPercent) {
+      if ((percent & 1) == 0) {
+        return state.dataset.containsPresent(cursor.next());
+      }
+      return state.dataset.containsMissing(cursor.next());
+    }
+    if (writes.added) {
+      writes.added = false;
+      return state.dataset.removeMissing(writes.index);
+    }
+    writes.index = cursor.next();
+    writes.added = true;
+    return state.dataset.addMissing(writes.index);
+  }
+}
@@ -0,0 +1,50 @@
+package org.apache.trie.benchmark;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Per thread position in the dataset. Every thread walks its own slice of the
+ * keys so that concurrent writers do not add and remove the same key.
+ */
+@State(Scope.Thread)
+public class ThreadCursor {
+
+  private int start;
+  private int length;
+  private int position;
+  private Random random;
+
+  @Setup
+  public void setup(TrieState state, ThreadParams params) {
+    int size = state.dataset.size();
+    int threads = params.getThreadCount();
+    length = Math.max(size / threads, 1);
+    start = (params.getThreadIndex() * length) % size;
+    position = 0;
+    random = new Random(params.getThreadIndex());
+  }
+
+  /**
+   * Returns the next index of this thread's slice.
+   */
+  int next() {
+    int index = start + position;
+    position++;
+    if (position == length) {
+      position = 0;
+    }
+    return index;
+  }
+
+  /**
+   * Returns a uniformly distributed percentage in the range [0, 100).
+   */
+  int percent() {
+    return random.nextInt(100);
+  }
+}
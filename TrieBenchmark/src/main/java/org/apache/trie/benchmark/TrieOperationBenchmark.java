@@ -0,0 +1,60 @@
+package org.apache.trie.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.trie.base.TrieException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the individual operations of
+ * {@link org.apache.trie.base.impl.AbstractTrie}. The write benchmarks pair an
+ * insert with a remove so that the trie keeps its size for the whole run.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieOperationBenchmark {
+
+  @Benchmark
+  public boolean containsHit(TrieState state, ThreadCursor cursor)
+      throws TrieException {
+    return state.dataset.containsPresent(cursor.next());
+  }
+
+  @Benchmark
+  public boolean containsMiss(TrieState state, ThreadCursor cursor)
+      throws TrieException {
+    return state.dataset.containsMissing(cursor.next());
+  }
+
+  @Benchmark
+  public int findPrefix(TrieState state, ThreadCursor cursor)
+      throws TrieException {
+    return state.dataset.findPrefix(cursor.next());
+  }
+
+  @Benchmark
+  public void addThenRemove(TrieState state, ThreadCursor cursor,
+      Blackhole hole) throws TrieException {
+    int index = cursor.next();
+    hole.consume(state.dataset.addMissing(index));
+    hole.consume(state.dataset.removeMissing(index));
+  }
+
+  @Benchmark
+  public void removeThenAdd(TrieState state, ThreadCursor cursor,
+      Blackhole hole) throws TrieException {
+    int index = cursor.next();
+    hole.consume(state.dataset.removePresent(index));
+    hole.consume(state.dataset.addPresent(index));
+  }
+}
@@ -0,0 +1,38 @@
+package org.apache.trie.benchmark;
+
+import org.apache.trie.base.TrieException;
+import org.apache.trie.inmemory.LockingMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shared benchmark state: one populated trie per key type, dataset size, trie
+ * type and locking mode.
+ */
+@State(Scope.Benchmark)
+public class TrieState {
+
+  @Param({ "STRING", "INTEGER" })
+  public KeyType keyType;
+
+  @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+  public int size;
+
+  @Param({ "IN_MEMORY" })
+  public TrieType trieType;
+
+  @Param({ "READ_WRITE_LOCK" })
+  public LockingMode lockingMode;
+
+  KeyType.Dataset<?> dataset;
+
+  @Setup(Level.Trial)
+  public void populate() throws TrieException {
+    dataset = keyType.createDataset(size, 42L,
+        trieType.create(lockingMode, keyType.createFactory()));
+    dataset.load();
+  }
+}
@@ -0,0 +1,69 @@
+package org.apache.trie.benchmark;
+
+import org.apache.trie.base.Trie;
+import org.apache.trie.base.TrieKey;
+import org.apache.trie.base.TrieKeyFactory;
+import org.apache.trie.inmemory.ArtTrie;
+import org.apache.trie.inmemory.InMemoryTrie;
+import org.apache.trie.inmemory.LockingMode;
+import org.apache.trie.inmemory.OffHeapTrie;
+import org.apache.trie.inmemory.RadixTrie;
+
+/**
+ * The Trie implementations covered by the benchmarks.
+ */
+public enum TrieType {
+  /**
+   * {@link InMemoryTrie}, one node per key unit of the shared prefixes.
+   */
+  IN_MEMORY {
+    @Override
+    <E extends TrieKey<E>> Trie<E> create(LockingMode mode,
+        TrieKeyFactory<E> factory) {
+      return new InMemoryTrie<E>(mode);
+    }
+  },
+  /**
+   * {@link RadixTrie}, path compressed labels.
+   */
+  RADIX {
+    @Override
+    <E extends TrieKey<E>> Trie<E> create(LockingMode mode,
+        TrieKeyFactory<E> factory) {
+      return new RadixTrie<E>(mode);
+    }
+  },
+  /**
+   * {@link ArtTrie}, the locking mode is ignored.
+   */
+  ART {
+    @Override
+    <E extends TrieKey<E>> Trie<E> create(LockingMode mode,
+        TrieKeyFactory<E> factory) {
+      return new ArtTrie<E>();
+    }
+  },
+  /**
+   * {@link OffHeapTrie}, the locking mode is ignored.
+   */
+  OFF_HEAP {
+    @Override
+    <E extends TrieKey<E>> Trie<E> create(LockingMode mode,
+        TrieKeyFactory<E> factory) {
+      return new OffHeapTrie<E>(factory);
+    }
+  };
+
+  /**
+   * Creates an empty trie.
+   * 
+   * @param mode
+   *          LockingMode of the created trie.
+   * @param factory
+   *          TrieKeyFactory of the keys, used by the tries which do not store
+   *          TrieKey objects.
+   * @return the new trie.
+   */
+  abstract <E extends TrieKey<E>> Trie<E> create(LockingMode mode,
+      TrieKeyFactory<E> factory);
+}